@@ -0,0 +1,161 @@
+package oripa.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import oripa.doc.Doc;
+import oripa.doc.exporter.ExporterCP;
+import oripa.doc.exporter.ExporterXML;
+import oripa.doc.loader.LoaderXML;
+import oripa.value.OriLine;
+
+/**
+ * Reference crease patterns for the benchmarks.
+ *
+ * "crane_base_mitani" and "waterbomb_base_collapse" are the opx files
+ * of the test resources. "miura_N" is a generated Miura-ori tessellation
+ * of N x N parallelograms, which is flat-foldable with one answer.
+ */
+public class CreasePatterns {
+
+	public static final double PAPER_SIZE = 400;
+
+	private static final String MIURA = "miura_";
+
+	/**
+	 *
+	 * @param name  name of the pattern
+	 * @return a document holding the pattern
+	 */
+	public static Doc create(String name) throws Exception {
+		if (name.startsWith(MIURA)) {
+			int n = Integer.parseInt(name.substring(MIURA.length()));
+			Doc doc = new Doc(PAPER_SIZE);
+			doc.getCreasePattern().addAll(createMiuraOri(n, n));
+			return doc;
+		}
+
+		File file = File.createTempFile(name, ".opx");
+		try {
+			copyResource("/" + name + ".opx", file);
+			return new LoaderXML().load(file.getPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * The lines of a crease pattern are held in a hash set, therefore
+	 * their order, which decides the indices of faces, differs on each run.
+	 * This method sorts the lines by their coordinates to fold the same model every time.
+	 *
+	 * @return the lines in the order of their coordinates.
+	 */
+	public static List<OriLine> sortLines(Collection<OriLine> creasePattern) {
+		List<OriLine> lines = new ArrayList<>(creasePattern);
+		Collections.sort(lines, new Comparator<OriLine>() {
+			@Override
+			public int compare(OriLine l0, OriLine l1) {
+				double[] c0 = {l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y};
+				double[] c1 = {l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y};
+				for (int i = 0; i < c0.length; i++) {
+					int result = Double.compare(c0[i], c1[i]);
+					if (result != 0) {
+						return result;
+					}
+				}
+				return 0;
+			}
+		});
+		return lines;
+	}
+
+	/**
+	 * writes the pattern into a temporary file.
+	 * @param format  "opx" or "cp"
+	 * @return the file, which is deleted on exit.
+	 */
+	public static File export(Doc doc, String format) throws Exception {
+		File file = File.createTempFile("oripa-benchmark", "." + format);
+		file.deleteOnExit();
+		if (format.equals("cp")) {
+			new ExporterCP().export(doc, file.getPath());
+		} else {
+			new ExporterXML().export(doc, file.getPath());
+		}
+		return file;
+	}
+
+	/**
+	 * Miura-ori on a square paper centered at the origin.
+	 * The zigzag lines run horizontally and the straight lines vertically.
+	 */
+	public static List<OriLine> createMiuraOri(int cols, int rows) {
+		double w = PAPER_SIZE / cols;
+		double h = PAPER_SIZE / (rows + 1);
+		double d = h * 0.3;
+		double left = -PAPER_SIZE / 2;
+		double top = -PAPER_SIZE / 2;
+
+		List<OriLine> lines = new ArrayList<>();
+
+		// zigzag lines. the first and the last are the edges of the paper.
+		for (int j = 0; j <= rows; j++) {
+			for (int i = 0; i < cols; i++) {
+				double x0 = left + i * w;
+				double y0 = top + j * h + (i % 2) * d;
+				double x1 = left + (i + 1) * w;
+				double y1 = top + j * h + ((i + 1) % 2) * d;
+
+				int type;
+				if (j == 0 || j == rows) {
+					type = OriLine.TYPE_CUT;
+				} else {
+					type = (i + j) % 2 == 0 ? OriLine.TYPE_RIDGE : OriLine.TYPE_VALLEY;
+				}
+				lines.add(new OriLine(x0, y0, x1, y1, type));
+			}
+		}
+
+		for (int i = 0; i <= cols; i++) {
+			for (int j = 0; j < rows; j++) {
+				double x = left + i * w;
+				double y0 = top + j * h + (i % 2) * d;
+				double y1 = top + (j + 1) * h + (i % 2) * d;
+
+				int type;
+				if (i == 0 || i == cols) {
+					type = OriLine.TYPE_CUT;
+				} else {
+					type = i % 2 == 0 ? OriLine.TYPE_RIDGE : OriLine.TYPE_VALLEY;
+				}
+				lines.add(new OriLine(x, y0, x, y1, type));
+			}
+		}
+
+		return lines;
+	}
+
+	private static void copyResource(String name, File dest) throws IOException {
+		try (InputStream in = CreasePatterns.class.getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException("resource not found: " + name);
+			}
+			try (OutputStream out = new FileOutputStream(dest)) {
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = in.read(buffer)) > 0) {
+					out.write(buffer, 0, length);
+				}
+			}
+		}
+	}
+}
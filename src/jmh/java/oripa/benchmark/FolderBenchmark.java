@@ -0,0 +1,68 @@
+package oripa.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oripa.doc.Doc;
+import oripa.fold.FoldedModelInfo;
+import oripa.fold.Folder;
+import oripa.fold.OrigamiModel;
+import oripa.fold.OrigamiModelFactory;
+import oripa.value.OriLine;
+
+/**
+ * Folding a model and searching all foldable overlap relations.
+ * The model is built for each invocation since folding modifies it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FolderBenchmark {
+
+	@Param({ "crane_base_mitani", "waterbomb_base_collapse",
+		"miura_8", "miura_16", "miura_32" })
+	public String pattern;
+
+	@Param({ "true", "false" })
+	public boolean parallelSearch;
+
+	private List<OriLine> lines;
+	private double paperSize;
+
+	private OrigamiModel origamiModel;
+
+	@Setup
+	public void setUp() throws Exception {
+		Doc doc = CreasePatterns.create(pattern);
+		lines = CreasePatterns.sortLines(doc.getCreasePattern());
+		paperSize = doc.getPaperSize();
+	}
+
+	@Setup(Level.Invocation)
+	public void createModel() {
+		origamiModel = new OrigamiModelFactory().createOrigamiModel3(lines, paperSize);
+	}
+
+	@Benchmark
+	public int fold() {
+		Folder folder = new Folder();
+		folder.setParallelSearch(parallelSearch);
+		return folder.fold(origamiModel, new FoldedModelInfo());
+	}
+}
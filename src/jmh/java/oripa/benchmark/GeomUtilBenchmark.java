@@ -0,0 +1,109 @@
+package oripa.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.Vector2d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oripa.geom.GeomUtil;
+import oripa.value.OriLine;
+
+/**
+ * The predicates of GeomUtil on random segments.
+ * Run with "-prof gc" to see the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeomUtilBenchmark {
+
+	private static final int COUNT = 1000;
+
+	private OriLine[] lines = new OriLine[COUNT];
+	private Vector2d[] points = new Vector2d[COUNT];
+
+	private double[] crossPoint = new double[2];
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(0);
+		for (int i = 0; i < COUNT; i++) {
+			lines[i] = new OriLine(random.nextDouble() * 400 - 200, random.nextDouble() * 400 - 200,
+					random.nextDouble() * 400 - 200, random.nextDouble() * 400 - 200,
+					OriLine.TYPE_RIDGE);
+			points[i] = new Vector2d(random.nextDouble() * 400 - 200, random.nextDouble() * 400 - 200);
+		}
+	}
+
+	@Benchmark
+	public int getCrossPoint() {
+		int count = 0;
+		for (int i = 1; i < COUNT; i++) {
+			OriLine l0 = lines[i - 1];
+			OriLine l1 = lines[i];
+			if (GeomUtil.getCrossPoint(l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y,
+					l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y, crossPoint)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int getCrossPointAsVector() {
+		int count = 0;
+		for (int i = 1; i < COUNT; i++) {
+			if (GeomUtil.getCrossPoint(lines[i - 1], lines[i]) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public double distancePointToSegment() {
+		double sum = 0;
+		for (int i = 0; i < COUNT; i++) {
+			sum += GeomUtil.DistancePointToSegment(points[i], lines[i].p0, lines[i].p1);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int isLineSegmentsOverlap() {
+		int count = 0;
+		for (int i = 1; i < COUNT; i++) {
+			OriLine l0 = lines[i - 1];
+			OriLine l1 = lines[i];
+			if (GeomUtil.isLineSegmentsOverlap(l0.p0, l0.p1, l1.p0, l1.p1)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int ccwCheck() {
+		int count = 0;
+		for (int i = 0; i < COUNT; i++) {
+			if (GeomUtil.CCWcheck(lines[i].p0, lines[i].p1, points[i])) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,57 @@
+package oripa.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oripa.doc.Doc;
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.creasepattern.tool.LineAdder;
+import oripa.value.OriLine;
+
+/**
+ * Drawing a whole crease pattern line by line into an empty paper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineAdderBenchmark {
+
+	@Param({ "crane_base_mitani", "waterbomb_base_collapse",
+		"miura_8", "miura_16", "miura_32" })
+	public String pattern;
+
+	private List<OriLine> lines;
+	private double paperSize;
+
+	@Setup
+	public void setUp() throws Exception {
+		Doc doc = CreasePatterns.create(pattern);
+		lines = CreasePatterns.sortLines(doc.getCreasePattern());
+		paperSize = doc.getPaperSize();
+	}
+
+	@Benchmark
+	public CreasePattern addLine() {
+		CreasePattern creasePattern = new CreasePattern(paperSize);
+		LineAdder lineAdder = new LineAdder();
+		for (OriLine line : lines) {
+			lineAdder.addLine(new OriLine(line.p0, line.p1, line.typeVal), creasePattern);
+		}
+		return creasePattern;
+	}
+}
@@ -0,0 +1,55 @@
+package oripa.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oripa.doc.Doc;
+import oripa.doc.loader.Loader;
+import oripa.doc.loader.LoaderCP;
+import oripa.doc.loader.LoaderXML;
+
+/**
+ * Loading a crease pattern file.
+ * The file is written by the exporter of the same format beforehand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark {
+
+	@Param({ "crane_base_mitani", "waterbomb_base_collapse",
+		"miura_8", "miura_16", "miura_32" })
+	public String pattern;
+
+	@Param({ "opx", "cp" })
+	public String format;
+
+	private File file;
+
+	@Setup
+	public void setUp() throws Exception {
+		file = CreasePatterns.export(CreasePatterns.create(pattern), format);
+	}
+
+	@Benchmark
+	public Doc load() throws Exception {
+		// LoaderCP keeps the lines it has read, so a new loader is needed for each file.
+		Loader loader = format.equals("cp") ? new LoaderCP() : new LoaderXML();
+		return loader.load(file.getPath());
+	}
+}
@@ -0,0 +1,277 @@
+package oripa;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import oripa.doc.Doc;
+import oripa.doc.loader.Loader;
+import oripa.doc.loader.LoaderCP;
+import oripa.doc.loader.LoaderDXF;
+import oripa.doc.loader.LoaderPDF;
+import oripa.doc.loader.LoaderXML;
+import oripa.fold.FoldedModelInfo;
+import oripa.fold.Folder;
+import oripa.fold.OrigamiModel;
+import oripa.fold.OrigamiModelFactory;
+import oripa.geom.DuplicateLineRemover;
+import oripa.geom.GeomUtil;
+import oripa.value.OriLine;
+import oripa.view.estimation.FoldedModelRenderer;
+
+/**
+ * Renders the folded states of crease pattern files into PNG images
+ * without any window.
+ *
+ * Usage:
+ * <pre>
+ * java -cp oripa.jar oripa.BatchRenderer [options] input output-directory
+ *
+ *   input        a crease pattern file or a directory of them
+ *   -n count     number of folded states rendered per file. 0 for all. (1)
+ *   -size pixels width and height of the images. (600)
+ *   -threads n   number of files processed at once. (available processors)
+ *   -shade       darkens the faces under the others.
+ *   -flip        renders the model seen from the other side.
+ * </pre>
+ * The i-th folded state of "name.opx" is written to "name_i.png",
+ * where i starts from 0.
+ * Each file is loaded, folded and rendered on its own worker.
+ */
+public class BatchRenderer {
+
+	private int stateCount = 1;
+	private int imageSize = 600;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private boolean shadeFaces = false;
+	private boolean faceOrderFlip = false;
+
+	/**
+	 * rows of the image rendered at once.
+	 */
+	private static final int STRIP_HEIGHT = 512;
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		BatchRenderer renderer = new BatchRenderer();
+		List<String> paths = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-n")) {
+					renderer.setStateCount(Integer.parseInt(args[++i]));
+				} else if (args[i].equals("-size")) {
+					renderer.setImageSize(Integer.parseInt(args[++i]));
+				} else if (args[i].equals("-threads")) {
+					renderer.setThreadCount(Integer.parseInt(args[++i]));
+				} else if (args[i].equals("-shade")) {
+					renderer.setShadeFaces(true);
+				} else if (args[i].equals("-flip")) {
+					renderer.setFaceOrderFlip(true);
+				} else {
+					paths.add(args[i]);
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			paths.clear();
+		}
+
+		if (paths.size() != 2) {
+			System.err.println("usage: oripa.BatchRenderer [-n count] [-size pixels]"
+					+ " [-threads n] [-shade] [-flip] input output-directory");
+			System.exit(2);
+		}
+
+		File outputDirectory = new File(paths.get(1));
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			System.err.println("cannot create " + outputDirectory);
+			System.exit(1);
+		}
+
+		int failures = renderer.renderAll(listInputs(new File(paths.get(0))), outputDirectory);
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * @return the given file, or the loadable files in the given directory.
+	 */
+	static List<File> listInputs(File input) {
+		List<File> inputs = new ArrayList<>();
+		if (!input.isDirectory()) {
+			inputs.add(input);
+			return inputs;
+		}
+
+		File[] files = input.listFiles();
+		if (files == null) {
+			return inputs;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isFile() && createLoader(file) != null) {
+				inputs.add(file);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * @return a new loader for the extension of the file.
+	 *         null if no loader can read the file.
+	 */
+	static Loader createLoader(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".opx") || name.endsWith(".xml")) {
+			return new LoaderXML();
+		} else if (name.endsWith(".cp")) {
+			return new LoaderCP();
+		} else if (name.endsWith(".dxf")) {
+			return new LoaderDXF();
+		} else if (name.endsWith(".pdf")) {
+			return new LoaderPDF();
+		}
+		return null;
+	}
+
+	/**
+	 * renders the files on a pool of {@link #setThreadCount(int)} workers.
+	 * The errors are reported to the standard error.
+	 *
+	 * @param inputs
+	 * @param outputDirectory
+	 * @return the number of the files which could not be rendered.
+	 */
+	public int renderAll(List<File> inputs, final File outputDirectory) {
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threadCount));
+
+		List<Future<List<File>>> results = new ArrayList<>();
+		for (final File input : inputs) {
+			results.add(workers.submit(new Callable<List<File>>() {
+				@Override
+				public List<File> call() throws Exception {
+					return render(input, outputDirectory);
+				}
+			}));
+		}
+		workers.shutdown();
+
+		int failures = 0;
+		for (int i = 0; i < inputs.size(); i++) {
+			try {
+				List<File> images = results.get(i).get();
+				if (images.isEmpty()) {
+					System.err.println(inputs.get(i) + ": no folded state is found.");
+					failures++;
+				} else {
+					System.out.println(inputs.get(i) + ": " + images.size() + " image(s)");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				workers.shutdownNow();
+				return failures + inputs.size() - i;
+			} catch (ExecutionException e) {
+				System.err.println(inputs.get(i) + ": " + e.getCause());
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * loads and folds the crease pattern and writes the images of
+	 * its folded states.
+	 *
+	 * @param input
+	 * @param outputDirectory
+	 * @return the written images. empty if the pattern cannot be folded.
+	 */
+	public List<File> render(File input, File outputDirectory) throws Exception {
+		Loader loader = createLoader(input);
+		if (loader == null) {
+			throw new IOException("unknown file type");
+		}
+		Doc doc = loader.load(input.getPath());
+		if (doc == null) {
+			throw new IOException("failed to load");
+		}
+
+		// the lines are cleaned beforehand since the factory asks the user
+		// before cleaning them.
+		List<OriLine> creasePattern = new ArrayList<>(doc.getCreasePattern());
+		new DuplicateLineRemover(GeomUtil.EPS).clean(creasePattern);
+
+		OrigamiModel origamiModel = new OrigamiModelFactory().createOrigamiModel3(
+				creasePattern, doc.getPaperSize());
+		FoldedModelInfo foldedModelInfo = new FoldedModelInfo();
+
+		List<File> images = new ArrayList<>();
+		if (!origamiModel.isProbablyFoldable()) {
+			return images;
+		}
+
+		Folder folder = new Folder();
+		// the files are processed in parallel instead.
+		folder.setParallelSearch(threadCount <= 1);
+		folder.setAnswerLimit(stateCount);
+		if (folder.fold(origamiModel, foldedModelInfo) == 0) {
+			return images;
+		}
+
+		// only the settings are used. the strips have their own buffers.
+		FoldedModelRenderer renderer = new FoldedModelRenderer(1, 1);
+		renderer.setShadeFaces(shadeFaces);
+		renderer.setFaceOrderFlip(faceOrderFlip);
+
+		String baseName = input.getName().replaceFirst("\\.[^.]*$", "");
+		for (int i = 0; stateCount <= 0 || i < stateCount; i++) {
+			if (i > 0) {
+				// finds the next answer if it is not found yet.
+				foldedModelInfo.setNextORMat();
+				if (foldedModelInfo.getCurrentORmatIndex() != i) {
+					break;
+				}
+			}
+
+			BufferedImage image = renderer.renderImage(origamiModel, foldedModelInfo,
+					imageSize, imageSize, STRIP_HEIGHT);
+			File output = new File(outputDirectory, baseName + "_" + i + ".png");
+			ImageIO.write(image, "png", output);
+			images.add(output);
+		}
+		return images;
+	}
+
+	/**
+	 * @param stateCount  number of folded states rendered per file.
+	 *                    0 for all of them.
+	 */
+	public void setStateCount(int stateCount) {
+		this.stateCount = stateCount;
+	}
+
+	public void setImageSize(int imageSize) {
+		this.imageSize = imageSize;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	public void setShadeFaces(boolean shadeFaces) {
+		this.shadeFaces = shadeFaces;
+	}
+
+	public void setFaceOrderFlip(boolean faceOrderFlip) {
+		this.faceOrderFlip = faceOrderFlip;
+	}
+}
@@ -19,14 +19,19 @@
 package oripa;
 
 import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.Executor;
 import java.io.File;
+import java.io.IOException;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
 import oripa.doc.Doc;
+import oripa.doc.UndoJournal;
 import oripa.resource.Constants;
 import oripa.resource.ResourceHolder;
 import oripa.resource.ResourceKey;
@@ -41,6 +46,7 @@ public class ORIPA {
 
     public static String TITLE;
     public static Doc doc;
+    public static UndoJournal journal;
     public static MainFrame mainFrame;
     public static ModelViewFrame modelFrame;
     public static String infoString = "ORIPA S: (c) 2012 OUCHI Koji\n" +
@@ -97,6 +103,7 @@ public class ORIPA {
 
         doc = new Doc(Constants.DEFAULT_PAPER_SIZE);
 //        doc = DocHolder.getInstance().getDoc();
+        openJournal(resources);
         
         // Construction of the main frame
         mainFrame = new MainFrame();
@@ -137,6 +144,53 @@ public class ORIPA {
 
     }
 
+    /**
+     * opens the journal of the changes and recovers the crease pattern
+     * from it if the last session has not been closed normally.
+     */
+    private static void openJournal(ResourceHolder resources) {
+        try {
+            journal = new UndoJournal(UndoJournal.getDefaultFile());
+            // the changes made by an event are written after the event.
+            journal.setFlushExecutor(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    EventQueue.invokeLater(command);
+                }
+            });
+
+            if (journal.hasRecords()) {
+                int selected = JOptionPane.showConfirmDialog(null,
+                        resources.getString(ResourceKey.WARNING, StringID.Warning.RECOVER_ID),
+                        "ORIPA", JOptionPane.YES_NO_OPTION);
+                if (selected == JOptionPane.YES_OPTION) {
+                    Doc recovered = journal.recover();
+                    if (recovered != null) {
+                        doc = recovered;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // another ORIPA may be using the journal.
+            e.printStackTrace();
+            journal = null;
+        }
+
+        doc.startJournal(journal);
+    }
+
+    /**
+     * deletes the journal at normal exit.
+     */
+    public static void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        doc.stopJournal();
+        journal.close(true);
+        journal = null;
+    }
+
     public static void ERROR_END(String message) {
         JOptionPane.showMessageDialog(
                 ORIPA.mainFrame, message, "ERROR",
@@ -145,6 +199,10 @@ public class ORIPA {
     }
 
     public static void outMessage(String s) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println(s);
+            return;
+        }
         JOptionPane.showMessageDialog(
                 ORIPA.mainFrame, s, "ORIPA",
                 JOptionPane.DEFAULT_OPTION);
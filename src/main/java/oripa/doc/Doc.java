@@ -19,6 +19,7 @@
 package oripa.doc;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -26,7 +27,9 @@ import java.util.List;
 import javax.vecmath.Vector2d;
 
 import oripa.ORIPA;
+import oripa.fold.FoldabilityValidator;
 import oripa.fold.FoldedModelInfo;
+import oripa.fold.IncrementalOrigamiModel;
 import oripa.fold.OriFace;
 import oripa.fold.OriHalfedge;
 import oripa.fold.OrigamiModel;
@@ -82,6 +85,12 @@ public class Doc {
 	// Origami Model for Estimation
 	private OrigamiModel origamiModel = null;
 
+	// Origami Model following the crease pattern, for checking the pattern
+	private IncrementalOrigamiModel incrementalOrigamiModel = null;
+
+	// Background check of the vertices for the editor
+	private FoldabilityValidator foldabilityValidator = null;
+
 		
 	// Folded Model Information (Result of Estimation)
 
@@ -101,7 +110,7 @@ public class Doc {
 	private String originalAuthorName;
 	private String reference;
 	public String memo;
-	private UndoManager<UndoInfo> undoManager = new UndoManager<>(30);
+	private UndoHistory undoHistory = null;
 
 
 
@@ -131,6 +140,7 @@ public class Doc {
 		creasePattern.add(l2);
 		creasePattern.add(l3);
 
+		undoHistory = new UndoHistory(creasePattern, 1000, 16 * 1024 * 1024);
 		
 		origamiModel  = new OrigamiModel(size);
 		foldedModelInfo = new FoldedModelInfo();
@@ -154,49 +164,72 @@ public class Doc {
 
 
 
-	public UndoInfo createUndoInfo(){
-		UndoInfo undoInfo = new UndoInfo(creasePattern);
-		return undoInfo;
-	}
-
+	/**
+	 * begins an undo step which is pushed later by {@link #pushCachedUndoInfo()}.
+	 */
 	public void cacheUndoInfo(){
-		undoManager.setCache(createUndoInfo());
+		undoHistory.cache();
 	}
 
 	public void pushCachedUndoInfo(){
-		undoManager.pushCachedInfo();
+		undoHistory.pushCache();
 	}
 
+	/**
+	 * begins an undo step. The changes of the crease pattern
+	 * after this call are recorded into the step.
+	 */
 	public void pushUndoInfo() {
-		UndoInfo ui = new UndoInfo(creasePattern);
-		undoManager.push(ui);
+		undoHistory.push();
+	}
+
+	public void loadUndoInfo() {
+		undoHistory.undo();
 	}
 
-	public void pushUndoInfo(UndoInfo uinfo){
-		undoManager.push(uinfo);
+	/**
+	 * cancels the last {@link #loadUndoInfo()}.
+	 */
+	public void loadRedoInfo() {
+		undoHistory.redo();
 	}
 
-	public void loadUndoInfo() {
-		UndoInfo info = undoManager.pop();
+	public boolean canUndo(){
+		return undoHistory.canUndo();
+	}
+
+	public boolean canRedo(){
+		return undoHistory.canRedo();
+	}
 
-		if(info == null){
+	/**
+	 * starts writing the changes to the given journal.
+	 * @param journal	null for no journal
+	 */
+	public void startJournal(UndoJournal journal){
+		if(journal == null){
 			return;
 		}
-
-		creasePattern.clear();
-		creasePattern.addAll(info.getLines());
+		try {
+			undoHistory.startJournal(journal);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
-	public boolean canUndo(){
-		return undoManager.canUndo();
+	/**
+	 * stops writing to the journal. The undo history is cleared.
+	 */
+	public void stopJournal(){
+		undoHistory.stopJournal();
 	}
 
 	public boolean isChanged(){
-		return undoManager.isChanged();
+		return undoHistory.isChanged();
 	}
 
 	public void clearChanged(){
-		undoManager.clearChanged();
+		undoHistory.clearChanged();
 	}
 
 
@@ -370,6 +403,28 @@ public class Doc {
 		return creasePattern;
 	}
 
+	/**
+	 * 
+	 * @return origami model which is kept up to date with the crease pattern.
+	 */
+	public IncrementalOrigamiModel getIncrementalOrigamiModel(){
+		if (incrementalOrigamiModel == null) {
+			incrementalOrigamiModel = new IncrementalOrigamiModel(creasePattern);
+		}
+		return incrementalOrigamiModel;
+	}
+
+	/**
+	 * 
+	 * @return validator which checks the vertices of the crease pattern in background.
+	 */
+	public FoldabilityValidator getFoldabilityValidator(){
+		if (foldabilityValidator == null) {
+			foldabilityValidator = new FoldabilityValidator(creasePattern);
+		}
+		return foldabilityValidator;
+	}
+
 	/**
 	 * @return origamiModel
 	 */
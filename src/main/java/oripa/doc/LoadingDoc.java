@@ -20,7 +20,9 @@ public class LoadingDoc implements oripa.file.LoadingAction{
 
 		doc = loader.load(path);
 		if (doc != null) {
+			ORIPA.doc.stopJournal();
 			ORIPA.doc = doc;
+			doc.startJournal(ORIPA.journal);
 			if(path != ""){
 				ORIPA.doc.setDataFilePath(path);
 			}
@@ -0,0 +1,383 @@
+package oripa.doc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.creasepattern.CreasePatternListener;
+import oripa.value.OriLine;
+
+/**
+ * Records the changes of a crease pattern into undo steps.
+ *
+ * The step on the top of the stack receives the changes until the next
+ * step is pushed, so that undoing it restores the pattern at the time
+ * it was pushed. A cached step receives the changes while it exists;
+ * if it is dropped without being pushed, its changes are appended
+ * to the top step.
+ *
+ * Undoing a step records the reverting changes into a step to redo,
+ * and redoing it records a step to undo again in the same way.
+ *
+ * The steps held in the heap are limited by their estimated size.
+ * If a journal is given, the oldest steps are written to it and read back
+ * when they are needed. Otherwise the oldest steps are discarded.
+ * All changes are also written to the journal for recovery after a crash.
+ * When the journal has grown, it is rewritten with the current pattern
+ * and the steps still in the history.
+ */
+class UndoHistory implements CreasePatternListener {
+
+	private CreasePattern creasePattern;
+	private UndoManager<UndoInfo> undoManager;
+	private long maxBytes;
+
+	private UndoJournal journal = null;
+
+	/**
+	 * the step receiving the changes made by undo or redo.
+	 */
+	private UndoInfo revertingStep = null;
+
+	/**
+	 *
+	 * @param creasePattern
+	 * @param max			max number of the steps
+	 * @param maxBytes		max size of the steps held in the heap
+	 */
+	public UndoHistory(CreasePattern creasePattern, int max, long maxBytes) {
+		this.creasePattern = creasePattern;
+		this.maxBytes = maxBytes;
+		undoManager = new UndoManager<>(max);
+
+		creasePattern.addListener(this);
+	}
+
+	/**
+	 * starts writing to the given journal.
+	 * @param journal
+	 * @throws IOException
+	 */
+	public void startJournal(UndoJournal journal) throws IOException {
+		journal.begin(creasePattern);
+		this.journal = journal;
+	}
+
+	/**
+	 * stops writing to the journal. The steps are discarded
+	 * since the ones written to the journal are no longer available.
+	 */
+	public void stopJournal() {
+		if (journal == null) {
+			return;
+		}
+		journal = null;
+		undoManager.clear();
+	}
+
+	/**
+	 * begins a new step.
+	 */
+	public void push() {
+		dropCache();
+		compactTop();
+		undoManager.push(new UndoInfo(creasePattern));
+		endOperation();
+	}
+
+	/**
+	 * begins a new step which will be pushed by {@link #pushCache()}.
+	 */
+	public void cache() {
+		dropCache();
+		compactTop();
+		undoManager.setCache(new UndoInfo(creasePattern));
+		endOperation();
+	}
+
+	public void pushCache() {
+		if (undoManager.getCache() == null) {
+			push();
+			return;
+		}
+		undoManager.pushCachedInfo();
+		endOperation();
+	}
+
+	/**
+	 * restores the pattern at the time the top step was pushed.
+	 * @return false if no step exists.
+	 */
+	public boolean undo() {
+		dropCache();
+
+		UndoInfo info = undoManager.pop();
+		if (info == null) {
+			return false;
+		}
+
+		UndoInfo redoInfo = new UndoInfo(creasePattern);
+		if (!revert(info, redoInfo)) {
+			return false;
+		}
+		undoManager.pushRedo(redoInfo);
+
+		endOperation();
+		return true;
+	}
+
+	/**
+	 * restores the pattern before the last undo.
+	 * @return false if no step exists.
+	 */
+	public boolean redo() {
+		dropCache();
+
+		UndoInfo info = undoManager.popRedo();
+		if (info == null) {
+			return false;
+		}
+
+		compactTop();
+		UndoInfo undoInfo = new UndoInfo(creasePattern);
+		if (!revert(info, undoInfo)) {
+			return false;
+		}
+		undoManager.pushUndone(undoInfo);
+
+		endOperation();
+		return true;
+	}
+
+	public boolean canUndo() {
+		return undoManager.canUndo();
+	}
+
+	public boolean canRedo() {
+		return undoManager.canRedo();
+	}
+
+	public boolean isChanged() {
+		return undoManager.isChanged();
+	}
+
+	public void clearChanged() {
+		undoManager.clearChanged();
+	}
+
+	/**
+	 * reverts the step and records the changes into the given step.
+	 * @return false if the step cannot be read from the journal.
+	 */
+	private boolean revert(UndoInfo info, UndoInfo inverse) {
+		if (info.isSpilled()) {
+			try {
+				journal.readStep(info);
+			} catch (IOException e) {
+				e.printStackTrace();
+				undoManager.clear();
+				return false;
+			}
+		}
+
+		revertingStep = inverse;
+		try {
+			info.revert(creasePattern);
+		} finally {
+			revertingStep = null;
+		}
+		return true;
+	}
+
+	private void dropCache() {
+		UndoInfo cache = undoManager.getCache();
+		if (cache == null) {
+			return;
+		}
+		undoManager.setCache(null);
+
+		UndoInfo top = undoManager.peek();
+		if (top != null) {
+			top.append(cache);
+		}
+	}
+
+	private void compactTop() {
+		UndoInfo top = undoManager.peek();
+		if (top != null) {
+			top.compact(creasePattern);
+		}
+	}
+
+	/**
+	 * writes the journal, fits the steps into the heap and compacts
+	 * the journal if it has grown.
+	 */
+	private void endOperation() {
+		if (journal != null) {
+			try {
+				journal.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		fitIntoHeap();
+
+		if (journal != null) {
+			compactJournal();
+		}
+	}
+
+	private void fitIntoHeap() {
+		List<UndoInfo> residents = new ArrayList<>();
+		long bytes = 0;
+		for (UndoInfo info : undoManager.getUndoSteps()) {
+			bytes += (long) info.size() * UndoInfo.BYTES_PER_LINE;
+			residents.add(info);
+		}
+		for (UndoInfo info : undoManager.getRedoSteps()) {
+			bytes += (long) info.size() * UndoInfo.BYTES_PER_LINE;
+			residents.add(info);
+		}
+		if (undoManager.getCache() != null) {
+			bytes += (long) undoManager.getCache().size() * UndoInfo.BYTES_PER_LINE;
+		}
+
+		if (bytes <= maxBytes) {
+			return;
+		}
+
+		if (journal == null) {
+			// the top is kept since it is receiving the changes.
+			while (bytes > maxBytes && undoManager.getUndoSteps().size() > 1) {
+				bytes -= (long) undoManager.removeOldest().size() * UndoInfo.BYTES_PER_LINE;
+			}
+			return;
+		}
+
+		Collections.sort(residents, new Comparator<UndoInfo>() {
+			@Override
+			public int compare(UndoInfo o1, UndoInfo o2) {
+				return Long.compare(o1.getSerial(), o2.getSerial());
+			}
+		});
+
+		UndoInfo top = undoManager.peek();
+		for (UndoInfo info : residents) {
+			if (bytes <= maxBytes) {
+				break;
+			}
+			if (info == top || info.isSpilled()) {
+				continue;
+			}
+
+			long size = (long) info.size() * UndoInfo.BYTES_PER_LINE;
+			try {
+				info.spill(journal.writeStep(info));
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			bytes -= size;
+		}
+	}
+
+	/**
+	 * rewrites the journal with the steps which can still be undone or redone,
+	 * dropping the records of the others.
+	 */
+	private void compactJournal() {
+		try {
+			if (!journal.needsCompaction()) {
+				return;
+			}
+
+			List<UndoInfo> spilledSteps = new ArrayList<>();
+			for (UndoInfo info : undoManager.getUndoSteps()) {
+				if (info.isSpilled()) {
+					spilledSteps.add(info);
+				}
+			}
+			for (UndoInfo info : undoManager.getRedoSteps()) {
+				if (info.isSpilled()) {
+					spilledSteps.add(info);
+				}
+			}
+			journal.compact(creasePattern, spilledSteps);
+		} catch (IOException e) {
+			e.printStackTrace();
+			if (journal.isClosed()) {
+				// the steps in the lost file cannot be read.
+				stopJournal();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the step receiving the changes. null if the changes are not recorded.
+	 */
+	private UndoInfo getRecordingStep() {
+		if (revertingStep != null) {
+			return revertingStep;
+		}
+
+		// the pattern differs from the one to be redone.
+		undoManager.clearRedo();
+
+		if (undoManager.getCache() != null) {
+			return undoManager.getCache();
+		}
+		return undoManager.peek();
+	}
+
+	@Override
+	public void lineAdded(OriLine line) {
+		UndoInfo step = getRecordingStep();
+		if (step != null) {
+			step.lineAdded(line);
+		}
+		if (journal != null) {
+			try {
+				journal.lineAdded(line);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@Override
+	public void lineRemoved(OriLine line) {
+		UndoInfo step = getRecordingStep();
+		if (step != null) {
+			step.lineRemoved(line);
+		}
+		if (journal != null) {
+			try {
+				journal.lineRemoved(line);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@Override
+	public void cleared(Collection<OriLine> removedLines) {
+		UndoInfo step = getRecordingStep();
+		if (step != null) {
+			step.cleared(removedLines);
+		}
+		if (journal != null) {
+			try {
+				journal.cleared();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
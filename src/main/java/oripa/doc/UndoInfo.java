@@ -1,31 +1,285 @@
 package oripa.doc;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
+import oripa.paint.creasepattern.CreasePattern;
 import oripa.value.OriLine;
 
+/**
+ * Changes of the crease pattern made in one undo step.
+ *
+ * Only the added and removed lines are held, in the order of the changes,
+ * so that the size depends on the edit rather than on the pattern.
+ * A change of line type is held as removal and addition.
+ *
+ * A step which has removed all lines at once, or whose changes outnumber
+ * the lines of the pattern, is held as a checkpoint instead:
+ * a copy of all lines at the beginning of the step.
+ *
+ * The content can be moved to a journal file and read back
+ * in order to keep the heap small.
+ */
 public class UndoInfo {
-    private ArrayList<OriLine> lines = new ArrayList<OriLine>();
-
-    
-    
-
-	public UndoInfo(){}
-    
-    public UndoInfo(Collection<OriLine> lines){
-    	setLines(lines);
-    }
-    
-    public ArrayList<OriLine> getLines() {
+
+	/**
+	 * rough size of a line held in the heap, including the wrapper.
+	 */
+	static final int BYTES_PER_LINE = 128;
+
+	private static long nextSerial = 0;
+
+	private static class Change {
+		final OriLine line;
+		final boolean added;
+
+		Change(OriLine line, boolean added) {
+			this.line = line;
+			this.added = added;
+		}
+	}
+
+	private List<Change> changes = new ArrayList<>();
+
+	/**
+	 * all lines at the beginning of the step. null if this is not a checkpoint.
+	 */
+	private Collection<OriLine> checkpoint = null;
+
+	/**
+	 * lines selected at the beginning of the step.
+	 */
+	private Set<OriLine> selectedLines = new HashSet<>();
+
+	/**
+	 * for telling which step is older.
+	 */
+	private final long serial = nextSerial++;
+
+	/**
+	 * position of the content in the journal. negative if the content is in the heap.
+	 */
+	private long spilledAt = -1;
+
+	/**
+	 * begins a step from the current state of the given crease pattern.
+	 * @param creasePattern
+	 */
+	public UndoInfo(Collection<OriLine> creasePattern) {
+		// selection marks are modified in place without notification,
+		// so they are collected here.
+		for (OriLine line : creasePattern) {
+			if (line.selected) {
+				selectedLines.add(new OriLine(line));
+			}
+		}
+	}
+
+	public boolean isCheckpoint() {
+		return checkpoint != null;
+	}
+
+	public boolean isSpilled() {
+		return spilledAt >= 0;
+	}
+
+	long getSerial() {
+		return serial;
+	}
+
+	long getSpilledPosition() {
+		return spilledAt;
+	}
+
+	/**
+	 *
+	 * @return the number of lines held in the heap by this step.
+	 */
+	public int size() {
+		if (isSpilled()) {
+			return 0;
+		}
+		if (isCheckpoint()) {
+			return checkpoint.size() + selectedLines.size();
+		}
+		return changes.size() + selectedLines.size();
+	}
+
+	void lineAdded(OriLine line) {
+		if (isCheckpoint()) {
+			return;
+		}
+		changes.add(new Change(new OriLine(line), true));
+	}
+
+	void lineRemoved(OriLine line) {
+		if (isCheckpoint()) {
+			return;
+		}
+		changes.add(new Change(new OriLine(line), false));
+	}
+
+	/**
+	 * makes this step a checkpoint since the removed lines are not notified one by one.
+	 * @param removedLines	all lines before clearing
+	 */
+	void cleared(Collection<OriLine> removedLines) {
+		if (isCheckpoint()) {
+			return;
+		}
+		checkpoint = revertOnto(removedLines);
+		changes.clear();
+	}
+
+	/**
+	 * makes this step a checkpoint if the changes are more than
+	 * the lines of the pattern.
+	 * @param creasePattern	current pattern
+	 */
+	void compact(Collection<OriLine> creasePattern) {
+		if (isCheckpoint() || changes.size() <= creasePattern.size()) {
+			return;
+		}
+		checkpoint = revertOnto(creasePattern);
+		changes.clear();
+	}
+
+	/**
+	 * appends the changes of the next step to this step.
+	 * The selection of this step is kept.
+	 * @param next
+	 */
+	void append(UndoInfo next) {
+		if (isCheckpoint()) {
+			return;
+		}
+		if (next.isCheckpoint()) {
+			checkpoint = revertOnto(next.checkpoint);
+			changes.clear();
+			return;
+		}
+		changes.addAll(next.changes);
+	}
+
+	/**
+	 *
+	 * @param lines		lines at the end of this step
+	 * @return copies of the lines at the beginning of this step
+	 */
+	private Collection<OriLine> revertOnto(Collection<OriLine> lines) {
+		Set<OriLine> reverted = new LinkedHashSet<>();
+		for (OriLine line : lines) {
+			reverted.add(new OriLine(line));
+		}
+		for (int i = changes.size() - 1; i >= 0; i--) {
+			Change change = changes.get(i);
+			if (change.added) {
+				reverted.remove(change.line);
+			} else {
+				reverted.add(change.line);
+			}
+		}
+		return new ArrayList<>(reverted);
+	}
+
+	/**
+	 * writes the content.
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeTo(DataOutput out) throws IOException {
+		out.writeBoolean(isCheckpoint());
+		if (isCheckpoint()) {
+			writeLines(out, checkpoint);
+		} else {
+			out.writeInt(changes.size());
+			for (Change change : changes) {
+				out.writeBoolean(change.added);
+				UndoJournal.writeLine(out, change.line);
+			}
+		}
+		writeLines(out, selectedLines);
+	}
+
+	/**
+	 * reads the content written by {@link #writeTo(DataOutput)}.
+	 * @param in
+	 * @throws IOException
+	 */
+	void readFrom(DataInput in) throws IOException {
+		changes = new ArrayList<>();
+		checkpoint = null;
+		if (in.readBoolean()) {
+			checkpoint = readLines(in, new ArrayList<OriLine>());
+		} else {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				boolean added = in.readBoolean();
+				changes.add(new Change(UndoJournal.readLine(in), added));
+			}
+		}
+		selectedLines = readLines(in, new HashSet<OriLine>());
+		spilledAt = -1;
+	}
+
+	/**
+	 * releases the content written at the given position of the journal.
+	 * @param position
+	 */
+	void spill(long position) {
+		spilledAt = position;
+		changes = null;
+		checkpoint = null;
+		selectedLines = null;
+	}
+
+	private static void writeLines(DataOutput out, Collection<OriLine> lines)
+			throws IOException {
+		out.writeInt(lines.size());
+		for (OriLine line : lines) {
+			UndoJournal.writeLine(out, line);
+		}
+	}
+
+	private static <T extends Collection<OriLine>> T readLines(DataInput in, T lines)
+			throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			lines.add(UndoJournal.readLine(in));
+		}
 		return lines;
 	}
 
-    public void setLines(Collection<OriLine> lines){
-    	this.lines.clear();
-        for (OriLine l : lines) {
-            this.lines.add(new OriLine(l));
-        }
+	/**
+	 * restores the crease pattern to the beginning of this step.
+	 * @param creasePattern
+	 */
+	void revert(CreasePattern creasePattern) {
+		if (isCheckpoint()) {
+			creasePattern.clear();
+			for (OriLine line : checkpoint) {
+				creasePattern.add(new OriLine(line));
+			}
+		} else {
+			for (int i = changes.size() - 1; i >= 0; i--) {
+				Change change = changes.get(i);
+				if (change.added) {
+					creasePattern.remove(change.line);
+				} else {
+					creasePattern.add(new OriLine(change.line));
+				}
+			}
+		}
 
-    }
+		for (OriLine line : creasePattern) {
+			line.selected = selectedLines.contains(line);
+		}
+	}
 }
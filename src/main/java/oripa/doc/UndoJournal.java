@@ -0,0 +1,450 @@
+package oripa.doc;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.value.OriLine;
+
+/**
+ * Append-only file of the changes of a crease pattern.
+ *
+ * The file begins with all lines of the pattern, followed by the added
+ * and removed lines in the order of the changes. Replaying the records
+ * restores the pattern after a crash.
+ * The undo steps moved out of the heap are written to the same file
+ * and skipped by the replay.
+ *
+ * The records are buffered and written by {@link #flush()}, which is
+ * run by the executor given by {@link #setFlushExecutor(Executor)}
+ * after the first record of an operation. Without the executor,
+ * each record is written at once.
+ * A lock file next to the journal is locked while the journal is open
+ * so that another process does not use the same file.
+ *
+ * The file grows with the records until it is compacted by
+ * {@link #compact(CreasePattern, Collection)}, which rewrites it with
+ * the current lines and the steps which can still be undone or redone.
+ */
+public class UndoJournal {
+
+	private static final byte BASE = 'B';
+	private static final byte ADDED = 'A';
+	private static final byte REMOVED = 'R';
+	private static final byte CLEARED = 'C';
+	private static final byte STEP = 'S';
+
+	/**
+	 * the file is compacted when it grows larger than this size and
+	 * twice the size after the last compaction.
+	 */
+	private static final long MIN_COMPACTION_LENGTH = 8 * 1024 * 1024;
+
+	private File path;
+	private RandomAccessFile file;
+
+	private File lockPath;
+	private RandomAccessFile lockFile;
+	private FileLock lock;
+
+	private long minCompactionLength = MIN_COMPACTION_LENGTH;
+	private long compactionLength = MIN_COMPACTION_LENGTH;
+
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private DataOutputStream out = new DataOutputStream(buffer);
+
+	private Executor flushExecutor = null;
+
+	/**
+	 * true if the buffered records will be written by the executor.
+	 */
+	private boolean flushScheduled = false;
+	private boolean closed = false;
+
+	/**
+	 *
+	 * @return the journal file in the temporary directory of the user.
+	 */
+	public static File getDefaultFile() {
+		return new File(System.getProperty("java.io.tmpdir"), "oripa-journal.bin");
+	}
+
+	/**
+	 * opens the journal file. The records are kept until {@link #begin(CreasePattern)}.
+	 * @param path
+	 * @throws IOException	if the file is used by another process.
+	 */
+	public UndoJournal(File path) throws IOException {
+		this.path = path;
+
+		// the lock is held by another file so that the journal can be replaced.
+		lockPath = new File(path.getPath() + ".lock");
+		lockFile = new RandomAccessFile(lockPath, "rw");
+		try {
+			lock = lockFile.getChannel().tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			lockFile.close();
+			throw new IOException(path + " is used by another process.");
+		}
+
+		try {
+			file = new RandomAccessFile(path, "rw");
+		} catch (IOException e) {
+			lock.release();
+			lockFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * sets the executor to write the records of the changes after
+	 * the operation making them, such as the event queue.
+	 * @param flushExecutor	null to write each record at once.
+	 */
+	public synchronized void setFlushExecutor(Executor flushExecutor) {
+		this.flushExecutor = flushExecutor;
+	}
+
+	/**
+	 *
+	 * @return true if the journal is closed or the file is lost.
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException(path + " is closed.");
+		}
+	}
+
+	/**
+	 *
+	 * @return true if the file has a crease pattern to be recovered.
+	 * @throws IOException
+	 */
+	public boolean hasRecords() throws IOException {
+		return file.length() > 0;
+	}
+
+	/**
+	 * discards the records and writes all lines of the given crease pattern.
+	 * @param creasePattern
+	 * @throws IOException
+	 */
+	public synchronized void begin(CreasePattern creasePattern) throws IOException {
+		ensureOpen();
+		buffer.reset();
+		file.setLength(0);
+
+		writeBase(out, creasePattern);
+		flush();
+		compactionLength = minCompactionLength;
+	}
+
+	private static void writeBase(DataOutput out, CreasePattern creasePattern) throws IOException {
+		out.writeByte(BASE);
+		out.writeDouble(creasePattern.getPaperSize());
+		out.writeInt(creasePattern.size());
+		for (OriLine line : creasePattern) {
+			writeLine(out, line);
+		}
+	}
+
+	public synchronized void lineAdded(OriLine line) throws IOException {
+		out.writeByte(ADDED);
+		writeLine(out, line);
+		scheduleFlush();
+	}
+
+	public synchronized void lineRemoved(OriLine line) throws IOException {
+		out.writeByte(REMOVED);
+		writeLine(out, line);
+		scheduleFlush();
+	}
+
+	public synchronized void cleared() throws IOException {
+		out.writeByte(CLEARED);
+		scheduleFlush();
+	}
+
+	/**
+	 * writes the records of the changes made in the current operation
+	 * by the executor after the operation, at once.
+	 */
+	private void scheduleFlush() throws IOException {
+		if (flushExecutor == null) {
+			flush();
+			return;
+		}
+		if (flushScheduled) {
+			return;
+		}
+		flushScheduled = true;
+
+		flushExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * writes the buffered records to the file.
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		flushScheduled = false;
+		if (closed || buffer.size() == 0) {
+			return;
+		}
+		file.seek(file.length());
+		file.write(buffer.toByteArray());
+		buffer.reset();
+	}
+
+	/**
+	 * writes the content of the step.
+	 * @param step
+	 * @return position to read the content.
+	 * @throws IOException
+	 */
+	synchronized long writeStep(UndoInfo step) throws IOException {
+		ensureOpen();
+		flush();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		step.writeTo(new DataOutputStream(bytes));
+
+		long position = file.length();
+		out.writeByte(STEP);
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+		flush();
+
+		return position;
+	}
+
+	/**
+	 * reads back the content of the step written by {@link #writeStep(UndoInfo)}.
+	 * @param step
+	 * @throws IOException
+	 */
+	synchronized void readStep(UndoInfo step) throws IOException {
+		ensureOpen();
+		flush();
+
+		file.seek(step.getSpilledPosition());
+		if (file.readByte() != STEP) {
+			throw new IOException("no step at " + step.getSpilledPosition());
+		}
+		byte[] bytes = new byte[file.readInt()];
+		file.readFully(bytes);
+
+		step.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 *
+	 * @return true if the file has grown enough to be compacted.
+	 * @throws IOException
+	 */
+	synchronized boolean needsCompaction() throws IOException {
+		return !closed && file.length() + buffer.size() > compactionLength;
+	}
+
+	/**
+	 * sets the smallest size of the file to be compacted, for testing.
+	 * @param length
+	 */
+	void setCompactionLength(long length) {
+		minCompactionLength = length;
+		compactionLength = length;
+	}
+
+	/**
+	 * rewrites the file with the lines of the crease pattern and the given
+	 * steps, dropping the change records and the steps not given.
+	 * The positions of the given steps are updated.
+	 *
+	 * The new content is written to another file which then replaces
+	 * the journal, so that a crash leaves either the old or the new one.
+	 * If the journal cannot be opened again, it is closed.
+	 *
+	 * @param creasePattern   the current pattern
+	 * @param spilledSteps    the steps written to this journal which are still used
+	 * @throws IOException
+	 */
+	synchronized void compact(CreasePattern creasePattern, Collection<UndoInfo> spilledSteps)
+			throws IOException {
+		ensureOpen();
+		flush();
+
+		File temp = new File(path.getPath() + ".tmp");
+		List<Long> positions = new ArrayList<>(spilledSteps.size());
+
+		try (RandomAccessFile newFile = new RandomAccessFile(temp, "rw")) {
+			newFile.setLength(0);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			writeBase(new DataOutputStream(bytes), creasePattern);
+			newFile.write(bytes.toByteArray());
+
+			for (UndoInfo step : spilledSteps) {
+				file.seek(step.getSpilledPosition());
+				if (file.readByte() != STEP) {
+					throw new IOException("no step at " + step.getSpilledPosition());
+				}
+				byte[] content = new byte[file.readInt()];
+				file.readFully(content);
+
+				positions.add(newFile.getFilePointer());
+				newFile.writeByte(STEP);
+				newFile.writeInt(content.length);
+				newFile.write(content);
+			}
+			newFile.getFD().sync();
+		}
+
+		// the file cannot be replaced while it is open on some systems.
+		file.close();
+		IOException moveFailure = null;
+		try {
+			Files.move(temp.toPath(), path.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			moveFailure = e;
+		}
+
+		try {
+			file = new RandomAccessFile(path, "rw");
+		} catch (IOException e) {
+			close(false);
+			throw e;
+		}
+		if (moveFailure != null) {
+			// the old file is kept.
+			throw moveFailure;
+		}
+
+		int i = 0;
+		for (UndoInfo step : spilledSteps) {
+			step.spill(positions.get(i++));
+		}
+		compactionLength = Math.max(minCompactionLength, file.length() * 2);
+	}
+
+	/**
+	 * replays the records. A record broken by a crash is ignored.
+	 * @return the crease pattern at the last record. null if no pattern is recorded.
+	 * @throws IOException
+	 */
+	public synchronized Doc recover() throws IOException {
+		ensureOpen();
+		flush();
+		file.seek(0);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(file.getChannel())));
+
+		Doc doc = null;
+		CreasePattern creasePattern = null;
+		try {
+			while (true) {
+				byte tag = in.readByte();
+
+				if (tag == BASE) {
+					doc = new Doc(in.readDouble());
+					creasePattern = doc.getCreasePattern();
+					creasePattern.clear();
+
+					int count = in.readInt();
+					List<OriLine> lines = new ArrayList<>(count);
+					for (int i = 0; i < count; i++) {
+						lines.add(readLine(in));
+					}
+					creasePattern.addAll(lines);
+				} else if (creasePattern == null) {
+					break;
+				} else if (tag == ADDED) {
+					creasePattern.add(readLine(in));
+				} else if (tag == REMOVED) {
+					creasePattern.remove(readLine(in));
+				} else if (tag == CLEARED) {
+					creasePattern.clear();
+				} else if (tag == STEP) {
+					in.skipBytes(in.readInt());
+				} else {
+					break;
+				}
+			}
+		} catch (EOFException e) {
+			// the end of the file or a record being written at the crash.
+		}
+
+		return doc;
+	}
+
+	/**
+	 * closes the file.
+	 * @param delete	true if the file should be deleted
+	 */
+	public synchronized void close(boolean delete) {
+		closed = true;
+		try {
+			file.close();
+			if (lock.isValid()) {
+				lock.release();
+			}
+			lockFile.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (delete) {
+			path.delete();
+			lockPath.delete();
+		}
+	}
+
+	static void writeLine(DataOutput out, OriLine line) throws IOException {
+		out.writeDouble(line.p0.x);
+		out.writeDouble(line.p0.y);
+		out.writeDouble(line.p1.x);
+		out.writeDouble(line.p1.y);
+		out.writeInt(line.typeVal);
+	}
+
+	static OriLine readLine(DataInput in) throws IOException {
+		double x0 = in.readDouble();
+		double y0 = in.readDouble();
+		double x1 = in.readDouble();
+		double y1 = in.readDouble();
+		return new OriLine(x0, y0, x1, y1, in.readInt());
+	}
+}
@@ -1,32 +1,49 @@
 package oripa.doc;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
 
 public class UndoManager<Backup> {
 
 	private Deque<Backup> undoStack = new LinkedList<>();
+	private Deque<Backup> redoStack = new LinkedList<>();
 	private Backup cache;
-	
+
 	private boolean changed = false;
 
 	private int max = 1000;
 
 	public UndoManager() {
-		
+
 	}
-	
+
 	public UndoManager(int max){
 		this.max = max;
 	}
 
+	/**
+	 * pushes a new step. The steps to redo are discarded.
+	 * @param uinfo
+	 */
 	public void push(Backup uinfo){
+		redoStack.clear();
+		pushUndone(uinfo);
+	}
+
+	/**
+	 * pushes a step which is made by redo.
+	 * @param uinfo
+	 */
+	public void pushUndone(Backup uinfo){
 		undoStack.push(uinfo);
-		
+
+		// the oldest one is at the bottom.
 		if(undoStack.size() > max){
-			undoStack.removeFirst();
+			undoStack.removeLast();
 		}
-		
+
 		changed = true;
 	}
 
@@ -48,28 +65,88 @@ public class UndoManager<Backup> {
 
 		return undoStack.peek();
 	}
-	
+
+	/**
+	 * removes the oldest step.
+	 * @return the removed step. null if no step exists.
+	 */
+	public Backup removeOldest(){
+		return undoStack.pollLast();
+	}
+
+	public void pushRedo(Backup rinfo){
+		redoStack.push(rinfo);
+	}
+
+	public Backup popRedo(){
+		if (redoStack.isEmpty()) {
+			return null;
+		}
+		else {
+			changed = true;
+		}
+
+		return redoStack.pop();
+	}
+
+	public void clearRedo(){
+		redoStack.clear();
+	}
+
+	/**
+	 *
+	 * @return steps to undo, from the newest.
+	 */
+	public Collection<Backup> getUndoSteps(){
+		return Collections.unmodifiableCollection(undoStack);
+	}
+
+	/**
+	 *
+	 * @return steps to redo, from the next one.
+	 */
+	public Collection<Backup> getRedoSteps(){
+		return Collections.unmodifiableCollection(redoStack);
+	}
+
+	/**
+	 * discards all steps and the cache.
+	 */
+	public void clear(){
+		undoStack.clear();
+		redoStack.clear();
+		cache = null;
+	}
+
 	public boolean isChanged(){
 		return changed;
 	}
-	
+
 	public void clearChanged(){
 		changed = false;
 	}
-	
+
 	public boolean canUndo(){
 		return ! undoStack.isEmpty();
 	}
-	
+
+	public boolean canRedo(){
+		return ! redoStack.isEmpty();
+	}
+
 	public void setCache(Backup info){
 		cache = info;
 	}
-	
+
 	public Backup getCache(){
 		return cache;
 	}
-	
+
 	public void pushCachedInfo(){
+		if(cache == null){
+			return;
+		}
 		this.push(cache);
+		cache = null;
 	}
 }
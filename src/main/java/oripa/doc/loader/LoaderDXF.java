@@ -23,10 +23,13 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.vecmath.Vector2d;
 
 import oripa.doc.Doc;
+import oripa.geom.DuplicateLineRemover;
 import oripa.geom.GeomUtil;
 import oripa.paint.creasepattern.CreasePattern;
 import oripa.value.OriLine;
@@ -34,10 +37,7 @@ import oripa.value.OriLine;
 public class LoaderDXF implements Loader{
 
     public Doc load(String filePath) {
-        Doc doc = new Doc(400);
-        CreasePattern creasePattern = doc.getCreasePattern();
-        
-        creasePattern.clear();
+        List<OriLine> lines = new ArrayList<>();
 
         Vector2d minV = new Vector2d(Double.MAX_VALUE, Double.MAX_VALUE);
         Vector2d maxV = new Vector2d(-Double.MAX_VALUE, -Double.MAX_VALUE);
@@ -64,7 +64,11 @@ public class LoaderDXF implements Loader{
 
                     while ((token = st.nextToken()) != StreamTokenizer.TT_EOF) {
                         if (token == StreamTokenizer.TT_WORD && st.sval.equals("0")) {
-                            creasePattern.add(line);
+                            if (GeomUtil.Distance(line.p0, line.p1) < 0.001) {
+                                System.out.println("########### NULL EDGE");
+                            } else {
+                                lines.add(line);
+                            }
                             break;
                         } else if (token == StreamTokenizer.TT_WORD && st.sval.equals("62")) {
                             st.nextToken();
@@ -105,12 +109,6 @@ public class LoaderDXF implements Loader{
 
                             System.out.println("line " + line.p0 + ", " + line.p1);
 
-
-                            if (GeomUtil.Distance(line.p0, line.p1) < 0.001) {
-                                System.out.println("########### NULL EDGE");
-                                creasePattern.remove(line);
-                            }
-
                         } else {
                             System.out.println("skip" + st.sval);
                             st.nextToken();
@@ -124,46 +122,32 @@ public class LoaderDXF implements Loader{
             return null;
         }
 
-        if (creasePattern.isEmpty()) {
+        if (lines.isEmpty()) {
             return null;
         }
 
         double size = 400;
-        doc.setPaperSize(size);
 
         Vector2d center = new Vector2d((minV.x + maxV.x) / 2.0, (minV.y + maxV.y) / 2.0);
         double bboxSize = Math.max(maxV.x - minV.x, maxV.y - minV.y);
         // size normalization
-        for (OriLine line : creasePattern) {
+        for (OriLine line : lines) {
             line.p0.x = (line.p0.x - center.x) / bboxSize * size;
             line.p0.y = (line.p0.y - center.y) / bboxSize * size;
             line.p1.x = (line.p1.x - center.x) / bboxSize * size;
             line.p1.y = (line.p1.y - center.y) / bboxSize * size;
         }
 
+        // the last one of the lines at the same position is kept.
+        // the remover keeps the first one, so it is given the reversed lines.
+        Collections.reverse(lines);
+        List<OriLine> cleanedLines = new DuplicateLineRemover(0.01).removeDuplicates(lines);
+        Collections.reverse(cleanedLines);
 
-        ArrayList<OriLine> delLines = new ArrayList<>();
-        int lineNum = creasePattern.size();
-
-        OriLine[] lines = new OriLine[lineNum];
-        creasePattern.toArray(lines);
-        
-        for (int i = 0; i < lineNum; i++) {
-            for (int j = i + 1; j < lineNum; j++) {
-                OriLine l0 = lines[i];
-                OriLine l1 = lines[j];
-
-                if ((GeomUtil.Distance(l0.p0, l1.p0) < 0.01 && GeomUtil.Distance(l0.p1, l1.p1) < 0.01)
-                        || (GeomUtil.Distance(l0.p1, l1.p0) < 0.01 && GeomUtil.Distance(l0.p0, l1.p1) < 0.01)) {
-
-                    delLines.add(l0);
-                }
-            }
-        }
-
-        for (OriLine delLine : delLines) {
-            creasePattern.remove(delLine);
-        }
+        Doc doc = new Doc(size);
+        CreasePattern creasePattern = doc.getCreasePattern();
+        creasePattern.clear();
+        creasePattern.addAll(cleanedLines);
 
         return doc;
     }
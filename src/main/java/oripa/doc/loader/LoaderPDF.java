@@ -22,17 +22,19 @@ import java.io.FileReader;
 import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.vecmath.Vector2d;
 
 import oripa.doc.Doc;
-import oripa.geom.GeomUtil;
+import oripa.geom.DuplicateLineRemover;
 import oripa.paint.creasepattern.CreasePattern;
 import oripa.value.OriLine;
 
 public class LoaderPDF implements Loader {
 	
-    public static ArrayList<OriLine> lines = new ArrayList<>();
+    public ArrayList<OriLine> lines = new ArrayList<>();
 
     public Doc load(String filePath) {
         Vector2d minV = new Vector2d(Double.MAX_VALUE, Double.MAX_VALUE);
@@ -98,17 +100,7 @@ public class LoaderPDF implements Loader {
             e.printStackTrace();
         }
 
-        double size = 400;
-        Doc doc = new Doc(size);
-        CreasePattern creasePattern = doc.getCreasePattern();
-        creasePattern.clear();
-
-        for (OriLine l : lines) {
-            creasePattern.add(l);
-        }
-
-
-        for (OriLine line : creasePattern) {
+        for (OriLine line : lines) {
             minV.x = Math.min(minV.x, line.p0.x);
             minV.x = Math.min(minV.x, line.p1.x);
             minV.y = Math.min(minV.y, line.p0.y);
@@ -121,42 +113,27 @@ public class LoaderPDF implements Loader {
         }
 
         // size normalization
-        
+        double size = 400;
         Vector2d center = new Vector2d((minV.x + maxV.x) / 2.0, (minV.y + maxV.y) / 2.0);
         double bboxSize = Math.max(maxV.x - minV.x, maxV.y - minV.y);
-        for (OriLine line : creasePattern) {
+        for (OriLine line : lines) {
             line.p0.x = (line.p0.x - center.x) / bboxSize * size;
             line.p0.y = (line.p0.y - center.y) / bboxSize * size;
             line.p1.x = (line.p1.x - center.x) / bboxSize * size;
             line.p1.y = (line.p1.y - center.y) / bboxSize * size;
         }
 
+        // the last one of the lines at the same position is kept.
+        // the remover keeps the first one, so it is given the reversed lines.
+        List<OriLine> reversedLines = new ArrayList<>(lines);
+        Collections.reverse(reversedLines);
+        List<OriLine> cleanedLines = new DuplicateLineRemover(0.01).removeDuplicates(reversedLines);
+        Collections.reverse(cleanedLines);
 
-        // Delete duplicate lines
-
-        ArrayList<OriLine> delLines = new ArrayList<>();
-        int lineNum = creasePattern.size();
-
-        OriLine[] lines = new OriLine[lineNum];
-        creasePattern.toArray(lines);
-        
-        for (int i = 0; i < lineNum; i++) {
-            for (int j = i + 1; j < lineNum; j++) {
-                OriLine l0 = lines[i];
-                OriLine l1 = lines[j];
-
-                if ((GeomUtil.Distance(l0.p0, l1.p0) < 0.01 && GeomUtil.Distance(l0.p1, l1.p1) < 0.01)
-                        || (GeomUtil.Distance(l0.p1, l1.p0) < 0.01 && GeomUtil.Distance(l0.p0, l1.p1) < 0.01)) {
-
-                    delLines.add(l0);
-                }
-            }
-        }
-
-        for (OriLine delLine : delLines) {
-            creasePattern.remove(delLine);
-        }
-
+        Doc doc = new Doc(size);
+        CreasePattern creasePattern = doc.getCreasePattern();
+        creasePattern.clear();
+        creasePattern.addAll(cleanedLines);
 
         return doc;
 
@@ -0,0 +1,127 @@
+package oripa.fold;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the foldable overlap relations one by one.
+ *
+ * This does the same depth-first search as {@link AnswerSearchTask}
+ * without recursion, so the search can be suspended after an answer
+ * is found and resumed when the next one is requested.
+ * The answers are in the same order as the sequential search.
+ */
+class AnswerIterator implements Iterator<OverlapRelationDiff> {
+
+	/**
+	 * [subface][candidate][face index from top]
+	 */
+	private final int[][][] candidates;
+
+	private final OverlapRelation relation;
+
+	/**
+	 * the next candidate to be tried at each level.
+	 */
+	private final int[] candidateIndices;
+
+	/**
+	 * trail mark before applying the candidate of each level.
+	 */
+	private final int[] marks;
+
+	/**
+	 * the level whose candidate is to be chosen.
+	 * the candidates of all lower levels are applied to the relation.
+	 */
+	private int depth = 0;
+
+	private OverlapRelationDiff nextAnswer = null;
+	private boolean finished;
+
+	/**
+	 *
+	 * @param candidates  answer stacks of each subface.
+	 *                    see {@link SubFace#createCandidateIndices()}.
+	 * @param base        overlap relation before the search.
+	 *                    the answers are the differences from this relation.
+	 *                    this iterator works on its own copy.
+	 */
+	AnswerIterator(int[][][] candidates, OverlapRelation base) {
+		this.candidates = candidates;
+		relation = new OverlapRelation(base);
+		candidateIndices = new int[candidates.length];
+		marks = new int[candidates.length];
+		finished = candidates.length == 0;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextAnswer == null && !finished) {
+			nextAnswer = advance();
+		}
+		return nextAnswer != null;
+	}
+
+	@Override
+	public OverlapRelationDiff next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		OverlapRelationDiff answer = nextAnswer;
+		nextAnswer = null;
+		return answer;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private OverlapRelationDiff advance() {
+		int levelNum = candidates.length;
+
+		// resume from the previous answer.
+		if (depth == levelNum) {
+			pop();
+		}
+
+		while (true) {
+			int[][] stacks = candidates[depth];
+
+			boolean pushed = false;
+			while (candidateIndices[depth] < stacks.length) {
+				int[] stack = stacks[candidateIndices[depth]];
+				candidateIndices[depth]++;
+
+				if (AnswerSearchTask.isConsistent(stack, relation)) {
+					marks[depth] = relation.getTrailSize();
+					AnswerSearchTask.applyStack(stack, relation);
+					depth++;
+					pushed = true;
+					break;
+				}
+			}
+
+			if (pushed) {
+				if (depth == levelNum) {
+					return relation.createDiff();
+				}
+				candidateIndices[depth] = 0;
+				continue;
+			}
+
+			// all candidates of this level are examined.
+			if (depth == 0) {
+				finished = true;
+				return null;
+			}
+			pop();
+		}
+	}
+
+	private void pop() {
+		depth--;
+		relation.undo(marks[depth]);
+	}
+}
@@ -0,0 +1,187 @@
+package oripa.fold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import oripa.doc.Doc;
+
+/**
+ * Searches the foldable overlap relations by walking the subfaces
+ * and trying each candidate of {@link SubFace#answerStacks}.
+ * The candidates are given as face indices by
+ * {@link SubFace#createCandidateIndices()}.
+ *
+ * While the branching is shallow the candidates are forked as
+ * sub-tasks so that the search tree is shared among the workers
+ * of a fork-join pool. Deeper branches are walked sequentially.
+ */
+class AnswerSearchTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 6290452768312470181L;
+
+	/**
+	 * the number of branching levels which are forked.
+	 * deeper levels are searched on the thread of the task.
+	 */
+	static final int DEFAULT_FORK_DEPTH = 6;
+
+	/**
+	 * [subface][candidate][face index from top]
+	 */
+	private final int[][][] candidates;
+	private final int subFaceIndex;
+	private final OverlapRelation relation;
+	private final int forkDepth;
+
+	/**
+	 * if true, each task collects the answers into its own list
+	 * and the parent concatenates them in the order of candidates.
+	 * Otherwise all tasks write into one shared list.
+	 */
+	private final boolean deterministicOrder;
+
+	private final List<OverlapRelationDiff> answers;
+
+	/**
+	 *
+	 * @param candidates          answer stacks of each subface.
+	 * @param subFaceIndex        index of the subface to be examined.
+	 * @param relation            overlap relation decided so far. this task owns it
+	 *                            and restores it after the search.
+	 * @param forkDepth           the number of remaining branch levels to be forked. 0 means sequential search.
+	 * @param deterministicOrder  true if the answers should be in the same order as the sequential search.
+	 * @param answers             destination of found answers as differences from the base relation.
+	 *                            it should be thread-safe if {@code deterministicOrder} is false.
+	 */
+	AnswerSearchTask(int[][][] candidates, int subFaceIndex, OverlapRelation relation,
+			int forkDepth, boolean deterministicOrder, List<OverlapRelationDiff> answers) {
+		this.candidates = candidates;
+		this.subFaceIndex = subFaceIndex;
+		this.relation = relation;
+		this.forkDepth = forkDepth;
+		this.deterministicOrder = deterministicOrder;
+		this.answers = answers;
+	}
+
+	@Override
+	protected void compute() {
+		if (forkDepth <= 0) {
+			search(subFaceIndex);
+			return;
+		}
+
+		int lastIndex = candidates.length - 1;
+
+		// skip the subfaces with no choice
+		int index = subFaceIndex;
+		while (isDecided(candidates[index])) {
+			if (index == lastIndex) {
+				answers.add(relation.createDiff());
+				return;
+			}
+			index++;
+		}
+
+		List<AnswerSearchTask> tasks = new ArrayList<>();
+
+		// answers of each candidate in the order of candidates.
+		List<List<OverlapRelationDiff>> parts = new ArrayList<>();
+
+		for (int[] stack : candidates[index]) {
+			if (!isConsistent(stack, relation)) {
+				continue;
+			}
+
+			List<OverlapRelationDiff> dest = answers;
+			if (deterministicOrder) {
+				dest = new ArrayList<>();
+				parts.add(dest);
+			}
+
+			if (index == lastIndex) {
+				int mark = relation.getTrailSize();
+				applyStack(stack, relation);
+				dest.add(relation.createDiff());
+				relation.undo(mark);
+			} else {
+				// only the forked branches need their own copy.
+				OverlapRelation passRelation = new OverlapRelation(relation);
+				applyStack(stack, passRelation);
+				tasks.add(new AnswerSearchTask(candidates, index + 1, passRelation,
+						forkDepth - 1, deterministicOrder, dest));
+			}
+		}
+
+		invokeAll(tasks);
+
+		for (List<OverlapRelationDiff> part : parts) {
+			answers.addAll(part);
+		}
+	}
+
+	/**
+	 * sequential depth-first search.
+	 * each branch changes the relation and undoes the changes on backtrack.
+	 */
+	private void search(int index) {
+		for (int[] stack : candidates[index]) {
+			if (!isConsistent(stack, relation)) {
+				continue;
+			}
+
+			int mark = relation.getTrailSize();
+			applyStack(stack, relation);
+
+			if (index == candidates.length - 1) {
+				answers.add(relation.createDiff());
+			} else {
+				search(index + 1);
+			}
+
+			relation.undo(mark);
+		}
+	}
+
+	/**
+	 * @return true if the subface has only one candidate which changes nothing.
+	 */
+	private static boolean isDecided(int[][] stacks) {
+		return stacks.length == 1 && stacks[0].length == 0;
+	}
+
+	/**
+	 *
+	 * @param stack     face indices stacked from top
+	 * @param relation  overlap relation
+	 * @return false if the stack contradicts the given relation.
+	 */
+	static boolean isConsistent(int[] stack, OverlapRelation relation) {
+		for (int i = 0; i < stack.length; i++) {
+			int index0 = stack[i];
+			for (int j = i + 1; j < stack.length; j++) {
+				int index1 = stack[j];
+				if (relation.get(index0, index1) == Doc.LOWER) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * sets the relation of the given stack.
+	 * @param stack     face indices stacked from top
+	 * @param relation  overlap relation to be modified
+	 */
+	static void applyStack(int[] stack, OverlapRelation relation) {
+		for (int i = 0; i < stack.length; i++) {
+			int index0 = stack[i];
+			for (int j = i + 1; j < stack.length; j++) {
+				int index1 = stack[j];
+				relation.set(index0, index1, Doc.UPPER);
+				relation.set(index1, index0, Doc.LOWER);
+			}
+		}
+	}
+}
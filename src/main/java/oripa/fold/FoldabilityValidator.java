@@ -0,0 +1,180 @@
+package oripa.fold;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Observable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+import javax.vecmath.Vector2d;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.creasepattern.CreasePatternListener;
+import oripa.value.OriLine;
+
+/**
+ * Checks Maekawa's and Kawasaki's theorems on the vertices of a crease
+ * pattern in background.
+ *
+ * The changes of the crease pattern are copied in the thread modifying it,
+ * and a worker thread applies them to a replica of the crease pattern.
+ * Only the vertices on the changed lines are checked again by
+ * {@link IncrementalOrigamiModel}. The changes made while the worker is
+ * busy are applied together in the next run.
+ *
+ * The observers are notified in the event dispatch thread
+ * when a new result is available.
+ */
+public class FoldabilityValidator extends Observable implements CreasePatternListener {
+
+	/**
+	 * one thread is shared by all validators.
+	 */
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor(
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "foldability validator");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private static class Change {
+		final OriLine line;
+		final boolean added;
+
+		Change(OriLine line, boolean added) {
+			this.line = line;
+			this.added = added;
+		}
+	}
+
+	private CreasePattern creasePattern;
+
+	// guarded by this
+	private List<Change> changes = new ArrayList<>();
+	private boolean needsClear = false;
+	private boolean scheduled = false;
+
+	// accessed only by the worker
+	private CreasePattern replica;
+	private IncrementalOrigamiModel model;
+
+	private volatile List<Vector2d> problemVertices = Collections.emptyList();
+
+	/**
+	 * starts observing the given crease pattern.
+	 * should be called in the thread modifying the crease pattern.
+	 * @param creasePattern
+	 */
+	public FoldabilityValidator(CreasePattern creasePattern) {
+		this.creasePattern = creasePattern;
+
+		replica = new CreasePattern(creasePattern.getPaperSize());
+		model = new IncrementalOrigamiModel(replica);
+
+		for (OriLine line : creasePattern) {
+			lineAdded(line);
+		}
+		creasePattern.addListener(this);
+	}
+
+	/**
+	 * stops observing the crease pattern.
+	 */
+	public void dispose() {
+		creasePattern.removeListener(this);
+	}
+
+	/**
+	 *
+	 * @return positions of the vertices which are not flat foldable
+	 *         as of the last check.
+	 */
+	public List<Vector2d> getProblemVertices() {
+		return problemVertices;
+	}
+
+	@Override
+	public void lineAdded(OriLine line) {
+		enqueue(new Change(new OriLine(line), true));
+	}
+
+	@Override
+	public void lineRemoved(OriLine line) {
+		enqueue(new Change(new OriLine(line), false));
+	}
+
+	@Override
+	public synchronized void cleared(Collection<OriLine> removedLines) {
+		changes.clear();
+		needsClear = true;
+		schedule();
+	}
+
+	private synchronized void enqueue(Change change) {
+		changes.add(change);
+		schedule();
+	}
+
+	private void schedule() {
+		if (scheduled) {
+			return;
+		}
+		scheduled = true;
+
+		worker.execute(new Runnable() {
+			@Override
+			public void run() {
+				validate();
+			}
+		});
+	}
+
+	/**
+	 * applies the queued changes and checks the vertices.
+	 * runs in the worker thread.
+	 */
+	private void validate() {
+		List<Change> applied;
+		boolean clear;
+		synchronized (this) {
+			applied = changes;
+			clear = needsClear;
+			changes = new ArrayList<>();
+			needsClear = false;
+			scheduled = false;
+		}
+
+		if (clear) {
+			replica.clear();
+		}
+		for (Change change : applied) {
+			if (change.added) {
+				replica.add(change.line);
+			} else {
+				replica.remove(change.line);
+			}
+		}
+
+		Collection<OriVertex> vertices = model.getProblemVertices();
+		List<Vector2d> positions = new ArrayList<>(vertices.size());
+		for (OriVertex v : vertices) {
+			positions.add(new Vector2d(v.p));
+		}
+		problemVertices = Collections.unmodifiableList(positions);
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				setChanged();
+				notifyObservers();
+			}
+		});
+	}
+}
@@ -0,0 +1,171 @@
+package oripa.fold;
+
+import java.util.BitSet;
+import java.util.List;
+
+import javax.vecmath.Vector2d;
+
+/**
+ * Uniform grid over the bounding boxes of folded faces.
+ * It narrows down the faces which may contain a point or meet a segment
+ * so that the exact geometric tests are not done for every face.
+ */
+class FoldedFaceGrid {
+
+	private final double minX, minY;
+	private final double cellWidth, cellHeight;
+	private final int divX, divY;
+
+	/**
+	 * [cell][k] = index of face whose bounding box overlaps the cell,
+	 * in ascending order.
+	 */
+	private final int[][] cells;
+
+	/**
+	 * [face index] = {minX, minY, maxX, maxY}
+	 */
+	private final double[][] bounds;
+
+	/**
+	 *
+	 * @param faces  faces with {@link OriHalfedge#positionAfterFolded}
+	 * @param eps    margin added to each bounding box
+	 */
+	public FoldedFaceGrid(List<OriFace> faces, double eps) {
+		int faceNum = faces.size();
+		bounds = new double[faceNum][];
+
+		double gMinX = Double.MAX_VALUE, gMinY = Double.MAX_VALUE;
+		double gMaxX = -Double.MAX_VALUE, gMaxY = -Double.MAX_VALUE;
+		for (int i = 0; i < faceNum; i++) {
+			double[] b = {Double.MAX_VALUE, Double.MAX_VALUE,
+					-Double.MAX_VALUE, -Double.MAX_VALUE};
+			for (OriHalfedge he : faces.get(i).halfedges) {
+				Vector2d p = he.positionAfterFolded;
+				b[0] = Math.min(b[0], p.x - eps);
+				b[1] = Math.min(b[1], p.y - eps);
+				b[2] = Math.max(b[2], p.x + eps);
+				b[3] = Math.max(b[3], p.y + eps);
+			}
+			bounds[i] = b;
+
+			gMinX = Math.min(gMinX, b[0]);
+			gMinY = Math.min(gMinY, b[1]);
+			gMaxX = Math.max(gMaxX, b[2]);
+			gMaxY = Math.max(gMaxY, b[3]);
+		}
+
+		if (faceNum == 0) {
+			gMinX = gMinY = gMaxX = gMaxY = 0;
+		}
+
+		// about one face per cell
+		int div = Math.max(1, (int) Math.ceil(Math.sqrt(faceNum)));
+		divX = div;
+		divY = div;
+		minX = gMinX;
+		minY = gMinY;
+		cellWidth = Math.max((gMaxX - gMinX) / divX, Double.MIN_NORMAL);
+		cellHeight = Math.max((gMaxY - gMinY) / divY, Double.MIN_NORMAL);
+
+		int[] counts = new int[divX * divY];
+		for (int i = 0; i < faceNum; i++) {
+			countOrFill(i, counts, null);
+		}
+
+		cells = new int[counts.length][];
+		for (int c = 0; c < counts.length; c++) {
+			cells[c] = new int[counts[c]];
+			counts[c] = 0;
+		}
+		for (int i = 0; i < faceNum; i++) {
+			countOrFill(i, counts, cells);
+		}
+	}
+
+	/**
+	 * counts up the cells overlapped by the face.
+	 * if {@code dest} is given, the face index is also stored into the cells.
+	 */
+	private void countOrFill(int faceIndex, int[] counts, int[][] dest) {
+		double[] b = bounds[faceIndex];
+		int x0 = cellX(b[0]), x1 = cellX(b[2]);
+		int y0 = cellY(b[1]), y1 = cellY(b[3]);
+		for (int y = y0; y <= y1; y++) {
+			for (int x = x0; x <= x1; x++) {
+				int c = y * divX + x;
+				if (dest != null) {
+					dest[c][counts[c]] = faceIndex;
+				}
+				counts[c]++;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param p  point
+	 * @return indices of faces whose bounding box contains the point,
+	 *         in ascending order.
+	 */
+	public int[] getCandidates(Vector2d p) {
+		int[] cell = cells[cellY(p.y) * divX + cellX(p.x)];
+
+		int[] candidates = new int[cell.length];
+		int count = 0;
+		for (int i : cell) {
+			double[] b = bounds[i];
+			if (p.x >= b[0] && p.x <= b[2] && p.y >= b[1] && p.y <= b[3]) {
+				candidates[count++] = i;
+			}
+		}
+
+		int[] result = new int[count];
+		System.arraycopy(candidates, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 *
+	 * @param p0  end point of segment
+	 * @param p1  another end point of segment
+	 * @return indices of faces whose bounding box overlaps
+	 *         the bounding box of the segment, in ascending order.
+	 */
+	public int[] getCandidates(Vector2d p0, Vector2d p1) {
+		double sMinX = Math.min(p0.x, p1.x), sMaxX = Math.max(p0.x, p1.x);
+		double sMinY = Math.min(p0.y, p1.y), sMaxY = Math.max(p0.y, p1.y);
+
+		BitSet found = new BitSet(bounds.length);
+		for (int y = cellY(sMinY); y <= cellY(sMaxY); y++) {
+			for (int x = cellX(sMinX); x <= cellX(sMaxX); x++) {
+				for (int i : cells[y * divX + x]) {
+					double[] b = bounds[i];
+					if (sMaxX >= b[0] && sMinX <= b[2] && sMaxY >= b[1] && sMinY <= b[3]) {
+						found.set(i);
+					}
+				}
+			}
+		}
+
+		int[] result = new int[found.cardinality()];
+		int count = 0;
+		for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+			result[count++] = i;
+		}
+		return result;
+	}
+
+	private int cellX(double x) {
+		return clamp((int) Math.floor((x - minX) / cellWidth), divX);
+	}
+
+	private int cellY(double y) {
+		return clamp((int) Math.floor((y - minY) / cellHeight), divY);
+	}
+
+	private static int clamp(int index, int div) {
+		return Math.min(Math.max(index, 0), div - 1);
+	}
+}
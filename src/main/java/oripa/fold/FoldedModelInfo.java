@@ -1,29 +1,109 @@
 package oripa.fold;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class FoldedModelInfo {
 	private int overlapRelation[][] = null;
-	private List<int[][]> overlapRelations = new ArrayList<int[][]>();
+
+	// each foldable overlap relation is stored as the difference from the base.
+	private OverlapRelation baseRelation = null;
+	private List<OverlapRelationDiff> overlapRelationDiffs = new ArrayList<>();
+
+	// finds the rest of answers on demand. null if all answers are found.
+	private Iterator<OverlapRelationDiff> remainingAnswers = null;
+
 	private int currentORmatIndex = 0;
 
+	// changed whenever the content of overlapRelation is replaced.
+	private long overlapRelationVersion = 0;
+
 	BoundBox boundBox = new BoundBox(null, null);
 	
 	
-	public void setNextORMat() {
-		if (currentORmatIndex < overlapRelations.size() - 1) {
+	/**
+	 * shows the next answer. It is searched on the calling thread
+	 * if it is not found yet.
+	 */
+	public synchronized void setNextORMat() {
+		if (currentORmatIndex == overlapRelationDiffs.size() - 1) {
+			findNextAnswer();
+		}
+		if (currentORmatIndex < overlapRelationDiffs.size() - 1) {
 			currentORmatIndex++;
-			Folder.matrixCopy(overlapRelations.get(currentORmatIndex), overlapRelation);
+			copyFoldableOverlapRelation(currentORmatIndex, overlapRelation);
 		}
 	}
 
-	public void setPrevORMat() {
+	public synchronized void setPrevORMat() {
 		if (currentORmatIndex > 0) {
 			currentORmatIndex--;
-			Folder.matrixCopy(overlapRelations.get(currentORmatIndex), overlapRelation);
+			copyFoldableOverlapRelation(currentORmatIndex, overlapRelation);
+		}
+
+	}
+
+	/**
+	 * @return true if {@link #setNextORMat()} has to search the next answer,
+	 *         which may take long.
+	 */
+	public synchronized boolean isNextAnswerSearchNeeded() {
+		return remainingAnswers != null
+				&& currentORmatIndex == overlapRelationDiffs.size() - 1;
+	}
+
+	/**
+	 * searches the next answer not found yet and adds it to the answers
+	 * without changing the current one. This object is not locked during
+	 * the search, so that the search can run on a worker thread while the
+	 * current answer is shown. The search should not run on two threads at once.
+	 *
+	 * @return true if an answer is added.
+	 */
+	public boolean findNextAnswer() {
+		Iterator<OverlapRelationDiff> answers;
+		synchronized (this) {
+			answers = remainingAnswers;
+		}
+		if (answers == null) {
+			return false;
+		}
+
+		OverlapRelationDiff answer = answers.hasNext() ? answers.next() : null;
+
+		synchronized (this) {
+			if (remainingAnswers != answers) {
+				// folded again during the search.
+				return false;
+			}
+			if (answer == null) {
+				remainingAnswers = null;
+				return false;
+			}
+			overlapRelationDiffs.add(answer);
+			return true;
 		}
+	}
 
+	/**
+	 * @return false if there may be answers which are not found yet.
+	 */
+	public synchronized boolean isAllFoldableOverlapRelationsFound() {
+		return remainingAnswers == null;
+	}
+
+	/**
+	 * writes the index-th foldable overlap relation into the given matrix.
+	 * @param index
+	 * @param mat    destination
+	 */
+	public synchronized void copyFoldableOverlapRelation(int index, int[][] mat) {
+		baseRelation.copyTo(overlapRelationDiffs.get(index), mat);
+		if (mat == overlapRelation) {
+			overlapRelationVersion++;
+		}
 	}
 
 	public int[][] getOverlapRelation() {
@@ -32,22 +112,66 @@ public class FoldedModelInfo {
 
 	public void setOverlapRelation(int[][] overlapRelation) {
 		this.overlapRelation = overlapRelation;
+		overlapRelationVersion++;
 	}
 
+	/**
+	 * The answers are copied into the same matrix, so that the matrix
+	 * cannot tell which answer it holds.
+	 * @return a number changed whenever another answer is copied into
+	 *         {@link #getOverlapRelation()}.
+	 */
+	public long getOverlapRelationVersion() {
+		return overlapRelationVersion;
+	}
+
+	/**
+	 * Each element is restored from the difference when it is accessed.
+	 * @return read-only list of foldable overlap relations.
+	 */
 	public List<int[][]> getFoldableOverlapRelations() {
-		return overlapRelations;
+		return new AbstractList<int[][]>() {
+			@Override
+			public int[][] get(int index) {
+				int size = baseRelation.getSize();
+				int[][] mat = new int[size][size];
+				copyFoldableOverlapRelation(index, mat);
+				return mat;
+			}
+
+			@Override
+			public int size() {
+				return getFoldablePatternCount();
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param baseRelation       relation shared by the answers
+	 * @param diffs              answers found so far
+	 * @param remainingAnswers   iterator to find the rest of answers.
+	 *                           null if all answers are in diffs.
+	 */
+	synchronized void setFoldableOverlapRelations(OverlapRelation baseRelation,
+			List<OverlapRelationDiff> diffs, Iterator<OverlapRelationDiff> remainingAnswers) {
+		this.baseRelation = baseRelation;
+		this.overlapRelationDiffs = new ArrayList<>(diffs);
+		this.remainingAnswers = remainingAnswers;
 	}
 
-	public void setFoldableOverlapRelations(List<int[][]> foldableOverlapRelations) {
-		this.overlapRelations = foldableOverlapRelations;
+	public synchronized void clearFoldableOverlapRelations() {
+		baseRelation = null;
+		overlapRelationDiffs = new ArrayList<>();
+		remainingAnswers = null;
 	}
 	
 
-	public int getCurrentORmatIndex() {
+	public synchronized int getCurrentORmatIndex() {
 		return currentORmatIndex;
 	}
 
-	public void setCurrentORmatIndex(int currentORmatIndex) {
+	public synchronized void setCurrentORmatIndex(int currentORmatIndex) {
 		this.currentORmatIndex = currentORmatIndex;
 	}
 
@@ -65,8 +189,11 @@ public class FoldedModelInfo {
 		this.boundBox = boundBox;
 	}
 
-	public int getFoldablePatternCount() {
-		return overlapRelations.size();
+	/**
+	 * @return the number of answers found so far.
+	 */
+	public synchronized int getFoldablePatternCount() {
+		return overlapRelationDiffs.size();
 	}
 	
 	
@@ -19,21 +19,25 @@
 package oripa.fold;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.vecmath.Vector2d;
 
-import oripa.Config;
 import oripa.ORIPA;
 import oripa.doc.Doc;
-import oripa.doc.exporter.Exporter;
-import oripa.doc.exporter.ExporterEPS;
 import oripa.geom.GeomUtil;
 import oripa.geom.Line;
+import oripa.geom.SegmentArrangement;
 import oripa.paint.core.PaintConfig;
-import oripa.paint.creasepattern.CreasePattern;
+import oripa.value.CalculationResource;
 import oripa.value.OriLine;
 
 public class Folder {
@@ -42,8 +46,22 @@ public class Folder {
 	private int workORmat[][];
 	private ArrayList<SubFace> subFaces;
 
+	// bounding boxes of folded faces
+	private FoldedFaceGrid faceGrid;
+
+	// [face index] = indices of subfaces which contain the face
+	private BitSet[] subFacesOfFace;
+
+	private boolean parallelSearch = true;
+	private boolean deterministicOrder = true;
+
+	private int answerLimit = 0;
+	private long timeLimit = 0;
+
+	// shared among all instances since the workers are reusable.
+	private static ForkJoinPool searchPool = null;
+
 	// helper object
-    private OrigamiModelFactory modelFactory = new OrigamiModelFactory();
     private FolderTool folderTool = new FolderTool();
     
 	public Folder() {
@@ -60,8 +78,7 @@ public class Folder {
         List<OriVertex> vertices = origamiModel.getVertices();
         List<OriEdge>   edges    = origamiModel.getEdges();
         
-        List<int[][]> foldableOverlapRelations = foldedModelInfo.getFoldableOverlapRelations();
-        foldableOverlapRelations.clear();
+        foldedModelInfo.clearFoldableOverlapRelations();
 
         
 		simpleFoldWithoutZorder(faces, edges);
@@ -80,8 +97,10 @@ public class Folder {
 
 		// After folding construct the sbfaces
 		double paperSize = origamiModel.getPaperSize();
+		faceGrid = new FoldedFaceGrid(faces, paperSize / 1000);
 		subFaces = makeSubFaces(faces, paperSize);
 		System.out.println("subFaces.size() = " + subFaces.size());
+		subFacesOfFace = indexSubFaces(faces.size());
 
 		foldedModelInfo.setOverlapRelation(
 				createOverlapRelation(faces));
@@ -111,11 +130,11 @@ public class Folder {
 		findAnswer(foldedModelInfo, 0, overlapRelation);
 
 		foldedModelInfo.setCurrentORmatIndex(0);
-		if (foldableOverlapRelations.isEmpty()) {
+		if (foldedModelInfo.getFoldablePatternCount() == 0) {
 			ORIPA.outMessage("No answer was found");
 			return 0;
 		} else {
-			matrixCopy(foldableOverlapRelations.get(0), overlapRelation);
+			foldedModelInfo.copyFoldableOverlapRelation(0, overlapRelation);
 		}
 
 		folderTool.setFacesOutline(vertices, faces, false);
@@ -145,99 +164,129 @@ public class Folder {
 		}
 
 		origamiModel.setFolded(true);
-		return foldableOverlapRelations.size();
+		return foldedModelInfo.getFoldablePatternCount();
 	}
 
 	private void findAnswer(
 			FoldedModelInfo foldedModelInfo, int subFaceIndex, int[][] orMat) {
-		//FoldedModelInfo foldedModelInfo = m_doc.getFoldedModelInfo();
-		SubFace sub = subFaces.get(subFaceIndex);
-		List<int[][]> foldableOverlapRelations = foldedModelInfo.getFoldableOverlapRelations();
-
-		if (sub.allFaceOrderDecided) {
-			int s = orMat.length;
-			int[][] passMat = new int[s][s];
-			for (int i = 0; i < s; i++) {
-				System.arraycopy(orMat[i], 0, passMat[i], 0, s);
-			}
+		// answers are stored as differences from this relation.
+		OverlapRelation baseRelation = new OverlapRelation(orMat);
 
-			if (subFaceIndex == subFaces.size() - 1) {
-				s = orMat.length;
-				int[][] ansMat = new int[s][s];
-				for (int i = 0; i < s; i++) {
-					System.arraycopy(passMat[i], 0, ansMat[i], 0, s);
-				}
-				foldableOverlapRelations.add(ansMat);
-			} else {
-				findAnswer(foldedModelInfo, subFaceIndex + 1, passMat);
-			}
+		int[][][] candidates = new int[subFaces.size()][][];
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] = subFaces.get(i).createCandidateIndices();
+		}
+
+		if (answerLimit > 0 || timeLimit > 0) {
+			findAnswerLazily(foldedModelInfo, candidates, baseRelation);
+			return;
+		}
+
+		List<OverlapRelationDiff> answers;
 
+		if (!parallelSearch) {
+			answers = new ArrayList<>();
+			new AnswerSearchTask(candidates, subFaceIndex, baseRelation,
+					0, true, answers).compute();
 		} else {
-			for (ArrayList<OriFace> vec : sub.answerStacks) {
-				int size = vec.size();
-
-				boolean bOK = true;
-				for (int i = 0; i < size; i++) {
-					int index0 = vec.get(i).tmpInt;
-					for (int j = i + 1; j < size; j++) {
-						int index1 = vec.get(j).tmpInt;
-						if (orMat[index0][index1] == Doc.LOWER) {
-							bOK = false;
-							break;
-						}
-					}
-					if (!bOK) {
-						break;
-					}
-				}
-				if (!bOK) {
-					continue;
-				}
-				int s = orMat.length;
-				int[][] passMat = new int[s][s];
-				for (int i = 0; i < s; i++) {
-					System.arraycopy(orMat[i], 0, passMat[i], 0, s);
-				}
+			answers = deterministicOrder ?
+					new ArrayList<OverlapRelationDiff>() :
+					Collections.synchronizedList(new ArrayList<OverlapRelationDiff>());
 
-				for (int i = 0; i < size; i++) {
-					int index0 = vec.get(i).tmpInt;
-					for (int j = i + 1; j < size; j++) {
-						int index1 = vec.get(j).tmpInt;
-						passMat[index0][index1] = Doc.UPPER;
-						passMat[index1][index0] = Doc.LOWER;
-					}
-				}
+			getSearchPool().invoke(new AnswerSearchTask(candidates, subFaceIndex, baseRelation,
+					AnswerSearchTask.DEFAULT_FORK_DEPTH, deterministicOrder, answers));
+		}
 
-				if (subFaceIndex == subFaces.size() - 1) {
-					s = orMat.length;
-					int[][] ansMat = new int[s][s];
-					for (int i = 0; i < s; i++) {
-						System.arraycopy(passMat[i], 0, ansMat[i], 0, s);
-					}
-					foldableOverlapRelations.add(ansMat);
-				} else {
-					findAnswer(foldedModelInfo, subFaceIndex + 1, passMat);
-				}
+		foldedModelInfo.setFoldableOverlapRelations(baseRelation, answers, null);
+	}
+
+	/**
+	 * finds the answers until the limit is reached. the rest are left to
+	 * foldedModelInfo so that they can be found on demand.
+	 */
+	private void findAnswerLazily(FoldedModelInfo foldedModelInfo,
+			int[][][] candidates, OverlapRelation baseRelation) {
+
+		AnswerIterator iterator = new AnswerIterator(candidates, baseRelation);
+		List<OverlapRelationDiff> answers = new ArrayList<>();
+
+		long deadline = System.currentTimeMillis() + timeLimit;
+
+		while (answerLimit <= 0 || answers.size() < answerLimit) {
+			if (!iterator.hasNext()) {
+				iterator = null;
+				break;
+			}
+			answers.add(iterator.next());
+
+			if (timeLimit > 0 && System.currentTimeMillis() > deadline) {
+				break;
 			}
 		}
+
+		foldedModelInfo.setFoldableOverlapRelations(baseRelation, answers, iterator);
+	}
+
+	private static synchronized ForkJoinPool getSearchPool() {
+		if (searchPool == null) {
+			searchPool = new ForkJoinPool();
+		}
+		return searchPool;
+	}
+
+	/**
+	 * @param parallelSearch
+	 *            true if the foldable overlap relations should be searched
+	 *            on multiple threads.
+	 */
+	public void setParallelSearch(boolean parallelSearch) {
+		this.parallelSearch = parallelSearch;
+	}
+
+	/**
+	 * Limits the number of answers found by {@link #fold(OrigamiModel, FoldedModelInfo)}.
+	 * The rest of answers are found one by one by
+	 * {@link FoldedModelInfo#setNextORMat()}.
+	 * The search is sequential if a limit is set.
+	 *
+	 * @param answerLimit
+	 *            the number of answers to be found at first.
+	 *            0 means no limit.
+	 */
+	public void setAnswerLimit(int answerLimit) {
+		this.answerLimit = answerLimit;
+	}
+
+	/**
+	 * Limits the time to find answers in {@link #fold(OrigamiModel, FoldedModelInfo)}.
+	 * The time is checked after each answer is found, so at least one
+	 * answer is found if it exists.
+	 * The rest of answers are found one by one by
+	 * {@link FoldedModelInfo#setNextORMat()}.
+	 * The search is sequential if a limit is set.
+	 *
+	 * @param timeLimit
+	 *            time in milliseconds. 0 means no limit.
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * @param deterministicOrder
+	 *            true if the answers of parallel search should be in the
+	 *            same order as the sequential search. false lets the
+	 *            answers be stored in the order they are found.
+	 */
+	public void setDeterministicOrder(boolean deterministicOrder) {
+		this.deterministicOrder = deterministicOrder;
 	}
 
 	private void estimation(
 			List<OriFace> faces, int[][] orMat) {
-		boolean bChanged;
-		do {
-			bChanged = false;
-			if (estimate_by3faces(faces, orMat)) {
-				bChanged = true;
-			}
-			if (estimate_by3faces2(orMat)) {
-				bChanged = true;
-			}
-			if (estimate_by4faces(orMat)) {
-				bChanged = true;
-			}
-		} while (bChanged);
-
+		OverlapRelationEstimator estimator =
+				new OverlapRelationEstimator(faces, faceGrid, subFaces, condition4s, orMat);
+		estimator.estimate();
 	}
 
 	// If face[i] and face[j] touching edge is covered by face[k]
@@ -259,7 +308,9 @@ public class Folder {
 				if (overlapRelation[f_i.tmpInt][f_j.tmpInt] != Doc.LOWER) {
 					continue;
 				}
-				for (OriFace f_k : faces) {
+				// only the faces near the edge can be crossed.
+				for (int k : faceGrid.getCandidates(he.positionAfterFolded, he.next.positionAfterFolded)) {
+					OriFace f_k = faces.get(k);
 					if (f_k == f_i || f_k == f_j) {
 						continue;
 					}
@@ -276,10 +327,9 @@ public class Folder {
 						f_k.condition3s.add(cond3_f);
 
 						// Add condition to all subfaces of the 3 faces
-						for (SubFace sub : subFaces) {
-							if (sub.faces.contains(f_i) && sub.faces.contains(f_j) && sub.faces.contains(f_k)) {
-								sub.condition3s.add(cond);
-							}
+						BitSet shared = findSubFaces(f_i, f_j, f_k);
+						for (int s = shared.nextSetBit(0); s >= 0; s = shared.nextSetBit(s + 1)) {
+							subFaces.get(s).condition3s.add(cond);
 						}
 
 					}
@@ -297,390 +347,279 @@ public class Folder {
 		System.out.println("edgeNum = " + edgeNum);
 
 
-		for (int i = 0; i < edgeNum; i++) {
-			OriEdge e0 = edges.get(i);
-			if (e0.left == null || e0.right == null) {
-				continue;
-			}
-			for (int j = i + 1; j < edgeNum; j++) {
-				OriEdge e1 = edges.get(j);
-				if (e1.left == null || e1.right == null) {
-					continue;
-				}
-				//TODO extract as function
-				if (GeomUtil.isLineSegmentsOverlap(e0.left.positionAfterFolded, e0.left.next.positionAfterFolded,
-						e1.left.positionAfterFolded, e1.left.next.positionAfterFolded)) {
-					Condition4 cond_f;
-					if (overlapRelation[e0.left.face.tmpInt][e0.right.face.tmpInt] == Doc.UPPER) {
-						if (overlapRelation[e1.left.face.tmpInt][e1.right.face.tmpInt] == Doc.UPPER) {
-							cond_f = new Condition4();
-							cond_f.upper1 = e0.right.face.tmpInt;
-							cond_f.lower1 = e0.left.face.tmpInt;
-							cond_f.upper2 = e1.right.face.tmpInt;
-							cond_f.lower2 = e1.left.face.tmpInt;
-							e0.right.face.condition4s.add(cond_f);
-
-							cond_f = new Condition4();
-							cond_f.upper2 = e0.right.face.tmpInt;
-							cond_f.lower2 = e0.left.face.tmpInt;
-							cond_f.upper1 = e1.right.face.tmpInt;
-							cond_f.lower1 = e1.left.face.tmpInt;
-							e1.right.face.condition4s.add(cond_f);
-						} else {
-							cond_f = new Condition4();
-							cond_f.upper1 = e0.right.face.tmpInt;
-							cond_f.lower1 = e0.left.face.tmpInt;
-							cond_f.upper2 = e1.left.face.tmpInt;
-							cond_f.lower2 = e1.right.face.tmpInt;
-							e0.right.face.condition4s.add(cond_f);
-
-							cond_f = new Condition4();
-							cond_f.upper2 = e0.right.face.tmpInt;
-							cond_f.lower2 = e0.left.face.tmpInt;
-							cond_f.upper1 = e1.left.face.tmpInt;
-							cond_f.lower1 = e1.right.face.tmpInt;
-							e1.left.face.condition4s.add(cond_f);
-						}
-					} else {
-						if (overlapRelation[e1.left.face.tmpInt][e1.right.face.tmpInt] == Doc.UPPER) {
-							cond_f = new Condition4();
-							cond_f.upper1 = e0.left.face.tmpInt;
-							cond_f.lower1 = e0.right.face.tmpInt;
-							cond_f.upper2 = e1.right.face.tmpInt;
-							cond_f.lower2 = e1.left.face.tmpInt;
-							e0.left.face.condition4s.add(cond_f);
-
-							cond_f.upper2 = e0.left.face.tmpInt;
-							cond_f.lower2 = e0.right.face.tmpInt;
-							cond_f.upper1 = e1.right.face.tmpInt;
-							cond_f.lower1 = e1.left.face.tmpInt;
-							e1.right.face.condition4s.add(cond_f);
-						} else {
-							cond_f = new Condition4();
-							cond_f.upper1 = e0.left.face.tmpInt;
-							cond_f.lower1 = e0.right.face.tmpInt;
-							cond_f.upper2 = e1.left.face.tmpInt;
-							cond_f.lower2 = e1.right.face.tmpInt;
-							e0.left.face.condition4s.add(cond_f);
-
-							cond_f.upper2 = e0.left.face.tmpInt;
-							cond_f.lower2 = e0.right.face.tmpInt;
-							cond_f.upper1 = e1.left.face.tmpInt;
-							cond_f.lower1 = e1.right.face.tmpInt;
-							e1.left.face.condition4s.add(cond_f);
-						}
-					}
-					Condition4 cond = new Condition4();
-					// Add condition to all subfaces of the 4 faces
-					boolean bOverlap = false;
-					for (SubFace sub : subFaces) {
-						if (sub.faces.contains(e0.left.face) && sub.faces.contains(e0.right.face)
-								&& sub.faces.contains(e1.left.face) && sub.faces.contains(e1.right.face)) {
-							sub.condition4s.add(cond);
-							bOverlap = true;
-						}
-					}
-
-					if (overlapRelation[e0.left.face.tmpInt][e0.right.face.tmpInt] == Doc.UPPER) {
-						cond.upper1 = e0.right.face.tmpInt;
-						cond.lower1 = e0.left.face.tmpInt;
+		for (long pair : findParallelEdgePairs(edges)) {
+			OriEdge e0 = edges.get((int) (pair >>> 32));
+			OriEdge e1 = edges.get((int) pair);
+			//TODO extract as function
+			if (GeomUtil.isLineSegmentsOverlap(e0.left.positionAfterFolded, e0.left.next.positionAfterFolded,
+					e1.left.positionAfterFolded, e1.left.next.positionAfterFolded)) {
+				Condition4 cond_f;
+				if (overlapRelation[e0.left.face.tmpInt][e0.right.face.tmpInt] == Doc.UPPER) {
+					if (overlapRelation[e1.left.face.tmpInt][e1.right.face.tmpInt] == Doc.UPPER) {
+						cond_f = new Condition4();
+						cond_f.upper1 = e0.right.face.tmpInt;
+						cond_f.lower1 = e0.left.face.tmpInt;
+						cond_f.upper2 = e1.right.face.tmpInt;
+						cond_f.lower2 = e1.left.face.tmpInt;
+						e0.right.face.condition4s.add(cond_f);
+
+						cond_f = new Condition4();
+						cond_f.upper2 = e0.right.face.tmpInt;
+						cond_f.lower2 = e0.left.face.tmpInt;
+						cond_f.upper1 = e1.right.face.tmpInt;
+						cond_f.lower1 = e1.left.face.tmpInt;
+						e1.right.face.condition4s.add(cond_f);
 					} else {
-						cond.upper1 = e0.left.face.tmpInt;
-						cond.lower1 = e0.right.face.tmpInt;
+						cond_f = new Condition4();
+						cond_f.upper1 = e0.right.face.tmpInt;
+						cond_f.lower1 = e0.left.face.tmpInt;
+						cond_f.upper2 = e1.left.face.tmpInt;
+						cond_f.lower2 = e1.right.face.tmpInt;
+						e0.right.face.condition4s.add(cond_f);
+
+						cond_f = new Condition4();
+						cond_f.upper2 = e0.right.face.tmpInt;
+						cond_f.lower2 = e0.left.face.tmpInt;
+						cond_f.upper1 = e1.left.face.tmpInt;
+						cond_f.lower1 = e1.right.face.tmpInt;
+						e1.left.face.condition4s.add(cond_f);
 					}
+				} else {
 					if (overlapRelation[e1.left.face.tmpInt][e1.right.face.tmpInt] == Doc.UPPER) {
-						cond.upper2 = e1.right.face.tmpInt;
-						cond.lower2 = e1.left.face.tmpInt;
+						cond_f = new Condition4();
+						cond_f.upper1 = e0.left.face.tmpInt;
+						cond_f.lower1 = e0.right.face.tmpInt;
+						cond_f.upper2 = e1.right.face.tmpInt;
+						cond_f.lower2 = e1.left.face.tmpInt;
+						e0.left.face.condition4s.add(cond_f);
+
+						cond_f.upper2 = e0.left.face.tmpInt;
+						cond_f.lower2 = e0.right.face.tmpInt;
+						cond_f.upper1 = e1.right.face.tmpInt;
+						cond_f.lower1 = e1.left.face.tmpInt;
+						e1.right.face.condition4s.add(cond_f);
 					} else {
-						cond.upper2 = e1.left.face.tmpInt;
-						cond.lower2 = e1.right.face.tmpInt;
+						cond_f = new Condition4();
+						cond_f.upper1 = e0.left.face.tmpInt;
+						cond_f.lower1 = e0.right.face.tmpInt;
+						cond_f.upper2 = e1.left.face.tmpInt;
+						cond_f.lower2 = e1.right.face.tmpInt;
+						e0.left.face.condition4s.add(cond_f);
+
+						cond_f.upper2 = e0.left.face.tmpInt;
+						cond_f.lower2 = e0.right.face.tmpInt;
+						cond_f.upper1 = e1.left.face.tmpInt;
+						cond_f.lower1 = e1.right.face.tmpInt;
+						e1.left.face.condition4s.add(cond_f);
 					}
+				}
+				Condition4 cond = new Condition4();
+				// Add condition to all subfaces of the 4 faces
+				BitSet shared = findSubFaces(e0.left.face, e0.right.face,
+						e1.left.face, e1.right.face);
+				for (int s = shared.nextSetBit(0); s >= 0; s = shared.nextSetBit(s + 1)) {
+					subFaces.get(s).condition4s.add(cond);
+				}
+				boolean bOverlap = !shared.isEmpty();
 
-					if (bOverlap) {
-						condition4s.add(cond);
-					}
+				if (overlapRelation[e0.left.face.tmpInt][e0.right.face.tmpInt] == Doc.UPPER) {
+					cond.upper1 = e0.right.face.tmpInt;
+					cond.lower1 = e0.left.face.tmpInt;
+				} else {
+					cond.upper1 = e0.left.face.tmpInt;
+					cond.lower1 = e0.right.face.tmpInt;
+				}
+				if (overlapRelation[e1.left.face.tmpInt][e1.right.face.tmpInt] == Doc.UPPER) {
+					cond.upper2 = e1.right.face.tmpInt;
+					cond.lower2 = e1.left.face.tmpInt;
+				} else {
+					cond.upper2 = e1.left.face.tmpInt;
+					cond.lower2 = e1.right.face.tmpInt;
 				}
 
+				if (bOverlap) {
+					condition4s.add(cond);
+				}
 			}
-		}
-	}
 
-	public static void matrixCopy(int[][] from, int[][] to) {
-		int size = from.length;
-		for (int i = 0; i < size; i++) {
-			System.arraycopy(from[i], 0, to[i], 0, size);
 		}
 	}
 
-	private void setOR(int[][] orMat, int i, int j, int value, boolean bSetPairAtSameTime) {
-		orMat[i][j] = value;
-		if (bSetPairAtSameTime) {
-			if (value == Doc.LOWER) {
-				orMat[j][i] = Doc.UPPER;
-			} else {
-				orMat[j][i] = Doc.LOWER;
+	private BitSet[] indexSubFaces(int faceNum) {
+		BitSet[] index = new BitSet[faceNum];
+		for (int i = 0; i < faceNum; i++) {
+			index[i] = new BitSet(subFaces.size());
+		}
+		for (int s = 0; s < subFaces.size(); s++) {
+			for (OriFace face : subFaces.get(s).faces) {
+				index[face.tmpInt].set(s);
 			}
 		}
+		return index;
 	}
 
-	private void setLowerValueIfUndefined(int[][] orMat, int i, int j, boolean[] changed) {
-		if (orMat[i][j] == Doc.UNDEFINED) {
-			orMat[i][j] = Doc.LOWER;
-			orMat[j][i] = Doc.UPPER;
-			changed[0] = true;
+	/**
+	 * @return indices of subfaces which contain all of the given faces.
+	 */
+	private BitSet findSubFaces(OriFace... faces) {
+		BitSet result = (BitSet) subFacesOfFace[faces[0].tmpInt].clone();
+		for (int i = 1; i < faces.length; i++) {
+			result.and(subFacesOfFace[faces[i].tmpInt]);
 		}
+		return result;
 	}
 
-	private boolean estimate_by4faces(int[][] orMat) {
-
-		boolean[] changed = new boolean[1];
-		changed[0] = false;
-
-		for (Condition4 cond : condition4s) {
-
-			// if: lower1 > upper2, then: upper1 > upper2, upper1 > lower2, lower1 > lower2
-			if (orMat[cond.lower1][cond.upper2] == Doc.LOWER) {
-				setLowerValueIfUndefined(orMat, cond.upper1, cond.upper2, changed);
-				setLowerValueIfUndefined(orMat, cond.upper1, cond.lower2, changed);
-				setLowerValueIfUndefined(orMat, cond.lower1, cond.lower2, changed);
-			}
-
-			// if: lower2 > upper1, then: upper2 > upper1, upper2 > lower1, lower2 > lower1
-			if (orMat[cond.lower2][cond.upper1] == Doc.LOWER) {
-				setLowerValueIfUndefined(orMat, cond.upper2, cond.upper1, changed);
-				setLowerValueIfUndefined(orMat, cond.upper2, cond.lower1, changed);
-				setLowerValueIfUndefined(orMat, cond.lower2, cond.lower1, changed);
-			}
-
-			// if: upper1 > upper2 > lower1, then: upper1 > lower2, lower2 > lower1
-			if (orMat[cond.upper1][cond.upper2] == Doc.LOWER
-					&& orMat[cond.upper2][cond.lower1] == Doc.LOWER) {
-				setLowerValueIfUndefined(orMat, cond.upper1, cond.lower2, changed);
-				setLowerValueIfUndefined(orMat, cond.lower2, cond.lower1, changed);
-			}
+	/**
+	 * Overlapping edges are parallel within 1 degree (see
+	 * {@link GeomUtil#isParallel(Vector2d, Vector2d)}) and touch each other.
+	 * The edges are bucketed by their direction in steps of 1 degree,
+	 * and the edges in the same or adjacent buckets are paired only if
+	 * their bounding boxes meet.
+	 *
+	 * @return pairs (i << 32 | j) of indices of edges with both faces,
+	 *         where i < j, in ascending order.
+	 */
+	private long[] findParallelEdgePairs(List<OriEdge> edges) {
+		final int binNum = 180;
+		List<List<Integer>> bins = new ArrayList<>(binNum);
+		for (int b = 0; b < binNum; b++) {
+			bins.add(new ArrayList<Integer>());
+		}
 
-			// if: upper1 > lower2 > lower1, then: upper1 > upper2, upper2 > lower1
-			if (orMat[cond.upper1][cond.lower2] == Doc.LOWER
-					&& orMat[cond.lower2][cond.lower1] == Doc.LOWER) {
-				setLowerValueIfUndefined(orMat, cond.upper1, cond.upper2, changed);
-				setLowerValueIfUndefined(orMat, cond.upper2, cond.lower1, changed);
+		int edgeNum = edges.size();
+		double[][] bounds = new double[edgeNum][];
+		for (int i = 0; i < edgeNum; i++) {
+			OriEdge e = edges.get(i);
+			if (e.left == null || e.right == null) {
+				continue;
 			}
+			Vector2d p0 = e.left.positionAfterFolded;
+			Vector2d p1 = e.left.next.positionAfterFolded;
 
-			// if: upper2 > upper1 > lower2, then: upper2 > lower1, lower1 > lower2
-			if (orMat[cond.upper2][cond.upper1] == Doc.LOWER
-					&& orMat[cond.upper1][cond.lower2] == Doc.LOWER) {
-				setLowerValueIfUndefined(orMat, cond.upper2, cond.lower1, changed);
-				setLowerValueIfUndefined(orMat, cond.lower1, cond.lower2, changed);
+			double angle = Math.atan2(p1.y - p0.y, p1.x - p0.x);
+			if (angle < 0) {
+				angle += Math.PI;
 			}
+			bins.get((int) (angle / Math.PI * binNum) % binNum).add(i);
 
-			// if: upper2 > lower1 > lower2, then: upper2 > upper1, upper1 > lower2
-			if (orMat[cond.upper2][cond.lower1] == Doc.LOWER
-					&& orMat[cond.lower1][cond.lower2] == Doc.LOWER) {
-				setLowerValueIfUndefined(orMat, cond.upper2, cond.upper1, changed);
-				setLowerValueIfUndefined(orMat, cond.upper1, cond.lower2, changed);
-			}
+			bounds[i] = new double[] {
+					Math.min(p0.x, p1.x) - GeomUtil.EPS, Math.min(p0.y, p1.y) - GeomUtil.EPS,
+					Math.max(p0.x, p1.x) + GeomUtil.EPS, Math.max(p0.y, p1.y) + GeomUtil.EPS };
 		}
 
+		List<Long> pairs = new ArrayList<>();
+		for (int b = 0; b < binNum; b++) {
+			addTouchingPairs(bins.get(b), null, bounds, pairs);
+			addTouchingPairs(bins.get(b), bins.get((b + 1) % binNum), bounds, pairs);
+		}
 
-		return changed[0];
-	}
-
-	// If the subface a>b and b>c then a>c
-	private boolean estimate_by3faces2(int[][] orMat) {
-		boolean bChanged = false;
-		for (SubFace sub : subFaces) {
-
-			boolean changed;
-
-			while (true) {
-				changed = false;
-
-				boolean bFound = false;
-				for (int i = 0; i < sub.faces.size(); i++) {
-					for (int j = i + 1; j < sub.faces.size(); j++) {
-
-						// seach for undertermined relations
-						int index_i = sub.faces.get(i).tmpInt;
-						int index_j = sub.faces.get(j).tmpInt;
-
-						if (orMat[index_i][index_j] == Doc.NO_OVERLAP) {
-							continue;
-						}
-						if (orMat[index_i][index_j] != Doc.UNDEFINED) {
-							continue;
-						}
-						// Find the intermediary face
-						for (int k = 0; k < sub.faces.size(); k++) {
-							if (k == i) {
-								continue;
-							}
-							if (k == j) {
-								continue;
-							}
-
-							int index_k = sub.faces.get(k).tmpInt;
-
-							if (orMat[index_i][index_k] == Doc.UPPER && orMat[index_k][index_j] == Doc.UPPER) {
-								orMat[index_i][index_j] = Doc.UPPER;
-								orMat[index_j][index_i] = Doc.LOWER;
-								bFound = true;
-								changed = true;
-								bChanged = true;
-								break;
-							}
-							if (orMat[index_i][index_k] == Doc.LOWER && orMat[index_k][index_j] == Doc.LOWER) {
-								orMat[index_i][index_j] = Doc.LOWER;
-								orMat[index_j][index_i] = Doc.UPPER;
-								bFound = true;
-								changed = true;
-								bChanged = true;
-								break;
-							}
-							if (bFound) {
-								break;
-							}
-						}
-						if (bFound) {
-							break;
-						}
-
-					}
-
-					if (bFound) {
-						break;
-					}
-				}
-
-				if (!changed) {
-					break;
-				}
-			}
+		long[] result = new long[pairs.size()];
+		for (int k = 0; k < result.length; k++) {
+			result[k] = pairs.get(k);
 		}
-		return bChanged;
+		Arrays.sort(result);
+		return result;
 	}
 
-	// If face[i] and face[j] touching edge is covered by face[k]
-	// then OR[i][k] = OR[j][k] 
-	private boolean estimate_by3faces(
-			List<OriFace> faces,
-			int[][] orMat) {
-
-		boolean bChanged = false;
-		for (OriFace f_i : faces) {
-			for (OriHalfedge he : f_i.halfedges) {
-				if (he.pair == null) {
+	/**
+	 * sweeps the bounding boxes along x axis to find the touching pairs.
+	 * @param group0  indices of edges
+	 * @param group1  indices of edges to be paired with group0.
+	 *                null means the pairs in group0.
+	 */
+	private void addTouchingPairs(List<Integer> group0, List<Integer> group1,
+			final double[][] bounds, List<Long> pairs) {
+		List<Integer> sorted = new ArrayList<>(group0);
+		if (group1 != null) {
+			if (group0.isEmpty() || group1.isEmpty()) {
+				return;
+			}
+			sorted.addAll(group1);
+		}
+		Collections.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				return Double.compare(bounds[i][0], bounds[j][0]);
+			}
+		});
+
+		Set<Integer> inGroup1 = group1 == null ? null : new HashSet<>(group1);
+
+		List<Integer> active = new ArrayList<>();
+		for (int i : sorted) {
+			double[] b = bounds[i];
+			for (int k = active.size() - 1; k >= 0; k--) {
+				int j = active.get(k);
+				double[] a = bounds[j];
+				if (a[2] < b[0]) {
+					active.remove(k);
 					continue;
 				}
-				OriFace f_j = he.pair.face;
-
-				for (OriFace f_k : faces) {
-					if (f_k == f_i || f_k == f_j) {
-						continue;
-					}
-					if (GeomUtil.isLineCrossFace(f_k, he, 0.0001)) {
-						if (orMat[f_i.tmpInt][f_k.tmpInt] != Doc.UNDEFINED
-								&& orMat[f_j.tmpInt][f_k.tmpInt] == Doc.UNDEFINED) {
-							setOR(orMat, f_j.tmpInt, f_k.tmpInt, orMat[f_i.tmpInt][f_k.tmpInt], true);
-							bChanged = true;
-						} else if (orMat[f_j.tmpInt][f_k.tmpInt] != Doc.UNDEFINED
-								&& orMat[f_i.tmpInt][f_k.tmpInt] == Doc.UNDEFINED) {
-							setOR(orMat, f_i.tmpInt, f_k.tmpInt, orMat[f_j.tmpInt][f_k.tmpInt], true);
-							bChanged = true;
-						}
-					}
+				if (inGroup1 != null && inGroup1.contains(i) == inGroup1.contains(j)) {
+					continue;
 				}
+				if (a[3] < b[1] || b[3] < a[1]) {
+					continue;
+				}
+				pairs.add(((long) Math.min(i, j) << 32) | Math.max(i, j));
 			}
+			active.add(i);
 		}
+	}
 
-		return bChanged;
+	public static void matrixCopy(int[][] from, int[][] to) {
+		int size = from.length;
+		for (int i = 0; i < size; i++) {
+			System.arraycopy(from[i], 0, to[i], 0, size);
+		}
 	}
 
 	private ArrayList<SubFace> makeSubFaces(
 			List<OriFace> faces, double paperSize) {
 		//OrigamiModel origamiModel = m_doc.getOrigamiModel();
 
-		Doc temp_doc = new Doc(paperSize);
-		CreasePattern temp_creasePattern = temp_doc.getCreasePattern();
-		OrigamiModel  temp_origamiModel  = temp_doc.getOrigamiModel();
-		
-		temp_creasePattern.clear();        
+		// Overlay the outlines of the folded faces
+		SegmentArrangement arrangement =
+				new SegmentArrangement(CalculationResource.POINT_EPS);
 		for (OriFace face : faces) {
 			for (OriHalfedge he : face.halfedges) {
-				temp_doc.addLine(new OriLine(he.positionAfterFolded, he.next.positionAfterFolded, OriLine.TYPE_RIDGE));
+				arrangement.addSegment(he.positionAfterFolded, he.next.positionAfterFolded);
 			}
 		}
 
-		folderTool.cleanDuplicatedLines(temp_creasePattern);
+		ArrayList<SubFace> localSubFaces = new ArrayList<>();
 
-		if (Config.FOR_STUDY) {
-			try {
-				Exporter exporter = new ExporterEPS();
-				exporter.export(temp_doc, "c:\\_jun\\tmp\\te.eps");
-			} catch (Exception e) {
+		for (List<Vector2d> corners : arrangement.buildFaces()) {
+			OriFace outline = new OriFace();
+			for (Vector2d p : corners) {
+				outline.halfedges.add(new OriHalfedge(new OriVertex(p), outline));
 			}
+			outline.makeHalfedgeLoop();
+			localSubFaces.add(new SubFace(outline));
 		}
-		System.out.println("debugging");
-		Vector2d sp1 = new Vector2d(0.0, 0.0);
-		Vector2d ep1 = new Vector2d(0.0, 10.0);
-		Vector2d sp2 = new Vector2d(0.0, 0.0);
-		Vector2d ep2 = new Vector2d(0.0, 5.0);
-		Vector2d dummy1 = new Vector2d();
-		Vector2d dummy2 = new Vector2d();
-		int crossNum = GeomUtil.getCrossPoint(dummy1, dummy2, sp1, ep1, sp2, ep2);
-		System.out.println("getCrossPoint results " + crossNum + "::::" + dummy1 + ", " + dummy2);
-
-		//temp_doc.buildOrigami(origamiModel, false);
-		temp_origamiModel = modelFactory.buildOrigami(temp_creasePattern, temp_doc.getPaperSize(), false);
-		temp_doc.setOrigamiModel(temp_origamiModel);
-		
-		ArrayList<SubFace> localSubFaces = new ArrayList<>();
 
-		List<OriFace> subFaceSources = temp_origamiModel.getFaces();
-		for (OriFace face : subFaceSources) {
-			localSubFaces.add(new SubFace(face));
-		}
+		// Check if the SubFace exactly equal to the Face.
+		// The indices of faces are in ascending order,
+		// so the list identifies the set of faces.
+		Set<List<Integer>> faceSets = new HashSet<>();
+		ArrayList<SubFace> tmpFaces = new ArrayList<>();
 
-		int cnt = 0;
 		for (SubFace sub : localSubFaces) {
-			cnt++;
 			Vector2d innerPoint = sub.getInnerPoint();
-			for (OriFace face : faces) {
+			List<Integer> faceIndices = new ArrayList<>();
+			for (int index : faceGrid.getCandidates(innerPoint)) {
+				OriFace face = faces.get(index);
 				if (GeomUtil.isContainsPointFoldedFace(face, innerPoint, paperSize / 1000)) {
 					sub.faces.add(face);
+					faceIndices.add(index);
 				}
 			}
-		}
-		System.out.println("=---------------------=");
 
-		// Check if the SubFace exactly equal to the Face 
-		ArrayList<SubFace> tmpFaces = new ArrayList<>();
-		for (SubFace sub : localSubFaces) {
-			boolean sameCase = false;
-			for (SubFace s : tmpFaces) {
-				boolean sameCk = true;
-				if (sub.faces.size() != s.faces.size()) {
-					sameCk = false;
-				} else {
-
-					for (OriFace face : sub.faces) {
-						if (!s.faces.contains(face)) {
-							sameCk = false;
-							break;
-						}
-					}
-				}
-
-				if (sameCk) {
-					sameCase = true;
-					break;
-				}
-			}
-
-			if (!sameCase) {
+			if (faceSets.add(faceIndices)) {
 				tmpFaces.add(sub);
-			} else {
 			}
 		}
+		System.out.println("=---------------------=");
 
 		localSubFaces.clear();
 		localSubFaces.addAll(tmpFaces);
@@ -1,12 +1,12 @@
 package oripa.fold;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 import javax.vecmath.Vector2d;
 
+import oripa.geom.DuplicateLineRemover;
 import oripa.geom.GeomUtil;
 import oripa.geom.Line;
 import oripa.value.OriLine;
@@ -236,32 +236,12 @@ public class FolderTool {
 
 		public boolean cleanDuplicatedLines(Collection<OriLine> creasePattern) {
 			System.out.println("pre cleanDuplicatedLines " + creasePattern.size());
-			ArrayList<OriLine> tmpLines = new ArrayList<OriLine>(creasePattern.size());
-			for (OriLine l : creasePattern) {
-				OriLine ll = l;
 
-				boolean bSame = false;
-				// Test if the line is already in tmpLines to prevent duplicity
-				for (OriLine line : tmpLines) {
-					if (GeomUtil.isSameLineSegment(line, ll)) {
-						bSame = true;
-						break;
-					}
-				}
-				if (bSame) {
-					continue;
-				}
-				tmpLines.add(ll);
-			}
-
-			if (creasePattern.size() == tmpLines.size()) {
+			if (!new DuplicateLineRemover(GeomUtil.EPS).clean(creasePattern)) {
 				return false;
 			}
 
-			creasePattern.clear();
-			creasePattern.addAll(tmpLines);
 			System.out.println("after cleanDuplicatedLines " + creasePattern.size());
-
 			return true;
 		}
 
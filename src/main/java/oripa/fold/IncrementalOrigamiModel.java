@@ -0,0 +1,401 @@
+package oripa.fold;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.vecmath.Vector2d;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.creasepattern.CreasePatternListener;
+import oripa.value.OriLine;
+
+/**
+ * Origami model which follows the changes of a crease pattern.
+ *
+ * The changes are queued and applied when the model is required.
+ * Only the vertices on the changed lines and the faces passing through
+ * them are rebuilt and checked again, therefore an update costs time
+ * proportional to the edit rather than to the whole crease pattern.
+ *
+ * Unlike {@link OrigamiModelFactory}, a vertex between two collinear
+ * edges of the same type is not removed. Instead, the faces skip such
+ * vertices so that they have the same halfedges as the faces built
+ * from scratch.
+ *
+ * The model built by {@link #createOrigamiModel()} shares the vertices
+ * and the faces with this object. It is for checking the pattern and
+ * should not be folded since folding moves the vertices.
+ */
+public class IncrementalOrigamiModel implements CreasePatternListener {
+
+	private static class Change {
+		final OriLine line;
+		final boolean added;
+
+		Change(OriLine line, boolean added) {
+			this.line = line;
+			this.added = added;
+		}
+	}
+
+	private CreasePattern creasePattern;
+
+	/**
+	 * changes not applied yet, in the order of the notification.
+	 */
+	private List<Change> changes = new ArrayList<>();
+
+	/**
+	 * true if the model should be built from the whole crease pattern.
+	 */
+	private boolean needsRebuild = true;
+
+	private OrigamiModelFactory.VertexGrid vertexGrid = new OrigamiModelFactory.VertexGrid();
+	private Set<OriVertex> vertices = new LinkedHashSet<>();
+	private HashMap<OriLine, OriEdge> lineEdges = new HashMap<>();
+
+	/**
+	 * edges around each face.
+	 */
+	private LinkedHashMap<OriFace, List<OriEdge>> faces = new LinkedHashMap<>();
+
+	private Set<OriVertex> problemVertices = new HashSet<>();
+	private Set<OriFace> problemFaces = new HashSet<>();
+
+	// working sets of an update
+	private Set<OriVertex> touchedVertices = new LinkedHashSet<>();
+	private Set<OriFace> brokenFaces = new LinkedHashSet<>();
+	private Set<OriEdge> removedEdges = new HashSet<>();
+
+	/**
+	 * starts observing the given crease pattern.
+	 * @param creasePattern
+	 */
+	public IncrementalOrigamiModel(CreasePattern creasePattern) {
+		this.creasePattern = creasePattern;
+		creasePattern.addListener(this);
+	}
+
+	/**
+	 * stops observing the crease pattern.
+	 */
+	public void dispose() {
+		creasePattern.removeListener(this);
+	}
+
+	@Override
+	public void lineAdded(OriLine line) {
+		enqueue(new Change(line, true));
+	}
+
+	@Override
+	public void lineRemoved(OriLine line) {
+		enqueue(new Change(line, false));
+	}
+
+	@Override
+	public void cleared(Collection<OriLine> removedLines) {
+		changes.clear();
+		needsRebuild = true;
+	}
+
+	private void enqueue(Change change) {
+		if (needsRebuild) {
+			return;
+		}
+
+		changes.add(change);
+
+		// building from scratch is faster than applying so many changes.
+		if (changes.size() > creasePattern.size()) {
+			changes.clear();
+			needsRebuild = true;
+		}
+	}
+
+	/**
+	 *
+	 * @return true if all faces are convex and all vertices satisfy
+	 *         Maekawa's and Kawasaki's theorems.
+	 */
+	public boolean isProbablyFoldable() {
+		update();
+		return problemVertices.isEmpty() && problemFaces.isEmpty();
+	}
+
+	/**
+	 *
+	 * @return vertices which do not satisfy Maekawa's or Kawasaki's theorem.
+	 */
+	public Collection<OriVertex> getProblemVertices() {
+		update();
+		return new ArrayList<>(problemVertices);
+	}
+
+	/**
+	 *
+	 * @return the current model for checking the pattern.
+	 */
+	public OrigamiModel createOrigamiModel() {
+		update();
+
+		OrigamiModel origamiModel = new OrigamiModel(creasePattern.getPaperSize());
+		for (OriVertex v : vertices) {
+			if (isCorner(v)) {
+				origamiModel.getVertices().add(v);
+			}
+		}
+		origamiModel.getFaces().addAll(faces.keySet());
+
+		List<OriEdge> edges = origamiModel.getEdges();
+		new OrigamiModelFactory().makeEdges(edges, origamiModel.getFaces());
+		for (OriEdge e : edges) {
+			e.type = e.left.tmpInt;
+		}
+
+		origamiModel.setHasModel(true);
+		origamiModel.setProbablyFoldable(isProbablyFoldable());
+
+		return origamiModel;
+	}
+
+	/**
+	 * applies the queued changes.
+	 */
+	private void update() {
+		if (needsRebuild) {
+			rebuild();
+			return;
+		}
+
+		if (changes.isEmpty()) {
+			return;
+		}
+
+		for (Change change : changes) {
+			if (change.added) {
+				addEdge(change.line);
+			} else {
+				removeEdge(change.line);
+			}
+		}
+		changes.clear();
+
+		rebuildAroundTouchedVertices();
+	}
+
+	private void rebuild() {
+		needsRebuild = false;
+		changes.clear();
+
+		vertexGrid = new OrigamiModelFactory.VertexGrid();
+		vertices.clear();
+		lineEdges.clear();
+		faces.clear();
+		problemVertices.clear();
+		problemFaces.clear();
+
+		for (OriLine line : creasePattern) {
+			addEdge(line);
+		}
+
+		rebuildAroundTouchedVertices();
+	}
+
+	/**
+	 * Returns the vertex closer than POINT_EPS to p,
+	 * or a new vertex if no vertex is found.
+	 */
+	private OriVertex getVertex(Vector2d p) {
+		OriVertex v = vertexGrid.findLast(p);
+		if (v == null) {
+			v = new OriVertex(p);
+			vertexGrid.add(v);
+			vertices.add(v);
+		}
+		return v;
+	}
+
+	private void addEdge(OriLine line) {
+		if (line.typeVal == OriLine.TYPE_NONE) {
+			return;
+		}
+
+		OriVertex sv = getVertex(line.p0);
+		OriVertex ev = getVertex(line.p1);
+		touchedVertices.add(sv);
+		touchedVertices.add(ev);
+
+		// too short to be an edge
+		if (sv == ev) {
+			return;
+		}
+
+		OriEdge edge = new OriEdge(sv, ev, line.typeVal);
+		sv.addEdge(edge);
+		ev.addEdge(edge);
+		lineEdges.put(line, edge);
+	}
+
+	private void removeEdge(OriLine line) {
+		OriEdge edge = lineEdges.remove(line);
+		if (edge == null) {
+			return;
+		}
+
+		if (edge.left != null) {
+			brokenFaces.add(edge.left.face);
+		}
+		if (edge.right != null) {
+			brokenFaces.add(edge.right.face);
+		}
+		removedEdges.add(edge);
+
+		edge.sv.edges.remove(edge);
+		edge.ev.edges.remove(edge);
+		touchedVertices.add(edge.sv);
+		touchedVertices.add(edge.ev);
+	}
+
+	/**
+	 * rebuilds the faces passing through the touched vertices
+	 * and checks them and the vertices again.
+	 */
+	private void rebuildAroundTouchedVertices() {
+
+		for (OriVertex v : touchedVertices) {
+			for (OriEdge e : v.edges) {
+				OriHalfedge he = (v == e.sv) ? e.left : e.right;
+				if (he != null) {
+					brokenFaces.add(he.face);
+				}
+			}
+		}
+
+		// edges to start walking around new faces
+		List<OriEdge> startEdges = new ArrayList<>();
+
+		for (OriFace face : brokenFaces) {
+			List<OriEdge> edges = faces.remove(face);
+			problemFaces.remove(face);
+			for (OriEdge e : edges) {
+				if (e.left != null && e.left.face == face) {
+					e.left = null;
+				}
+				if (e.right != null && e.right.face == face) {
+					e.right = null;
+				}
+			}
+			startEdges.addAll(edges);
+		}
+
+		for (OriVertex v : touchedVertices) {
+			startEdges.addAll(v.edges);
+
+			if (v.edges.isEmpty()) {
+				vertices.remove(v);
+				vertexGrid.remove(v);
+				problemVertices.remove(v);
+			}
+		}
+
+		// a face surrounded only by cut lines is not created
+		// in the same way as OrigamiModelFactory.
+		for (OriEdge e : startEdges) {
+			if (e.type == OriLine.TYPE_CUT || removedEdges.contains(e)) {
+				continue;
+			}
+			if (e.left == null) {
+				createFace(e.sv, e);
+			}
+			if (e.right == null) {
+				createFace(e.ev, e);
+			}
+		}
+
+		for (OriVertex v : touchedVertices) {
+			if (v.edges.isEmpty()) {
+				continue;
+			}
+
+			v.hasProblem = isCorner(v) && !(OrigamiModelFactory.satisfiesMaekawa(v)
+					&& OrigamiModelFactory.satisfiesKawasaki(v));
+			if (v.hasProblem) {
+				problemVertices.add(v);
+			} else {
+				problemVertices.remove(v);
+			}
+		}
+
+		touchedVertices.clear();
+		brokenFaces.clear();
+		removedEdges.clear();
+	}
+
+	/**
+	 *
+	 * @return false if the vertex is between two collinear edges of the same type.
+	 */
+	private boolean isCorner(OriVertex v) {
+		return !(v.edges.size() == 2
+				&& OrigamiModelFactory.isMergeable(v.edges.get(0), v.edges.get(1)));
+	}
+
+	/**
+	 * walks around the face on the left of the given edge seen from v.
+	 * a halfedge is created only at the corners of the face,
+	 * and it is set to all edges until the next corner.
+	 */
+	private void createFace(OriVertex v, OriEdge e) {
+		OriVertex startV = v;
+		OriEdge startE = e;
+		while (!isCorner(startV)) {
+			startV = startE.oppositeVertex(startV);
+			startE = startV.getPrevEdge(startE);
+
+			// no corner at all
+			if (startV == v && startE == e) {
+				break;
+			}
+		}
+
+		OriFace face = new OriFace();
+		List<OriEdge> edges = new ArrayList<>();
+
+		OriVertex walkV = startV;
+		OriEdge walkE = startE;
+		OriHalfedge he = null;
+		do {
+			if (he == null || isCorner(walkV)) {
+				he = new OriHalfedge(walkV, face);
+				he.tmpInt = walkE.type;
+				face.halfedges.add(he);
+			}
+			if (walkE.sv == walkV) {
+				walkE.left = he;
+			} else {
+				walkE.right = he;
+			}
+			edges.add(walkE);
+
+			walkV = walkE.oppositeVertex(walkV);
+			walkE = walkV.getPrevEdge(walkE);
+		} while (walkV != startV || walkE != startE);
+
+		face.makeHalfedgeLoop();
+		face.setOutline();
+		face.setPreOutline();
+		faces.put(face, edges);
+
+		if (!OrigamiModelFactory.isConvex(face)) {
+			face.hasProblem = true;
+			problemFaces.add(face);
+		}
+	}
+}
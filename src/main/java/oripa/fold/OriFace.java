@@ -57,6 +57,16 @@ public class OriFace {
 	}
 
 	public void trianglateAndSetColor(boolean bUseColor, boolean bFlip) {
+		trianglateAndSetColor(bUseColor, bFlip, ORIPA.doc.getPaperSize());
+	}
+
+	/**
+	 * 
+	 * @param bUseColor
+	 * @param bFlip
+	 * @param paperSize   size of the paper for the texture coordinates
+	 */
+	public void trianglateAndSetColor(boolean bUseColor, boolean bFlip, double paperSize) {
 		triangles.clear();
 
 		double min_x = Double.MAX_VALUE;
@@ -129,7 +139,6 @@ public class OriFace {
 			tri.v[1].color = new Vector3d(halfedges.get(i).vertexColor);
 			tri.v[2].color = new Vector3d(halfedges.get(i + 1).vertexColor);
 
-			double paperSize = ORIPA.doc.getPaperSize();
 			tri.v[0].uv = new Vector2d(startHe.vertex.preP.x / paperSize
 					+ 0.5, startHe.vertex.preP.y / paperSize + 0.5);
 			tri.v[1].uv = new Vector2d(halfedges.get(i).vertex.preP.x
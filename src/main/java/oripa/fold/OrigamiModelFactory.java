@@ -2,12 +2,17 @@ package oripa.fold;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import javax.swing.JOptionPane;
 import javax.vecmath.Vector2d;
 
 import oripa.ORIPA;
+import oripa.geom.DuplicateLineRemover;
 import oripa.geom.GeomUtil;
 import oripa.value.CalculationResource;
 import oripa.value.OriLine;
@@ -27,18 +32,23 @@ public class OrigamiModelFactory {
 
 
 
+	/**
+	 * Returns the vertex closer than POINT_EPS to p. If there are two or more
+	 * such vertices, the last added one is chosen.
+	 * A new vertex is added if no vertex is found.
+	 *
+	 * @param vertices  vertices added so far
+	 * @param grid      cells of the vertices to limit the search
+	 * @param p         position
+	 */
 	private OriVertex addAndGetVertexFromVVec(
-			List<OriVertex> vertices, Vector2d p) {
-		OriVertex vtx = null;
-		for (OriVertex v : vertices) {
-			if (GeomUtil.Distance(v.p, p) < CalculationResource.POINT_EPS) {
-				vtx = v;
-			}
-		}
+			List<OriVertex> vertices, VertexGrid grid, Vector2d p) {
+		OriVertex vtx = grid.findLast(p);
 
 		if (vtx == null) {
 			vtx = new OriVertex(p);
 			vertices.add(vtx);
+			grid.add(vtx);
 		}
 
 		return vtx;
@@ -58,13 +68,14 @@ public class OrigamiModelFactory {
 		faces.clear();
 
 
+		VertexGrid vertexGrid = new VertexGrid();
 		for (OriLine l : creasePattern) {
 			if (l.typeVal == OriLine.TYPE_NONE) {
 				continue;
 			}
 
-			OriVertex sv = addAndGetVertexFromVVec(vertices, l.p0);
-			OriVertex ev = addAndGetVertexFromVVec(vertices, l.p1);
+			OriVertex sv = addAndGetVertexFromVVec(vertices, vertexGrid, l.p0);
+			OriVertex ev = addAndGetVertexFromVVec(vertices, vertexGrid, l.p1);
 			OriEdge eg = new OriEdge(sv, ev, l.typeVal);
 			edges.add(eg);
 			sv.addEdge(eg);
@@ -178,13 +189,14 @@ public class OrigamiModelFactory {
 		}
 
 		// Create the edges from the vertexes
+		VertexGrid vertexGrid = new VertexGrid();
 		for (OriLine l : creasePattern) {
 			if (l.typeVal == OriLine.TYPE_NONE) {
 				continue;
 			}
 
-			OriVertex sv = addAndGetVertexFromVVec(vertices, l.p0);
-			OriVertex ev = addAndGetVertexFromVVec(vertices, l.p1);
+			OriVertex sv = addAndGetVertexFromVVec(vertices, vertexGrid, l.p0);
+			OriVertex ev = addAndGetVertexFromVVec(vertices, vertexGrid, l.p1);
 			OriEdge eg = new OriEdge(sv, ev, l.typeVal);
 			edges.add(eg);
 			sv.addEdge(eg);
@@ -193,14 +205,21 @@ public class OrigamiModelFactory {
 
 
 		// Check if there are vertexes with just 2 collinear edges with same type
-		// merge the edges and delete the vertex for efficiency 
+		// merge the edges and delete the vertex for efficiency.
+		// The edges of each vertex are found by its adjacency. The edges are held
+		// in a linked set so that they are removed in constant time keeping the order.
+		LinkedHashSet<OriEdge> edgeSet = new LinkedHashSet<>(edges);
+		HashMap<OriEdge, Integer> edgeOrder = new HashMap<>();
+		for (OriEdge e : edges) {
+			edgeOrder.put(e, edgeOrder.size());
+		}
+		HashSet<OriVertex> removedVertices = new HashSet<>();
+
 		ArrayList<OriEdge> eds = new ArrayList<OriEdge>();
-		ArrayList<OriVertex> tmpVVec = new ArrayList<OriVertex>();
-		tmpVVec.addAll(vertices);
-		for (OriVertex v : tmpVVec) {
+		for (OriVertex v : vertices) {
 			eds.clear();
-			for (OriEdge e : edges) {
-				if (e.sv == v || e.ev == v) {
+			for (OriEdge e : v.edges) {
+				if (!eds.contains(e)) {
 					eds.add(e);
 				}
 			}
@@ -209,56 +228,47 @@ public class OrigamiModelFactory {
 				continue;
 			}
 
-			// If the types of the edges are different, do nothing
-			if (eds.get(0).type != eds.get(1).type) {
-				continue;
-			}
-
+			// in the order of the edge list
 			OriEdge e0 = eds.get(0);
 			OriEdge e1 = eds.get(1);
+			if (edgeOrder.get(e0) > edgeOrder.get(e1)) {
+				e0 = eds.get(1);
+				e1 = eds.get(0);
+			}
 
-			// Check if they are collinear
-			Vector2d dir0 = new Vector2d(e0.ev.p.x - e0.sv.p.x, e0.ev.p.y - e0.sv.p.y);
-			Vector2d dir1 = new Vector2d(e1.ev.p.x - e1.sv.p.x, e1.ev.p.y - e1.sv.p.y);
-
-			dir0.normalize();
-			dir1.normalize();
-
-			if (GeomUtil.Distance(dir0, dir1) > 0.001
-					&& Math.abs(GeomUtil.Distance(dir0, dir1) - 2.0) > 0.001) {
+			if (!isMergeable(e0, e1)) {
 				continue;
 			}
 
 			// found mergeable edge 
-			edges.remove(e0);
-			edges.remove(e1);
-			vertices.remove(v);
+			edgeSet.remove(e0);
+			edgeSet.remove(e1);
+			removedVertices.add(v);
 			e0.sv.edges.remove(e0);
 			e0.ev.edges.remove(e0);
 			e1.sv.edges.remove(e1);
 			e1.ev.edges.remove(e1);
-			if (e0.sv == v && e1.sv == v) {
-				OriEdge ne = new OriEdge(e0.ev, e1.ev, e0.type);
-				edges.add(ne);
-				ne.sv.addEdge(ne);
-				ne.ev.addEdge(ne);
-			} else if (e0.sv == v && e1.ev == v) {
-				OriEdge ne = new OriEdge(e0.ev, e1.sv, e0.type);
-				edges.add(ne);
-				ne.sv.addEdge(ne);
-				ne.ev.addEdge(ne);
-			} else if (e0.ev == v && e1.sv == v) {
-				OriEdge ne = new OriEdge(e0.sv, e1.ev, e0.type);
-				edges.add(ne);
-				ne.sv.addEdge(ne);
-				ne.ev.addEdge(ne);
-			} else {
-				OriEdge ne = new OriEdge(e0.sv, e1.sv, e0.type);
-				edges.add(ne);
-				ne.sv.addEdge(ne);
-				ne.ev.addEdge(ne);
+
+			OriVertex sv = (e0.sv == v) ? e0.ev : e0.sv;
+			OriVertex ev = (e1.sv == v) ? e1.ev : e1.sv;
+			OriEdge ne = new OriEdge(sv, ev, e0.type);
+			edgeSet.add(ne);
+			edgeOrder.put(ne, edgeOrder.size());
+			ne.sv.addEdge(ne);
+			ne.ev.addEdge(ne);
+		}
+
+		edges.clear();
+		edges.addAll(edgeSet);
+
+		ArrayList<OriVertex> remainingVertices = new ArrayList<>();
+		for (OriVertex v : vertices) {
+			if (!removedVertices.contains(v)) {
+				remainingVertices.add(v);
 			}
 		}
+		vertices.clear();
+		vertices.addAll(remainingVertices);
 
 		// System.out.println("vnum=" + vertices.size());
 		// System.out.println("enum=" + edges.size());
@@ -329,35 +339,37 @@ public class OrigamiModelFactory {
 	private boolean cleanDuplicatedLines(Collection<OriLine> creasePattern) {
 		debugCount = 0;
 		System.out.println("pre cleanDuplicatedLines " + creasePattern.size());
-		ArrayList<OriLine> tmpLines = new ArrayList<OriLine>();
-		for (OriLine l : creasePattern) {
-			OriLine ll = l;
-
-			boolean bSame = false;
-			// Test if the line is already in tmpLines to prevent duplicity
-			for (OriLine line : tmpLines) {
-				if (GeomUtil.isSameLineSegment(line, ll)) {
-					bSame = true;
-					break;
-				}
-			}
-			if (bSame) {
-				continue;
-			}
-			tmpLines.add(ll);
-		}
 
-		if (creasePattern.size() == tmpLines.size()) {
+		if (!new DuplicateLineRemover(GeomUtil.EPS).clean(creasePattern)) {
 			return false;
 		}
 
-		creasePattern.clear();
-		creasePattern.addAll(tmpLines);
 		System.out.println("after cleanDuplicatedLines " + creasePattern.size());
-
 		return true;
 	}
 
+	/**
+	 * 
+	 * @return true if the edges are of the same type and collinear,
+	 *         that is, the vertex between them can be removed.
+	 */
+	static boolean isMergeable(OriEdge e0, OriEdge e1) {
+		// If the types of the edges are different, do nothing
+		if (e0.type != e1.type) {
+			return false;
+		}
+
+		// Check if they are collinear
+		Vector2d dir0 = new Vector2d(e0.ev.p.x - e0.sv.p.x, e0.ev.p.y - e0.sv.p.y);
+		Vector2d dir1 = new Vector2d(e1.ev.p.x - e1.sv.p.x, e1.ev.p.y - e1.sv.p.y);
+
+		dir0.normalize();
+		dir1.normalize();
+
+		return !(GeomUtil.Distance(dir0, dir1) > 0.001
+				&& Math.abs(GeomUtil.Distance(dir0, dir1) - 2.0) > 0.001);
+	}
+
 	private boolean checkPatternValidity(
 			List<OriEdge>   edges, List<OriVertex> vertices,
 			List<OriFace>   faces) {
@@ -366,47 +378,16 @@ public class OrigamiModelFactory {
 
 		// Check if the faces are convex
 		for (OriFace face : faces) {
-			if (face.halfedges.size() == 3) {
-				continue;
-			}
-
-			OriHalfedge baseHe = face.halfedges.get(0);
-			boolean baseFlg = GeomUtil.CCWcheck(baseHe.prev.vertex.p, 
-					baseHe.vertex.p, baseHe.next.vertex.p);
-
-			for (int i = 1; i < face.halfedges.size(); i++) {
-				OriHalfedge he = face.halfedges.get(i);
-				if (GeomUtil.CCWcheck(he.prev.vertex.p, he.vertex.p, he.next.vertex.p) != baseFlg) {
-					isOK = false;
-					face.hasProblem = true;
-					break;
-				}
-
+			if (!isConvex(face)) {
+				isOK = false;
+				face.hasProblem = true;
 			}
 		}
 
 		// Check Maekawa's theorem for all vertexes
 		for (OriVertex v : vertices) {
-			int ridgeCount = 0;
-			int valleyCount = 0;
-			boolean isCorner = false;
-			for (OriEdge e : v.edges) {
-				if (e.type == OriLine.TYPE_RIDGE) {
-					ridgeCount++;
-				} else if (e.type == OriLine.TYPE_VALLEY) {
-					valleyCount++;
-				} else if (e.type == OriLine.TYPE_CUT) {
-					isCorner = true;
-					break;
-				}
-			}
-
-			if (isCorner) {
-				continue;
-			}
-
-			if (Math.abs(ridgeCount - valleyCount) != 2) {
-				System.out.println("edge type count invalid: "+ v+" "+Math.abs(ridgeCount - valleyCount));
+			if (!satisfiesMaekawa(v)) {
+				System.out.println("edge type count invalid: "+ v);
 				v.hasProblem = true;
 				isOK = false;
 			}
@@ -418,48 +399,101 @@ public class OrigamiModelFactory {
 			if (v.hasProblem) {
 				continue;
 			}
-			Vector2d p = v.p;
-			double oddSum = 0;
-			double evenSum = 0;
-			boolean isCorner = false;
-			for (int i = 0; i < v.edges.size(); i++) {
-				OriEdge e = v.edges.get(i);
-				if (e.type == OriLine.TYPE_CUT) {
-					isCorner = true;
-					break;
-				}
+			if (!satisfiesKawasaki(v)) {
+				System.out.println("edge angle sum invalid");
+				v.hasProblem = true;
+				isOK = false;
+			}
+		}
 
-				Vector2d preP = new Vector2d(v.edges.get(i).oppositeVertex(v).p);
-				Vector2d nxtP = new Vector2d(v.edges.get((i + 1) % v.edges.size()).oppositeVertex(v).p);
 
-				nxtP.sub(p);
-				preP.sub(p);
+		return isOK;
+	}
 
-				if (i % 2 == 0) {
-					oddSum += preP.angle(nxtP);
-				} else {
-					evenSum += preP.angle(nxtP);
-				}
-			}
+	/**
+	 * 
+	 * @param face
+	 * @return true if the face is convex. triangles are always OK.
+	 */
+	static boolean isConvex(OriFace face) {
+		if (face.halfedges.size() == 3) {
+			return true;
+		}
 
-			if (isCorner) {
-				continue;
+		OriHalfedge baseHe = face.halfedges.get(0);
+		boolean baseFlg = GeomUtil.CCWcheck(baseHe.prev.vertex.p, 
+				baseHe.vertex.p, baseHe.next.vertex.p);
+
+		for (int i = 1; i < face.halfedges.size(); i++) {
+			OriHalfedge he = face.halfedges.get(i);
+			if (GeomUtil.CCWcheck(he.prev.vertex.p, he.vertex.p, he.next.vertex.p) != baseFlg) {
+				return false;
 			}
 
-			//System.out.println("oddSum = " + oddSum + "/ evenSum = " + evenSum);
-			if (Math.abs(oddSum - Math.PI) > Math.PI / 180 / 2) {
-				System.out.println("edge angle sum invalid");
-				v.hasProblem = true;
-				isOK = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Maekawa's theorem: |#ridge - #valley| = 2.
+	 * A vertex on a cut line is always OK.
+	 * 
+	 * @param v
+	 * @return false if the vertex is not flat foldable.
+	 */
+	static boolean satisfiesMaekawa(OriVertex v) {
+		int ridgeCount = 0;
+		int valleyCount = 0;
+		for (OriEdge e : v.edges) {
+			if (e.type == OriLine.TYPE_RIDGE) {
+				ridgeCount++;
+			} else if (e.type == OriLine.TYPE_VALLEY) {
+				valleyCount++;
+			} else if (e.type == OriLine.TYPE_CUT) {
+				return true;
 			}
 		}
 
+		return Math.abs(ridgeCount - valleyCount) == 2;
+	}
 
-		return isOK;
+	/**
+	 * Kawasaki's theorem: the sum of alternate angles is PI.
+	 * A vertex on a cut line is always OK.
+	 * 
+	 * @param v
+	 * @return false if the vertex is not flat foldable.
+	 */
+	static boolean satisfiesKawasaki(OriVertex v) {
+		Vector2d p = v.p;
+		double oddSum = 0;
+		double evenSum = 0;
+		for (int i = 0; i < v.edges.size(); i++) {
+			OriEdge e = v.edges.get(i);
+			if (e.type == OriLine.TYPE_CUT) {
+				return true;
+			}
+
+			Vector2d preP = new Vector2d(v.edges.get(i).oppositeVertex(v).p);
+			Vector2d nxtP = new Vector2d(v.edges.get((i + 1) % v.edges.size()).oppositeVertex(v).p);
+
+			nxtP.sub(p);
+			preP.sub(p);
+
+			if (i % 2 == 0) {
+				oddSum += preP.angle(nxtP);
+			} else {
+				evenSum += preP.angle(nxtP);
+			}
+		}
+
+		//System.out.println("oddSum = " + oddSum + "/ evenSum = " + evenSum);
+		return Math.abs(oddSum - Math.PI) <= Math.PI / 180 / 2;
 	}
+
 	//boolean sortFinished = false;
 
-	private void makeEdges(List<OriEdge> edges, List<OriFace> faces) {
+	void makeEdges(List<OriEdge> edges, List<OriFace> faces) {
 		edges.clear();
 
 		ArrayList<OriHalfedge> tmpHalfedges = new ArrayList<OriHalfedge>();
@@ -473,29 +507,48 @@ public class OrigamiModelFactory {
 			}
 		}
 
-		// Search the halfedge pair
+		// Index the halfedges by their start and end vertices
 		int heNum = tmpHalfedges.size();
+		HashMap<VertexPair, List<Integer>> halfedgeIndices = new HashMap<>();
+		for (int i = 0; i < heNum; i++) {
+			OriHalfedge he = tmpHalfedges.get(i);
+			VertexPair key = new VertexPair(he.vertex, he.next.vertex);
+			List<Integer> indices = halfedgeIndices.get(key);
+			if (indices == null) {
+				indices = new ArrayList<>(1);
+				halfedgeIndices.put(key, indices);
+			}
+			indices.add(i);
+		}
+
+		// Search the halfedge pair
 		for (int i = 0; i < heNum; i++) {
 			OriHalfedge he0 = tmpHalfedges.get(i);
 			if (he0.pair != null) {
 				continue;
 			}
 
-			for (int j = i + 1; j < heNum; j++) {
-				OriHalfedge he1 = tmpHalfedges.get(j);
-				if (he0.vertex == he1.next.vertex && he0.next.vertex == he1.vertex) {
-					OriEdge edge = new OriEdge();
-					he0.pair = he1;
-					he1.pair = he0;
-					he0.edge = edge;
-					he1.edge = edge;
-					edge.sv = he0.vertex;
-					edge.ev = he1.vertex;
-					edge.left = he0;
-					edge.right = he1;
-					edges.add(edge);
-					edge.type = OriLine.TYPE_NONE;//OriEdge.TYPE_NONE;
+			List<Integer> opposites = halfedgeIndices.get(
+					new VertexPair(he0.next.vertex, he0.vertex));
+			if (opposites == null) {
+				continue;
+			}
+			for (int j : opposites) {
+				if (j <= i) {
+					continue;
 				}
+				OriHalfedge he1 = tmpHalfedges.get(j);
+				OriEdge edge = new OriEdge();
+				he0.pair = he1;
+				he1.pair = he0;
+				he0.edge = edge;
+				he1.edge = edge;
+				edge.sv = he0.vertex;
+				edge.ev = he1.vertex;
+				edge.left = he0;
+				edge.right = he1;
+				edges.add(edge);
+				edge.type = OriLine.TYPE_NONE;//OriEdge.TYPE_NONE;
 			}
 		}
 
@@ -558,4 +611,98 @@ public class OrigamiModelFactory {
 
 
 
+
+	/**
+	 * Key of halfedge by its start and end vertices.
+	 * The vertices are compared by identity.
+	 */
+	private static class VertexPair {
+		private final OriVertex sv;
+		private final OriVertex ev;
+
+		public VertexPair(OriVertex sv, OriVertex ev) {
+			this.sv = sv;
+			this.ev = ev;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(sv) * 31 + System.identityHashCode(ev);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof VertexPair)) {
+				return false;
+			}
+			VertexPair pair = (VertexPair) obj;
+			return sv == pair.sv && ev == pair.ev;
+		}
+	}
+
+	/**
+	 * Vertices hashed into square cells of POINT_EPS.
+	 * A vertex closer than POINT_EPS is in the same or a neighboring cell.
+	 */
+	static class VertexGrid {
+		private final HashMap<Long, List<OriVertex>> cells = new HashMap<>();
+
+		// order of addition
+		private final IdentityHashMap<OriVertex, Integer> order = new IdentityHashMap<>();
+		private int nextOrder = 0;
+
+		public void add(OriVertex v) {
+			Long key = key(cellIndex(v.p.x), cellIndex(v.p.y));
+			List<OriVertex> cell = cells.get(key);
+			if (cell == null) {
+				cell = new ArrayList<>(2);
+				cells.put(key, cell);
+			}
+			cell.add(v);
+			order.put(v, nextOrder++);
+		}
+
+		public void remove(OriVertex v) {
+			List<OriVertex> cell = cells.get(key(cellIndex(v.p.x), cellIndex(v.p.y)));
+			if (cell != null && cell.remove(v) && cell.isEmpty()) {
+				cells.remove(key(cellIndex(v.p.x), cellIndex(v.p.y)));
+			}
+			order.remove(v);
+		}
+
+		/**
+		 * @return the last added vertex closer than POINT_EPS to p, or null.
+		 */
+		public OriVertex findLast(Vector2d p) {
+			long cx = cellIndex(p.x);
+			long cy = cellIndex(p.y);
+
+			OriVertex found = null;
+			int foundOrder = -1;
+			for (long x = cx - 1; x <= cx + 1; x++) {
+				for (long y = cy - 1; y <= cy + 1; y++) {
+					List<OriVertex> cell = cells.get(key(x, y));
+					if (cell == null) {
+						continue;
+					}
+					for (OriVertex v : cell) {
+						if (GeomUtil.Distance(v.p, p) < CalculationResource.POINT_EPS
+								&& order.get(v) > foundOrder) {
+							found = v;
+							foundOrder = order.get(v);
+						}
+					}
+				}
+			}
+			return found;
+		}
+
+		private long cellIndex(double x) {
+			return (long) Math.floor(x / CalculationResource.POINT_EPS);
+		}
+
+		private Long key(long x, long y) {
+			return (x << 32) ^ (y & 0xffffffffL);
+		}
+	}
 }
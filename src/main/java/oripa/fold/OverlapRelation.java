@@ -0,0 +1,171 @@
+package oripa.fold;
+
+import java.util.Arrays;
+
+import oripa.doc.Doc;
+
+/**
+ * Overlap relation matrix for the answer search.
+ *
+ * Each entry takes one of {@link Doc#NO_OVERLAP}, {@link Doc#UPPER},
+ * {@link Doc#LOWER} and {@link Doc#UNDEFINED}, which is packed into
+ * 2 bits. Every change by {@link #set(int, int, int)} is recorded in a
+ * trail so that a search branch can undo its changes by
+ * {@link #undo(int)} instead of copying the whole matrix.
+ *
+ * The trail starts empty when this object is created from a matrix,
+ * therefore the recorded entries are the difference from that matrix.
+ */
+class OverlapRelation {
+
+	private static final int ENTRIES_PER_WORD = 32;
+	private static final int PACKED_UNDEFINED = 3;
+
+	private final int size;
+	private final long[] words;
+
+	private int[] trailEntries;
+	private byte[] trailValues;
+	private int trailSize = 0;
+
+	/**
+	 * packs the given matrix.
+	 * @param mat  square matrix of overlap relation
+	 */
+	public OverlapRelation(int[][] mat) {
+		size = mat.length;
+		words = new long[(int) (((long) size * size + ENTRIES_PER_WORD - 1) / ENTRIES_PER_WORD)];
+		trailEntries = new int[16];
+		trailValues = new byte[16];
+
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				write(i * size + j, pack(mat[i][j]));
+			}
+		}
+	}
+
+	/**
+	 * copies the matrix and the trail.
+	 * @param relation  source
+	 */
+	public OverlapRelation(OverlapRelation relation) {
+		size = relation.size;
+		words = relation.words.clone();
+		trailEntries = Arrays.copyOf(relation.trailEntries,
+				Math.max(16, relation.trailSize));
+		trailValues = Arrays.copyOf(relation.trailValues,
+				trailEntries.length);
+		trailSize = relation.trailSize;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int get(int i, int j) {
+		return unpack(read(i * size + j));
+	}
+
+	/**
+	 * sets the value and records the previous one if it changes.
+	 */
+	public void set(int i, int j, int value) {
+		int entry = i * size + j;
+		int old = read(entry);
+		int packed = pack(value);
+		if (old == packed) {
+			return;
+		}
+
+		if (trailSize == trailEntries.length) {
+			trailEntries = Arrays.copyOf(trailEntries, trailSize * 2);
+			trailValues = Arrays.copyOf(trailValues, trailSize * 2);
+		}
+		trailEntries[trailSize] = entry;
+		trailValues[trailSize] = (byte) old;
+		trailSize++;
+
+		write(entry, packed);
+	}
+
+	/**
+	 * @return a mark to be given to {@link #undo(int)}.
+	 */
+	public int getTrailSize() {
+		return trailSize;
+	}
+
+	/**
+	 * restores the entries changed after the mark was taken.
+	 * @param mark  a value of {@link #getTrailSize()}.
+	 */
+	public void undo(int mark) {
+		while (trailSize > mark) {
+			trailSize--;
+			write(trailEntries[trailSize], trailValues[trailSize]);
+		}
+	}
+
+	/**
+	 * @return the entries changed since this relation was created from a matrix.
+	 */
+	public OverlapRelationDiff createDiff() {
+		int[] entries = Arrays.copyOf(trailEntries, trailSize);
+		byte[] values = new byte[trailSize];
+		for (int k = 0; k < trailSize; k++) {
+			values[k] = (byte) read(entries[k]);
+		}
+		return new OverlapRelationDiff(entries, values);
+	}
+
+	/**
+	 * writes this relation (without trail) into the given matrix.
+	 * @param mat  destination whose size is the same as this relation.
+	 */
+	public void copyTo(int[][] mat) {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				mat[i][j] = unpack(read(i * size + j));
+			}
+		}
+	}
+
+	/**
+	 * writes the changed entries into the given matrix.
+	 * @param diff  changes from this relation
+	 * @param mat   destination whose size is the same as this relation.
+	 */
+	public void copyTo(OverlapRelationDiff diff, int[][] mat) {
+		copyTo(mat);
+		diff.applyTo(mat);
+	}
+
+	private int read(int entry) {
+		int shift = (entry % ENTRIES_PER_WORD) * 2;
+		return (int) ((words[entry / ENTRIES_PER_WORD] >>> shift) & 3L);
+	}
+
+	private void write(int entry, int packed) {
+		int index = entry / ENTRIES_PER_WORD;
+		int shift = (entry % ENTRIES_PER_WORD) * 2;
+		words[index] = (words[index] & ~(3L << shift)) | ((long) packed << shift);
+	}
+
+	static int pack(int value) {
+		switch (value) {
+		case Doc.NO_OVERLAP:
+		case Doc.UPPER:
+		case Doc.LOWER:
+			return value;
+		case Doc.UNDEFINED:
+			return PACKED_UNDEFINED;
+		default:
+			throw new IllegalArgumentException("unknown relation: " + value);
+		}
+	}
+
+	static int unpack(int packed) {
+		return packed == PACKED_UNDEFINED ? Doc.UNDEFINED : packed;
+	}
+}
@@ -0,0 +1,40 @@
+package oripa.fold;
+
+/**
+ * Entries of an overlap relation which differ from a shared base relation.
+ * An answer of folding is stored in this form to avoid keeping the whole
+ * matrix for each answer.
+ */
+class OverlapRelationDiff {
+
+	/**
+	 * i * size + j of the changed entry
+	 */
+	private final int[] entries;
+
+	/**
+	 * packed value of each entry
+	 */
+	private final byte[] values;
+
+	OverlapRelationDiff(int[] entries, byte[] values) {
+		this.entries = entries;
+		this.values = values;
+	}
+
+	public int getEntryCount() {
+		return entries.length;
+	}
+
+	/**
+	 * overwrites the changed entries of the given matrix.
+	 * @param mat  matrix holding the base relation.
+	 */
+	public void applyTo(int[][] mat) {
+		int size = mat.length;
+		for (int k = 0; k < entries.length; k++) {
+			mat[entries[k] / size][entries[k] % size] =
+					OverlapRelation.unpack(values[k]);
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package oripa.fold;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import oripa.doc.Doc;
+import oripa.geom.GeomUtil;
+
+/**
+ * Decides the overlap relation as far as possible before the answer search.
+ *
+ * The rules are the same as the former fixpoint loop of Folder:
+ * the relation of faces sharing an edge covered by another face,
+ * the transitivity among the faces of each subface and
+ * the {@link Condition4}s. Instead of sweeping all rules until nothing
+ * changes, this estimator keeps a worklist of changed face pairs and
+ * re-examines only the rules which read those pairs.
+ *
+ * The UPPER/LOWER/UNDEFINED entries of each face are also held as
+ * bitsets so that the transitivity is examined a word at a time.
+ */
+class OverlapRelationEstimator {
+
+	private final int[][] orMat;
+	private final int faceNum;
+	private final int wordNum;
+
+	// [face][word]: bits of j such that orMat[face][j] is the value.
+	private final long[][] upperBits;
+	private final long[][] lowerBits;
+	private final long[][] undefinedBits;
+
+	// [subface][word]: bits of faces in the subface.
+	private final long[][] subFaceMembers;
+
+	// [face]: indices of subfaces which contain the face.
+	private final int[][] subFacesOfFace;
+
+	/**
+	 * (i, j, k) of "face[i] and face[j] touching edge is covered by face[k]"
+	 */
+	private final int[] triples;
+	private final PairIndex tripleIndex;
+
+	private final List<Condition4> condition4s;
+	private final PairIndex condition4Index;
+
+	// changed pairs (i < j) to be examined.
+	private int[] worklist = new int[64];
+	private int worklistSize = 0;
+	private final BitSet queued = new BitSet();
+
+	/**
+	 *
+	 * @param faces        folded faces whose tmpInt is the index.
+	 * @param faceGrid     grid of the folded faces.
+	 * @param subFaces     subfaces of the folded model.
+	 * @param condition4s  conditions of 4 faces.
+	 * @param orMat        overlap relation to be estimated.
+	 */
+	OverlapRelationEstimator(List<OriFace> faces, FoldedFaceGrid faceGrid, List<SubFace> subFaces,
+			List<Condition4> condition4s, int[][] orMat) {
+		this.orMat = orMat;
+		this.condition4s = condition4s;
+		faceNum = orMat.length;
+		wordNum = (faceNum + 63) / 64;
+
+		upperBits = new long[faceNum][wordNum];
+		lowerBits = new long[faceNum][wordNum];
+		undefinedBits = new long[faceNum][wordNum];
+		for (int i = 0; i < faceNum; i++) {
+			for (int j = 0; j < faceNum; j++) {
+				setBit(i, j, orMat[i][j]);
+			}
+		}
+
+		subFaceMembers = new long[subFaces.size()][wordNum];
+		int[] counts = new int[faceNum];
+		for (int s = 0; s < subFaces.size(); s++) {
+			for (OriFace face : subFaces.get(s).faces) {
+				subFaceMembers[s][face.tmpInt >> 6] |= 1L << face.tmpInt;
+				counts[face.tmpInt]++;
+			}
+		}
+		subFacesOfFace = new int[faceNum][];
+		for (int i = 0; i < faceNum; i++) {
+			subFacesOfFace[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int s = 0; s < subFaces.size(); s++) {
+			for (OriFace face : subFaces.get(s).faces) {
+				subFacesOfFace[face.tmpInt][counts[face.tmpInt]++] = s;
+			}
+		}
+
+		triples = createTriples(faces, faceGrid);
+		tripleIndex = new PairIndex(triples.length / 3 * 2);
+		for (int t = 0; t < triples.length / 3; t++) {
+			int i = triples[t * 3], j = triples[t * 3 + 1], k = triples[t * 3 + 2];
+			tripleIndex.add(i, k, t);
+			tripleIndex.add(j, k, t);
+		}
+		tripleIndex.sort();
+
+		condition4Index = new PairIndex(condition4s.size() * 6);
+		for (int c = 0; c < condition4s.size(); c++) {
+			Condition4 cond = condition4s.get(c);
+			int[] f = { cond.upper1, cond.lower1, cond.upper2, cond.lower2 };
+			for (int a = 0; a < 4; a++) {
+				for (int b = a + 1; b < 4; b++) {
+					condition4Index.add(f[a], f[b], c);
+				}
+			}
+		}
+		condition4Index.sort();
+	}
+
+	/**
+	 * The geometric test is done only once here, for the faces near each edge.
+	 */
+	private int[] createTriples(List<OriFace> faces, FoldedFaceGrid faceGrid) {
+		int[] result = new int[64];
+		int size = 0;
+		for (OriFace f_i : faces) {
+			for (OriHalfedge he : f_i.halfedges) {
+				if (he.pair == null) {
+					continue;
+				}
+				OriFace f_j = he.pair.face;
+
+				// a face crossed by the edge overlaps the bounding box of the edge.
+				for (int k : faceGrid.getCandidates(he.positionAfterFolded, he.next.positionAfterFolded)) {
+					OriFace f_k = faces.get(k);
+					if (f_k == f_i || f_k == f_j) {
+						continue;
+					}
+					if (GeomUtil.isLineCrossFace(f_k, he, 0.0001)) {
+						if (size + 3 > result.length) {
+							result = Arrays.copyOf(result, result.length * 2);
+						}
+						result[size++] = f_i.tmpInt;
+						result[size++] = f_j.tmpInt;
+						result[size++] = f_k.tmpInt;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Runs the rules until no entry can be decided.
+	 */
+	public void estimate() {
+		for (int t = 0; t < triples.length / 3; t++) {
+			examineTriple(t);
+		}
+		for (Condition4 cond : condition4s) {
+			examineCondition4(cond);
+		}
+
+		// all decided pairs are the seeds of transitivity.
+		for (int i = 0; i < faceNum; i++) {
+			for (int j = i + 1; j < faceNum; j++) {
+				if (orMat[i][j] == Doc.UPPER || orMat[i][j] == Doc.LOWER) {
+					push(i, j);
+				}
+			}
+		}
+
+		while (worklistSize > 0) {
+			int pair = worklist[--worklistSize];
+			queued.clear(pair);
+			int i = pair / faceNum;
+			int j = pair % faceNum;
+
+			for (int index = tripleIndex.first(i, j); index >= 0; index = tripleIndex.next(index, i, j)) {
+				examineTriple(tripleIndex.valueAt(index));
+			}
+			for (int index = condition4Index.first(i, j); index >= 0; index = condition4Index.next(index, i, j)) {
+				examineCondition4(condition4s.get(condition4Index.valueAt(index)));
+			}
+
+			if (orMat[i][j] == Doc.UPPER) {
+				examineTransitivity(i, j);
+			}
+			if (orMat[j][i] == Doc.UPPER) {
+				examineTransitivity(j, i);
+			}
+		}
+	}
+
+	// If face[i] and face[j] touching edge is covered by face[k]
+	// then OR[i][k] = OR[j][k]
+	private void examineTriple(int t) {
+		int i = triples[t * 3], j = triples[t * 3 + 1], k = triples[t * 3 + 2];
+
+		if (orMat[i][k] != Doc.UNDEFINED && orMat[j][k] == Doc.UNDEFINED) {
+			setOR(j, k, orMat[i][k]);
+		} else if (orMat[j][k] != Doc.UNDEFINED && orMat[i][k] == Doc.UNDEFINED) {
+			setOR(i, k, orMat[j][k]);
+		}
+	}
+
+	private void examineCondition4(Condition4 cond) {
+		// if: lower1 > upper2, then: upper1 > upper2, upper1 > lower2, lower1 > lower2
+		if (orMat[cond.lower1][cond.upper2] == Doc.LOWER) {
+			setLowerValueIfUndefined(cond.upper1, cond.upper2);
+			setLowerValueIfUndefined(cond.upper1, cond.lower2);
+			setLowerValueIfUndefined(cond.lower1, cond.lower2);
+		}
+
+		// if: lower2 > upper1, then: upper2 > upper1, upper2 > lower1, lower2 > lower1
+		if (orMat[cond.lower2][cond.upper1] == Doc.LOWER) {
+			setLowerValueIfUndefined(cond.upper2, cond.upper1);
+			setLowerValueIfUndefined(cond.upper2, cond.lower1);
+			setLowerValueIfUndefined(cond.lower2, cond.lower1);
+		}
+
+		// if: upper1 > upper2 > lower1, then: upper1 > lower2, lower2 > lower1
+		if (orMat[cond.upper1][cond.upper2] == Doc.LOWER
+				&& orMat[cond.upper2][cond.lower1] == Doc.LOWER) {
+			setLowerValueIfUndefined(cond.upper1, cond.lower2);
+			setLowerValueIfUndefined(cond.lower2, cond.lower1);
+		}
+
+		// if: upper1 > lower2 > lower1, then: upper1 > upper2, upper2 > lower1
+		if (orMat[cond.upper1][cond.lower2] == Doc.LOWER
+				&& orMat[cond.lower2][cond.lower1] == Doc.LOWER) {
+			setLowerValueIfUndefined(cond.upper1, cond.upper2);
+			setLowerValueIfUndefined(cond.upper2, cond.lower1);
+		}
+
+		// if: upper2 > upper1 > lower2, then: upper2 > lower1, lower1 > lower2
+		if (orMat[cond.upper2][cond.upper1] == Doc.LOWER
+				&& orMat[cond.upper1][cond.lower2] == Doc.LOWER) {
+			setLowerValueIfUndefined(cond.upper2, cond.lower1);
+			setLowerValueIfUndefined(cond.lower1, cond.lower2);
+		}
+
+		// if: upper2 > lower1 > lower2, then: upper2 > upper1, upper1 > lower2
+		if (orMat[cond.upper2][cond.lower1] == Doc.LOWER
+				&& orMat[cond.lower1][cond.lower2] == Doc.LOWER) {
+			setLowerValueIfUndefined(cond.upper2, cond.upper1);
+			setLowerValueIfUndefined(cond.upper1, cond.lower2);
+		}
+	}
+
+	/**
+	 * If the subface a>b and b>c then a>c.
+	 * Given top > bottom, finds the faces of the common subfaces which make
+	 * a chain with the pair and whose relation is undefined.
+	 */
+	private void examineTransitivity(int top, int bottom) {
+		int[] subFaceIndices = subFacesOfFace[top];
+		for (int s : subFaceIndices) {
+			long[] members = subFaceMembers[s];
+			if ((members[bottom >> 6] & (1L << bottom)) == 0) {
+				continue;
+			}
+
+			for (int w = 0; w < wordNum; w++) {
+				// top > bottom > c
+				long bits = upperBits[bottom][w] & members[w] & undefinedBits[top][w];
+				while (bits != 0) {
+					int c = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					setUpperPair(top, c);
+				}
+
+				// c > top > bottom
+				bits = lowerBits[top][w] & members[w] & undefinedBits[bottom][w];
+				while (bits != 0) {
+					int c = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					setUpperPair(c, bottom);
+				}
+			}
+		}
+	}
+
+	private void setUpperPair(int i, int j) {
+		set(i, j, Doc.UPPER);
+		set(j, i, Doc.LOWER);
+	}
+
+	private void setOR(int i, int j, int value) {
+		set(i, j, value);
+		if (value == Doc.LOWER) {
+			set(j, i, Doc.UPPER);
+		} else {
+			set(j, i, Doc.LOWER);
+		}
+	}
+
+	private void setLowerValueIfUndefined(int i, int j) {
+		if (orMat[i][j] == Doc.UNDEFINED) {
+			set(i, j, Doc.LOWER);
+			set(j, i, Doc.UPPER);
+		}
+	}
+
+	private void set(int i, int j, int value) {
+		int old = orMat[i][j];
+		if (old == value) {
+			return;
+		}
+		clearBit(i, j, old);
+		orMat[i][j] = value;
+		setBit(i, j, value);
+
+		push(Math.min(i, j), Math.max(i, j));
+	}
+
+	private void push(int i, int j) {
+		int pair = i * faceNum + j;
+		if (queued.get(pair)) {
+			return;
+		}
+		queued.set(pair);
+		if (worklistSize == worklist.length) {
+			worklist = Arrays.copyOf(worklist, worklistSize * 2);
+		}
+		worklist[worklistSize++] = pair;
+	}
+
+	private long[][] bitsOf(int value) {
+		switch (value) {
+		case Doc.UPPER:
+			return upperBits;
+		case Doc.LOWER:
+			return lowerBits;
+		case Doc.UNDEFINED:
+			return undefinedBits;
+		default:
+			return null;
+		}
+	}
+
+	private void setBit(int i, int j, int value) {
+		long[][] bits = bitsOf(value);
+		if (bits != null) {
+			bits[i][j >> 6] |= 1L << j;
+		}
+	}
+
+	private void clearBit(int i, int j, int value) {
+		long[][] bits = bitsOf(value);
+		if (bits != null) {
+			bits[i][j >> 6] &= ~(1L << j);
+		}
+	}
+
+	/**
+	 * Sorted multimap from an unordered face pair to int values.
+	 */
+	private class PairIndex {
+		private long[] entries;
+		private int size = 0;
+
+		PairIndex(int capacity) {
+			entries = new long[Math.max(capacity, 1)];
+		}
+
+		void add(int a, int b, int value) {
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			entries[size++] = (key(a, b) << 32) | value;
+		}
+
+		void sort() {
+			entries = Arrays.copyOf(entries, size);
+			Arrays.sort(entries);
+		}
+
+		/**
+		 * @return the position of the first value of the pair. -1 if not found.
+		 */
+		int first(int a, int b) {
+			long target = key(a, b) << 32;
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (entries[mid] < target) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low < size && (entries[low] >>> 32) == key(a, b) ? low : -1;
+		}
+
+		int next(int index, int a, int b) {
+			index++;
+			return index < size && (entries[index] >>> 32) == key(a, b) ? index : -1;
+		}
+
+		int valueAt(int index) {
+			return (int) entries[index];
+		}
+
+		private long key(int a, int b) {
+			return a < b ? (long) a * faceNum + b : (long) b * faceNum + a;
+		}
+	}
+}
@@ -101,6 +101,29 @@ public class SubFace {
 		return answerStacks.size();
 	}
 
+	/**
+	 * converts {@link #answerStacks} into face indices ({@link OriFace#tmpInt})
+	 * so that the search does not depend on the face objects.
+	 *
+	 * @return face indices of each answer stack from top.
+	 *         if the order is already decided, one empty stack is returned.
+	 */
+	public int[][] createCandidateIndices() {
+		if (allFaceOrderDecided) {
+			return new int[][] { new int[0] };
+		}
+
+		int[][] candidates = new int[answerStacks.size()][];
+		for (int k = 0; k < candidates.length; k++) {
+			ArrayList<OriFace> stack = answerStacks.get(k);
+			candidates[k] = new int[stack.size()];
+			for (int i = 0; i < stack.size(); i++) {
+				candidates[k][i] = stack.get(i).tmpInt;
+			}
+		}
+		return candidates;
+	}
+
 	public Vector2d getInnerPoint() {
 		Vector2d c = new Vector2d();
 		for (OriHalfedge he : outline.halfedges) {
@@ -0,0 +1,314 @@
+package oripa.geom;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import oripa.value.OriLine;
+
+/**
+ * Removes the lines at the same position as another line.
+ *
+ * Each kept line is hashed by both of its end points into cells of
+ * size eps, so that a line is compared only with the kept lines having
+ * an end point in the cells around its own end point.
+ * The result is the same as comparing every pair by
+ * {@link GeomUtil#isSameLineSegment(OriLine, OriLine)} when eps is
+ * {@link GeomUtil#EPS}: the first one of the same lines is kept.
+ *
+ * Optionally, collinear lines of the same type sharing a part longer
+ * than eps are merged into one line. Touching at an end point is not
+ * sharing a part, since another line may end at the point.
+ */
+public class DuplicateLineRemover {
+
+    /**
+     * collinear lines are searched among the lines whose angles are
+     * in the same or the next cell. Lines differing more than a cell
+     * are not parallel for {@link GeomUtil#isParallel(double, double, double, double)}.
+     */
+    private static final double ANGLE_CELL = Math.PI / 180;
+    private static final int ANGLE_CELL_COUNT = 180;
+
+    private final double eps;
+    private boolean mergesOverlaps = false;
+
+    /**
+     *
+     * @param eps  end points closer than this distance are the same.
+     */
+    public DuplicateLineRemover(double eps) {
+        this.eps = eps;
+    }
+
+    /**
+     *
+     * @param mergesOverlaps  true if collinear lines sharing a part should
+     *                        be merged.
+     */
+    public void setMergesOverlaps(boolean mergesOverlaps) {
+        this.mergesOverlaps = mergesOverlaps;
+    }
+
+    /**
+     * removes the duplicated lines from the given collection.
+     * @param lines
+     * @return true if any line is removed.
+     */
+    public boolean clean(Collection<OriLine> lines) {
+        List<OriLine> cleaned = removeDuplicates(lines);
+        if (cleaned.size() == lines.size()) {
+            return false;
+        }
+
+        lines.clear();
+        lines.addAll(cleaned);
+        return true;
+    }
+
+    /**
+     *
+     * @param lines
+     * @return the lines without duplicates, in the given order.
+     *         The merged line takes the place of the first line of its parts.
+     */
+    public List<OriLine> removeDuplicates(Collection<OriLine> lines) {
+        List<OriLine> kept = new ArrayList<>(lines.size());
+        Map<Long, List<OriLine>> cells = new HashMap<>();
+
+        for (OriLine line : lines) {
+            if (findSame(line, cells) != null) {
+                continue;
+            }
+            kept.add(line);
+            addToCell(line.p0.x, line.p0.y, line, cells);
+            addToCell(line.p1.x, line.p1.y, line, cells);
+        }
+
+        if (mergesOverlaps) {
+            return mergeOverlaps(kept);
+        }
+        return kept;
+    }
+
+    private OriLine findSame(OriLine line, Map<Long, List<OriLine>> cells) {
+        long cx = cellIndex(line.p0.x);
+        long cy = cellIndex(line.p0.y);
+
+        for (long x = cx - 1; x <= cx + 1; x++) {
+            for (long y = cy - 1; y <= cy + 1; y++) {
+                List<OriLine> cell = cells.get(cellKey(x, y));
+                if (cell == null) {
+                    continue;
+                }
+                for (OriLine other : cell) {
+                    if (GeomUtil.isSameLineSegment(
+                            other.p0.x, other.p0.y, other.p1.x, other.p1.y,
+                            line.p0.x, line.p0.y, line.p1.x, line.p1.y, eps)) {
+                        return other;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addToCell(double px, double py, OriLine line, Map<Long, List<OriLine>> cells) {
+        Long key = cellKey(cellIndex(px), cellIndex(py));
+        List<OriLine> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(2);
+            cells.put(key, cell);
+        }
+        if (!cell.contains(line)) {
+            cell.add(line);
+        }
+    }
+
+    private long cellIndex(double x) {
+        return (long) Math.floor(x / eps);
+    }
+
+    private Long cellKey(long x, long y) {
+        return (x << 32) ^ (y & 0xffffffffL);
+    }
+
+    /**
+     * The lines are grouped by the angle and sorted by the distance from
+     * the origin in each pair of neighboring angle cells, so that only
+     * the lines nearly on the same supporting line are compared.
+     */
+    private List<OriLine> mergeOverlaps(List<OriLine> lines) {
+        int count = lines.size();
+
+        double radius = 0;
+        List<List<Integer>> angleCells = new ArrayList<>(ANGLE_CELL_COUNT);
+        for (int i = 0; i < ANGLE_CELL_COUNT; i++) {
+            angleCells.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < count; i++) {
+            OriLine line = lines.get(i);
+            double angle = Math.atan2(line.p1.y - line.p0.y, line.p1.x - line.p0.x);
+            if (angle < 0) {
+                angle += Math.PI;
+            }
+            int cell = (int) (angle / ANGLE_CELL) % ANGLE_CELL_COUNT;
+            angleCells.get(cell).add(i);
+
+            radius = Math.max(radius, Math.hypot(line.p0.x, line.p0.y));
+            radius = Math.max(radius, Math.hypot(line.p1.x, line.p1.y));
+        }
+
+        // collinear lines in two cells differ this much at most in the distance.
+        double window = eps * 2 + radius * Math.sin(ANGLE_CELL * 2) * 2;
+
+        final double[] distances = new double[count];
+        int[] groups = new int[count];
+        for (int i = 0; i < count; i++) {
+            groups[i] = i;
+        }
+
+        for (int c = 0; c < ANGLE_CELL_COUNT; c++) {
+            List<Integer> candidates = new ArrayList<>(angleCells.get(c));
+            candidates.addAll(angleCells.get((c + 1) % ANGLE_CELL_COUNT));
+            if (candidates.size() < 2) {
+                continue;
+            }
+
+            // normal of the direction at the boundary of the two cells
+            double angle = ANGLE_CELL * (c + 1);
+            final double nx = -Math.sin(angle);
+            final double ny = Math.cos(angle);
+
+            for (int i : candidates) {
+                OriLine line = lines.get(i);
+                distances[i] = ((line.p0.x + line.p1.x) * nx + (line.p0.y + line.p1.y) * ny) / 2;
+            }
+            Collections.sort(candidates, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i, Integer j) {
+                    return Double.compare(distances[i], distances[j]);
+                }
+            });
+
+            for (int s = 0; s < candidates.size(); s++) {
+                int i = candidates.get(s);
+                for (int t = s + 1; t < candidates.size(); t++) {
+                    int j = candidates.get(t);
+                    if (distances[j] - distances[i] > window) {
+                        break;
+                    }
+                    if (isOverlapping(lines.get(i), lines.get(j))) {
+                        union(groups, i, j);
+                    }
+                }
+            }
+        }
+
+        // the first line of each group represents the group.
+        Map<Integer, List<OriLine>> members = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int root = find(groups, i);
+            List<OriLine> group = members.get(root);
+            if (group == null) {
+                group = new ArrayList<>(1);
+                members.put(root, group);
+            }
+            group.add(lines.get(i));
+        }
+
+        List<OriLine> merged = new ArrayList<>(members.size());
+        boolean[] done = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int root = find(groups, i);
+            if (done[root]) {
+                continue;
+            }
+            done[root] = true;
+            merged.add(span(members.get(root)));
+        }
+        return merged;
+    }
+
+    private boolean isOverlapping(OriLine l0, OriLine l1) {
+        if (l0.typeVal != l1.typeVal) {
+            return false;
+        }
+
+        if (GeomUtil.DistancePointToLine(l1.p0.x, l1.p0.y, l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y) >= eps
+                || GeomUtil.DistancePointToLine(l1.p1.x, l1.p1.y, l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y) >= eps
+                || GeomUtil.DistancePointToLine(l0.p0.x, l0.p0.y, l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y) >= eps
+                || GeomUtil.DistancePointToLine(l0.p1.x, l0.p1.y, l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y) >= eps) {
+            return false;
+        }
+
+        double dx = l0.p1.x - l0.p0.x;
+        double dy = l0.p1.y - l0.p0.y;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length < eps) {
+            return false;
+        }
+        dx /= length;
+        dy /= length;
+
+        double t0 = (l1.p0.x - l0.p0.x) * dx + (l1.p0.y - l0.p0.y) * dy;
+        double t1 = (l1.p1.x - l0.p0.x) * dx + (l1.p1.y - l0.p0.y) * dy;
+
+        double shared = Math.min(length, Math.max(t0, t1)) - Math.max(0, Math.min(t0, t1));
+        return shared > eps;
+    }
+
+    /**
+     * @return the line covering all of the given collinear lines,
+     *         or the line itself if only one is given.
+     */
+    private OriLine span(List<OriLine> group) {
+        OriLine first = group.get(0);
+        if (group.size() == 1) {
+            return first;
+        }
+
+        double dx = first.p1.x - first.p0.x;
+        double dy = first.p1.y - first.p0.y;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        dx /= length;
+        dy /= length;
+
+        double min = 0;
+        double max = length;
+        for (OriLine line : group) {
+            double t0 = (line.p0.x - first.p0.x) * dx + (line.p0.y - first.p0.y) * dy;
+            double t1 = (line.p1.x - first.p0.x) * dx + (line.p1.y - first.p0.y) * dy;
+            min = Math.min(min, Math.min(t0, t1));
+            max = Math.max(max, Math.max(t0, t1));
+        }
+
+        return new OriLine(
+                first.p0.x + dx * min, first.p0.y + dy * min,
+                first.p0.x + dx * max, first.p0.y + dy * max,
+                first.typeVal);
+    }
+
+    private int find(int[] groups, int i) {
+        while (groups[i] != i) {
+            groups[i] = groups[groups[i]];
+            i = groups[i];
+        }
+        return i;
+    }
+
+    private void union(int[] groups, int i, int j) {
+        int ri = find(groups, i);
+        int rj = find(groups, j);
+        // the smaller index is the root so that the first line represents the group.
+        if (ri < rj) {
+            groups[rj] = ri;
+        } else if (rj < ri) {
+            groups[ri] = rj;
+        }
+    }
+}
@@ -51,71 +51,55 @@ public class GeomUtil {
     }
 
     public static boolean isParallel(Vector2d dir0, Vector2d dir1) {
-        // tolerance of 1 degree
-        return dir0.angle(dir1) < Math.PI / 180 || dir0.angle(dir1) > Math.PI * 179.0 / 180;
+        return isParallel(dir0.x, dir0.y, dir1.x, dir1.y);
     }
 
-    public static boolean isSegmentsCross(Vector2d p0, Vector2d p1, Vector2d q0, Vector2d q1) {
-
-        // Rough check
-        // Check by coordinates x
-        if (p0.x >= p1.x) {
-            if ((p0.x < q0.x && p0.x < q1.x) || (p1.x > q0.x && p1.x > q1.x)) {
-                return false;
-            }
-        } else {
-            if ((p1.x < q0.x && p1.x < q1.x) || (p0.x > q0.x && p0.x > q1.x)) {
-                return false;
-            }
-        }
-
-        // checked by the coordinate y
-        if (p0.y >= p1.y) {
-            if ((p0.y < q0.y && p0.y < q1.y) || (p1.y > q0.y && p1.y > q1.y)) {
-                return false;
-            }
-        } else {
-            if ((p1.y < q0.y && p1.y < q1.y) || (p0.y > q0.y && p0.y > q1.y)) {
-                return false;
-            }
+    public static boolean isParallel(double dx0, double dy0, double dx1, double dy1) {
+        // the same as Vector2d.angle()
+        double cos = (dx0 * dx1 + dy0 * dy1)
+                / (Math.sqrt(dx0 * dx0 + dy0 * dy0) * Math.sqrt(dx1 * dx1 + dy1 * dy1));
+        if (cos < -1.0) {
+            cos = -1.0;
         }
-
-        // >= 0.0 means that when p0 == q0, for example, returns false
-        if (((p0.x - p1.x) * (q0.y - p0.y) + (p0.y - p1.y) * (p0.x - q0.x))
-                * ((p0.x - p1.x) * (q1.y - p0.y) + (p0.y - p1.y) * (p0.x - q1.x)) >= 0.0) {
-            return false;
+        if (cos > 1.0) {
+            cos = 1.0;
         }
+        double angle = Math.acos(cos);
 
-        if (((q0.x - q1.x) * (p0.y - q0.y) + (q0.y - q1.y) * (q0.x - p0.x))
-                * ((q0.x - q1.x) * (p1.y - q0.y) + (q0.y - q1.y) * (q0.x - p1.x)) >= 0.0) {
-            return false;
-        }
+        // tolerance of 1 degree
+        return angle < Math.PI / 180 || angle > Math.PI * 179.0 / 180;
+    }
 
-        return true;
+    /**
+     * Touching at an end point is not a cross.
+     * The result is exact for the given coordinates.
+     */
+    public static boolean isSegmentsCross(Vector2d p0, Vector2d p1, Vector2d q0, Vector2d q1) {
+        return RobustPredicates.isCrossing(p0.x, p0.y, p1.x, p1.y, q0.x, q0.y, q1.x, q1.y);
     }
 
     public static boolean isLineSegmentsOverlap(Vector2d s0, Vector2d e0, Vector2d s1, Vector2d e1) {
-        // Whether or not is parallel
-        Vector2d dir0 = new Vector2d(e0);
-        dir0.sub(s0);
-        Vector2d dir1 = new Vector2d(e1);
-        dir1.sub(s1);
+        return isLineSegmentsOverlap(s0.x, s0.y, e0.x, e0.y, s1.x, s1.y, e1.x, e1.y);
+    }
 
-        if (!isParallel(dir0, dir1)) {
+    public static boolean isLineSegmentsOverlap(double s0x, double s0y, double e0x, double e0y,
+            double s1x, double s1y, double e1x, double e1y) {
+        // Whether or not is parallel
+        if (!isParallel(e0x - s0x, e0y - s0y, e1x - s1x, e1y - s1y)) {
             return false;
         }
 
         int cnt = 0;
-        if (DistancePointToSegment(s0, s1, e1) < EPS) {
+        if (DistancePointToSegment(s0x, s0y, s1x, s1y, e1x, e1y) < EPS) {
             cnt++;
         }
-        if (DistancePointToSegment(e0, s1, e1) < EPS) {
+        if (DistancePointToSegment(e0x, e0y, s1x, s1y, e1x, e1y) < EPS) {
             cnt++;
         }
-        if (DistancePointToSegment(s1, s0, e0) < EPS) {
+        if (DistancePointToSegment(s1x, s1y, s0x, s0y, e0x, e0y) < EPS) {
             cnt++;
         }
-        if (DistancePointToSegment(e1, s0, e0) < EPS) {
+        if (DistancePointToSegment(e1x, e1y, s0x, s0y, e0x, e0y) < EPS) {
             cnt++;
         }
 
@@ -198,10 +182,21 @@ public class GeomUtil {
     }
 
     public static boolean isSameLineSegment(OriLine l0, OriLine l1) {
-        if (Distance(l0.p0, l1.p0) < EPS && Distance(l0.p1, l1.p1) < EPS) {
+        return isSameLineSegment(l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y,
+                l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y);
+    }
+
+    public static boolean isSameLineSegment(double x0, double y0, double x1, double y1,
+            double x2, double y2, double x3, double y3) {
+        return isSameLineSegment(x0, y0, x1, y1, x2, y2, x3, y3, EPS);
+    }
+
+    public static boolean isSameLineSegment(double x0, double y0, double x1, double y1,
+            double x2, double y2, double x3, double y3, double eps) {
+        if (Distance(x0, y0, x2, y2) < eps && Distance(x1, y1, x3, y3) < eps) {
             return true;
         }
-        if (Distance(l0.p0, l1.p1) < EPS && Distance(l0.p1, l1.p0) < EPS) {
+        if (Distance(x0, y0, x3, y3) < eps && Distance(x1, y1, x2, y2) < eps) {
             return true;
         }
 
@@ -420,164 +415,186 @@ public class GeomUtil {
         return new Vector2d(x0 + t * sub.x, y0 + t * sub.y);
     }
 
-    public static double DistancePointToSegment(Vector2d p, Vector2d sp, Vector2d ep) {
-        double x0 = sp.x;
-        double y0 = sp.y;
-        double x1 = ep.x;
-        double y1 = ep.y;
-        double px = p.x;
-        double py = p.y;
-        Vector2d sub0, sub, sub0b;
+    /**
+     * a quick test to reject far segments before computing their cross point.
+     * 
+     * @return true if the segments are farther than eps from each other
+     *         since one lies on one side of the line extending the other.
+     *         false does not mean they meet.
+     */
+    public static boolean isSeparated(Vector2d p0, Vector2d p1, Vector2d q0, Vector2d q1, double eps) {
+        return isOnOneSide(p0, p1, q0, q1, eps) || isOnOneSide(q0, q1, p0, p1, eps);
+    }
 
-        sub0 = new Vector2d(x0 - px, y0 - py);
-        sub0b = new Vector2d(-sub0.x, -sub0.y);
-        sub = new Vector2d(x1 - x0, y1 - y0);
+    private static boolean isOnOneSide(Vector2d p0, Vector2d p1, Vector2d q0, Vector2d q1, double eps) {
+        double dx = p1.x - p0.x;
+        double dy = p1.y - p0.y;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return false;
+        }
+        double d0 = (dx * (q0.y - p0.y) - dy * (q0.x - p0.x)) / length;
+        double d1 = (dx * (q1.y - p0.y) - dy * (q1.x - p0.x)) / length;
 
-        double t = ((sub.x * sub0b.x) + (sub.y * sub0b.y))
-                / ((sub.x * sub.x) + (sub.y * sub.y));
+        return (d0 > eps && d1 > eps) || (d0 < -eps && d1 < -eps);
+    }
+
+    public static double DistancePointToSegment(Vector2d p, Vector2d sp, Vector2d ep) {
+        return DistancePointToSegment(p.x, p.y, sp.x, sp.y, ep.x, ep.y);
+    }
+
+    public static double DistancePointToSegment(double px, double py,
+            double x0, double y0, double x1, double y1) {
+        double t = getNearestParam(px, py, x0, y0, x1, y1);
 
         if (t < 0.0) {
             return Distance(px, py, x0, y0);
         } else if (t > 1.0) {
             return Distance(px, py, x1, y1);
         } else {
-            return Distance(x0 + t * sub.x, y0 + t * sub.y, px, py);
+            return Distance(x0 + t * (x1 - x0), y0 + t * (y1 - y0), px, py);
         }
-
     }
 
     public static double DistancePointToSegment(Vector2d p, Vector2d sp, Vector2d ep, Vector2d nearestPoint) {
-        double x0 = sp.x;
-        double y0 = sp.y;
-        double x1 = ep.x;
-        double y1 = ep.y;
-        double px = p.x;
-        double py = p.y;
-        Vector2d sub0, sub, sub0b;
-
-        sub0 = new Vector2d(x0 - px, y0 - py);
-        sub0b = new Vector2d(-sub0.x, -sub0.y);
-        sub = new Vector2d(x1 - x0, y1 - y0);
-
-        double t = ((sub.x * sub0b.x) + (sub.y * sub0b.y))
-                / ((sub.x * sub.x) + (sub.y * sub.y));
+        double t = getNearestParam(p.x, p.y, sp.x, sp.y, ep.x, ep.y);
 
         if (t < 0.0) {
             nearestPoint.set(sp);
-            return Distance(px, py, x0, y0);
         } else if (t > 1.0) {
             nearestPoint.set(ep);
-            return Distance(px, py, x1, y1);
         } else {
-            nearestPoint.set(x0 + t * sub.x, y0 + t * sub.y);
-            return Distance(x0 + t * sub.x, y0 + t * sub.y, px, py);
+            nearestPoint.set(sp.x + t * (ep.x - sp.x), sp.y + t * (ep.y - sp.y));
         }
+        return DistancePointToSegment(p.x, p.y, sp.x, sp.y, ep.x, ep.y);
+    }
+
+    /**
+     * 
+     * @param nearestPoint  {x, y} of the nearest point on the segment is stored.
+     */
+    public static double DistancePointToSegment(double px, double py,
+            double x0, double y0, double x1, double y1, double[] nearestPoint) {
+        double t = getNearestParam(px, py, x0, y0, x1, y1);
 
+        if (t < 0.0) {
+            nearestPoint[0] = x0;
+            nearestPoint[1] = y0;
+        } else if (t > 1.0) {
+            nearestPoint[0] = x1;
+            nearestPoint[1] = y1;
+        } else {
+            nearestPoint[0] = x0 + t * (x1 - x0);
+            nearestPoint[1] = y0 + t * (y1 - y0);
+        }
+        return DistancePointToSegment(px, py, x0, y0, x1, y1);
     }
 
     public static double DistancePointToLine(Vector2d p, Line line) {
-        double x0 = line.p.x;
-        double y0 = line.p.y;
-        double x1 = line.p.x + line.dir.x;
-        double y1 = line.p.y + line.dir.y;
-        double px = p.x;
-        double py = p.y;
-        Vector2d sub0, sub, sub0b;
+        return DistancePointToLine(p.x, p.y, line.p.x, line.p.y,
+                line.p.x + line.dir.x, line.p.y + line.dir.y);
+    }
 
-        sub0 = new Vector2d(x0 - px, y0 - py);
-        sub0b = new Vector2d(-sub0.x, -sub0.y);
-        sub = new Vector2d(x1 - x0, y1 - y0);
+    /**
+     * distance between p and the line passing through (x0, y0) and (x1, y1).
+     */
+    public static double DistancePointToLine(double px, double py,
+            double x0, double y0, double x1, double y1) {
+        double t = getNearestParam(px, py, x0, y0, x1, y1);
 
-        double t = ((sub.x * sub0b.x) + (sub.y * sub0b.y))
-                / ((sub.x * sub.x) + (sub.y * sub.y));
+        return Distance(x0 + t * (x1 - x0), y0 + t * (y1 - y0), px, py);
+    }
 
-        return Distance(x0 + t * sub.x, y0 + t * sub.y, px, py);
+    /**
+     * 
+     * @return t of the nearest point (x0, y0) + t * (x1 - x0, y1 - y0)
+     *         on the line to p.
+     */
+    private static double getNearestParam(double px, double py,
+            double x0, double y0, double x1, double y1) {
+        double subX = x1 - x0;
+        double subY = y1 - y0;
 
+        return ((subX * (px - x0)) + (subY * (py - y0)))
+                / ((subX * subX) + (subY * subY));
     }
 
     // (Including endpoints) intersection between two line segments
     public static Vector2d getCrossPoint(Vector2d p0, Vector2d p1, Vector2d q0, Vector2d q1) {
-        Vector2d d0 = new Vector2d(p1.x - p0.x, p1.y - p0.y);
-        Vector2d d1 = new Vector2d(q1.x - q0.x, q1.y - q0.y);
-        Vector2d diff = new Vector2d(q0.x - p0.x, q0.y - p0.y);
-        double det = d1.x * d0.y - d1.y * d0.x;
-
-        double epsilon = 1.0e-6;
-        if (det * det > epsilon * d0.lengthSquared() * d1.lengthSquared()) {
-            // Lines intersect in a single point.  Return both s and t values for
-            // use by calling functions.
-            double invDet = 1.0 / det;
-            double s = (d1.x * diff.y - d1.y * diff.x) * invDet;
-            double t = (d0.x * diff.y - d0.y * diff.x) * invDet;
-
-            if (t < 0.0 - epsilon || t > 1.0 + epsilon) {
-                return null;
-            } else if (s < 0.0 - epsilon || s > 1.0 + epsilon) {
-                return null;
-            } else {
-                Vector2d cp = new Vector2d();
-                cp.x = (1.0 - t) * q0.x + t * q1.x;
-                cp.y = (1.0 - t) * q0.y + t * q1.y;
-                return cp;
-            }
-
+        double[] cp = new double[2];
+        if (getCrossPoint(p0.x, p0.y, p1.x, p1.y, q0.x, q0.y, q1.x, q1.y, cp)) {
+            return new Vector2d(cp[0], cp[1]);
         }
         return null;
     }
 
     public static Vector2d getCrossPoint(OriLine l0, OriLine l1) {
-        return getCrossPoint(l0, l1, 1.0e-6);
-    }
-
-    private static Vector2d getCrossPoint(OriLine l0, OriLine l1, double epsilon) {
-        Vector2d p0 = new Vector2d(l0.p0);
-        Vector2d p1 = new Vector2d(l0.p1);
+        return getCrossPoint(l0.p0, l0.p1, l1.p0, l1.p1);
+    }
+
+    /**
+     * (Including endpoints) intersection between the segments p0-p1 and q0-q1.
+     * 
+     * @param crossPoint  {x, y} of the intersection is stored.
+     * @return false if the segments do not cross or are parallel.
+     */
+    public static boolean getCrossPoint(double p0x, double p0y, double p1x, double p1y,
+            double q0x, double q0y, double q1x, double q1y, double[] crossPoint) {
+        double d0x = p1x - p0x;
+        double d0y = p1y - p0y;
+        double d1x = q1x - q0x;
+        double d1y = q1y - q0y;
+        double diffX = q0x - p0x;
+        double diffY = q0y - p0y;
+        double det = d1x * d0y - d1y * d0x;
 
-        Vector2d d0 = new Vector2d(p1.x - p0.x, p1.y - p0.y);
-        Vector2d d1 = new Vector2d(l1.p1.x - l1.p0.x, l1.p1.y - l1.p0.y);
-        Vector2d diff = new Vector2d(l1.p0.x - p0.x, l1.p0.y - p0.y);
-        double det = d1.x * d0.y - d1.y * d0.x;
-
-        if (det * det > epsilon * d0.lengthSquared() * d1.lengthSquared()) {
+        double epsilon = 1.0e-6;
+        if (det * det > epsilon * (d0x * d0x + d0y * d0y) * (d1x * d1x + d1y * d1y)) {
             // Lines intersect in a single point.  Return both s and t values for
             // use by calling functions.
             double invDet = 1.0 / det;
-            double s = (d1.x * diff.y - d1.y * diff.x) * invDet;
-            double t = (d0.x * diff.y - d0.y * diff.x) * invDet;
+            double s = (d1x * diffY - d1y * diffX) * invDet;
+            double t = (d0x * diffY - d0y * diffX) * invDet;
 
             if (t < 0.0 - epsilon || t > 1.0 + epsilon) {
-                return null;
+                return false;
             } else if (s < 0.0 - epsilon || s > 1.0 + epsilon) {
-                return null;
+                return false;
             } else {
-                Vector2d cp = new Vector2d();
-                cp.x = (1.0 - t) * l1.p0.x + t * l1.p1.x;
-                cp.y = (1.0 - t) * l1.p0.y + t * l1.p1.y;
-                return cp;
+                crossPoint[0] = (1.0 - t) * q0x + t * q1x;
+                crossPoint[1] = (1.0 - t) * q0y + t * q1y;
+                return true;
             }
 
         }
-        return null;
+        return false;
     }
 
 //    Obtain the parameters for the intersection of the segments p0-p1 and q0-q1
 //    The param stores the position of the intersection
 //    Returns false if parallel
     public static boolean getCrossPointParam(Vector2d p0, Vector2d p1, Vector2d q0, Vector2d q1, double[] param) {
+        return getCrossPointParam(p0.x, p0.y, p1.x, p1.y, q0.x, q0.y, q1.x, q1.y, param);
+    }
 
-        Vector2d d0 = new Vector2d(p1.x - p0.x, p1.y - p0.y);
-        Vector2d d1 = new Vector2d(q1.x - q0.x, q1.y - q0.y);
-        Vector2d diff = new Vector2d(q0.x - p0.x, q0.y - p0.y);
-        double det = d1.x * d0.y - d1.y * d0.x;
+    public static boolean getCrossPointParam(double p0x, double p0y, double p1x, double p1y,
+            double q0x, double q0y, double q1x, double q1y, double[] param) {
+        double d0x = p1x - p0x;
+        double d0y = p1y - p0y;
+        double d1x = q1x - q0x;
+        double d1y = q1y - q0y;
+        double diffX = q0x - p0x;
+        double diffY = q0y - p0y;
+        double det = d1x * d0y - d1y * d0x;
 
         double epsilon = 1.0e-6;
-        if (det * det > epsilon * d0.lengthSquared() * d1.lengthSquared()) {
+        if (det * det > epsilon * (d0x * d0x + d0y * d0y) * (d1x * d1x + d1y * d1y)) {
             // Lines intersect in a single point.  Return both s and t values for
             // use by calling functions.
             double invDet = 1.0 / det;
             
-            param[0] = (d1.x * diff.y - d1.y * diff.x) * invDet;
-            param[1] = (d0.x * diff.y - d0.y * diff.x) * invDet;
+            param[0] = (d1x * diffY - d1y * diffX) * invDet;
+            param[1] = (d0x * diffY - d0y * diffX) * invDet;
             return true;
         }
         return false;
@@ -594,60 +611,35 @@ public class GeomUtil {
     }
 
     public static double Distance(Vector2d p, Line line, double[] param) {
-        Vector2d sub0, sub, sub0b;
         double x0 = line.p.x;
         double y0 = line.p.y;
         double x1 = line.p.x + line.dir.x;
         double y1 = line.p.y + line.dir.y;
-        double px = p.x;
-        double py = p.y;
-
-        sub0 = new Vector2d(x0 - px, y0 - py);
-        sub0b = new Vector2d(-sub0.x, -sub0.y);
-        sub = new Vector2d(x1 - x0, y1 - y0);
-
-        double t = ((sub.x * sub0b.x) + (sub.y * sub0b.y))
-                / ((sub.x * sub.x) + (sub.y * sub.y));
 
-        param[0] = t;
-        return Distance(x0 + t * sub.x, y0 + t * sub.y, px, py);
+        param[0] = getNearestParam(p.x, p.y, x0, y0, x1, y1);
+        return DistancePointToLine(p.x, p.y, x0, y0, x1, y1);
     }
 
 //  Investigate the relationship between the point q with the segment p0, p1
     public static boolean CCWcheck(Vector2d p0, Vector2d p1, Vector2d q) {
-        double dx1, dx2, dy1, dy2;
-
-        dx1 = p1.x - p0.x;
-        dy1 = p1.y - p0.y;
-        dx2 = q.x - p0.x;
-        dy2 = q.y - p0.y;
+        return CCWcheck(p0.x, p0.y, p1.x, p1.y, q.x, q.y);
+    }
 
-        if (dx1 * dy2 > dy1 * dx2) {
-            return true; 
-        } 
-        return false;
+    /**
+     * The sign is exact even if q is nearly on the line of p0 and p1,
+     * so that the same points give the same answer in any order of the calls.
+     * @return true if q is on the left side of p0 to p1.
+     */
+    public static boolean CCWcheck(double p0x, double p0y, double p1x, double p1y,
+            double qx, double qy) {
+        return RobustPredicates.orient2d(p0x, p0y, p1x, p1y, qx, qy) > 0;
     }
 
     public static double Distance(Vector2d p, Line line) {
-        Vector2d sub0, sub, sub0b;
-        double x0 = line.p.x;
-        double y0 = line.p.y;
-        double x1 = line.p.x + line.dir.x;
-        double y1 = line.p.y + line.dir.y;
-        double px = p.x;
-        double py = p.y;
-
-        sub0 = new Vector2d(x0 - px, y0 - py);
-        sub0b = new Vector2d(-sub0.x, -sub0.y);
-        sub = new Vector2d(x1 - x0, y1 - y0);
-
-        double t = ((sub.x * sub0b.x) + (sub.y * sub0b.y))
-                / ((sub.x * sub.x) + (sub.y * sub.y));
-
-        return Distance(x0 + t * sub.x, y0 + t * sub.y, px, py);
+        return DistancePointToLine(p, line);
     }
 
-    private static double Distance(double x0, double y0, double x1, double y1) {
+    public static double Distance(double x0, double y0, double x1, double y1) {
         return Math.sqrt((x0 - x1) * (x0 - x1) + (y0 - y1) * (y0 - y1));
     }
     
@@ -658,17 +650,23 @@ public class GeomUtil {
         // If its on the faces edge, return false
         for (int i = 0; i < heNum; i++) {
             OriHalfedge he = face.halfedges.get(i);
-            if (GeomUtil.DistancePointToSegment(v, he.positionAfterFolded, he.next.positionAfterFolded) < eps) {
+            Vector2d p0 = he.positionAfterFolded;
+            Vector2d p1 = he.next.positionAfterFolded;
+            if (DistancePointToSegment(v.x, v.y, p0.x, p0.y, p1.x, p1.y) < eps) {
                 return false;
             }
         }
 
         OriHalfedge baseHe = face.halfedges.get(0);
-        boolean baseFlg = GeomUtil.CCWcheck(baseHe.positionAfterFolded, baseHe.next.positionAfterFolded, v);
+        Vector2d base0 = baseHe.positionAfterFolded;
+        Vector2d base1 = baseHe.next.positionAfterFolded;
+        boolean baseFlg = CCWcheck(base0.x, base0.y, base1.x, base1.y, v.x, v.y);
 
         for (int i = 1; i < heNum; i++) {
             OriHalfedge he = face.halfedges.get(i);
-            if (GeomUtil.CCWcheck(he.positionAfterFolded, he.next.positionAfterFolded, v) != baseFlg) {
+            Vector2d p0 = he.positionAfterFolded;
+            Vector2d p1 = he.next.positionAfterFolded;
+            if (CCWcheck(p0.x, p0.y, p1.x, p1.y, v.x, v.y) != baseFlg) {
                 return false;
             }
         }
@@ -756,31 +754,35 @@ public class GeomUtil {
     public static boolean isLineCrossFace(OriFace face, OriHalfedge heg, double eps) {
         Vector2d p1 = heg.positionAfterFolded;
         Vector2d p2 = heg.next.positionAfterFolded;
-        Vector2d dir = new Vector2d();
-        dir.sub(p2, p1);
-        Line heLine = new Line(p1, dir);
 
         for (OriHalfedge he : face.halfedges) {
             // About the relationship  of each outline`s segment
+            Vector2d q0 = he.positionAfterFolded;
+            Vector2d q1 = he.next.positionAfterFolded;
 
-            if (GeomUtil.DistancePointToLine(he.positionAfterFolded, heLine) < eps
-                    && GeomUtil.DistancePointToLine(he.next.positionAfterFolded, heLine) < eps) {
+            if (DistancePointToLine(q0.x, q0.y, p1.x, p1.y, p2.x, p2.y) < eps
+                    && DistancePointToLine(q1.x, q1.y, p1.x, p1.y, p2.x, p2.y) < eps) {
                 return false;
             }
         }
-        Vector2d preCrossPoint = null;
+
+        double[] cp = new double[2];
+        boolean crossed = false;
+        double preCrossX = 0;
+        double preCrossY = 0;
         for (OriHalfedge he : face.halfedges) {
-            Vector2d cp = GeomUtil.getCrossPoint(he.positionAfterFolded, 
-                    he.next.positionAfterFolded, heg.positionAfterFolded, 
-                    heg.next.positionAfterFolded);
-            if (cp == null) {
+            Vector2d q0 = he.positionAfterFolded;
+            Vector2d q1 = he.next.positionAfterFolded;
+            if (!getCrossPoint(q0.x, q0.y, q1.x, q1.y, p1.x, p1.y, p2.x, p2.y, cp)) {
                 continue;
             }
 
-            if (preCrossPoint == null) {
-                preCrossPoint = cp;
+            if (!crossed) {
+                crossed = true;
+                preCrossX = cp[0];
+                preCrossY = cp[1];
             } else {
-                if (GeomUtil.Distance(cp, preCrossPoint) > eps) {
+                if (Distance(cp[0], cp[1], preCrossX, preCrossY) > eps) {
                     // Intersects at least in two places
                     return true;
                 }
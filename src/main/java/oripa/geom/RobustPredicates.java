@@ -0,0 +1,183 @@
+package oripa.geom;
+
+import java.math.BigDecimal;
+
+/**
+ * Orientation and segment intersection tests whose signs are always correct.
+ *
+ * The determinant is evaluated in double precision first. Only when its
+ * magnitude is within the rounding error bound, which happens for
+ * nearly collinear points, it is evaluated again exactly.
+ * The error bound is the one of Shewchuk's orient2d.
+ *
+ * The tests take no tolerance. The inputs are treated as exact numbers.
+ */
+public class RobustPredicates {
+
+    /**
+     * the segments do not share any point.
+     */
+    public static final int DISJOINT = 0;
+
+    /**
+     * the segments cross at a point inside both of them.
+     */
+    public static final int CROSSING = 1;
+
+    /**
+     * the segments share one point which is an end point of a segment.
+     */
+    public static final int TOUCHING = 2;
+
+    /**
+     * the segments are collinear and share a part.
+     */
+    public static final int OVERLAPPING = 3;
+
+    private static final double ERROR_BOUND;
+
+    static {
+        double epsilon = Math.ulp(1.0) / 2;
+        ERROR_BOUND = (3.0 + 16.0 * epsilon) * epsilon;
+    }
+
+    /**
+     *
+     * @return a positive value if a, b and c are in counterclockwise order,
+     *         a negative value if clockwise, and zero if collinear.
+     *         The magnitude is an approximation of twice the triangle area.
+     */
+    public static double orient2d(double ax, double ay, double bx, double by,
+            double cx, double cy) {
+        double detLeft = (ax - cx) * (by - cy);
+        double detRight = (ay - cy) * (bx - cx);
+        double det = detLeft - detRight;
+
+        double detSum;
+        if (detLeft > 0) {
+            if (detRight <= 0) {
+                return det;
+            }
+            detSum = detLeft + detRight;
+        } else if (detLeft < 0) {
+            if (detRight >= 0) {
+                return det;
+            }
+            detSum = -detLeft - detRight;
+        } else {
+            return det;
+        }
+
+        double errorBound = ERROR_BOUND * detSum;
+        if (det >= errorBound || -det >= errorBound) {
+            return det;
+        }
+
+        return orient2dExact(ax, ay, bx, by, cx, cy);
+    }
+
+    /**
+     *
+     * @return 1 if a, b and c are in counterclockwise order,
+     *         -1 if clockwise, and 0 if collinear.
+     */
+    public static int orientation(double ax, double ay, double bx, double by,
+            double cx, double cy) {
+        return (int) Math.signum(orient2d(ax, ay, bx, by, cx, cy));
+    }
+
+    private static double orient2dExact(double ax, double ay, double bx, double by,
+            double cx, double cy) {
+        BigDecimal acx = new BigDecimal(ax).subtract(new BigDecimal(cx));
+        BigDecimal bcy = new BigDecimal(by).subtract(new BigDecimal(cy));
+        BigDecimal acy = new BigDecimal(ay).subtract(new BigDecimal(cy));
+        BigDecimal bcx = new BigDecimal(bx).subtract(new BigDecimal(cx));
+
+        // the sign survives the rounding to double.
+        return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+    }
+
+    /**
+     * classifies the relation of the segments p0-p1 and q0-q1.
+     *
+     * @return one of {@link #DISJOINT}, {@link #CROSSING}, {@link #TOUCHING}
+     *         and {@link #OVERLAPPING}.
+     */
+    public static int intersection(double p0x, double p0y, double p1x, double p1y,
+            double q0x, double q0y, double q1x, double q1y) {
+
+        // bounding boxes are compared first since it is cheap.
+        if (Math.max(p0x, p1x) < Math.min(q0x, q1x) || Math.max(q0x, q1x) < Math.min(p0x, p1x)
+                || Math.max(p0y, p1y) < Math.min(q0y, q1y) || Math.max(q0y, q1y) < Math.min(p0y, p1y)) {
+            return DISJOINT;
+        }
+
+        int q0Side = orientation(p0x, p0y, p1x, p1y, q0x, q0y);
+        int q1Side = orientation(p0x, p0y, p1x, p1y, q1x, q1y);
+        if (q0Side != 0 && q0Side == q1Side) {
+            return DISJOINT;
+        }
+
+        int p0Side = orientation(q0x, q0y, q1x, q1y, p0x, p0y);
+        int p1Side = orientation(q0x, q0y, q1x, q1y, p1x, p1y);
+        if (p0Side != 0 && p0Side == p1Side) {
+            return DISJOINT;
+        }
+
+        if (q0Side == 0 && q1Side == 0) {
+            // collinear. the bounding boxes meet.
+            if (isSamePoint(p0x, p0y, q0x, q0y) || isSamePoint(p0x, p0y, q1x, q1y)
+                    || isSamePoint(p1x, p1y, q0x, q0y) || isSamePoint(p1x, p1y, q1x, q1y)) {
+                if (!isOverlappingRange(p0x, p0y, p1x, p1y, q0x, q0y, q1x, q1y)) {
+                    return TOUCHING;
+                }
+            }
+            return OVERLAPPING;
+        }
+
+        if (q0Side == 0 || q1Side == 0 || p0Side == 0 || p1Side == 0) {
+            return TOUCHING;
+        }
+
+        return CROSSING;
+    }
+
+    /**
+     *
+     * @return true if the segments cross at a point inside both of them.
+     */
+    public static boolean isCrossing(double p0x, double p0y, double p1x, double p1y,
+            double q0x, double q0y, double q1x, double q1y) {
+        return intersection(p0x, p0y, p1x, p1y, q0x, q0y, q1x, q1y) == CROSSING;
+    }
+
+    private static boolean isSamePoint(double x0, double y0, double x1, double y1) {
+        return x0 == x1 && y0 == y1;
+    }
+
+    /**
+     * for collinear segments sharing an end point.
+     * @return true if they share more than the point.
+     */
+    private static boolean isOverlappingRange(double p0x, double p0y, double p1x, double p1y,
+            double q0x, double q0y, double q1x, double q1y) {
+        // project onto the axis along which the segments are longer.
+        boolean useX = Math.abs(p1x - p0x) + Math.abs(q1x - q0x)
+                >= Math.abs(p1y - p0y) + Math.abs(q1y - q0y);
+
+        double pMin, pMax, qMin, qMax;
+        if (useX) {
+            pMin = Math.min(p0x, p1x);
+            pMax = Math.max(p0x, p1x);
+            qMin = Math.min(q0x, q1x);
+            qMax = Math.max(q0x, q1x);
+        } else {
+            pMin = Math.min(p0y, p1y);
+            pMax = Math.max(p0y, p1y);
+            qMin = Math.min(q0y, q1y);
+            qMax = Math.max(q0y, q1y);
+        }
+
+        return Math.min(pMax, qMax) > Math.max(pMin, qMin);
+    }
+}
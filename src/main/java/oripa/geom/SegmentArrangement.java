@@ -0,0 +1,381 @@
+/**
+ * ORIPA - Origami Pattern Editor
+ * Copyright (C) 2005-2009 Jun Mitani http://mitani.cs.tsukuba.ac.jp/
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package oripa.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.vecmath.Vector2d;
+
+/**
+ * Planar subdivision made by overlaying line segments.
+ *
+ * The segments are swept from left to right and each segment is
+ * tested only against the segments whose x-range is still active.
+ * The segments are split at the crossings and at the end points lying
+ * on them, the close points are merged into one vertex and the faces
+ * are traced on the resulting half-edge graph.
+ *
+ * Overlapping segments are allowed. They are split at each other's
+ * end points and the same edge is registered only once.
+ */
+public class SegmentArrangement {
+
+    private final double eps;
+
+    private final List<Vector2d> starts = new ArrayList<>();
+    private final List<Vector2d> ends = new ArrayList<>();
+
+    /**
+     *
+     * @param eps  points closer than this distance are merged.
+     */
+    public SegmentArrangement(double eps) {
+        this.eps = eps;
+    }
+
+    /**
+     * adds a segment. a segment shorter than eps is ignored.
+     */
+    public void addSegment(Vector2d p0, Vector2d p1) {
+        if (GeomUtil.Distance(p0, p1) < eps) {
+            return;
+        }
+        starts.add(new Vector2d(p0));
+        ends.add(new Vector2d(p1));
+    }
+
+    /**
+     *
+     * @return bounded faces of the subdivision. each face is given as
+     *         its corner points in counterclockwise order.
+     */
+    public List<List<Vector2d>> buildFaces() {
+        List<List<Vector2d>> splitPoints = findSplitPoints();
+
+        VertexTable vertexTable = new VertexTable();
+        Set<Long> edgeKeys = new HashSet<>();
+
+        // half-edge 2k and 2k + 1 are the pair of the k-th edge.
+        IntList origins = new IntList();
+
+        for (int s = 0; s < starts.size(); s++) {
+            Vector2d p0 = starts.get(s);
+            List<Vector2d> points = sortAlong(p0, ends.get(s), splitPoints.get(s));
+
+            int prev = vertexTable.getOrAdd(p0);
+            for (Vector2d p : points) {
+                int v = vertexTable.getOrAdd(p);
+                if (v == prev) {
+                    continue;
+                }
+                long key = ((long) Math.min(prev, v) << 32) | Math.max(prev, v);
+                if (edgeKeys.add(key)) {
+                    origins.add(prev);
+                    origins.add(v);
+                }
+                prev = v;
+            }
+        }
+
+        return traceFaces(vertexTable.points, origins);
+    }
+
+    /**
+     * sweeps the segments in the order of the left end.
+     * @return points to split each segment, not including its end points.
+     */
+    private List<List<Vector2d>> findSplitPoints() {
+        final int segmentNum = starts.size();
+
+        final double[] minX = new double[segmentNum];
+        Integer[] order = new Integer[segmentNum];
+        List<List<Vector2d>> splitPoints = new ArrayList<>(segmentNum);
+        for (int s = 0; s < segmentNum; s++) {
+            minX[s] = Math.min(starts.get(s).x, ends.get(s).x);
+            order[s] = s;
+            splitPoints.add(new ArrayList<Vector2d>());
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer s0, Integer s1) {
+                return Double.compare(minX[s0], minX[s1]);
+            }
+        });
+
+        List<Integer> active = new ArrayList<>();
+        for (Integer s : order) {
+            Vector2d p0 = starts.get(s);
+            Vector2d p1 = ends.get(s);
+
+            for (int k = active.size() - 1; k >= 0; k--) {
+                int t = active.get(k);
+                Vector2d q0 = starts.get(t);
+                Vector2d q1 = ends.get(t);
+
+                if (Math.max(q0.x, q1.x) < minX[s] - eps) {
+                    // the sweep line has passed the segment.
+                    active.set(k, active.get(active.size() - 1));
+                    active.remove(active.size() - 1);
+                    continue;
+                }
+
+                if (Math.max(p0.y, p1.y) < Math.min(q0.y, q1.y) - eps
+                        || Math.max(q0.y, q1.y) < Math.min(p0.y, p1.y) - eps) {
+                    continue;
+                }
+
+                split(p0, p1, splitPoints.get(s), q0, q1, splitPoints.get(t));
+            }
+            active.add(s);
+        }
+
+        return splitPoints;
+    }
+
+    /**
+     * finds the points where segment p and segment q split each other.
+     */
+    private void split(Vector2d p0, Vector2d p1, List<Vector2d> pSplits,
+            Vector2d q0, Vector2d q1, List<Vector2d> qSplits) {
+
+        boolean touched = false;
+        touched |= addIfInside(q0, p0, p1, pSplits);
+        touched |= addIfInside(q1, p0, p1, pSplits);
+        touched |= addIfInside(p0, q0, q1, qSplits);
+        touched |= addIfInside(p1, q0, q1, qSplits);
+        if (touched) {
+            return;
+        }
+
+        // the exact test finds shallow crosses which a tolerance on the angle misses.
+        if (!RobustPredicates.isCrossing(p0.x, p0.y, p1.x, p1.y, q0.x, q0.y, q1.x, q1.y)) {
+            return;
+        }
+
+        double dpx = p1.x - p0.x;
+        double dpy = p1.y - p0.y;
+        double dqx = q1.x - q0.x;
+        double dqy = q1.y - q0.y;
+        double det = dqx * dpy - dqy * dpx;
+        if (det == 0) {
+            return;
+        }
+        double param = (dqx * (q0.y - p0.y) - dqy * (q0.x - p0.x)) / det;
+        param = Math.max(0, Math.min(1, param));
+
+        Vector2d cp = new Vector2d(p0.x + param * dpx, p0.y + param * dpy);
+        if (isNearEndPoint(cp, p0, p1) || isNearEndPoint(cp, q0, q1)) {
+            return;
+        }
+        pSplits.add(cp);
+        qSplits.add(cp);
+    }
+
+    /**
+     * adds the point if it is on the segment but not at its end points.
+     * @return true if the point is on the segment.
+     */
+    private boolean addIfInside(Vector2d p, Vector2d sp, Vector2d ep,
+            List<Vector2d> splits) {
+        if (GeomUtil.DistancePointToSegment(p, sp, ep) >= eps) {
+            return false;
+        }
+        if (!isNearEndPoint(p, sp, ep)) {
+            splits.add(p);
+        }
+        return true;
+    }
+
+    private boolean isNearEndPoint(Vector2d p, Vector2d sp, Vector2d ep) {
+        return GeomUtil.Distance(p, sp) < eps || GeomUtil.Distance(p, ep) < eps;
+    }
+
+    /**
+     * @return split points followed by the end point, in the order from sp.
+     */
+    private List<Vector2d> sortAlong(final Vector2d sp, Vector2d ep, List<Vector2d> splits) {
+        final Vector2d dir = new Vector2d(ep);
+        dir.sub(sp);
+
+        List<Vector2d> points = new ArrayList<>(splits);
+        Collections.sort(points, new Comparator<Vector2d>() {
+            @Override
+            public int compare(Vector2d a, Vector2d b) {
+                double ta = (a.x - sp.x) * dir.x + (a.y - sp.y) * dir.y;
+                double tb = (b.x - sp.x) * dir.x + (b.y - sp.y) * dir.y;
+                return Double.compare(ta, tb);
+            }
+        });
+        points.add(ep);
+        return points;
+    }
+
+    /**
+     * walks each face keeping it on the left side.
+     * @param points   vertex positions
+     * @param origins  origin vertex of each half-edge
+     */
+    private List<List<Vector2d>> traceFaces(List<Vector2d> points, IntList origins) {
+        int vertexNum = points.size();
+        int halfedgeNum = origins.size();
+
+        // outgoing half-edges of each vertex sorted by angle
+        int[] degrees = new int[vertexNum];
+        for (int h = 0; h < halfedgeNum; h++) {
+            degrees[origins.get(h)]++;
+        }
+        int[][] outgoings = new int[vertexNum][];
+        for (int v = 0; v < vertexNum; v++) {
+            outgoings[v] = new int[degrees[v]];
+            degrees[v] = 0;
+        }
+
+        double[] angles = new double[halfedgeNum];
+        for (int h = 0; h < halfedgeNum; h++) {
+            Vector2d from = points.get(origins.get(h));
+            Vector2d to = points.get(origins.get(h ^ 1));
+            angles[h] = Math.atan2(to.y - from.y, to.x - from.x);
+
+            int v = origins.get(h);
+            outgoings[v][degrees[v]++] = h;
+        }
+
+        int[] positions = new int[halfedgeNum];
+        for (int v = 0; v < vertexNum; v++) {
+            int[] out = outgoings[v];
+            // insertion sort since the degree is small
+            for (int i = 1; i < out.length; i++) {
+                int h = out[i];
+                int j = i - 1;
+                while (j >= 0 && angles[out[j]] > angles[h]) {
+                    out[j + 1] = out[j];
+                    j--;
+                }
+                out[j + 1] = h;
+            }
+            for (int i = 0; i < out.length; i++) {
+                positions[out[i]] = i;
+            }
+        }
+
+        List<List<Vector2d>> faces = new ArrayList<>();
+        boolean[] visited = new boolean[halfedgeNum];
+        for (int start = 0; start < halfedgeNum; start++) {
+            if (visited[start]) {
+                continue;
+            }
+
+            List<Vector2d> loop = new ArrayList<>();
+            double area = 0;
+            int h = start;
+            do {
+                visited[h] = true;
+                Vector2d p = points.get(origins.get(h));
+                Vector2d q = points.get(origins.get(h ^ 1));
+                loop.add(p);
+                area += p.x * q.y - q.x * p.y;
+
+                // the next edge clockwise from the pair at the end vertex
+                int pair = h ^ 1;
+                int[] out = outgoings[origins.get(pair)];
+                h = out[(positions[pair] - 1 + out.length) % out.length];
+            } while (h != start);
+
+            // the outer boundary goes clockwise.
+            if (area > 0) {
+                faces.add(loop);
+            }
+        }
+
+        return faces;
+    }
+
+    /**
+     * merges the points closer than eps by hashing them into cells of size eps.
+     */
+    private class VertexTable {
+        private final List<Vector2d> points = new ArrayList<>();
+        private final Map<Long, IntList> cells = new HashMap<>();
+
+        public int getOrAdd(Vector2d p) {
+            long cx = (long) Math.floor(p.x / eps);
+            long cy = (long) Math.floor(p.y / eps);
+
+            for (long x = cx - 1; x <= cx + 1; x++) {
+                for (long y = cy - 1; y <= cy + 1; y++) {
+                    IntList cell = cells.get(cellKey(x, y));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size(); i++) {
+                        int v = cell.get(i);
+                        if (GeomUtil.Distance(points.get(v), p) < eps) {
+                            return v;
+                        }
+                    }
+                }
+            }
+
+            int v = points.size();
+            points.add(p);
+
+            Long key = cellKey(cx, cy);
+            IntList cell = cells.get(key);
+            if (cell == null) {
+                cell = new IntList();
+                cells.put(key, cell);
+            }
+            cell.add(v);
+            return v;
+        }
+
+        private Long cellKey(long x, long y) {
+            return (x << 32) ^ (y & 0xffffffffL);
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        public void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        public int get(int index) {
+            return values[index];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
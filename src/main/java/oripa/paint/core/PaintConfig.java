@@ -47,6 +47,9 @@ public class PaintConfig {
     public static boolean dispAuxLines = true;
     public static boolean bDispCrossLine = false;
     public static boolean bDoFullEstimation = true;
+    public static boolean bLiveCheck = true;
+    // the number of folded states found before showing the result. 0 means all.
+    public static int foldAnswerLimit = 1;
     public static int inputLineType = oripa.value.OriLine.TYPE_RIDGE;
     
     public static GraphicMouseActionInterface mouseAction = new TwoPointSegmentAction();
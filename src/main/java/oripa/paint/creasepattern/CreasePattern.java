@@ -1,7 +1,10 @@
 package oripa.paint.creasepattern;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.vecmath.Vector2d;
 
@@ -53,6 +56,7 @@ public class CreasePattern implements Collection<OriLine> {
 			lineIter.remove();
 			vertices.remove(current.p0);
 			vertices.remove(current.p1);
+			fireLineRemoved(current);
 		}
 		
 	}
@@ -65,6 +69,13 @@ public class CreasePattern implements Collection<OriLine> {
 	private LineManager     lines;
 	private VerticesManager vertices;
 	private double paperSize = 400;
+
+	private List<CreasePatternListener> listeners = new ArrayList<>();
+
+	/**
+	 * incremented on each change of lines.
+	 */
+	private long version = 0;
 	
 	@SuppressWarnings("unused")
 	private CreasePattern(){}
@@ -101,6 +112,7 @@ public class CreasePattern implements Collection<OriLine> {
 		if (lines.add(e)) {
 			vertices.add(e.p0);
 			vertices.add(e.p1);
+			fireLineAdded(e);
 			return true;
 		}
 		return false;
@@ -113,6 +125,7 @@ public class CreasePattern implements Collection<OriLine> {
 		if (lines.remove(o)) {
 			vertices.remove(l.p0);
 			vertices.remove(l.p1);
+			fireLineRemoved(l);
 			return true;
 		}
 
@@ -121,8 +134,14 @@ public class CreasePattern implements Collection<OriLine> {
 
 	@Override
 	public void clear() {
+		Collection<OriLine> removed = Collections.emptyList();
+		if (!listeners.isEmpty()) {
+			removed = new ArrayList<>(lines);
+		}
+
 		lines.clear();
 		vertices.clear();
+		fireCleared(removed);
 	}
 
 
@@ -164,12 +183,14 @@ public class CreasePattern implements Collection<OriLine> {
 	@Override
 	public boolean addAll(Collection<? extends OriLine> c) {
 		
+		boolean changed = false;
+
+		// vertices of a line already existing should not be counted.
 		for(OriLine line : c){
-			vertices.add(line.p0);
-			vertices.add(line.p1);
+			changed |= add(line);
 		}
 		
-		return lines.addAll(c);
+		return changed;
 	}
 
 	@Override
@@ -187,19 +208,58 @@ public class CreasePattern implements Collection<OriLine> {
 	@Override
 	public boolean retainAll(Collection<?> c) {
 		
+		//removes from this collection 
+		//all of its elements that are not contained in the specified collection c.
+		ArrayList<OriLine> removed = new ArrayList<>();
 		for(OriLine line : lines){
-			Collection<OriLine> collection = (Collection<OriLine>)c;
-			//removes from this collection 
-			//all of its elements that are not contained in the specified collection c.
-			if(! collection.contains(line)){
-				vertices.remove(line.p0);
-				vertices.remove(line.p1);
-				
+			if(! c.contains(line)){
+				removed.add(line);
 			}
 		}
 		
-		
-		return lines.retainAll(c);
+		return removeAll(removed);
+	}
+
+	/**
+	 * registers the listener to be notified of the changes of lines.
+	 * @param listener
+	 */
+	public void addListener(CreasePatternListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(CreasePatternListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * 
+	 * @return a number which changes when a line is added or removed.
+	 *         a line modified in place is not counted, as well as listeners.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	private void fireLineAdded(OriLine line) {
+		version++;
+		for (CreasePatternListener listener : listeners) {
+			listener.lineAdded(line);
+		}
+	}
+
+	private void fireLineRemoved(OriLine line) {
+		version++;
+		for (CreasePatternListener listener : listeners) {
+			listener.lineRemoved(line);
+		}
+	}
+
+	private void fireCleared(Collection<OriLine> removedLines) {
+		version++;
+		for (CreasePatternListener listener : listeners) {
+			listener.cleared(removedLines);
+		}
 	}
 	
 	public Collection<Vector2d> getVerticesAround(Vector2d v){
@@ -212,6 +272,35 @@ public class CreasePattern implements Collection<OriLine> {
 		return vertices.getArea(x, y, distance);
 	}
 
+	/**
+	 * 
+	 * @return lines whose bounding box meets the given area.
+	 * 	       Position coordinate is the same as screen. (top is smaller)
+	 */
+	public Collection<OriLine> getLinesInArea(
+			double left, double top, double right, double bottom) {
+		return lines.getLinesInArea(left, top, right, bottom);
+	}
+
+	/**
+	 * 
+	 * @param line
+	 * @return lines which may cross or touch the given line.
+	 */
+	public Collection<OriLine> getCrossingCandidates(OriLine line) {
+		return lines.getCrossingCandidates(line);
+	}
+
+	/**
+	 * 
+	 * @param p
+	 * @param maxDistance
+	 * @return the nearest line to p within maxDistance. null if nothing is found.
+	 */
+	public OriLine getNearestLine(Vector2d p, double maxDistance) {
+		return lines.getNearestLine(p, maxDistance);
+	}
+
 	/**
 	 * DO NOT USE THIS.
 	 * this is for junit.
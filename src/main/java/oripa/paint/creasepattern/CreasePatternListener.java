@@ -0,0 +1,36 @@
+package oripa.paint.creasepattern;
+
+import java.util.Collection;
+
+import oripa.value.OriLine;
+
+/**
+ * Receives changes of a crease pattern.
+ *
+ * The methods are called after the change is made,
+ * in the thread which modifies the crease pattern.
+ *
+ * A line whose property is modified in place is not notified.
+ * Remove the line and add it again to notify the change.
+ */
+public interface CreasePatternListener {
+
+	/**
+	 * called when a line is added.
+	 * @param line	the added line
+	 */
+	public void lineAdded(OriLine line);
+
+	/**
+	 * called when a line is removed.
+	 * @param line	the removed line
+	 */
+	public void lineRemoved(OriLine line);
+
+	/**
+	 * called when all lines are removed at once.
+	 * {@link #lineRemoved(OriLine)} is not called for each line.
+	 * @param removedLines	the lines which were in the crease pattern
+	 */
+	public void cleared(Collection<OriLine> removedLines);
+}
@@ -1,15 +1,23 @@
 package oripa.paint.creasepattern;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import javax.vecmath.Vector2d;
+
+import oripa.geom.GeomUtil;
+import oripa.value.CalculationResource;
 import oripa.value.OriLine;
 
 /**
  * Manager of all lines.
  * 
+ * Lines are also registered to a spatial index
+ * so that the tools need not to scan all lines.
+ * 
  * @author Koji
  *
  */
@@ -21,6 +29,93 @@ public class LineManager implements Collection<OriLine> {
 	private Set<OriLine> lines = new HashSet<>();
 	// private Set<OriLine> lines = new TreeSet<>();
 	
+	private LineQuadTree index = new LineQuadTree();
+
+	/**
+	 * Wrapper to remove the line from the index as well.
+	 */
+	private class LineIterator implements Iterator<OriLine> {
+
+		private Iterator<OriLine> lineIter = lines.iterator();
+		private OriLine current;
+
+		@Override
+		public boolean hasNext() {
+			return lineIter.hasNext();
+		}
+
+		@Override
+		public OriLine next() {
+			current = lineIter.next();
+			return current;
+		}
+
+		@Override
+		public void remove() {
+			lineIter.remove();
+			index.remove(current);
+		}
+	}
+
+	/**
+	 * 
+	 * @return lines whose bounding box meets the given area.
+	 * 	       Position coordinate is the same as screen. (top is smaller)
+	 */
+	public Collection<OriLine> getLinesInArea(
+			double left, double top, double right, double bottom) {
+		
+		ArrayList<OriLine> result = new ArrayList<>();
+		index.findInArea(left, top, right, bottom, result);
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param line
+	 * @return lines which may cross or touch the given line.
+	 */
+	public Collection<OriLine> getCrossingCandidates(OriLine line) {
+		double eps = CalculationResource.POINT_EPS;
+		Collection<OriLine> inArea = getLinesInArea(
+				Math.min(line.p0.x, line.p1.x) - eps, Math.min(line.p0.y, line.p1.y) - eps,
+				Math.max(line.p0.x, line.p1.x) + eps, Math.max(line.p0.y, line.p1.y) + eps);
+
+		// the bounding box of a slanted line covers many far lines.
+		ArrayList<OriLine> result = new ArrayList<>();
+		for (OriLine other : inArea) {
+			if (!GeomUtil.isSeparated(line.p0, line.p1, other.p0, other.p1, eps)) {
+				result.add(other);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param p
+	 * @param maxDistance
+	 * @return the nearest line to p within maxDistance. null if nothing is found.
+	 */
+	public OriLine getNearestLine(Vector2d p, double maxDistance) {
+		double minDistance = Double.MAX_VALUE;
+		OriLine bestLine = null;
+
+		for (OriLine line : getLinesInArea(
+				p.x - maxDistance, p.y - maxDistance, p.x + maxDistance, p.y + maxDistance)) {
+			double distance = GeomUtil.DistancePointToSegment(p, line.p0, line.p1);
+			if (distance < minDistance) {
+				minDistance = distance;
+				bestLine = line;
+			}
+		}
+
+		if (minDistance > maxDistance) {
+			return null;
+		}
+		return bestLine;
+	}
+
 	
 	@Override
 	public boolean contains(Object o) {
@@ -35,19 +130,26 @@ public class LineManager implements Collection<OriLine> {
 
 	@Override
 	public boolean add(OriLine e) {
-		return lines.add(e);
+		if (lines.add(e)) {
+			index.add(e);
+			return true;
+		}
+		return false;
 	}
 
 	@Override
 	public boolean remove(Object o) {
-		OriLine l = (OriLine) o;
-
-		return lines.remove(o);
+		if (lines.remove(o)) {
+			index.remove((OriLine) o);
+			return true;
+		}
+		return false;
 	}
 
 	@Override
 	public void clear() {
 		lines.clear();
+		index.clear();
 	}
 
 
@@ -73,8 +175,7 @@ public class LineManager implements Collection<OriLine> {
 
 	@Override
 	public Iterator<OriLine> iterator() {
-		// TODO Auto-generated method stub
-		return lines.iterator();
+		return new LineIterator();
 	}
 
 	@Override
@@ -85,19 +186,31 @@ public class LineManager implements Collection<OriLine> {
 
 	@Override
 	public boolean addAll(Collection<? extends OriLine> c) {
-				
-		return lines.addAll(c);
+		boolean changed = false;
+		for (OriLine line : c) {
+			changed |= add(line);
+		}
+		return changed;
 	}
 
 	@Override
 	public boolean removeAll(Collection<?> c) {
-		
-		return lines.removeAll(c);
+		boolean changed = false;
+		for (Object o : c) {
+			changed |= remove(o);
+		}
+		return changed;
 	}
 
 	@Override
 	public boolean retainAll(Collection<?> c) {
-		
-		return lines.retainAll(c);
+		boolean changed = false;
+		for (Iterator<OriLine> iter = iterator(); iter.hasNext();) {
+			if (!c.contains(iter.next())) {
+				iter.remove();
+				changed = true;
+			}
+		}
+		return changed;
 	}
 }
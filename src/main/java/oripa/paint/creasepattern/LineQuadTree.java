@@ -0,0 +1,188 @@
+package oripa.paint.creasepattern;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import oripa.value.OriLine;
+
+/**
+ * Loose quadtree of lines.
+ *
+ * Each node covers a square and accepts lines whose bounding box
+ * fits in the square twice as large as the node, so that a line
+ * goes down to a node as small as the line itself.
+ * The root grows outward when a line is out of it.
+ *
+ * The lines are located by their coordinates, therefore a line
+ * must not be moved while it is in this tree.
+ */
+class LineQuadTree {
+
+	/**
+	 * nodes smaller than this are not created.
+	 */
+	private static final double MIN_HALF_SIZE = 0.5;
+
+	private class Node {
+		Node parent;
+		final Node[] children = new Node[4];
+		final double centerX, centerY, halfSize;
+
+		final List<OriLine> lines = new ArrayList<>();
+
+		/**
+		 * number of lines in this node and the descendants.
+		 */
+		int count = 0;
+
+		Node(Node parent, double centerX, double centerY, double halfSize) {
+			this.parent = parent;
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.halfSize = halfSize;
+		}
+
+		/**
+		 * @return true if the loose bounds of this node meet the given area.
+		 */
+		boolean meets(double left, double top, double right, double bottom) {
+			double looseSize = halfSize * 2;
+			return left <= centerX + looseSize && right >= centerX - looseSize
+					&& top <= centerY + looseSize && bottom >= centerY - looseSize;
+		}
+	}
+
+	private Node root = null;
+
+	/**
+	 * node holding each line
+	 */
+	private Map<OriLine, Node> nodes = new HashMap<>();
+
+	public void add(OriLine line) {
+		double centerX = (line.p0.x + line.p1.x) / 2;
+		double centerY = (line.p0.y + line.p1.y) / 2;
+		double extent = Math.max(
+				Math.abs(line.p1.x - line.p0.x), Math.abs(line.p1.y - line.p0.y)) / 2;
+
+		if (Double.isNaN(centerX) || Double.isInfinite(centerX)
+				|| Double.isNaN(centerY) || Double.isInfinite(centerY)
+				|| Double.isInfinite(extent)) {
+			throw new IllegalArgumentException("line is not finite: " + line);
+		}
+
+		if (root == null) {
+			root = new Node(null, centerX, centerY, Math.max(extent, MIN_HALF_SIZE));
+		}
+
+		while (!fitsRoot(centerX, centerY, extent)) {
+			grow(centerX, centerY);
+		}
+
+		Node node = root;
+		while (extent <= node.halfSize / 2 && node.halfSize / 2 >= MIN_HALF_SIZE) {
+			int index = (centerX >= node.centerX ? 1 : 0) + (centerY >= node.centerY ? 2 : 0);
+			if (node.children[index] == null) {
+				double quarter = node.halfSize / 2;
+				node.children[index] = new Node(node,
+						node.centerX + ((index & 1) == 0 ? -quarter : quarter),
+						node.centerY + ((index & 2) == 0 ? -quarter : quarter),
+						quarter);
+			}
+			node = node.children[index];
+		}
+
+		node.lines.add(line);
+		nodes.put(line, node);
+		for (Node n = node; n != null; n = n.parent) {
+			n.count++;
+		}
+	}
+
+	private boolean fitsRoot(double centerX, double centerY, double extent) {
+		return extent <= root.halfSize
+				&& Math.abs(centerX - root.centerX) <= root.halfSize
+				&& Math.abs(centerY - root.centerY) <= root.halfSize;
+	}
+
+	/**
+	 * doubles the root toward the given point.
+	 * the old root becomes a quarter of the new one.
+	 */
+	private void grow(double x, double y) {
+		Node old = root;
+		double signX = x >= old.centerX ? 1 : -1;
+		double signY = y >= old.centerY ? 1 : -1;
+
+		root = new Node(null,
+				old.centerX + signX * old.halfSize,
+				old.centerY + signY * old.halfSize,
+				old.halfSize * 2);
+		root.count = old.count;
+
+		int index = (signX > 0 ? 0 : 1) + (signY > 0 ? 0 : 2);
+		root.children[index] = old;
+		old.parent = root;
+	}
+
+	/**
+	 *
+	 * @param line
+	 * @return true if the line was in this tree.
+	 */
+	public boolean remove(OriLine line) {
+		Node node = nodes.remove(line);
+		if (node == null) {
+			return false;
+		}
+
+		node.lines.remove(line);
+		for (Node n = node; n != null; n = n.parent) {
+			n.count--;
+		}
+		return true;
+	}
+
+	public void clear() {
+		root = null;
+		nodes.clear();
+	}
+
+	/**
+	 * collects lines whose bounding box meets the given area.
+	 *
+	 * @param result   destination
+	 */
+	public void findInArea(double left, double top, double right, double bottom,
+			Collection<OriLine> result) {
+		if (root != null) {
+			findInArea(root, left, top, right, bottom, result);
+		}
+	}
+
+	private void findInArea(Node node, double left, double top, double right, double bottom,
+			Collection<OriLine> result) {
+
+		if (node.count == 0 || !node.meets(left, top, right, bottom)) {
+			return;
+		}
+
+		for (OriLine line : node.lines) {
+			if (Math.min(line.p0.x, line.p1.x) <= right
+					&& Math.max(line.p0.x, line.p1.x) >= left
+					&& Math.min(line.p0.y, line.p1.y) <= bottom
+					&& Math.max(line.p0.y, line.p1.y) >= top) {
+				result.add(line);
+			}
+		}
+
+		for (Node child : node.children) {
+			if (child != null) {
+				findInArea(child, left, top, right, bottom, result);
+			}
+		}
+	}
+}
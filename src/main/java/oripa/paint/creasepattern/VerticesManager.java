@@ -1,10 +1,8 @@
 package oripa.paint.creasepattern;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
 
 import javax.vecmath.Vector2d;
 
@@ -13,73 +11,115 @@ import oripa.value.OriLine;
 
 /**
  * For a fast access to vertex
+ *
+ * Vertices are held in a quadtree whose leaf is divided when it has
+ * too many vertices and merged when the vertices decrease,
+ * so that dense areas are divided finely.
+ * Each leaf holds the coordinates in primitive arrays.
+ *
  * @author koji
  *
  */
 public class VerticesManager {
 
-	/*
-	 * divides paper equally in order to localize access to vertices
+	/**
+	 * a leaf is divided if it has more vertices than this.
 	 */
-	static public final int divNum = 32;
-
-	public double interval;
-	public double paperCenter;
+	private static final int LEAF_CAPACITY = 16;
 
 	/**
-	 * the index of divided paper area.
-	 * A given point is converted to the index it should belongs to.
-	 * 
-	 * @author Koji
-	 *
+	 * areas smaller than this are not divided
+	 * even if they have many vertices.
 	 */
-	public class AreaPosition{
-		public int x, y;
+	private static final double MIN_HALF_SIZE = 1.0e-3;
+
+	private static class Node {
+		Node parent;
+		final double centerX, centerY, halfSize;
+
+		/**
+		 * null if this node is a leaf.
+		 */
+		Node[] children = null;
+
+		// vertices of a leaf
+		double[] xs = new double[4];
+		double[] ys = new double[4];
+		int[] counts = new int[4];
+		Vector2d[] points = new Vector2d[4];
+		int size = 0;
 
 		/**
-		 * doubles point to index
+		 * number of different vertices in this node and the descendants.
 		 */
-		public AreaPosition(Vector2d v) {
-			x = toDiv(v.x);
-			y = toDiv(v.y);
+		int total = 0;
+
+		Node(Node parent, double centerX, double centerY, double halfSize) {
+			this.parent = parent;
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.halfSize = halfSize;
 		}
-		
-		public AreaPosition(double x, double y){
-			this.x = toDiv(x);
-			this.y = toDiv(y);
+
+		/**
+		 * the area includes the left and top edges only,
+		 * in the same way as the division by {@link #childFor(double, double)}.
+		 */
+		boolean contains(double x, double y) {
+			return x >= centerX - halfSize && x < centerX + halfSize
+					&& y >= centerY - halfSize && y < centerY + halfSize;
 		}
-		
 
-	}
+		boolean meets(double left, double top, double right, double bottom) {
+			return left <= centerX + halfSize && right >= centerX - halfSize
+					&& top <= centerY + halfSize && bottom >= centerY - halfSize;
+		}
 
-	/**
-	 * Computes a index on one axis.
-	 * @param p
-	 * @return
-	 */
-	private int toDiv(double p){
-		int div = (int) ((p + paperCenter) / interval);
-					
-		if(div < 0){
-			return 0;
+		Node childFor(double x, double y) {
+			return children[(x >= centerX ? 1 : 0) + (y >= centerY ? 2 : 0)];
 		}
-		
-		if(div >= divNum){
-			return divNum-1;
+
+		int indexOf(double x, double y) {
+			for (int i = 0; i < size; i++) {
+				if (xs[i] == x && ys[i] == y) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void append(Vector2d v, int count) {
+			if (size == xs.length) {
+				int length = size * 2;
+				xs = Arrays.copyOf(xs, length);
+				ys = Arrays.copyOf(ys, length);
+				counts = Arrays.copyOf(counts, length);
+				points = Arrays.copyOf(points, length);
+			}
+			xs[size] = v.x;
+			ys[size] = v.y;
+			counts[size] = count;
+			points[size] = v;
+			size++;
+		}
+
+		void removeAt(int i) {
+			size--;
+			xs[i] = xs[size];
+			ys[i] = ys[size];
+			counts[i] = counts[size];
+			points[i] = points[size];
+			points[size] = null;
+		}
+
+		Collection<Vector2d> getVertices() {
+			return Arrays.asList(Arrays.copyOf(points, size));
 		}
-		
-		return div;
 	}
-	
 
-	/**
-	 * [div_x][div_y] is a vertices in the divided area.
-	 */
-	private HashSet<Vector2d>[][] vertices = new HashSet[divNum][divNum];
-	/**
-	 * count existence of same values.
-	 */
-	private Map<Vector2d, Integer> counts = new HashMap<>();
+	private Node root = null;
+
+	private double paperSize;
 
 	/**
 	 * Constructor to initialize fields.
@@ -87,63 +127,149 @@ public class VerticesManager {
 	 */
 	public VerticesManager(double paperSize) {
 		changePaperSize(paperSize);
-		
-		// allocate memory for each area
-		for(int x = 0; x < divNum; x++){
-			for(int y = 0; y < divNum; y++){
-				vertices[x][y] = new HashSet<Vector2d>();
-			}
-		}
-		
 	}
 
 	public void changePaperSize(double paperSize) {
-		interval = paperSize / divNum;
-		paperCenter = paperSize/2;
-		
+		this.paperSize = paperSize;
 	}
-	
+
 	/**
 	 * remove all vertices.
 	 */
 	public void clear(){
-		for(int x = 0; x < divNum; x++){
-			for(int y = 0; y < divNum; y++){
-				vertices[x][y].clear();
+		root = null;
+	}
+
+	/**
+	 * finds the leaf which should hold the given point.
+	 * the tree grows if the point is out of it.
+	 */
+	private Node getLeaf(double x, double y){
+		if (Double.isNaN(x) || Double.isInfinite(x) || Double.isNaN(y) || Double.isInfinite(y)) {
+			throw new IllegalArgumentException("vertex is not finite: " + x + ", " + y);
+		}
+		if (root == null) {
+			root = new Node(null, 0, 0, paperSize / 2);
+		}
+		while (!root.contains(x, y)) {
+			grow(x, y);
+		}
+
+		Node node = root;
+		while (node.children != null) {
+			node = node.childFor(x, y);
+		}
+		return node;
+	}
+
+	/**
+	 * doubles the root toward the given point.
+	 * the old root becomes a quarter of the new one.
+	 */
+	private void grow(double x, double y){
+		Node old = root;
+		double signX = x >= old.centerX ? 1 : -1;
+		double signY = y >= old.centerY ? 1 : -1;
+
+		root = new Node(null,
+				old.centerX + signX * old.halfSize,
+				old.centerY + signY * old.halfSize,
+				old.halfSize * 2);
+		root.total = old.total;
+
+		createChildren(root);
+		int index = (signX > 0 ? 0 : 1) + (signY > 0 ? 0 : 2);
+		root.children[index] = old;
+		old.parent = root;
+	}
+
+	private void createChildren(Node node){
+		double quarter = node.halfSize / 2;
+		node.children = new Node[4];
+		for (int i = 0; i < 4; i++) {
+			node.children[i] = new Node(node,
+					node.centerX + ((i & 1) == 0 ? -quarter : quarter),
+					node.centerY + ((i & 2) == 0 ? -quarter : quarter),
+					quarter);
+		}
+	}
+
+	/**
+	 * moves the vertices of the leaf into new four leaves.
+	 */
+	private void split(Node leaf){
+		createChildren(leaf);
+		for (int i = 0; i < leaf.size; i++) {
+			Node child = leaf.childFor(leaf.xs[i], leaf.ys[i]);
+			child.append(leaf.points[i], leaf.counts[i]);
+			child.total++;
+		}
+		leaf.xs = null;
+		leaf.ys = null;
+		leaf.counts = null;
+		leaf.points = null;
+		leaf.size = 0;
+
+		for (Node child : leaf.children) {
+			if (child.size > LEAF_CAPACITY && child.halfSize / 2 >= MIN_HALF_SIZE) {
+				split(child);
 			}
 		}
-		counts.clear();
 	}
 
 	/**
-	 * return vertices in the specified area.
-	 * @param ap	index of area.
-	 * @return		vertices in the specified area.
+	 * makes the node a leaf having all vertices of the descendants.
 	 */
-	private HashSet<Vector2d> getVertices(AreaPosition ap){
-		return vertices[ap.x][ap.y];
+	private void merge(Node node){
+		Node leaf = new Node(null, 0, 0, 0);
+		collect(node, leaf);
+
+		node.children = null;
+		node.xs = leaf.xs;
+		node.ys = leaf.ys;
+		node.counts = leaf.counts;
+		node.points = leaf.points;
+		node.size = leaf.size;
+	}
+
+	private void collect(Node node, Node dest){
+		if (node.children == null) {
+			for (int i = 0; i < node.size; i++) {
+				dest.append(node.points[i], node.counts[i]);
+			}
+			return;
+		}
+		for (Node child : node.children) {
+			collect(child, dest);
+		}
 	}
-	
+
 	/**
 	 * add given vertex to appropriate area.
 	 * @param v	vertex to be managed by this class.
 	 */
 	public void add(Vector2d v){
-				
-		HashSet<Vector2d> vertices = getVertices(new AreaPosition(v));
 
-		// v is a new value
-		if (vertices.add(v)) {
-			counts.put(v, 1);
+		Node leaf = getLeaf(v.x, v.y);
+
+		// count duplication.
+		int i = leaf.indexOf(v.x, v.y);
+		if (i >= 0) {
+			leaf.counts[i]++;
 			return;
 		}
-		
-		// count duplication.
-		Integer count = counts.get(v);
-		counts.put(v, count+1);
-		
+
+		// v is a new value
+		leaf.append(v, 1);
+		for (Node node = leaf; node != null; node = node.parent) {
+			node.total++;
+		}
+
+		if (leaf.size > LEAF_CAPACITY && leaf.halfSize / 2 >= MIN_HALF_SIZE) {
+			split(leaf);
+		}
 	}
-	
+
 
 	/**
 	 * returns vertices in the area which the given vertex belongs to.
@@ -151,33 +277,43 @@ public class VerticesManager {
 	 * @return
 	 */
 	public Collection<Vector2d> getAround(Vector2d v){
-		AreaPosition ap = new AreaPosition(v);
-		return getVertices(ap);
+		return getLeaf(v.x, v.y).getVertices();
 	}
-	
+
 
 	/**
 	 * remove the given vertex from this class.
 	 * @param v
 	 */
 	public void remove(Vector2d v){
-		AreaPosition ap = new AreaPosition(v);
-		Integer count = counts.get(v);
-		
+		Node leaf = root == null ? null : getLeaf(v.x, v.y);
+		int i = leaf == null ? -1 : leaf.indexOf(v.x, v.y);
+
 		// should never happen.
-		if (count <= 0) {
+		if (i < 0) {
 			throw new IllegalStateException("Nothing to remove");
 		}
-		
-		// No longer same vertices exist.s
-		if (count == 1) {
-			getVertices(ap).remove(v);
-			counts.remove(v);
+
+		// decrement existence.
+		if (leaf.counts[i] > 1) {
+			leaf.counts[i]--;
 			return;
 		}
 
-		// decrement existence.
-		counts.put(v, count-1);
+		// No longer same vertices exist.
+		leaf.removeAt(i);
+
+		Node mergeable = null;
+		for (Node node = leaf; node != null; node = node.parent) {
+			node.total--;
+			if (node.children != null && node.total <= LEAF_CAPACITY / 2) {
+				mergeable = node;
+			}
+		}
+
+		if (mergeable != null) {
+			merge(mergeable);
+		}
 	}
 
 	/**
@@ -191,23 +327,33 @@ public class VerticesManager {
 	public Collection<Collection<Vector2d>> getArea(
 			double x, double y, double distance){
 
-		Collection<Collection<Vector2d>> result = new LinkedList<>();		
-		
-		int leftDiv   = toDiv(x - distance);
-		int rightDiv  = toDiv(x + distance);
-		int topDiv    = toDiv(y - distance);
-		int bottomDiv = toDiv(y + distance);
-		
-		for(int xDiv = leftDiv; xDiv <= rightDiv; xDiv++){
-			for(int yDiv = topDiv; yDiv <= bottomDiv; yDiv++){
-				result.add(vertices[xDiv][yDiv]);
-			}
+		Collection<Collection<Vector2d>> result = new LinkedList<>();
+
+		if (root != null) {
+			collectLeaves(root, x - distance, y - distance, x + distance, y + distance, result);
 		}
-		
-		
+
 		return result;
 	}
 
+	private void collectLeaves(Node node,
+			double left, double top, double right, double bottom,
+			Collection<Collection<Vector2d>> result){
+
+		if (node.total == 0 || !node.meets(left, top, right, bottom)) {
+			return;
+		}
+
+		if (node.children == null) {
+			result.add(node.getVertices());
+			return;
+		}
+
+		for (Node child : node.children) {
+			collectLeaves(child, left, top, right, bottom, result);
+		}
+	}
+
 	/**
 	 * set all vertices of given lines
 	 * @param lines
@@ -218,18 +364,10 @@ public class VerticesManager {
 			add(line.p0);
 			add(line.p1);
 		}
-		
+
 	}
-	
+
 	public boolean isEmpty() {
-		for (HashSet<Vector2d>[] vertexSets : vertices) {
-			for (HashSet<Vector2d> vertexSet : vertexSets) {
-				if (! vertexSet.isEmpty()) {
-					return false;
-				}
-			}
-		}
-		
-		return true;
+		return root == null || root.total == 0;
 	}
 }
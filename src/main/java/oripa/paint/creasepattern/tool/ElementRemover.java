@@ -42,7 +42,8 @@ public class ElementRemover {
 			Vector2d p, Collection<OriLine> creasePattern) {
 		
 		ArrayList<OriLine> sharedLines = new ArrayList<OriLine>();
-		for (OriLine line : creasePattern) {
+		for (OriLine line : LineFinder.findInArea(
+				p.x - 0.001, p.y - 0.001, p.x + 0.001, p.y + 0.001, creasePattern)) {
 			if (GeomUtil.Distance(line.p0, p) < 0.001 || GeomUtil.Distance(line.p1, p) < 0.001) {
 				sharedLines.add(line);
 			}
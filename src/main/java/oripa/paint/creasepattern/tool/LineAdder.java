@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -38,30 +37,46 @@ public class LineAdder {
 	}
 
 
+	private double[] crossPoint = new double[2];
+
+	/**
+	 * most pairs of lines do not cross,
+	 * so a point is created only for the pair crossing.
+	 * @return cross point of the lines. null if they don't cross.
+	 */
+	private Vector2d getCrossPoint(OriLine l0, OriLine l1) {
+		if (!GeomUtil.getCrossPoint(l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y,
+				l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y, crossPoint)) {
+			return null;
+		}
+		return new Vector2d(crossPoint[0], crossPoint[1]);
+	}
+
 	/**
 	 * 
 	 * @param inputLine
+	 * @param candidates	lines which may cross the input line.
 	 * @param currentLines
 	 * @return true.
 	 */
-	private boolean divideCurrentLines(OriLine inputLine, Collection<OriLine> currentLines){
+	private boolean divideCurrentLines(OriLine inputLine,
+			Collection<OriLine> candidates, Collection<OriLine> currentLines){
 
 		LinkedList<OriLine> toBeAdded = new LinkedList<>();
 
 		// intersection of (aux input, other type lines) are rejected
-		for (Iterator<OriLine> iterator = currentLines.iterator(); iterator.hasNext();) {
-			OriLine line = iterator.next();
+		for (OriLine line : candidates) {
 
             if (inputLine.typeVal == OriLine.TYPE_NONE && line.typeVal != OriLine.TYPE_NONE) {
                 continue;
             }
             
-			Vector2d crossPoint = GeomUtil.getCrossPoint(inputLine, line);
+			Vector2d crossPoint = getCrossPoint(inputLine, line);
 			if (crossPoint == null) {
 				continue;
 			}
 
-			iterator.remove();
+			currentLines.remove(line);
 
 			if (GeomUtil.Distance(line.p0, crossPoint) > CalculationResource.POINT_EPS) {
 				toBeAdded.add(new OriLine(line.p0, crossPoint, line.typeVal));
@@ -117,7 +132,7 @@ public class LineAdder {
 			}
 
 			// Calculates the intersection
-			Vector2d crossPoint = GeomUtil.getCrossPoint(inputLine, line);
+			Vector2d crossPoint = getCrossPoint(inputLine, line);
 			if (crossPoint != null) {
 				points.add(crossPoint);
 			}
@@ -140,19 +155,38 @@ public class LineAdder {
 		//ArrayList<OriLine> crossingLines = new ArrayList<OriLine>(); // for debug? 
 
 
+		// only the lines near the input line are examined.
+		Collection<OriLine> candidates = LineFinder.findCrossingCandidates(inputLine, currentLines);
+
 		// If it already exists, do nothing
-		for (OriLine line : currentLines) {
+		for (OriLine line : candidates) {
 			if (GeomUtil.isSameLineSegment(line, inputLine)) {
 				return;
 			}
 		}
 
-		divideCurrentLines(inputLine, currentLines);
+		divideCurrentLines(inputLine, candidates, currentLines);
 		
-		List<Vector2d> points = createInputLinePoints(inputLine, currentLines);
+		List<Vector2d> points = createInputLinePoints(inputLine,
+				LineFinder.findCrossingCandidates(inputLine, currentLines));
 		
+		addDividedLines(inputLine, points, inputLine.typeVal, currentLines);
+	}
+
+	/**
+	 * adds the pieces of the line divided at the given points.
+	 * 
+	 * @param line          line to be divided
+	 * @param points        end points of the line and the points to divide it.
+	 *                      the order is changed.
+	 * @param typeVal       type of the pieces
+	 * @param currentLines  destination
+	 */
+	private void addDividedLines(OriLine line, List<Vector2d> points, int typeVal,
+			Collection<OriLine> currentLines) {
+
 		// sort in order to make points sequential
-		boolean sortByX = Math.abs(inputLine.p0.x - inputLine.p1.x) > Math.abs(inputLine.p0.y - inputLine.p1.y);
+		boolean sortByX = Math.abs(line.p0.x - line.p1.x) > Math.abs(line.p0.y - line.p1.y);
 		if (sortByX) {
 			Collections.sort(points, new PointComparatorX());
 		} else {
@@ -169,20 +203,161 @@ public class LineAdder {
 				continue;
 			}
 
-			currentLines.add(new OriLine(prePoint, p, inputLine.typeVal));
+			currentLines.add(new OriLine(prePoint, p, typeVal));
 			prePoint = p;
 		}
 
 	}
 
+	/**
+	 * Adds all given lines at once.
+	 * 
+	 * The pairs of lines which may cross are found at once
+	 * among the given lines and the current lines around them.
+	 * Then each line is divided at all of its cross points together,
+	 * instead of dividing the pattern again for each given line.
+	 * A given line is treated as {@link #addLine(OriLine, Collection)}
+	 * does against both the current lines and the other given lines.
+	 * 
+	 * @param inputLines    lines to be added
+	 * @param currentLines	current line list. it will be affected as 
+	 * 						new lines are added and unnecessary lines are removed.
+	 */
+	public void addLines(Collection<OriLine> inputLines, Collection<OriLine> currentLines) {
+
+		ArrayList<OriLine> segments = new ArrayList<>();
+
+		ArrayList<OriLine> inputs = new ArrayList<>();
+		for (OriLine line : inputLines) {
+			if (GeomUtil.Distance(line.p0, line.p1) >= CalculationResource.POINT_EPS) {
+				inputs.add(line);
+			}
+		}
+		if (inputs.isEmpty()) {
+			return;
+		}
+
+		// current lines come first, the given lines follow them.
+		segments.addAll(LineFinder.findCrossingCandidates(inputs, currentLines));
+		final int currentNum = segments.size();
+		segments.addAll(inputs);
+
+		long[] pairs = new LinePairFinder(segments, CalculationResource.POINT_EPS)
+				.findPairs(currentNum);
+
+		// If it already exists, do nothing
+		boolean[] rejected = new boolean[segments.size()];
+		for (long pair : pairs) {
+			int s = (int) (pair >>> 32);
+			int t = (int) pair;
+			if (t >= currentNum && GeomUtil.isSameLineSegment(segments.get(s), segments.get(t))) {
+				rejected[t] = true;
+			}
+		}
+
+		ArrayList<List<Vector2d>> splitPoints = new ArrayList<>(segments.size());
+		for (int s = 0; s < segments.size(); s++) {
+			splitPoints.add(new ArrayList<Vector2d>());
+		}
+
+		for (long pair : pairs) {
+			int s = (int) (pair >>> 32);
+			int t = (int) pair;
+			if (t < currentNum || rejected[s] || rejected[t]) {
+				continue;
+			}
+
+			OriLine line = segments.get(s);
+			OriLine inputLine = segments.get(t);
+
+			// the same point divides both lines.
+			Vector2d crossPoint = getCrossPoint(inputLine, line);
+
+			collectDivisionPoints(inputLine, line, crossPoint,
+					splitPoints.get(t), splitPoints.get(s));
+
+			if (s >= currentNum) {
+				collectDivisionPoints(line, inputLine, crossPoint,
+						splitPoints.get(s), splitPoints.get(t));
+			}
+		}
+
+		for (int s = 0; s < currentNum; s++) {
+			List<Vector2d> points = splitPoints.get(s);
+			if (points.isEmpty()) {
+				continue;
+			}
+			OriLine line = segments.get(s);
+			currentLines.remove(line);
+
+			points.add(line.p0);
+			points.add(line.p1);
+			addDividedLines(line, points, line.typeVal, currentLines);
+		}
+
+		for (int t = currentNum; t < segments.size(); t++) {
+			if (rejected[t]) {
+				continue;
+			}
+			OriLine inputLine = segments.get(t);
+			List<Vector2d> points = splitPoints.get(t);
+
+			points.add(inputLine.p0);
+			points.add(inputLine.p1);
+			addDividedLines(inputLine, points, inputLine.typeVal, currentLines);
+		}
+	}
+
+	/**
+	 * collects the points dividing the lines when inputLine is added
+	 * onto the pattern having the other line,
+	 * in the same way as {@link #divideCurrentLines} and {@link #createInputLinePoints}.
+	 * 
+	 * @param crossPoint    cross point of the lines. null if they don't cross.
+	 * @param inputPoints   destination of points on inputLine
+	 * @param linePoints    destination of points on line
+	 */
+	private void collectDivisionPoints(OriLine inputLine, OriLine line, Vector2d crossPoint,
+			List<Vector2d> inputPoints, List<Vector2d> linePoints) {
+
+		// intersection of (aux input, other type lines) are rejected
+		if (crossPoint != null &&
+				!(inputLine.typeVal == OriLine.TYPE_NONE && line.typeVal != OriLine.TYPE_NONE)) {
+			linePoints.add(crossPoint);
+		}
+
+		// reject (M/V input, aux lines)
+		if (inputLine.typeVal != OriLine.TYPE_NONE && 
+				line.typeVal == OriLine.TYPE_NONE) {
+			return;
+		}
+
+		// If the intersection is on the end of the line, skip
+		if (GeomUtil.Distance(inputLine.p0, line.p0) < CalculationResource.POINT_EPS ||
+				GeomUtil.Distance(inputLine.p0, line.p1) < CalculationResource.POINT_EPS||
+				GeomUtil.Distance(inputLine.p1, line.p0) < CalculationResource.POINT_EPS||
+				GeomUtil.Distance(inputLine.p1, line.p1) < CalculationResource.POINT_EPS) {
+			return;
+		}
+
+		if (GeomUtil.DistancePointToSegment(line.p0, inputLine.p0, inputLine.p1) < CalculationResource.POINT_EPS) {
+			inputPoints.add(line.p0);
+		}
+		if (GeomUtil.DistancePointToSegment(line.p1, inputLine.p0, inputLine.p1) < CalculationResource.POINT_EPS) {
+			inputPoints.add(line.p1);
+		}
+
+		if (crossPoint != null) {
+			inputPoints.add(crossPoint);
+		}
+	}
+
 	/**
 	 * 
 	 * @param lines        lines to be added
 	 * @param destination  collection as a destination
 	 */
 	public void addAll(Collection<OriLine> lines, Collection<OriLine> destination) {
-		for (OriLine line : lines) {
-			addLine(line, destination);
-		}
+		addLines(lines, destination);
 	}
 }
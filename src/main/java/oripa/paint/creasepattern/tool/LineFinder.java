@@ -0,0 +1,82 @@
+package oripa.paint.creasepattern.tool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.value.CalculationResource;
+import oripa.value.OriLine;
+
+/**
+ * Narrows down the lines to be examined by the tools.
+ * A crease pattern answers with its spatial index and
+ * other collections are scanned entirely.
+ *
+ * The results are copies, therefore the caller can modify
+ * the given collection while iterating them.
+ */
+class LineFinder {
+
+	/**
+	 *
+	 * @return lines whose bounding box meets the given area.
+	 */
+	public static Collection<OriLine> findInArea(
+			double left, double top, double right, double bottom,
+			Collection<OriLine> lines) {
+
+		if (lines instanceof CreasePattern) {
+			return ((CreasePattern) lines).getLinesInArea(left, top, right, bottom);
+		}
+
+		ArrayList<OriLine> result = new ArrayList<>();
+		for (OriLine line : lines) {
+			if (Math.min(line.p0.x, line.p1.x) <= right
+					&& Math.max(line.p0.x, line.p1.x) >= left
+					&& Math.min(line.p0.y, line.p1.y) <= bottom
+					&& Math.max(line.p0.y, line.p1.y) >= top) {
+				result.add(line);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return lines which may cross or touch the given line.
+	 */
+	public static Collection<OriLine> findCrossingCandidates(
+			OriLine line, Collection<OriLine> lines) {
+
+		if (lines instanceof CreasePattern) {
+			return ((CreasePattern) lines).getCrossingCandidates(line);
+		}
+
+		double eps = CalculationResource.POINT_EPS;
+		return findInArea(
+				Math.min(line.p0.x, line.p1.x) - eps, Math.min(line.p0.y, line.p1.y) - eps,
+				Math.max(line.p0.x, line.p1.x) + eps, Math.max(line.p0.y, line.p1.y) + eps,
+				lines);
+	}
+
+	/**
+	 *
+	 * @return lines which may cross or touch any of the given lines.
+	 *         all lines if the collection has no index.
+	 */
+	public static Collection<OriLine> findCrossingCandidates(
+			Collection<OriLine> lines, Collection<OriLine> currentLines) {
+
+		if (currentLines instanceof CreasePattern) {
+			CreasePattern creasePattern = (CreasePattern) currentLines;
+			LinkedHashSet<OriLine> result = new LinkedHashSet<>();
+			for (OriLine line : lines) {
+				result.addAll(creasePattern.getCrossingCandidates(line));
+			}
+			return result;
+		}
+
+		return new ArrayList<>(currentLines);
+	}
+}
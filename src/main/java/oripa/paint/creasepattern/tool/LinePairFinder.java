@@ -0,0 +1,177 @@
+package oripa.paint.creasepattern.tool;
+
+import java.util.Arrays;
+import java.util.List;
+
+import oripa.geom.GeomUtil;
+import oripa.value.OriLine;
+
+/**
+ * Finds pairs of lines which may cross or touch each other.
+ *
+ * The lines are registered to the cells of a uniform grid which they
+ * pass through, and only the lines sharing a cell are compared.
+ * Unlike a bounding box, the cells of a slanted line do not cover
+ * the lines far from it.
+ */
+class LinePairFinder {
+
+	private static final int MAX_DIV = 1024;
+
+	private final List<OriLine> lines;
+	private final double eps;
+
+	private double left, top;
+	private double cellWidth, cellHeight;
+	private int divX, divY;
+
+	/**
+	 * [cell][k] = index of line passing through the cell, in ascending order.
+	 */
+	private int[][] cells;
+
+	/**
+	 *
+	 * @param lines  lines to be examined
+	 * @param eps    lines closer than this are paired.
+	 */
+	public LinePairFinder(List<OriLine> lines, double eps) {
+		this.lines = lines;
+		this.eps = eps;
+
+		double right = -Double.MAX_VALUE, bottom = -Double.MAX_VALUE;
+		left = Double.MAX_VALUE;
+		top = Double.MAX_VALUE;
+		for (OriLine line : lines) {
+			left = Math.min(left, Math.min(line.p0.x, line.p1.x) - eps);
+			top = Math.min(top, Math.min(line.p0.y, line.p1.y) - eps);
+			right = Math.max(right, Math.max(line.p0.x, line.p1.x) + eps);
+			bottom = Math.max(bottom, Math.max(line.p0.y, line.p1.y) + eps);
+		}
+		if (lines.isEmpty()) {
+			left = top = right = bottom = 0;
+		}
+
+		// about ten lines per cell. smaller cells make each pair found in many cells.
+		int div = Math.max(1, Math.min(MAX_DIV, (int) Math.ceil(Math.sqrt(lines.size()) / 3)));
+		divX = div;
+		divY = div;
+		cellWidth = Math.max((right - left) / divX, Double.MIN_NORMAL);
+		cellHeight = Math.max((bottom - top) / divY, Double.MIN_NORMAL);
+
+		int[] counts = new int[divX * divY];
+		for (int i = 0; i < lines.size(); i++) {
+			countOrFill(i, counts, null);
+		}
+
+		cells = new int[counts.length][];
+		for (int c = 0; c < counts.length; c++) {
+			cells[c] = new int[counts[c]];
+			counts[c] = 0;
+		}
+		for (int i = 0; i < lines.size(); i++) {
+			countOrFill(i, counts, cells);
+		}
+	}
+
+	/**
+	 * counts up the cells which the line passes through, including
+	 * the cells closer than eps to the line.
+	 * if {@code dest} is given, the line index is also stored into the cells.
+	 */
+	private void countOrFill(int lineIndex, int[] counts, int[][] dest) {
+		OriLine line = lines.get(lineIndex);
+		double minX = Math.min(line.p0.x, line.p1.x);
+		double maxX = Math.max(line.p0.x, line.p1.x);
+		double dx = line.p1.x - line.p0.x;
+		double dy = line.p1.y - line.p0.y;
+
+		for (int x = cellX(minX - eps); x <= cellX(maxX + eps); x++) {
+			// the part of the line over the column
+			double x0 = Math.max(left + x * cellWidth - eps, minX);
+			double x1 = Math.min(left + (x + 1) * cellWidth + eps, maxX);
+
+			double y0, y1;
+			if (Math.abs(dx) <= Math.abs(dy) * 1.0e-12) {
+				y0 = line.p0.y;
+				y1 = line.p1.y;
+			} else {
+				y0 = line.p0.y + (x0 - line.p0.x) * dy / dx;
+				y1 = line.p0.y + (x1 - line.p0.x) * dy / dx;
+			}
+
+			int yFrom = cellY(Math.min(y0, y1) - eps);
+			int yTo = cellY(Math.max(y0, y1) + eps);
+			for (int y = yFrom; y <= yTo; y++) {
+				int c = y * divX + x;
+				if (dest != null) {
+					dest[c][counts[c]] = lineIndex;
+				}
+				counts[c]++;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param firstIndex  pairs of two lines before this index are ignored.
+	 * @return pairs of indices (s, t), s < t, of lines which may be
+	 *         closer than eps, in ascending order.
+	 *         each pair is packed as s << 32 | t.
+	 */
+	public long[] findPairs(int firstIndex) {
+		long[] pairs = new long[16];
+		int pairNum = 0;
+
+		for (int[] cell : cells) {
+			for (int j = cell.length - 1; j >= 0 && cell[j] >= firstIndex; j--) {
+				int t = cell[j];
+				OriLine line = lines.get(t);
+
+				for (int i = 0; i < j; i++) {
+					int s = cell[i];
+					OriLine other = lines.get(s);
+
+					if (!boundsMeet(line, other)
+							|| GeomUtil.isSeparated(line.p0, line.p1, other.p0, other.p1, eps)) {
+						continue;
+					}
+
+					if (pairNum == pairs.length) {
+						pairs = Arrays.copyOf(pairs, pairNum * 2);
+					}
+					pairs[pairNum++] = ((long) s << 32) | t;
+				}
+			}
+		}
+
+		// a pair sharing some cells is found for each of them.
+		Arrays.sort(pairs, 0, pairNum);
+		int uniqueNum = 0;
+		for (int k = 0; k < pairNum; k++) {
+			if (uniqueNum == 0 || pairs[uniqueNum - 1] != pairs[k]) {
+				pairs[uniqueNum++] = pairs[k];
+			}
+		}
+		return Arrays.copyOf(pairs, uniqueNum);
+	}
+
+	private boolean boundsMeet(OriLine l0, OriLine l1) {
+		return Math.min(l0.p0.x, l0.p1.x) <= Math.max(l1.p0.x, l1.p1.x) + eps
+				&& Math.min(l1.p0.x, l1.p1.x) <= Math.max(l0.p0.x, l0.p1.x) + eps
+				&& Math.min(l0.p0.y, l0.p1.y) <= Math.max(l1.p0.y, l1.p1.y) + eps
+				&& Math.min(l1.p0.y, l1.p1.y) <= Math.max(l0.p0.y, l0.p1.y) + eps;
+	}
+
+	private int cellX(double x) {
+		return clamp((int) Math.floor((x - left) / cellWidth), divX);
+	}
+
+	private int cellY(double y) {
+		return clamp((int) Math.floor((y - top) / cellHeight), divY);
+	}
+
+	private static int clamp(int index, int div) {
+		return Math.min(Math.max(index, 0), div - 1);
+	}
+}
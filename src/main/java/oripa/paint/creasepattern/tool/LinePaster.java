@@ -1,7 +1,6 @@
 package oripa.paint.creasepattern.tool;
 
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.LinkedList;
 
 import oripa.value.OriLine;
@@ -23,23 +22,11 @@ public class LinePaster {
 		//----------------------------------------------------------
 		
 		RectangleDomain domain = new RectangleDomain(toBePasted);
-		LinkedList<OriLine> crossables = new LinkedList<>();
-				
-		for(Iterator<OriLine> itrator = currentLines.iterator();
-				itrator.hasNext();){
-			OriLine line = itrator.next();
+		LinkedList<OriLine> crossables = new LinkedList<>(LineFinder.findInArea(
+				domain.getLeft(), domain.getTop(), domain.getRight(), domain.getBottom(),
+				currentLines));
 
-			// skip lines with no intersection
-			if(line.p0.x < domain.getLeft() && line.p1.x < domain.getLeft() ||
-					line.p0.x > domain.getRight() && line.p1.x > domain.getRight()  ||
-					line.p0.y < domain.getTop() && line.p1.y < domain.getTop() ||
-					line.p0.y > domain.getBottom() && line.p1.y > domain.getBottom()){
-				continue;
-			}
-			
-			crossables.add(line);
-			itrator.remove();
-		}
+		currentLines.removeAll(crossables);
 
 		//-----------------------------------------------
 		// make them crossed
@@ -47,10 +34,8 @@ public class LinePaster {
 		
 		LineAdder adder = new LineAdder();
 		
-		for(OriLine line : toBePasted){
-			// the result is stored into crossables.
-			adder.addLine(line, crossables);
-		}
+		// the result is stored into crossables.
+		adder.addLines(toBePasted, crossables);
 		
 		//-----------------------------------------------
 		// set the result to the current list
@@ -24,32 +24,46 @@ public class LineTypeChanger {
 			return;
 		}
 
+		int typeVal = l.typeVal;
+
 		switch (to) {
 		case RIDGE:
-			l.typeVal = OriLine.TYPE_RIDGE;
+			typeVal = OriLine.TYPE_RIDGE;
 			break;
 		case VALLEY:
-			l.typeVal = OriLine.TYPE_VALLEY;
+			typeVal = OriLine.TYPE_VALLEY;
 			break;
 		case AUX:
-			l.typeVal = OriLine.TYPE_NONE;
+			typeVal = OriLine.TYPE_NONE;
 			break;
 		case CUT:
-			l.typeVal = OriLine.TYPE_CUT;
+			typeVal = OriLine.TYPE_CUT;
 			break;
 		case DELETE:
 			ElementRemover remover = new ElementRemover();
 			remover.removeLine(l, lines);
-			break;
+			return;
 		case FLIP: 
 			if (l.typeVal == OriLine.TYPE_RIDGE) {
-				l.typeVal = OriLine.TYPE_VALLEY;
+				typeVal = OriLine.TYPE_VALLEY;
 			} else if (l.typeVal == OriLine.TYPE_VALLEY) {
-				l.typeVal = OriLine.TYPE_RIDGE;
+				typeVal = OriLine.TYPE_RIDGE;
 			}
 			break;
 		default:
 			break;
 		}
+
+		if (typeVal == l.typeVal) {
+			return;
+		}
+
+		// re-register the line so that the change is notified.
+		if (lines.remove(l)) {
+			l.typeVal = typeVal;
+			lines.add(l);
+		} else {
+			l.typeVal = typeVal;
+		}
 	}
 }
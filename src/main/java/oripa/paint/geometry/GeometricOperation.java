@@ -28,19 +28,15 @@ public class GeometricOperation {
 	
 	// returns the OriLine sufficiently closer to point p
 	public static OriLine pickLine(Point2D.Double p, double scale) {
-		double minDistance = Double.MAX_VALUE;
-		OriLine bestLine = null;
-
         CreasePattern creasePattern = ORIPA.doc.getCreasePattern();
 
-		for (OriLine line : creasePattern) {
-			double dist = GeomUtil.DistancePointToSegment(new Vector2d(p.x, p.y), line.p0, line.p1);
-			if (dist < minDistance) {
-				minDistance = dist;
-				bestLine = line;
-			}
+		OriLine bestLine = creasePattern.getNearestLine(new Vector2d(p.x, p.y), 10 * scale);
+		if (bestLine == null) {
+			return null;
 		}
 
+		double minDistance = GeomUtil.DistancePointToSegment(
+				new Vector2d(p.x, p.y), bestLine.p0, bestLine.p1);
 		if (minDistance / scale < 10) {
 			return bestLine;
 		} else {
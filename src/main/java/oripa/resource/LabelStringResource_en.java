@@ -20,6 +20,7 @@ public class LabelStringResource_en extends ListResourceBundle {
 	        { StringID.Main.EXIT_ID, "Exit" }, 
 	        { StringID.Main.ABOUT_ID, "About" }, 
 	        { StringID.Main.UNDO_ID, "Undo" }, 
+	        { StringID.Main.REDO_ID, "Redo" },
 	        { StringID.Main.SELECT_ALL_ID, "Select all"},
 	        
 	        
@@ -56,6 +57,7 @@ public class LabelStringResource_en extends ListResourceBundle {
 	        { StringID.UI.FOLD_ID, "Fold..." }, 
 	        { StringID.UI.FULL_ESTIMATION_ID, "Full Estimation"},
 	        { StringID.UI.CHECK_WINDOW_ID, "Check Window"},
+	        { StringID.UI.LIVE_CHECK_ID, "Live Check"},
 	        
 	        { StringID.UI.GRID_SIZE_CHANGE_ID, "Set" }, 
 	        { StringID.UI.SHOW_VERTICES_ID, "Show Vertices" }, 
@@ -15,6 +15,7 @@ public class StringID {
 	    public static final String PROPERTY_ID =  "Property"; 
 	    public static final String EXIT_ID =  "Exit"; 
 	    public static final String UNDO_ID =  "Undo"; 
+	    public static final String REDO_ID =  "Redo";
 	    public static final String ABOUT_ID =  "About"; 
 //		public static final String COPY_PASTE_ID = "Copy_and_Paste";
 //		public static final String CUT_PASTE_ID = "Cut_and_Paste";
@@ -32,6 +33,7 @@ public class StringID {
 		public static final String SAME_FILE_EXISTS_ID =  "Warning_SameNameFileExist"; 
 	    public static final String FOLD_FAILED_DUPLICATION_ID =  "Warning_foldFail1";
 	    public static final String FOLD_FAILED_WRONG_STRUCTURE_ID =  "Warning_foldFail2";
+	    public static final String RECOVER_ID =  "Warning_Recover";
 	}	
 	
 	public static class Default{
@@ -59,6 +61,7 @@ public class StringID {
 	    public static final String FOLD_ID =  "UI_Fold"; 
 		public static final String FULL_ESTIMATION_ID = "UI_FullEstimation";
 		public static final String CHECK_WINDOW_ID = "UI_CheckWindow";
+		public static final String LIVE_CHECK_ID = "UI_LiveCheck";
 
 	    public static final String GRID_SIZE_CHANGE_ID =  "UI_GridSizeChange"; 
 	    public static final String EDIT_MODE_ID =  "UI_EditMode"; 
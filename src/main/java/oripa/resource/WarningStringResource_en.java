@@ -8,6 +8,7 @@ public class WarningStringResource_en extends ListResourceBundle {
         { StringID.Warning.SAME_FILE_EXISTS_ID, "Same name file exists. Over write?" }, 
         { StringID.Warning.FOLD_FAILED_DUPLICATION_ID, "Failed to fold. Try again by deleting duplicating segments?"},
         { StringID.Warning.FOLD_FAILED_WRONG_STRUCTURE_ID, "Failed to fold. It seems the pattern has basic problems."},
+        { StringID.Warning.RECOVER_ID, "ORIPA did not exit normally last time. Recover the crease pattern?"},
     };
     
     @Override
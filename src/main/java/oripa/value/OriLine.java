@@ -205,6 +205,29 @@ public class OriLine implements Comparable<OriLine> {
     	return false;
 	}
 
+	/**
+	 * consistent with {@link #equals(Object)}.
+	 * the end points are ordered before hashing so that
+	 * both directions of the same line give the same value.
+	 */
+	@Override
+	public int hashCode() {
+		OriPoint first = p0;
+		OriPoint second = p1;
+		if (p0.compareTo(p1) > 0) {
+			first = p1;
+			second = p0;
+		}
+		return 31 * hashCode(first) + hashCode(second);
+	}
+
+	private static int hashCode(Vector2d p) {
+		// adding 0.0 turns -0.0 into 0.0, which are equal in comparison.
+		long bits = 31 * Double.doubleToLongBits(p.x + 0.0)
+				+ Double.doubleToLongBits(p.y + 0.0);
+		return (int) (bits ^ (bits >>> 32));
+	}
+
 
     
 }
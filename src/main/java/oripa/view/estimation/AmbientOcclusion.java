@@ -0,0 +1,240 @@
+package oripa.view.estimation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Darkens each pixel by the number of the pixels around it, within a disk,
+ * whose faces are above the face of the pixel.
+ *
+ * The disk is the union of a few rectangles, and the pixels above a face
+ * are counted by a summed-area table of the region around the face.
+ * Each visible face is counted on its own thread since it writes only
+ * its own pixels. The counts are the same as testing every pixel in the disk.
+ *
+ * The counts are kept until the face id buffer or the overlap relation
+ * changes, so that changing the colors does not count them again.
+ */
+class AmbientOcclusion {
+
+    static final int RADIUS = 10;
+
+    /**
+     * rectangles of the disk: {top, bottom, half width} relative to the center.
+     */
+    private static final int[][] DISK = createDisk(RADIUS);
+
+    /**
+     * the area of the disk for the ratio of darkening.
+     */
+    private static final int DISK_AREA = (int) (RADIUS * RADIUS * Math.PI);
+
+    private static final ThreadLocal<int[]> tables = new ThreadLocal<>();
+
+    private final int width;
+    private final int height;
+
+    private int[] counts = null;
+    private int[] countedZbuf = null;
+    private int[][] countedRelation = null;
+    private long countedRelationVersion;
+    private int countedRenderFace;
+
+    public AmbientOcclusion(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * darkens the pixel buffer. The border pixels are left as they are.
+     *
+     * @param pbuf              32bit pixel buffer
+     * @param zbuf              face id buffer. -1 for no face.
+     * @param overlapRelation
+     * @param relationVersion   {@link oripa.fold.FoldedModelInfo#getOverlapRelationVersion()}
+     *                          since the answers share the same matrix.
+     * @param renderFace        the relation of a face to the face above it.
+     */
+    public void shade(int[] pbuf, int[] zbuf, int[][] overlapRelation, long relationVersion,
+            int renderFace) {
+        if (counts == null || overlapRelation != countedRelation
+                || relationVersion != countedRelationVersion
+                || renderFace != countedRenderFace || !isCounted(zbuf)) {
+            count(zbuf, overlapRelation, relationVersion, renderFace);
+        }
+
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int p = y * width + x;
+                int cnt = counts[p];
+                if (cnt > 0) {
+                    int prev = pbuf[p];
+                    double ratio = 1.0 - ((double) cnt) / DISK_AREA;
+                    int p_r = (int) Math.max(0, ((prev & 0x00ff0000) >> 16) * ratio);
+                    int p_g = (int) Math.max(0, ((prev & 0x0000ff00) >> 8) * ratio);
+                    int p_b = (int) Math.max(0, (prev & 0x000000ff) * ratio);
+
+                    pbuf[p] = (p_r << 16) | (p_g << 8) | p_b | 0xff000000;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the ids are the same as the ones counted last.
+     *         The buffer may be longer than the image.
+     */
+    private boolean isCounted(int[] zbuf) {
+        for (int i = 0; i < width * height; i++) {
+            if (zbuf[i] != countedZbuf[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void count(final int[] zbuf, final int[][] overlapRelation, long relationVersion,
+            final int renderFace) {
+        final int[] newCounts = new int[width * height];
+
+        // bounding boxes of the visible faces. index 0 is for no face.
+        int faceCount = overlapRelation.length;
+        final int[] left = new int[faceCount + 1];
+        final int[] right = new int[faceCount + 1];
+        final int[] top = new int[faceCount + 1];
+        final int[] bottom = new int[faceCount + 1];
+        Arrays.fill(left, Integer.MAX_VALUE);
+        Arrays.fill(right, -1);
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = zbuf[y * width + x] + 1;
+                if (right[i] < 0) {
+                    top[i] = y;
+                }
+                left[i] = Math.min(left[i], x);
+                right[i] = Math.max(right[i], x);
+                bottom[i] = y;
+            }
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i <= faceCount; i++) {
+            if (right[i] < 0) {
+                continue;
+            }
+            final int face = i - 1;
+            final int[] box = { left[i], top[i], right[i], bottom[i] };
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    countFace(face, box, zbuf, overlapRelation, renderFace, newCounts);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : TileRasterizer.getRenderPool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        counts = newCounts;
+        countedZbuf = Arrays.copyOf(zbuf, width * height);
+        countedRelation = overlapRelation;
+        countedRelationVersion = relationVersion;
+        countedRenderFace = renderFace;
+    }
+
+    /**
+     * counts the pixels of the face in the box.
+     * @param face  -1 for the pixels of no face.
+     * @param box   {left, top, right, bottom} inclusive
+     */
+    private void countFace(int face, int[] box, int[] zbuf, int[][] overlapRelation,
+            int renderFace, int[] counts) {
+
+        // the region which the disks of the pixels in the box touch
+        int x0 = Math.max(0, box[0] - RADIUS);
+        int y0 = Math.max(0, box[1] - RADIUS);
+        int x1 = Math.min(width - 1, box[2] + RADIUS);
+        int y1 = Math.min(height - 1, box[3] + RADIUS);
+
+        int stride = x1 - x0 + 2;
+        int[] table = tables.get();
+        if (table == null || table.length < stride * (y1 - y0 + 2)) {
+            table = new int[stride * (y1 - y0 + 2)];
+            tables.set(table);
+        }
+
+        // summed-area table of the pixels above the face
+        int[] relation = face < 0 ? null : overlapRelation[face];
+        Arrays.fill(table, 0, stride, 0);
+        for (int y = y0; y <= y1; y++) {
+            int row = (y - y0 + 1) * stride;
+            table[row] = 0;
+            int rowSum = 0;
+            for (int x = x0; x <= x1; x++) {
+                int other = zbuf[y * width + x];
+                if (other != -1 && (relation == null || relation[other] == renderFace)) {
+                    rowSum++;
+                }
+                table[row + x - x0 + 1] = table[row - stride + x - x0 + 1] + rowSum;
+            }
+        }
+
+        for (int y = box[1]; y <= box[3]; y++) {
+            for (int x = box[0]; x <= box[2]; x++) {
+                int p = y * width + x;
+                if (zbuf[p] != face) {
+                    continue;
+                }
+
+                int cnt = 0;
+                for (int[] rect : DISK) {
+                    int ta = Math.max(y + rect[0], y0) - y0;
+                    int tb = Math.min(y + rect[1], y1) - y0;
+                    int la = Math.max(x - rect[2], x0) - x0;
+                    int lb = Math.min(x + rect[2], x1) - x0;
+                    if (ta > tb || la > lb) {
+                        continue;
+                    }
+                    cnt += table[(tb + 1) * stride + lb + 1] - table[ta * stride + lb + 1]
+                            - table[(tb + 1) * stride + la] + table[ta * stride + la];
+                }
+                counts[p] = cnt;
+            }
+        }
+    }
+
+    /**
+     * splits the disk of the points with dx * dx + dy * dy <= r * r
+     * into the rows of the same width.
+     */
+    private static int[][] createDisk(int r) {
+        List<int[]> rects = new ArrayList<>();
+        int[] current = null;
+        for (int dy = -r; dy <= r; dy++) {
+            int w = 0;
+            while ((w + 1) * (w + 1) + dy * dy <= r * r) {
+                w++;
+            }
+            if (current != null && current[2] == w) {
+                current[1] = dy;
+            } else {
+                current = new int[] { dy, dy, w };
+                rects.add(current);
+            }
+        }
+        return rects.toArray(new int[rects.size()][]);
+    }
+}
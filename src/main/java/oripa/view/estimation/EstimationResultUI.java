@@ -21,7 +21,7 @@ import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.event.ItemEvent;
 import java.io.File;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -29,6 +29,7 @@ import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 
 import oripa.ORIPA;
 import oripa.doc.Doc;
@@ -91,10 +92,11 @@ public class EstimationResultUI extends JPanel {
     	Doc document = ORIPA.doc;
     	FoldedModelInfo foldedModelInfo = document.getFoldedModelInfo();
     	
-		List<int[][]> foldableOverlapRelations = foldedModelInfo.getFoldableOverlapRelations();
+		// "+" means more answers may be found by "Next".
+		String remaining = foldedModelInfo.isAllFoldableOverlapRelationsFound() ? "" : "+";
 
         jLabel.setText("Folded model [" + (foldedModelInfo.getCurrentORmatIndex() + 1) + "/"
-                + foldableOverlapRelations.size() + "]");
+                + foldedModelInfo.getFoldablePatternCount() + remaining + "]");
 
     }
 
@@ -116,6 +118,10 @@ public class EstimationResultUI extends JPanel {
                 public void actionPerformed(java.awt.event.ActionEvent e) {
                 	Doc document = ORIPA.doc;
                 	FoldedModelInfo foldedModelInfo = document.getFoldedModelInfo();
+                	if (foldedModelInfo.isNextAnswerSearchNeeded()) {
+                		searchNextAnswer(foldedModelInfo);
+                		return;
+                	}
                     foldedModelInfo.setNextORMat();
                     screen.redrawOrigami();
                     updateLabel();
@@ -125,6 +131,41 @@ public class EstimationResultUI extends JPanel {
         return jButtonNextAnswer;
     }
 
+    /**
+     * searches the next answer on a worker thread, which may take long,
+     * and shows it if found. The buttons to change the answer are disabled
+     * during the search.
+     */
+    private void searchNextAnswer(final FoldedModelInfo foldedModelInfo) {
+        jButtonNextAnswer.setEnabled(false);
+        jButtonPrevAnswer.setEnabled(false);
+        jLabel.setText("Searching the next answer...");
+
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return foldedModelInfo.findNextAnswer();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    if (get()) {
+                        foldedModelInfo.setNextORMat();
+                        screen.redrawOrigami();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+                jButtonNextAnswer.setEnabled(true);
+                jButtonPrevAnswer.setEnabled(true);
+                updateLabel();
+            }
+        }.execute();
+    }
+
     /**
      * This method initializes jButtonPrevAnswer
      *
@@ -0,0 +1,331 @@
+package oripa.view.estimation;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Vector2d;
+
+import oripa.doc.Doc;
+import oripa.fold.BoundBox;
+import oripa.fold.FoldedModelInfo;
+import oripa.fold.OriFace;
+import oripa.fold.OrigamiModel;
+import oripa.fold.TriangleFace;
+
+/**
+ * Renders a folded model into a pixel buffer of any size.
+ *
+ * The buffers belong to each renderer and are kept across renderings.
+ * They are reallocated only when a larger size is requested.
+ *
+ * A large image can be rendered strip by strip by
+ * {@link #renderStrips(OrigamiModel, FoldedModelInfo, int, int, int, StripListener)},
+ * so that only the buffers of a strip are held at once.
+ *
+ * Rendering triangulates the faces of the model again, so the same model
+ * should not be rendered on multiple threads at once.
+ */
+public class FoldedModelRenderer {
+
+    /**
+     * receives the rendered strips from top to bottom.
+     */
+    public interface StripListener {
+        /**
+         *
+         * @param pixels    32bit pixels of the strip
+         * @param offset    index of the first pixel of the strip in pixels
+         * @param scanSize  distance between rows in pixels
+         * @param top       the row of the image where the strip begins
+         * @param rows      number of rows of the strip
+         */
+        void stripRendered(int[] pixels, int offset, int scanSize, int top, int rows);
+    }
+
+    /**
+     * rows rendered above and below a strip so that the edges and the
+     * shading near the border of the strip are the same as the whole image.
+     */
+    private static final int STRIP_MARGIN = AmbientOcclusion.RADIUS + 1;
+
+    private int[] pbuf = new int[0];    //32bit pixel buffer
+    private int[] zbuf = new int[0];    //face id buffer
+    private int width = 0;
+    private int height = 0;
+
+    private TileRasterizer rasterizer;
+    private AmbientOcclusion ambientOcclusion;
+
+    private boolean useColor = true;
+    private boolean fillFaces = true;
+    private boolean drawEdges = true;
+    private boolean shadeFaces = false;
+    private boolean faceOrderFlip = false;
+    private double rotateAngle = 0;
+    private double scale = 0.8;
+    private BufferedImage textureImage = null;
+
+    public FoldedModelRenderer(int width, int height) {
+        setSize(width, height);
+    }
+
+    /**
+     * copies the settings of the given renderer. The buffers are not copied.
+     */
+    public FoldedModelRenderer(FoldedModelRenderer renderer, int width, int height) {
+        this(width, height);
+        useColor = renderer.useColor;
+        fillFaces = renderer.fillFaces;
+        drawEdges = renderer.drawEdges;
+        shadeFaces = renderer.shadeFaces;
+        faceOrderFlip = renderer.faceOrderFlip;
+        rotateAngle = renderer.rotateAngle;
+        scale = renderer.scale;
+        textureImage = renderer.textureImage;
+    }
+
+    /**
+     * changes the size of the buffer. The content is discarded.
+     * @param width
+     * @param height
+     */
+    public void setSize(int width, int height) {
+        if (width == this.width && height == this.height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+
+        if (pbuf.length < width * height) {
+            // room for a window being enlarged little by little
+            int capacity = width * height + width * height / 4;
+            pbuf = new int[capacity];
+            zbuf = new int[capacity];
+        }
+
+        rasterizer = new TileRasterizer(pbuf, zbuf, width, height);
+        ambientOcclusion = new AmbientOcclusion(width, height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the pixel buffer whose rows are {@link #getWidth()} apart.
+     *         The buffer may be longer than the image.
+     */
+    public int[] getPixels() {
+        return pbuf;
+    }
+
+    public void clear() {
+        for (int i = 0; i < width * height; i++) {
+            pbuf[i] = 0xffffffff;
+            zbuf[i] = -1;
+        }
+    }
+
+    /**
+     * renders the model to fit the buffer.
+     * @param origamiModel
+     * @param foldedModelInfo
+     */
+    public void render(OrigamiModel origamiModel, FoldedModelInfo foldedModelInfo) {
+        clear();
+        draw(origamiModel, foldedModelInfo, width, height, 0);
+    }
+
+    /**
+     * renders the model to fit an image of the given size, strip by strip.
+     *
+     * @param origamiModel
+     * @param foldedModelInfo
+     * @param imageWidth
+     * @param imageHeight
+     * @param stripHeight       rows of a strip
+     * @param listener
+     */
+    public void renderStrips(OrigamiModel origamiModel, FoldedModelInfo foldedModelInfo,
+            int imageWidth, int imageHeight, int stripHeight, StripListener listener) {
+
+        FoldedModelRenderer strip = new FoldedModelRenderer(this,
+                imageWidth, Math.min(imageHeight, stripHeight + STRIP_MARGIN * 2));
+
+        for (int top = 0; top < imageHeight; top += stripHeight) {
+            int rows = Math.min(stripHeight, imageHeight - top);
+
+            // the margin is not added beyond the image so that
+            // the border of the image is treated as the whole image.
+            int bufferTop = Math.max(0, top - STRIP_MARGIN);
+            int bufferBottom = Math.min(imageHeight, top + rows + STRIP_MARGIN);
+
+            strip.setSize(imageWidth, bufferBottom - bufferTop);
+            strip.clear();
+            strip.draw(origamiModel, foldedModelInfo, imageWidth, imageHeight, bufferTop);
+
+            listener.stripRendered(strip.pbuf, (top - bufferTop) * imageWidth, imageWidth,
+                    top, rows);
+        }
+    }
+
+    /**
+     * renders the model into a new image, strip by strip.
+     *
+     * @return an image of {@link BufferedImage#TYPE_INT_RGB}.
+     */
+    public BufferedImage renderImage(OrigamiModel origamiModel, FoldedModelInfo foldedModelInfo,
+            int imageWidth, int imageHeight, int stripHeight) {
+        final BufferedImage image = new BufferedImage(imageWidth, imageHeight,
+                BufferedImage.TYPE_INT_RGB);
+
+        renderStrips(origamiModel, foldedModelInfo, imageWidth, imageHeight, stripHeight,
+                new StripListener() {
+                    @Override
+                    public void stripRendered(int[] pixels, int offset, int scanSize,
+                            int top, int rows) {
+                        image.setRGB(0, top, scanSize, rows, pixels, offset, scanSize);
+                    }
+                });
+
+        return image;
+    }
+
+    /**
+     * draws the model fitted to the image into the buffer which holds
+     * the rows of the image from bufferTop.
+     */
+    private void draw(OrigamiModel origamiModel, FoldedModelInfo foldedModelInfo,
+            int imageWidth, int imageHeight, int bufferTop) {
+
+        List<OriFace> faces = origamiModel.getFaces();
+        boolean folded = origamiModel.isFolded();
+        if (!folded) {
+            return;
+        }
+
+        BoundBox boundBox = foldedModelInfo.getBoundBox();
+        Vector2d leftAndTop = boundBox.getLeftAndTop();
+        Vector2d rightAndBottom = boundBox.getRightAndBottom();
+
+        Vector2d center = new Vector2d((leftAndTop.x + rightAndBottom.x) / 2,
+                (leftAndTop.y + rightAndBottom.y) / 2);
+        double localScale = Math.min(
+                imageWidth / (rightAndBottom.x - leftAndTop.x),
+                imageHeight / (rightAndBottom.y - leftAndTop.y)) * 0.95;
+        double angle = rotateAngle * Math.PI / 180;
+        localScale *= scale;
+
+        List<TriangleFace> triangles = new ArrayList<>();
+        for (OriFace face : faces) {
+
+            face.trianglateAndSetColor(useColor, faceOrderFlip, origamiModel.getPaperSize());
+
+            for (TriangleFace tri : face.triangles) {
+                for (int i = 0; i < 3; i++) {
+
+                    double x = (tri.v[i].p.x - center.x) * localScale;
+                    double y = (tri.v[i].p.y - center.y) * localScale;
+
+                    tri.v[i].p.x = x * Math.cos(angle) + y * Math.sin(angle) + imageWidth * 0.5;
+                    tri.v[i].p.y = x * Math.sin(angle) - y * Math.cos(angle) + imageHeight * 0.5;
+                }
+                triangles.add(tri);
+            }
+        }
+
+        int renderFace = faceOrderFlip ? Doc.UPPER : Doc.LOWER;
+        int[][] overlapRelation = foldedModelInfo.getOverlapRelation();
+
+        rasterizer.setBufferTop(bufferTop);
+        rasterizer.setFillFaces(fillFaces);
+        rasterizer.setFaceOrderFlip(faceOrderFlip);
+        rasterizer.setTextureImage(textureImage);
+        rasterizer.draw(triangles, overlapRelation, renderFace);
+
+        if (drawEdges) {
+            drawEdges();
+        }
+
+        if (shadeFaces) {
+            ambientOcclusion.shade(pbuf, zbuf, overlapRelation,
+                    foldedModelInfo.getOverlapRelationVersion(), renderFace);
+        }
+    }
+
+    /**
+     * draws the pixels where the face id changes.
+     */
+    private void drawEdges() {
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int val_h = -1 * zbuf[getIndex(x - 1, y - 1)]
+                        + zbuf[getIndex(x + 1, y - 1)]
+                        + -2 * zbuf[getIndex(x - 1, y)]
+                        + 2 * zbuf[getIndex(x + 1, y)]
+                        + -1 * zbuf[getIndex(x - 1, y + 1)]
+                        + zbuf[getIndex(x + 1, y + 1)];
+                int val_v = -1 * zbuf[getIndex(x - 1, y - 1)]
+                        + zbuf[getIndex(x - 1, y + 1)]
+                        + -2 * zbuf[getIndex(x, y - 1)]
+                        + 2 * zbuf[getIndex(x, y + 1)]
+                        + -1 * zbuf[getIndex(x + 1, y - 1)]
+                        + zbuf[getIndex(x + 1, y + 1)];
+
+                if (val_h != 0 || val_v != 0) {
+                    pbuf[getIndex(x, y)] = 0xff888888;
+                }
+            }
+        }
+    }
+
+    private int getIndex(int x, int y) {
+        return y * width + x;
+    }
+
+    public void setUseColor(boolean useColor) {
+        this.useColor = useColor;
+    }
+
+    public void setFillFaces(boolean fillFaces) {
+        this.fillFaces = fillFaces;
+    }
+
+    public void setDrawEdges(boolean drawEdges) {
+        this.drawEdges = drawEdges;
+    }
+
+    public void setShadeFaces(boolean shadeFaces) {
+        this.shadeFaces = shadeFaces;
+    }
+
+    public void setFaceOrderFlip(boolean faceOrderFlip) {
+        this.faceOrderFlip = faceOrderFlip;
+    }
+
+    /**
+     * @param rotateAngle   in degrees
+     */
+    public void setRotateAngle(double rotateAngle) {
+        this.rotateAngle = rotateAngle;
+    }
+
+    /**
+     * @param scale     1 to fit the model into 95% of the image
+     */
+    public void setScale(double scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * @param textureImage  null if the faces are not textured.
+     */
+    public void setTextureImage(BufferedImage textureImage) {
+        this.textureImage = textureImage;
+    }
+}
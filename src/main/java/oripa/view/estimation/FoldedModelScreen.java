@@ -18,11 +18,9 @@
 
 package oripa.view.estimation;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.event.MouseEvent;
@@ -33,22 +31,15 @@ import java.awt.event.MouseWheelListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.MemoryImageSource;
 import java.io.File;
-import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
-import javax.vecmath.Vector2d;
 
 import oripa.ORIPA;
 import oripa.doc.Doc;
-import oripa.fold.BoundBox;
 import oripa.fold.FoldedModelInfo;
-import oripa.fold.OriFace;
 import oripa.fold.OrigamiModel;
-import oripa.fold.TriangleFace;
-import oripa.fold.TriangleVertex;
 
 /**
  * A screen to show whether Maekawa theorem and Kawasaki theorem holds.
@@ -58,32 +49,9 @@ import oripa.fold.TriangleVertex;
 public class FoldedModelScreen extends JPanel
         implements MouseListener, MouseMotionListener, MouseWheelListener {
 
-    private BufferedImage bufferImage;
-    private Graphics2D bufferg;
-    static private int pbuf[];      //32bit pixel buffer
-    static private int zbuf[];      //32bit z buffer
-    static private int BUFFERW;     // width
-    static private int BUFFERH;     // height
-    static private int min[];
-    static private int max[];
-    static private int minr[];
-    static private int maxr[];
-    static private int ming[];
-    static private int maxg[];
-    static private int minb[];
-    static private int maxb[];
-    static private double minu[];
-    static private double maxu[];
-    static private double minv[];
-    static private double maxv[];
-    private boolean m_bUseColor = true;
-    private boolean m_bFillFaces = true;
-    private boolean m_bAmbientOcclusion = false;
+    private FoldedModelRenderer renderer;
     private static boolean m_bFaceOrderFlip = false;
-    static private double m_rotAngle = 0;
-    static private double m_scale = 0.8;
-    static private boolean m_bDrawEdges = true;
-    private Image renderImage;
+    private BufferedImage renderImage;
     double rotateAngle;
     double scale;
     double transX;
@@ -98,26 +66,9 @@ public class FoldedModelScreen extends JPanel
         addMouseMotionListener(this);
         addMouseWheelListener(this);
 
-        BUFFERW = 600;
-        BUFFERH = 600;
-
-        pbuf = new int[BUFFERW * BUFFERH];
-        zbuf = new int[BUFFERW * BUFFERH];
-        min = new int[BUFFERH];
-        max = new int[BUFFERH];
-        minr = new int[BUFFERH];
-        maxr = new int[BUFFERH];
-        ming = new int[BUFFERH];
-        maxg = new int[BUFFERH];
-        minb = new int[BUFFERH];
-        maxb = new int[BUFFERH];
-        maxu = new double[BUFFERH];
-        maxv = new double[BUFFERH];
-        minu = new double[BUFFERH];
-        minv = new double[BUFFERH];
+        // the buffer is sized to the screen when it is painted.
+        renderer = new FoldedModelRenderer(0, 0);
 
-        clear();
-        drawOrigami();
         rotateAngle = 0;
         scale = 1.0;
         affineTransform = new AffineTransform();
@@ -130,6 +81,7 @@ public class FoldedModelScreen extends JPanel
                 e.printStackTrace();
                 textureImage = null;
             }
+            renderer.setTextureImage(textureImage);
         }
 
     }
@@ -148,17 +100,17 @@ public class FoldedModelScreen extends JPanel
     }
 
     public void setUseColor(boolean b) {
-        m_bUseColor = b;
+        renderer.setUseColor(b);
         redrawOrigami();
     }
 
     public void setFillFace(boolean bFillFace) {
-        m_bFillFaces = bFillFace;
+        renderer.setFillFaces(bFillFace);
         redrawOrigami();
     }
 
     public void drawEdge(boolean bEdge) {
-        m_bDrawEdges = bEdge;
+        renderer.setDrawEdges(bEdge);
         redrawOrigami();
     }
 
@@ -168,19 +120,21 @@ public class FoldedModelScreen extends JPanel
     }
 
     public void shadeFaces(boolean bShade) {
-        m_bAmbientOcclusion = bShade;
+        renderer.setShadeFaces(bShade);
         redrawOrigami();
     }
 
-    private static int getIndex(int x, int y) {
-        return y * BUFFERW + x;
+    public void clear() {
+        renderer.clear();
     }
 
-    public static void clear() {
-        for (int i = 0; i < BUFFERW * BUFFERH; i++) {
-            pbuf[i] = 0xffffffff;
-            zbuf[i] = -1;
-        }
+    /**
+     * @return a renderer with the same settings as this screen, for rendering
+     *         the model in another size.
+     */
+    public FoldedModelRenderer createRenderer(int width, int height) {
+        renderer.setFaceOrderFlip(isM_bFaceOrderFlip());
+        return new FoldedModelRenderer(renderer, width, height);
     }
 
     private void updateAffineTransform() {
@@ -270,339 +224,61 @@ public class FoldedModelScreen extends JPanel
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        if (bufferImage == null) {
-            bufferImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-            bufferg = (Graphics2D) bufferImage.getGraphics();
+        Graphics2D g2d = (Graphics2D) g.create();
 
+        // the buffer has a pixel for each device pixel on a high resolution screen.
+        double deviceScale = g2d.getTransform().getScaleX();
+        int bufferWidth = (int) Math.ceil(getWidth() * deviceScale);
+        int bufferHeight = (int) Math.ceil(getHeight() * deviceScale);
+        if (bufferWidth != renderer.getWidth() || bufferHeight != renderer.getHeight()) {
+            renderer.setSize(bufferWidth, bufferHeight);
             updateAffineTransform();
+            clear();
+            drawOrigami();
         }
-        bufferg.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
 
-        bufferg.setTransform(new AffineTransform());
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
 
         // Clear image
-        bufferg.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
-        bufferg.setColor(Color.WHITE);
-        bufferg.fillRect(0, 0, getWidth(), getHeight());
-
-        bufferg.setTransform(affineTransform);
-
-        Graphics2D g2d = bufferg;
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
 
+        g2d.transform(affineTransform);
 
         if (renderImage != null) {
-            g2d.drawImage(renderImage, 0, 0, null);
+            g2d.drawImage(renderImage, 0, 0, getWidth(), getHeight(), null);
         }
-        g.drawImage(bufferImage, 0, 0, this);
+        g2d.dispose();
     }
 
     public void drawOrigami() {
     	Doc document = ORIPA.doc;
     	OrigamiModel origamiModel = document.getOrigamiModel();
     	FoldedModelInfo foldedModelInfo = document.getFoldedModelInfo();
-    	
-        List<OriFace> faces = origamiModel.getFaces();
-        boolean folded = origamiModel.isFolded();
-        if (!folded) {
-            return;
-        }
-        long time0 = System.currentTimeMillis();
-
-        BoundBox boundBox = foldedModelInfo.getBoundBox();
-        Vector2d leftAndTop = boundBox.getLeftAndTop();
-        Vector2d rightAndBottom = boundBox.getRightAndBottom();
-        
-        Vector2d center = new Vector2d((leftAndTop.x + rightAndBottom.x) / 2,
-                (leftAndTop.y + rightAndBottom.y) / 2);
-        double localScale = Math.min(
-                BUFFERW / (rightAndBottom.x - leftAndTop.x),
-                BUFFERH / (rightAndBottom.y - leftAndTop.y)) * 0.95;
-        double angle = m_rotAngle * Math.PI / 180;
-        localScale *= m_scale;
-
-        for (OriFace face : faces) {
-
-            face.trianglateAndSetColor(m_bUseColor, isM_bFaceOrderFlip());
-
-            for (TriangleFace tri : face.triangles) {
-                for (int i = 0; i < 3; i++) {
 
-                    double x = (tri.v[i].p.x - center.x) * localScale;
-                    double y = (tri.v[i].p.y - center.y) * localScale;
-
-                    tri.v[i].p.x = x * Math.cos(angle) + y * Math.sin(angle) + BUFFERW * 0.5;
-                    tri.v[i].p.y = x * Math.sin(angle) - y * Math.cos(angle) + BUFFERW * 0.5;
-
-
-                }
-                drawTriangle(tri, face.tmpInt, face.intColor);
-            }
+        if (!origamiModel.isFolded()) {
+            return;
         }
-
-
-        if (m_bDrawEdges) {
-            for (int y = 1; y < BUFFERH - 1; y++) {
-                for (int x = 1; x < BUFFERW - 1; x++) {
-                    int val_h = -1 * zbuf[getIndex(x - 1, y - 1)]
-                            + zbuf[getIndex(x + 1, y - 1)]
-                            + -2 * zbuf[getIndex(x - 1, y)]
-                            + 2 * zbuf[getIndex(x + 1, y)]
-                            + -1 * zbuf[getIndex(x - 1, y + 1)]
-                            + zbuf[getIndex(x + 1, y + 1)];
-                    int val_v = -1 * zbuf[getIndex(x - 1, y - 1)]
-                            + zbuf[getIndex(x - 1, y + 1)]
-                            + -2 * zbuf[getIndex(x, y - 1)]
-                            + 2 * zbuf[getIndex(x, y + 1)]
-                            + -1 * zbuf[getIndex(x + 1, y - 1)]
-                            + zbuf[getIndex(x + 1, y + 1)];
-
-                    if (val_h != 0 || val_v != 0) {
-                        pbuf[getIndex(x, y)] = 0xff888888;
-                    }
-                }
-            }
+        int width = renderer.getWidth();
+        int height = renderer.getHeight();
+        if (width == 0 || height == 0) {
+            return;
         }
+        long time0 = System.currentTimeMillis();
 
-        if (m_bAmbientOcclusion) {
-            int renderFace = isM_bFaceOrderFlip() ? oripa.doc.Doc.UPPER : oripa.doc.Doc.LOWER;
-            int r = 10;
-            int s = (int) (r * r * Math.PI);
-            // For every pixel
-            for (int y = 1; y < BUFFERH - 1; y++) {
-                for (int x = 1; x < BUFFERW - 1; x++) {
-                    int f_id = zbuf[getIndex(x, y)];
-
-                    // Within a circle of radius r, Count the pixels of the surface 
-                    //that is above their own
-                    int cnt = 0;
-                    for (int dy = -r; dy <= r; dy++) {
-                        for (int dx = -r; dx <= r; dx++) {
-                            if (dx * dx + dy * dy > r * r) {
-                                continue;
-                            }
-                            if (y + dy < 0 || y + dy > BUFFERH - 1) {
-                                continue;
-                            }
-                            if (x + dx < 0 || x + dx > BUFFERW - 1) {
-                                continue;
-                            }
-                            int f_id2 = zbuf[getIndex(x + dx, y + dy)];
-
-                            if (f_id == -1 && f_id2 != -1) {
-                                cnt++;
-                            } else {
-                				int[][] overlapRelation = foldedModelInfo.getOverlapRelation();
-
-                                if (f_id2 != -1 && overlapRelation[f_id][f_id2] == renderFace) {
-                                    cnt++;
-                                }
-                            }
-                        }
-                    }
-
-                    if (cnt > 0) {
-                        int prev = pbuf[getIndex(x, y)];
-                        double ratio = 1.0 - ((double) cnt) / s;
-                        int p_r = (int) Math.max(0, ((prev & 0x00ff0000) >> 16) * ratio);
-                        int p_g = (int) Math.max(0, ((prev & 0x0000ff00) >> 8) * ratio);
-                        int p_b = (int) Math.max(0, (prev & 0x000000ff) * ratio);
-
-                        pbuf[getIndex(x, y)] = (p_r << 16) | (p_g << 8) | p_b | 0xff000000;
-                    }
-
-                }
-            }
+        renderer.setFaceOrderFlip(isM_bFaceOrderFlip());
+        renderer.render(origamiModel, foldedModelInfo);
 
-        }
         long time1 = System.currentTimeMillis();
 
         System.out.println("render time = " + (time1 - time0) + "ms");
 
-        renderImage = createImage(new MemoryImageSource(BUFFERW, BUFFERH, pbuf, 0, BUFFERW));
-
-    }
-
-    //--------------------------------------------------------------------
-    //Polygon drawing
-    //
-    //--------------------------------------------------------------------
-    private void drawTriangle(TriangleFace tri, int id, int color) {
-    	Doc document = ORIPA.doc;
-    	FoldedModelInfo foldedModelInfo = document.getFoldedModelInfo();
-
-
-        //(For speed) set the range of use of the buffer
-        int top = +2147483647;
-        int btm = -2147483648;
-        if (top > (int) tri.v[0].p.y) {
-            top = (int) tri.v[0].p.y;
-        }
-        if (top > (int) tri.v[1].p.y) {
-            top = (int) tri.v[1].p.y;
-        }
-        if (top > (int) tri.v[2].p.y) {
-            top = (int) tri.v[2].p.y;
-        }
-        if (btm < (int) tri.v[0].p.y) {
-            btm = (int) tri.v[0].p.y;
-        }
-        if (btm < (int) tri.v[1].p.y) {
-            btm = (int) tri.v[1].p.y;
-        }
-        if (btm < (int) tri.v[2].p.y) {
-            btm = (int) tri.v[2].p.y;
-        }
-        if (top < 0) {
-            top = 0;
-        }
-        if (btm > BUFFERH) {
-            btm = BUFFERH;
-        }
-
-        //Maximum and minimum buffer initialization
-        for (int i = top; i < btm; i++) {
-            min[i] = +2147483647;
-            max[i] = -2147483648;
-        }
-
-        ScanEdge(tri.v[0], tri.v[1]);
-        ScanEdge(tri.v[1], tri.v[2]);
-        ScanEdge(tri.v[2], tri.v[0]);
-
-        //To be drawn on the basis of the maximum and minimum buffer.
-        for (int y = top; y < btm; y++) {
-
-            //Skip if the buffer is not updated
-            if (min[y] == +2147483647) {
-                continue;
-            }
-
-            int offset = y * BUFFERW;
-
-            //Increment calculation
-            int l = (max[y] - min[y]) + 1;
-            int addr = (maxr[y] - minr[y]) / l;
-            int addg = (maxg[y] - ming[y]) / l;
-            int addb = (maxb[y] - minb[y]) / l;
-            double addu = (maxu[y] - minu[y]) / l;
-            double addv = (maxv[y] - minv[y]) / l;
-
-            int r = minr[y];
-            int g = ming[y];
-            int b = minb[y];
-            double u = minu[y];
-            double v = minv[y];
-
-            for (int x = min[y]; x <= max[y]; x++, r += addr, g += addg, b += addb, u += addu, v += addv) {
-
-                if (x < 0 || x >= BUFFERW) {
-                    continue;
-                }
-
-                int p = offset + x;
-
-                int renderFace = isM_bFaceOrderFlip() ? oripa.doc.Doc.UPPER : oripa.doc.Doc.LOWER;
-
-				int[][] overlapRelation = foldedModelInfo.getOverlapRelation();
-
-                if (zbuf[p] == -1 || overlapRelation[zbuf[p]][id] == renderFace) {
-
-                    int tr = r >> 16;
-                    int tg = g >> 16;
-                    int tb = b >> 16;
-
-                    if (!m_bFillFaces) {
-                        pbuf[p] = 0xffffffff;
-
-                    } else {
-                        if (bUseTexture) {
-                            int tx = (int) (textureImage.getWidth() * u);
-                            int ty = (int) (textureImage.getHeight() * v);
-
-                            tx = tx % textureImage.getWidth();
-                            ty = ty % textureImage.getHeight();
-                            int textureColor = textureImage.getRGB(tx, ty);
-
-
-                            if (m_bFillFaces && (tri.face.faceFront ^ isM_bFaceOrderFlip())) {
-                                pbuf[p] = textureColor;
-                            } else {
-                                pbuf[p] = (tr << 16) | (tg << 8) | tb | 0xff000000;
-
-                            }
-                        } else {
-                            if (m_bFillFaces && (tri.face.faceFront ^ isM_bFaceOrderFlip())) {
-                                pbuf[p] = (tr << 16) | (tg << 8) | tb | 0xff000000;
-                            } else {
-                                pbuf[p] = (tr << 16) | (tg << 8) | tb | 0xff000000;
-                            }
-                        }
-                    }
-                    zbuf[p] = id;
-                }
-            }
-        }
-    }
-
-    //--------------------------------------------------------------------
-    //ScanEdge
-    //
-    //Vector v1 ...Starting point
-    //Vector v2 ...Starting point
-    //--------------------------------------------------------------------
-    private void ScanEdge(TriangleVertex v1, TriangleVertex v2) {
-        
-        int l = Math.abs((int) (v2.p.y - v1.p.y)) + 1;
-
-        //Increment calculation
-        int addx = (int) ((v2.p.x - v1.p.x) * 0xffff) / l;
-        int addy = (int) ((v2.p.y - v1.p.y) * 0xffff) / l;
-        
-        int addr = (int) (255 * 0xffff * (v2.color.x - v1.color.x) / l);
-        int addg = (int) (255 * 0xffff * (v2.color.y - v1.color.y) / l);
-        int addb = (int) (255 * 0xffff * (v2.color.z - v1.color.z) / l);
-
-        double addu = (v2.uv.x - v1.uv.x) / l;
-        double addv = (v2.uv.y - v1.uv.y) / l;
-
-        //Initial value setting
-        int x = (int) (v1.p.x * 0xffff);
-        int y = (int) (v1.p.y * 0xffff);
-        int r = (int) (255 * 0xffff * v1.color.x);
-        int g = (int) (255 * 0xffff * v1.color.y);
-        int b = (int) (255 * 0xffff * v1.color.z);
-        double u = v1.uv.x;
-        double v = v1.uv.y;
-        
-        //Scan         
-        for (int i = 0; i < l; i++, x += addx, y += addy, r += addr, g += addg, 
-                b += addb, u += addu, v += addv) {
-            int py = y >> 16;
-            int px = x >> 16;
-
-            if (py < 0 || py >= BUFFERH) {
-                continue;
-            }
-
-            if (min[py] > px) {
-                min[py] = px;
-                minr[py] = r;
-                ming[py] = g;
-                minb[py] = b;
-                minu[py] = u;
-                minv[py] = v;
-            }
-
-            if (max[py] < px) {
-                max[py] = px;
-                maxr[py] = r;
-                maxg[py] = g;
-                maxb[py] = b;
-                maxu[py] = u;
-                maxv[py] = v;
-            }
+        if (renderImage == null || renderImage.getWidth() != width
+                || renderImage.getHeight() != height) {
+            renderImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         }
+        renderImage.getRaster().setDataElements(0, 0, width, height, renderer.getPixels());
     }
 
     public void setScale(double newScale){
@@ -669,8 +345,11 @@ public class FoldedModelScreen extends JPanel
         return affineTransform;
     }
 
+    /**
+     * @return the rendered image before the view transform is applied.
+     */
     public BufferedImage getBufferImage() {
-        return bufferImage;
+        return renderImage;
     }
 
 	public static boolean isM_bFaceOrderFlip() {
@@ -0,0 +1,368 @@
+package oripa.view.estimation;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import oripa.fold.TriangleFace;
+import oripa.fold.TriangleVertex;
+
+/**
+ * Draws triangles of the folded model into a pixel buffer and a face id buffer.
+ *
+ * The buffer is split into square tiles. Each triangle is registered
+ * to the tiles its bounding box touches, and the tiles are drawn on
+ * multiple threads. A tile draws its triangles in the given order with
+ * its own span buffer, so the result is the same as drawing all
+ * triangles on one thread.
+ *
+ * A pixel of a face is drawn if no face is drawn there yet or the face
+ * is above the drawn one in the overlap relation.
+ */
+class TileRasterizer {
+
+    static final int TILE_SIZE = 64;
+
+    private static ForkJoinPool renderPool = null;
+
+    private int[] pbuf;
+    private int[] zbuf;
+    private int width;
+    private int height;
+    private int bufferTop = 0;
+
+    private boolean fillFaces = true;
+    private boolean faceOrderFlip = false;
+    private BufferedImage textureImage = null;
+
+    /**
+     *
+     * @param pbuf      32bit pixel buffer
+     * @param zbuf      face id buffer. -1 for no face.
+     * @param width
+     * @param height
+     */
+    public TileRasterizer(int[] pbuf, int[] zbuf, int width, int height) {
+        this.pbuf = pbuf;
+        this.zbuf = zbuf;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * sets the row of the image at the first row of the buffer,
+     * for drawing a part of the image. The triangles are in the image
+     * coordinates, so that a part is drawn in the same way as the whole.
+     * @param bufferTop
+     */
+    public void setBufferTop(int bufferTop) {
+        this.bufferTop = bufferTop;
+    }
+
+    public void setFillFaces(boolean fillFaces) {
+        this.fillFaces = fillFaces;
+    }
+
+    public void setFaceOrderFlip(boolean faceOrderFlip) {
+        this.faceOrderFlip = faceOrderFlip;
+    }
+
+    /**
+     *
+     * @param textureImage  null if the faces are not textured.
+     */
+    public void setTextureImage(BufferedImage textureImage) {
+        this.textureImage = textureImage;
+    }
+
+    /**
+     * draws the triangles whose vertices are in the image coordinates.
+     * The id of a triangle is {@code tmpInt} of its face.
+     *
+     * @param triangles
+     * @param overlapRelation
+     * @param renderFace        the relation of the drawn face to the new face
+     *                          for the new face to be drawn over.
+     */
+    public void draw(List<TriangleFace> triangles, final int[][] overlapRelation,
+            final int renderFace) {
+
+        int tileCountX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCountY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        final List<List<TriangleFace>> bins = new ArrayList<>(tileCountX * tileCountY);
+        for (int i = 0; i < tileCountX * tileCountY; i++) {
+            bins.add(new ArrayList<TriangleFace>());
+        }
+
+        for (TriangleFace tri : triangles) {
+            int top = getTop(tri);
+            int btm = getBottom(tri);
+            if (top >= btm) {
+                continue;
+            }
+
+            double minX = Math.min(tri.v[0].p.x, Math.min(tri.v[1].p.x, tri.v[2].p.x));
+            double maxX = Math.max(tri.v[0].p.x, Math.max(tri.v[1].p.x, tri.v[2].p.x));
+            // a margin for the rounding in the scan
+            int left = Math.max(0, (int) Math.floor(minX) - 1);
+            int right = Math.min(width - 1, (int) Math.ceil(maxX) + 1);
+            if (left > right) {
+                continue;
+            }
+
+            for (int ty = (top - bufferTop) / TILE_SIZE; ty <= (btm - 1 - bufferTop) / TILE_SIZE; ty++) {
+                for (int tx = left / TILE_SIZE; tx <= right / TILE_SIZE; tx++) {
+                    bins.get(ty * tileCountX + tx).add(tri);
+                }
+            }
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int ty = 0; ty < tileCountY; ty++) {
+            for (int tx = 0; tx < tileCountX; tx++) {
+                final List<TriangleFace> bin = bins.get(ty * tileCountX + tx);
+                if (bin.isEmpty()) {
+                    continue;
+                }
+                final int x0 = tx * TILE_SIZE;
+                final int y0 = bufferTop + ty * TILE_SIZE;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Span span = new Span(TILE_SIZE);
+                        int x1 = Math.min(x0 + TILE_SIZE, width);
+                        int y1 = Math.min(y0 + TILE_SIZE, bufferTop + height);
+                        for (TriangleFace tri : bin) {
+                            drawTriangle(tri, tri.face.tmpInt, span, x0, y0, x1, y1,
+                                    overlapRelation, renderFace);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+
+        try {
+            for (Future<Void> future : getRenderPool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the pool shared by the rendering passes.
+     */
+    static synchronized ForkJoinPool getRenderPool() {
+        if (renderPool == null) {
+            renderPool = new ForkJoinPool();
+        }
+        return renderPool;
+    }
+
+    private int getTop(TriangleFace tri) {
+        int top = Math.min((int) tri.v[0].p.y, Math.min((int) tri.v[1].p.y, (int) tri.v[2].p.y));
+        return Math.max(top, bufferTop);
+    }
+
+    private int getBottom(TriangleFace tri) {
+        int btm = Math.max((int) tri.v[0].p.y, Math.max((int) tri.v[1].p.y, (int) tri.v[2].p.y));
+        return Math.min(btm, bufferTop + height);
+    }
+
+    /**
+     * minimum and maximum of each row of a tile.
+     */
+    private static class Span {
+        final int[] min;
+        final int[] max;
+        final int[] minr;
+        final int[] maxr;
+        final int[] ming;
+        final int[] maxg;
+        final int[] minb;
+        final int[] maxb;
+        final double[] minu;
+        final double[] maxu;
+        final double[] minv;
+        final double[] maxv;
+
+        Span(int rows) {
+            min = new int[rows];
+            max = new int[rows];
+            minr = new int[rows];
+            maxr = new int[rows];
+            ming = new int[rows];
+            maxg = new int[rows];
+            minb = new int[rows];
+            maxb = new int[rows];
+            minu = new double[rows];
+            maxu = new double[rows];
+            minv = new double[rows];
+            maxv = new double[rows];
+        }
+    }
+
+    /**
+     * draws the part of the triangle in the tile of [x0, x1) * [y0, y1).
+     */
+    private void drawTriangle(TriangleFace tri, int id, Span span,
+            int x0, int y0, int x1, int y1, int[][] overlapRelation, int renderFace) {
+
+        int top = Math.max(getTop(tri), y0);
+        int btm = Math.min(getBottom(tri), y1);
+        if (top >= btm) {
+            return;
+        }
+
+        //Maximum and minimum buffer initialization
+        for (int y = top; y < btm; y++) {
+            span.min[y - y0] = Integer.MAX_VALUE;
+            span.max[y - y0] = Integer.MIN_VALUE;
+        }
+
+        scanEdge(tri.v[0], tri.v[1], span, top, btm, y0);
+        scanEdge(tri.v[1], tri.v[2], span, top, btm, y0);
+        scanEdge(tri.v[2], tri.v[0], span, top, btm, y0);
+
+        boolean front = tri.face.faceFront ^ faceOrderFlip;
+
+        for (int y = top; y < btm; y++) {
+            int row = y - y0;
+
+            //Skip if the buffer is not updated
+            if (span.min[row] == Integer.MAX_VALUE) {
+                continue;
+            }
+
+            int offset = (y - bufferTop) * width;
+
+            //Increment calculation
+            int l = (span.max[row] - span.min[row]) + 1;
+            int addr = (span.maxr[row] - span.minr[row]) / l;
+            int addg = (span.maxg[row] - span.ming[row]) / l;
+            int addb = (span.maxb[row] - span.minb[row]) / l;
+            double addu = (span.maxu[row] - span.minu[row]) / l;
+            double addv = (span.maxv[row] - span.minv[row]) / l;
+
+            // jump to the first pixel in the tile.
+            // the integer steps wrap around in the same way as adding one by one.
+            int start = Math.max(span.min[row], x0);
+            int end = Math.min(span.max[row], x1 - 1);
+            int skip = start - span.min[row];
+
+            int r = span.minr[row] + addr * skip;
+            int g = span.ming[row] + addg * skip;
+            int b = span.minb[row] + addb * skip;
+            double u = span.minu[row] + addu * skip;
+            double v = span.minv[row] + addv * skip;
+
+            for (int x = start; x <= end; x++, r += addr, g += addg, b += addb, u += addu, v += addv) {
+                int p = offset + x;
+
+                if (zbuf[p] == -1 || overlapRelation[zbuf[p]][id] == renderFace) {
+
+                    int tr = r >> 16;
+                    int tg = g >> 16;
+                    int tb = b >> 16;
+
+                    if (!fillFaces) {
+                        pbuf[p] = 0xffffffff;
+                    } else if (textureImage != null && front) {
+                        int tx = (int) (textureImage.getWidth() * u);
+                        int ty = (int) (textureImage.getHeight() * v);
+
+                        tx = tx % textureImage.getWidth();
+                        ty = ty % textureImage.getHeight();
+                        pbuf[p] = textureImage.getRGB(tx, ty);
+                    } else {
+                        pbuf[p] = (tr << 16) | (tg << 8) | tb | 0xff000000;
+                    }
+                    zbuf[p] = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * updates the span of the rows in [top, btm) by the edge v1-v2.
+     */
+    private void scanEdge(TriangleVertex v1, TriangleVertex v2, Span span,
+            int top, int btm, int y0) {
+
+        int l = Math.abs((int) (v2.p.y - v1.p.y)) + 1;
+
+        //Increment calculation
+        int addx = (int) ((v2.p.x - v1.p.x) * 0xffff) / l;
+        int addy = (int) ((v2.p.y - v1.p.y) * 0xffff) / l;
+
+        int addr = (int) (255 * 0xffff * (v2.color.x - v1.color.x) / l);
+        int addg = (int) (255 * 0xffff * (v2.color.y - v1.color.y) / l);
+        int addb = (int) (255 * 0xffff * (v2.color.z - v1.color.z) / l);
+
+        double addu = (v2.uv.x - v1.uv.x) / l;
+        double addv = (v2.uv.y - v1.uv.y) / l;
+
+        int y = (int) (v1.p.y * 0xffff);
+
+        // the steps whose rows can be in [top, btm).
+        // a step before and after is included for the rounding.
+        int first = 0;
+        int last = l;
+        if (addy > 0) {
+            first = (int) Math.max(first, (((long) top << 16) - y) / addy - 1);
+            last = (int) Math.min(last, (((long) btm << 16) - y) / addy + 2);
+        } else if (addy < 0) {
+            first = (int) Math.max(first, (((long) btm << 16) - y) / addy - 1);
+            last = (int) Math.min(last, (((long) top << 16) - y) / addy + 2);
+        }
+
+        //Initial value setting
+        // the integer steps wrap around in the same way as adding one by one.
+        int x = (int) (v1.p.x * 0xffff) + addx * first;
+        y += addy * first;
+        int r = (int) (255 * 0xffff * v1.color.x) + addr * first;
+        int g = (int) (255 * 0xffff * v1.color.y) + addg * first;
+        int b = (int) (255 * 0xffff * v1.color.z) + addb * first;
+        double u = v1.uv.x + addu * first;
+        double v = v1.uv.y + addv * first;
+
+        //Scan
+        for (int i = first; i < last; i++, x += addx, y += addy, r += addr, g += addg,
+                b += addb, u += addu, v += addv) {
+            int py = y >> 16;
+            int px = x >> 16;
+
+            if (py < top || py >= btm) {
+                continue;
+            }
+            int row = py - y0;
+
+            if (span.min[row] > px) {
+                span.min[row] = px;
+                span.minr[row] = r;
+                span.ming[row] = g;
+                span.minb[row] = b;
+                span.minu[row] = u;
+                span.minv[row] = v;
+            }
+
+            if (span.max[row] < px) {
+                span.max[row] = px;
+                span.maxr[row] = r;
+                span.maxg[row] = g;
+                span.maxb[row] = b;
+                span.maxu[row] = u;
+                span.maxv[row] = v;
+            }
+        }
+    }
+}
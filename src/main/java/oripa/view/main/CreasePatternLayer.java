@@ -0,0 +1,244 @@
+package oripa.view.main;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import oripa.paint.core.LineSetting;
+import oripa.paint.core.PaintConfig;
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.util.ElementSelector;
+import oripa.value.OriLine;
+
+/**
+ * Image of the grid, the lines and the vertices of a crease pattern
+ * as they are shown on the screen.
+ *
+ * The image is kept until the crease pattern, the transform, the picked
+ * lines or the display settings change, so that moving the mouse
+ * only draws the overlay on a copy of this image.
+ * Only the lines meeting the screen are drawn, which are found by
+ * {@link CreasePattern#getLinesInArea(double, double, double, double)}.
+ */
+class CreasePatternLayer {
+
+	/**
+	 * half size of a vertex in pixels
+	 */
+	private static final double VERTEX_DRAW_SIZE = 2.0;
+
+	private Image image = null;
+
+	/**
+	 * what the image shows. null if the image should be drawn again.
+	 */
+	private State drawnState = null;
+
+	/**
+	 * everything deciding the content of the image.
+	 */
+	private static class State {
+		final CreasePattern creasePattern;
+		final long version;
+		final double paperSize;
+		final AffineTransform transform;
+		final int width;
+		final int height;
+		final boolean gridVisible;
+		final int gridDivNum;
+		final boolean linesVisible;
+		final boolean auxLinesVisible;
+		final boolean mvLinesVisible;
+		final boolean verticesVisible;
+		final List<OriLine> pickedLines;
+
+		State(CreasePattern creasePattern, AffineTransform transform, int width, int height,
+				boolean gridVisible, boolean linesVisible, boolean verticesVisible,
+				Collection<OriLine> pickedLines) {
+			this.creasePattern = creasePattern;
+			this.version = creasePattern.getVersion();
+			this.paperSize = creasePattern.getPaperSize();
+			this.transform = new AffineTransform(transform);
+			this.width = width;
+			this.height = height;
+			this.gridVisible = gridVisible;
+			this.gridDivNum = PaintConfig.gridDivNum;
+			this.linesVisible = linesVisible;
+			this.auxLinesVisible = PaintConfig.dispAuxLines;
+			this.mvLinesVisible = PaintConfig.dispMVLines;
+			this.verticesVisible = verticesVisible;
+			this.pickedLines = new ArrayList<>(pickedLines);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof State)) {
+				return false;
+			}
+			State other = (State) obj;
+			return creasePattern == other.creasePattern
+					&& version == other.version
+					&& paperSize == other.paperSize
+					&& transform.equals(other.transform)
+					&& width == other.width
+					&& height == other.height
+					&& gridVisible == other.gridVisible
+					&& gridDivNum == other.gridDivNum
+					&& linesVisible == other.linesVisible
+					&& auxLinesVisible == other.auxLinesVisible
+					&& mvLinesVisible == other.mvLinesVisible
+					&& verticesVisible == other.verticesVisible
+					&& pickedLines.equals(other.pickedLines);
+		}
+
+		@Override
+		public int hashCode() {
+			return transform.hashCode() * 31 + (int) version;
+		}
+	}
+
+	/**
+	 * draws the layer at the origin of the given graphics,
+	 * updating the image if it is out of date.
+	 *
+	 * @param g               graphics without transform
+	 * @param screen          component to create the image
+	 * @param creasePattern
+	 * @param transform       from the crease pattern to the screen
+	 * @param gridVisible
+	 * @param linesVisible    false if no line should be drawn
+	 * @param verticesVisible
+	 * @param pickedLines     lines drawn by the mouse action instead of this layer
+	 */
+	public void draw(Graphics2D g, Component screen, CreasePattern creasePattern,
+			AffineTransform transform, boolean gridVisible, boolean linesVisible,
+			boolean verticesVisible, Collection<OriLine> pickedLines) {
+
+		int width = screen.getWidth();
+		int height = screen.getHeight();
+
+		State state = new State(creasePattern, transform, width, height,
+				gridVisible, linesVisible, verticesVisible, pickedLines);
+
+		if (image == null || image.getWidth(null) != width || image.getHeight(null) != height) {
+			image = screen.createImage(width, height);
+			drawnState = null;
+		}
+
+		if (!state.equals(drawnState)) {
+			Graphics2D imageg = (Graphics2D) image.getGraphics();
+			render(imageg, state);
+			imageg.dispose();
+			drawnState = state;
+		}
+
+		g.drawImage(image, 0, 0, null);
+	}
+
+	private void render(Graphics2D g2d, State state) {
+		g2d.setColor(Color.WHITE);
+		g2d.fillRect(0, 0, state.width, state.height);
+
+		g2d.setTransform(state.transform);
+
+		if (state.gridVisible) {
+			drawGridLine(g2d, state.paperSize, state.gridDivNum);
+		}
+
+		double scale = state.transform.getScaleX();
+
+		// the area of the screen in the crease pattern coordinates,
+		// with a margin for the vertices on the border.
+		Rectangle2D area;
+		try {
+			area = state.transform.createInverse().createTransformedShape(
+					new Rectangle2D.Double(0, 0, state.width, state.height)).getBounds2D();
+		} catch (NoninvertibleTransformException e) {
+			return;
+		}
+		double margin = (VERTEX_DRAW_SIZE + 1) / scale;
+		Collection<OriLine> visibleLines = state.creasePattern.getLinesInArea(
+				area.getMinX() - margin, area.getMinY() - margin,
+				area.getMaxX() + margin, area.getMaxY() + margin);
+
+		if (state.linesVisible) {
+			drawLines(g2d, visibleLines, new HashSet<>(state.pickedLines));
+		}
+
+		if (state.verticesVisible) {
+			drawVertexRectangles(g2d, visibleLines, scale);
+		}
+	}
+
+	private boolean isVisible(OriLine line) {
+		if (line.typeVal == OriLine.TYPE_NONE && !PaintConfig.dispAuxLines) {
+			return false;
+		}
+		if ((line.typeVal == OriLine.TYPE_RIDGE || line.typeVal == OriLine.TYPE_VALLEY)
+				&& !PaintConfig.dispMVLines) {
+			return false;
+		}
+		return true;
+	}
+
+	private void drawLines(Graphics2D g2d, Collection<OriLine> lines, Set<OriLine> pickedLines) {
+		ElementSelector selector = new ElementSelector();
+		Line2D.Double shape = new Line2D.Double();
+
+		for (OriLine line : lines) {
+			if (!isVisible(line) || pickedLines.contains(line)) {
+				continue;
+			}
+
+			g2d.setColor(selector.selectColorByLineType(line.typeVal));
+			g2d.setStroke(selector.selectStroke(line.typeVal));
+
+			shape.setLine(line.p0.x, line.p0.y, line.p1.x, line.p1.y);
+			g2d.draw(shape);
+		}
+	}
+
+	private void drawVertexRectangles(Graphics2D g2d, Collection<OriLine> lines, double scale) {
+		g2d.setColor(Color.BLACK);
+		Rectangle2D.Double shape = new Rectangle2D.Double();
+		double size = VERTEX_DRAW_SIZE / scale;
+
+		for (OriLine line : lines) {
+			if (!isVisible(line)) {
+				continue;
+			}
+
+			shape.setRect(line.p0.x - size, line.p0.y - size, size * 2, size * 2);
+			g2d.fill(shape);
+			shape.setRect(line.p1.x - size, line.p1.y - size, size * 2, size * 2);
+			g2d.fill(shape);
+		}
+	}
+
+	private void drawGridLine(Graphics2D g2d, double paperSize, int lineNum) {
+		g2d.setColor(Color.LIGHT_GRAY);
+		g2d.setStroke(LineSetting.STROKE_GRID);
+
+		double step = paperSize / lineNum;
+
+		for (int i = 1; i < lineNum; i++) {
+			g2d.draw(new Line2D.Double(
+					step * i - paperSize / 2.0, -paperSize / 2.0,
+					step * i - paperSize / 2.0, paperSize / 2.0));
+
+			g2d.draw(new Line2D.Double(
+					-paperSize / 2.0, step * i - paperSize / 2.0,
+					paperSize / 2.0, step * i - paperSize / 2.0));
+		}
+	}
+}
@@ -143,6 +143,8 @@ public class MainFrame extends JFrame implements ActionListener,
 	private JMenuItem menuItemExit = new JMenuItem(resourceHolder.getString(
 			ResourceKey.LABEL, StringID.Main.EXIT_ID));
 	private JMenuItem menuItemUndo = new JMenuItem(ORIPA.res.getString("Undo"));
+	private JMenuItem menuItemRedo = new JMenuItem(resourceHolder.getString(
+			ResourceKey.LABEL, StringID.Main.REDO_ID));
 	private JMenuItem menuItemAbout = new JMenuItem(
 			ORIPA.res.getString("About"));
 	private JMenuItem menuItemRepeatCopy = new JMenuItem("Array Copy");
@@ -208,6 +210,10 @@ public class MainFrame extends JFrame implements ActionListener,
 		menuItemUndo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
 				ActionEvent.CTRL_MASK));
 
+		menuItemRedo.addActionListener(this);
+		menuItemRedo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y,
+				ActionEvent.CTRL_MASK));
+
 		menuItemClear.addActionListener(this);
 		menuItemClear.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N,
 				ActionEvent.CTRL_MASK));
@@ -270,6 +276,7 @@ public class MainFrame extends JFrame implements ActionListener,
 		menuEdit.add(menuItemUnSelectAll);
 		menuEdit.add(menuItemDeleteSelectedLines);
 		menuEdit.add(menuItemUndo);
+		menuEdit.add(menuItemRedo);
 		menuEdit.add(menuItemChangeOutline);
 
 		menuHelp.add(menuItemAbout);
@@ -409,6 +416,7 @@ public class MainFrame extends JFrame implements ActionListener,
 
 		} else if (e.getSource() == menuItemExit) {
 			saveIniFile();
+			ORIPA.closeJournal();
 			System.exit(0);
 		} else if (e.getSource() == menuItemUndo) {
 			if (PaintConfig.getMouseAction() != null) {
@@ -417,8 +425,19 @@ public class MainFrame extends JFrame implements ActionListener,
 				ORIPA.doc.loadUndoInfo();
 			}
 			mainScreen.repaint();
+		} else if (e.getSource() == menuItemRedo) {
+			ORIPA.doc.loadRedoInfo();
+
+			// the selection may be changed.
+			mouseContext.clear(false);
+			if (PaintConfig.getMouseAction() != null) {
+				PaintConfig.getMouseAction().recover(mouseContext);
+			}
+			mainScreen.repaint();
 		} else if (e.getSource() == menuItemClear) {
+			ORIPA.doc.stopJournal();
 			ORIPA.doc = new Doc(Constants.DEFAULT_PAPER_SIZE);
+			ORIPA.doc.startJournal(ORIPA.journal);
 			ORIPA.modelFrame.repaint();
 
 			ORIPA.modelFrame.setVisible(false);
@@ -701,6 +720,7 @@ public class MainFrame extends JFrame implements ActionListener,
 		}
 
 		saveIniFile();
+		ORIPA.closeJournal();
 	}
 
 	@Override
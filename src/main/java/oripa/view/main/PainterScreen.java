@@ -38,7 +38,6 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
@@ -50,15 +49,13 @@ import javax.vecmath.Vector2d;
 
 import oripa.ORIPA;
 import oripa.doc.Doc;
-import oripa.fold.FoldedModelInfo;
-import oripa.fold.OrigamiModel;
+import oripa.fold.FoldabilityValidator;
 import oripa.mouse.MouseUtility;
 import oripa.paint.EditMode;
 import oripa.paint.core.LineSetting;
 import oripa.paint.core.PaintConfig;
 import oripa.paint.core.PaintContext;
 import oripa.paint.creasepattern.CreasePattern;
-import oripa.paint.util.ElementSelector;
 import oripa.value.OriLine;
 import oripa.viewsetting.ViewScreenUpdater;
 import oripa.viewsetting.main.MainScreenSettingDB;
@@ -77,6 +74,7 @@ ActionListener, ComponentListener, Observer{
 	private boolean bDrawFaceID = false;
 	private Image bufferImage;
 	private Graphics2D bufferg;
+	private CreasePatternLayer creasePatternLayer = new CreasePatternLayer();
 	private Point2D preMousePoint; // Screen coordinates
 	private Point2D.Double currentMousePointLogic = new Point2D.Double(); // Logic coordinates
 	private double scale;
@@ -87,6 +85,7 @@ ActionListener, ComponentListener, Observer{
 	private Dimension preSize;
 	private AffineTransform affineTransform = new AffineTransform();
 	private ArrayList<Vector2d> crossPoints = new ArrayList<>();
+	private FoldabilityValidator foldabilityValidator = null;
 	private JPopupMenu popup = new JPopupMenu();
 	private JMenuItem popupItem_DivideFace = new JMenuItem("Dividing face");
 	private JMenuItem popupItem_FlipFace = new JMenuItem("Flipping face");
@@ -190,59 +189,6 @@ ActionListener, ComponentListener, Observer{
 	}
 
 
-	private void drawLines(Graphics2D g2d, Collection<OriLine> lines){
-
-		ElementSelector selector = new ElementSelector();
-		for (OriLine line : lines) {
-			if (line.typeVal == OriLine.TYPE_NONE &&!PaintConfig.dispAuxLines) {
-				continue;
-			}
-
-			if ((line.typeVal == OriLine.TYPE_RIDGE || line.typeVal == OriLine.TYPE_VALLEY)
-					&& !PaintConfig.dispMVLines) {
-				continue;
-			}
-
-			g2d.setColor(selector.selectColorByLineType(line.typeVal));
-			g2d.setStroke(selector.selectStroke(line.typeVal));
-
-			if(PaintConfig.mouseAction != null){
-				if(mouseContext.getLines().contains(line) == false){
-					g2d.draw(new Line2D.Double(line.p0.x, line.p0.y, line.p1.x, line.p1.y));
-				}
-			}
-
-		}
-
-	}
-
-	void drawVertexRectangles(Graphics2D g2d){
-		CreasePattern creasePattern = ORIPA.doc.getCreasePattern();
-
-		g2d.setColor(Color.BLACK);
-		final double vertexDrawSize = 2.0;
-		for (OriLine line : creasePattern) {
-			if (!PaintConfig.dispAuxLines && line.typeVal == OriLine.TYPE_NONE) {
-				continue;
-			}
-			if (!PaintConfig.dispMVLines && (line.typeVal == OriLine.TYPE_RIDGE
-					|| line.typeVal == OriLine.TYPE_VALLEY)) {
-				continue;
-			}
-			Vector2d v0 = line.p0;
-			Vector2d v1 = line.p1;
-
-			g2d.fill(new Rectangle2D.Double(v0.x - vertexDrawSize / scale,
-					v0.y - vertexDrawSize / scale, vertexDrawSize * 2 / scale,
-					vertexDrawSize * 2 / scale));
-			g2d.fill(new Rectangle2D.Double(v1.x - vertexDrawSize / scale,
-					v1.y - vertexDrawSize / scale, vertexDrawSize * 2 / scale,
-					vertexDrawSize * 2 / scale));
-		}
-
-	}
-
-
 	// Scaling relative to the center of the screen
 	@Override
 	public void paintComponent(Graphics g) {
@@ -255,49 +201,27 @@ ActionListener, ComponentListener, Observer{
 			preSize = getSize();
 		}
 
-		// initialize the AffineTransform of bufferg
+		// the grid, the lines and the vertices are redrawn only when they change.
 		bufferg.setTransform(new AffineTransform());
 
-		// Clears the image buffer
-		bufferg.setColor(Color.WHITE);
-		bufferg.fillRect(0, 0, getWidth(), getHeight());
-
-		// set the AffineTransform of buffer
-		bufferg.setTransform(affineTransform);
-
-		Graphics2D g2d = bufferg;
-
 		Doc document = ORIPA.doc;
 		CreasePattern creasePattern = document.getCreasePattern();
-		OrigamiModel origamiModel = document.getOrigamiModel();
-		FoldedModelInfo foldedModelInfo = document.getFoldedModelInfo();
-		
-//		boolean hasModel = origamiModel.hasModel();
-//		if (hasModel) {
-//			drawModel(g2d);
-//		}
-		if (setting.isGridVisible()) {
-
-			drawGridLine(g2d);
-		}
-
-		//g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-		g2d.setStroke(LineSetting.STROKE_VALLEY);
-		g2d.setColor(Color.black);
 
+		boolean verticesVisible = PaintConfig.getMouseAction().getEditMode() == EditMode.VERTEX
+				|| PaintConfig.dispVertex;
+		creasePatternLayer.draw(bufferg, this, creasePattern, affineTransform,
+				setting.isGridVisible(), PaintConfig.mouseAction != null, verticesVisible,
+				mouseContext.getLines());
 
-		drawLines(g2d, creasePattern);
-
+		// set the AffineTransform of buffer
+		bufferg.setTransform(affineTransform);
 
+		Graphics2D g2d = bufferg;
 
-		// Drawing of the vertices
-		if (PaintConfig.getMouseAction().getEditMode() == EditMode.VERTEX 
-				|| PaintConfig.dispVertex) {
-			drawVertexRectangles(g2d);
+		if (PaintConfig.bLiveCheck) {
+			drawProblemVertices(g2d, document);
 		}
 
-
 		for (Vector2d v : crossPoints) {
 			g2d.setColor(Color.RED);
 			g2d.fill(new Rectangle2D.Double(v.x - 5.0 / scale, v.y - 5.0 / scale,
@@ -368,29 +292,28 @@ ActionListener, ComponentListener, Observer{
 	}
 
 
-	private void drawGridLine(Graphics2D g2d) {
-		g2d.setColor(Color.LIGHT_GRAY);
-		g2d.setStroke(LineSetting.STROKE_GRID);
-
-		double paperSize = ORIPA.doc.getPaperSize();
-		
-		int lineNum = PaintConfig.gridDivNum;
-		double step = paperSize / lineNum;
-
-		for (int i = 1; i < lineNum; i++) {
-			g2d.draw(new Line2D.Double(
-					step * i - paperSize / 2.0, -paperSize / 2.0,
-					step * i - paperSize / 2.0, paperSize / 2.0));
+	/**
+	 * draws the vertices which are not flat foldable.
+	 * the check runs in background and this screen is
+	 * repainted when the result is updated.
+	 */
+	private void drawProblemVertices(Graphics2D g2d, Doc document){
+		FoldabilityValidator validator = document.getFoldabilityValidator();
+		if (validator != foldabilityValidator) {
+			if (foldabilityValidator != null) {
+				foldabilityValidator.deleteObserver(this);
+			}
+			validator.addObserver(this);
+			foldabilityValidator = validator;
+		}
 
-			g2d.draw(new Line2D.Double(
-					-paperSize / 2.0, step * i - paperSize / 2.0,
-					paperSize / 2.0, step * i - paperSize / 2.0));
+		g2d.setColor(Color.RED);
+		for (Vector2d v : validator.getProblemVertices()) {
+			g2d.fill(new Rectangle2D.Double(v.x - 8.0 / scale,
+					v.y - 8.0 / scale, 16.0 / scale, 16.0 / scale));
 		}
 	}
 
-
-
-
 	@Override
 	public void mouseClicked(MouseEvent e) {
 
@@ -542,6 +465,11 @@ ActionListener, ComponentListener, Observer{
 
 	@Override
 	public void update(Observable o, Object arg) {
+		if (o == foldabilityValidator) {
+			repaint();
+			return;
+		}
+
 		String name = o.toString();
 		if(name.equals(screenUpdater.getName())){
 			if(arg != null){
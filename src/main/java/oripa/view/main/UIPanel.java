@@ -217,6 +217,8 @@ implements ActionListener, PropertyChangeListener, Observer {
 			resources.getString(ResourceKey.LABEL, StringID.UI.SHOW_VERTICES_ID), false);
 	JCheckBox doFullEstimationCheckBox = new JCheckBox(
 			resources.getString(ResourceKey.LABEL, StringID.UI.FULL_ESTIMATION_ID), false);
+	JCheckBox liveCheckCheckBox = new JCheckBox(
+			resources.getString(ResourceKey.LABEL, StringID.UI.LIVE_CHECK_ID), true);
 	JButton buttonCheckWindow = new JButton(
 			resources.getString(ResourceKey.LABEL, StringID.UI.CHECK_WINDOW_ID));
 	PainterScreen screen;
@@ -491,6 +493,8 @@ implements ActionListener, PropertyChangeListener, Observer {
 		n++;
 		buttonsPanel.add(dispVertexCheckBox);
 		n++;
+		buttonsPanel.add(liveCheckCheckBox);
+		n++;
 		buttonsPanel.add(buttonCheckWindow);
 		n++;
 		buttonsPanel.add(buildButton);
@@ -626,6 +630,16 @@ implements ActionListener, PropertyChangeListener, Observer {
 			}
 		});
 
+		liveCheckCheckBox.setSelected(PaintConfig.bLiveCheck);
+		liveCheckCheckBox.addActionListener(new java.awt.event.ActionListener() {
+
+			@Override
+			public void actionPerformed(java.awt.event.ActionEvent e) {
+				PaintConfig.bLiveCheck = liveCheckCheckBox.isSelected();
+				screen.repaint();
+			}
+		});
+
 		doFullEstimationCheckBox.setSelected(true);
 		PaintConfig.bDoFullEstimation = true;
 		doFullEstimationCheckBox.addActionListener(new java.awt.event.ActionListener() {
@@ -645,8 +659,8 @@ implements ActionListener, PropertyChangeListener, Observer {
 				OrigamiModel origamiModel;
 				Collection<OriLine> creasePattern = document.getCreasePattern();
 
-				OrigamiModelFactory modelFactory = new OrigamiModelFactory();
-				origamiModel = modelFactory.createOrigamiModel3(creasePattern, document.getPaperSize(), false);
+				// only the part changed since the last check is rebuilt.
+				origamiModel = document.getIncrementalOrigamiModel().createOrigamiModel();
 
 				//document.setOrigamiModel(origamiModel);
 //				boolean isValidPattern =
@@ -728,7 +742,8 @@ implements ActionListener, PropertyChangeListener, Observer {
 			}
 
 			Folder folder = new Folder();
-			
+			folder.setAnswerLimit(PaintConfig.foldAnswerLimit);
+
 			if (buildOK) {
 				folder.fold(origamiModel, foldedModelInfo);
 				document.setOrigamiModel(origamiModel);
@@ -0,0 +1,83 @@
+package oripa;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import oripa.doc.Doc;
+import oripa.doc.exporter.ExporterCP;
+import oripa.value.OriLine;
+
+public class BatchRendererTest {
+
+	@Test
+	public void testRenderAllStates() throws Exception {
+		File directory = createTempDirectory();
+		File input = new File(directory, "two_flaps.cp");
+		new ExporterCP().export(createTwoFlaps(), input.getPath());
+
+		BatchRenderer renderer = new BatchRenderer();
+		renderer.setImageSize(100);
+		renderer.setThreadCount(2);
+		renderer.setStateCount(0);
+		// the flaps are hidden by the middle face on the other side.
+		renderer.setFaceOrderFlip(true);
+		assertEquals(0, renderer.renderAll(BatchRenderer.listInputs(directory), directory));
+
+		// the flaps can be stacked in either order.
+		File first = new File(directory, "two_flaps_0.png");
+		File second = new File(directory, "two_flaps_1.png");
+		assertTrue(first.isFile());
+		assertTrue(second.isFile());
+		assertFalse(new File(directory, "two_flaps_2.png").exists());
+
+		BufferedImage image0 = ImageIO.read(first);
+		BufferedImage image1 = ImageIO.read(second);
+		assertEquals(100, image0.getWidth());
+		assertEquals(100, image0.getHeight());
+		assertFalse(Arrays.equals(
+				image0.getRGB(0, 0, 100, 100, null, 0, 100),
+				image1.getRGB(0, 0, 100, 100, null, 0, 100)));
+
+		renderer.setStateCount(1);
+		List<File> images = renderer.render(input, createTempDirectory());
+		assertEquals(1, images.size());
+	}
+
+	/**
+	 * a square folded by two valley folds whose flaps overlap each other
+	 * without reaching the other fold.
+	 */
+	private Doc createTwoFlaps() {
+		Doc doc = new Doc(400);
+		Collection<OriLine> lines = doc.getCreasePattern();
+		lines.clear();
+
+		double[] xs = { -200, -80, 80, 200 };
+		for (int i = 0; i < 3; i++) {
+			lines.add(new OriLine(xs[i], -200, xs[i + 1], -200, OriLine.TYPE_CUT));
+			lines.add(new OriLine(xs[i], 200, xs[i + 1], 200, OriLine.TYPE_CUT));
+		}
+		lines.add(new OriLine(-200, -200, -200, 200, OriLine.TYPE_CUT));
+		lines.add(new OriLine(200, -200, 200, 200, OriLine.TYPE_CUT));
+		lines.add(new OriLine(-80, -200, -80, 200, OriLine.TYPE_VALLEY));
+		lines.add(new OriLine(80, -200, 80, 200, OriLine.TYPE_VALLEY));
+		return doc;
+	}
+
+	private File createTempDirectory() throws Exception {
+		File directory = File.createTempFile("oripa-batch", "");
+		directory.delete();
+		directory.mkdir();
+		directory.deleteOnExit();
+		return directory;
+	}
+}
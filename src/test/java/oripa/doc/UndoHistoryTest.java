@@ -0,0 +1,221 @@
+package oripa.doc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.creasepattern.tool.LineTypeChanger;
+import oripa.paint.creasepattern.tool.TypeForChange;
+import oripa.value.OriLine;
+
+public class UndoHistoryTest {
+
+	@Test
+	public void testUndoRestoresEachStep() {
+		CreasePattern creasePattern = new CreasePattern(400);
+		UndoHistory history = new UndoHistory(creasePattern, 30, Long.MAX_VALUE);
+
+		OriLine a = new OriLine(0, 0, 100, 0, OriLine.TYPE_RIDGE);
+		OriLine b = new OriLine(0, 0, 0, 100, OriLine.TYPE_VALLEY);
+		creasePattern.add(a);
+		Set<String> state0 = toSet(creasePattern);
+
+		history.push();
+		creasePattern.add(b);
+		Set<String> state1 = toSet(creasePattern);
+
+		history.push();
+		new LineTypeChanger().alterLineType(a, creasePattern, TypeForChange.EMPTY, TypeForChange.FLIP);
+		b.selected = true;
+		Set<String> state2 = toSet(creasePattern);
+
+		// selection only
+		history.push();
+		b.selected = false;
+		Set<String> state3 = toSet(creasePattern);
+
+		history.push();
+		creasePattern.clear();
+		creasePattern.add(new OriLine(50, 50, 100, 100, OriLine.TYPE_CUT));
+
+		assertTrue(history.undo());
+		assertEquals(state3, toSet(creasePattern));
+		assertTrue(history.undo());
+		assertEquals(state2, toSet(creasePattern));
+		assertTrue(history.undo());
+		assertEquals(state1, toSet(creasePattern));
+		assertTrue(history.undo());
+		assertEquals(state0, toSet(creasePattern));
+
+		assertFalse(history.canUndo());
+		assertFalse(history.undo());
+	}
+
+	@Test
+	public void testCachedStep() {
+		CreasePattern creasePattern = new CreasePattern(400);
+		UndoHistory history = new UndoHistory(creasePattern, 30, Long.MAX_VALUE);
+
+		history.push();
+		creasePattern.add(new OriLine(0, 0, 100, 0, OriLine.TYPE_RIDGE));
+		Set<String> state1 = toSet(creasePattern);
+
+		history.cache();
+		creasePattern.add(new OriLine(0, 0, 0, 100, OriLine.TYPE_RIDGE));
+		history.pushCache();
+		creasePattern.add(new OriLine(0, 0, 100, 100, OriLine.TYPE_RIDGE));
+
+		history.undo();
+		assertEquals(state1, toSet(creasePattern));
+
+		// a dropped cache belongs to the previous step.
+		history.cache();
+		creasePattern.add(new OriLine(0, 0, -100, 0, OriLine.TYPE_RIDGE));
+		history.undo();
+		assertTrue(creasePattern.isEmpty());
+	}
+
+	@Test
+	public void testOldestStepIsDropped() {
+		CreasePattern creasePattern = new CreasePattern(400);
+		UndoHistory history = new UndoHistory(creasePattern, 3, Long.MAX_VALUE);
+
+		List<Set<String>> states = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			states.add(toSet(creasePattern));
+			history.push();
+			creasePattern.add(new OriLine(0, i * 10, 100, i * 10, OriLine.TYPE_RIDGE));
+		}
+
+		for (int i = 4; i >= 2; i--) {
+			assertTrue(history.undo());
+			assertEquals(states.get(i), toSet(creasePattern));
+		}
+		assertFalse(history.canUndo());
+	}
+
+	@Test
+	public void testRedo() {
+		CreasePattern creasePattern = new CreasePattern(400);
+		UndoHistory history = new UndoHistory(creasePattern, 30, Long.MAX_VALUE);
+
+		List<Set<String>> states = new ArrayList<>();
+		states.add(toSet(creasePattern));
+		for (int i = 0; i < 3; i++) {
+			history.push();
+			OriLine line = new OriLine(0, i * 10, 100, i * 10, OriLine.TYPE_RIDGE);
+			line.selected = true;
+			creasePattern.add(line);
+			states.add(toSet(creasePattern));
+		}
+		history.push();
+		creasePattern.clear();
+		states.add(toSet(creasePattern));
+
+		for (int i = states.size() - 2; i >= 0; i--) {
+			assertTrue(history.undo());
+			assertEquals(states.get(i), toSet(creasePattern));
+		}
+		for (int i = 1; i < states.size(); i++) {
+			assertTrue(history.redo());
+			assertEquals(states.get(i), toSet(creasePattern));
+		}
+		assertFalse(history.redo());
+
+		// a new change discards the steps to redo.
+		history.undo();
+		creasePattern.add(new OriLine(0, 0, 0, 100, OriLine.TYPE_VALLEY));
+		assertFalse(history.canRedo());
+	}
+
+	@Test
+	public void testStepsAreMovedToJournal() throws Exception {
+		File file = File.createTempFile("oripa", ".journal");
+		UndoJournal journal = new UndoJournal(file);
+
+		CreasePattern creasePattern = new CreasePattern(400);
+		// a few lines in the heap
+		UndoHistory history = new UndoHistory(
+				creasePattern, 1000, 10 * UndoInfo.BYTES_PER_LINE);
+		history.startJournal(journal);
+
+		List<Set<String>> states = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			states.add(toSet(creasePattern));
+			history.push();
+			creasePattern.add(new OriLine(0, i, 100, i, OriLine.TYPE_RIDGE));
+			creasePattern.add(new OriLine(i, 0, i, 100, OriLine.TYPE_VALLEY));
+		}
+		states.add(toSet(creasePattern));
+		assertTrue(file.length() > 0);
+
+		for (int i = 49; i >= 0; i--) {
+			assertTrue(history.undo());
+			assertEquals(states.get(i), toSet(creasePattern));
+		}
+		for (int i = 1; i <= 50; i++) {
+			assertTrue(history.redo());
+			assertEquals(states.get(i), toSet(creasePattern));
+		}
+
+		history.stopJournal();
+		journal.close(true);
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testJournalIsCompacted() throws Exception {
+		File file = File.createTempFile("oripa", ".journal");
+		UndoJournal journal = new UndoJournal(file);
+		journal.setCompactionLength(4096);
+
+		CreasePattern creasePattern = new CreasePattern(400);
+		UndoHistory history = new UndoHistory(
+				creasePattern, 20, 10 * UndoInfo.BYTES_PER_LINE);
+		history.startJournal(journal);
+
+		// each step moves a line so that the pattern does not grow.
+		List<Set<String>> states = new ArrayList<>();
+		OriLine line = new OriLine(0, 0, 100, 0, OriLine.TYPE_RIDGE);
+		creasePattern.add(line);
+		long maxLength = 0;
+		for (int i = 1; i <= 500; i++) {
+			states.add(toSet(creasePattern));
+			history.push();
+			creasePattern.remove(line);
+			line = new OriLine(0, i, 100, i, OriLine.TYPE_RIDGE);
+			creasePattern.add(line);
+			maxLength = Math.max(maxLength, file.length());
+		}
+		states.add(toSet(creasePattern));
+
+		// the steps dropped from the history are not kept in the file.
+		assertTrue(maxLength < 3 * 4096);
+
+		Doc recovered = journal.recover();
+		assertEquals(toSet(creasePattern), toSet(recovered.getCreasePattern()));
+
+		for (int i = states.size() - 2; history.canUndo(); i--) {
+			assertTrue(history.undo());
+			assertEquals(states.get(i), toSet(creasePattern));
+		}
+
+		history.stopJournal();
+		journal.close(true);
+	}
+
+	private Set<String> toSet(CreasePattern creasePattern) {
+		Set<String> set = new HashSet<>();
+		for (OriLine line : creasePattern) {
+			set.add(line.toString() + line.typeVal + line.selected);
+		}
+		return set;
+	}
+}
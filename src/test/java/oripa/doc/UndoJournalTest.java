@@ -0,0 +1,73 @@
+package oripa.doc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.value.OriLine;
+
+public class UndoJournalTest {
+
+	@Test
+	public void testRecover() throws Exception {
+		File file = File.createTempFile("oripa", ".journal");
+
+		Doc doc = new Doc(400);
+		UndoJournal journal = new UndoJournal(file);
+		final List<Runnable> flushes = new ArrayList<>();
+		journal.setFlushExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				flushes.add(command);
+			}
+		});
+		doc.startJournal(journal);
+
+		CreasePattern creasePattern = doc.getCreasePattern();
+		doc.pushUndoInfo();
+		creasePattern.add(new OriLine(0, 0, 100, 0, OriLine.TYPE_RIDGE));
+		doc.pushUndoInfo();
+		creasePattern.add(new OriLine(0, 0, 0, 100, OriLine.TYPE_VALLEY));
+		doc.loadUndoInfo();
+		doc.pushUndoInfo();
+		// the last edit is not followed by another operation.
+		creasePattern.add(new OriLine(0, 0, 100, 100, OriLine.TYPE_NONE));
+
+		// the records are written once the operation making the changes ends.
+		flushes.get(flushes.size() - 1).run();
+
+		try {
+			new UndoJournal(file);
+			fail("the journal is locked.");
+		} catch (IOException e) {
+		}
+
+		// left without flushing as if the application crashed.
+		journal.close(false);
+
+		journal = new UndoJournal(file);
+		assertTrue(journal.hasRecords());
+		Doc recovered = journal.recover();
+
+		assertEquals(toSet(creasePattern), toSet(recovered.getCreasePattern()));
+
+		journal.close(true);
+	}
+
+	private Set<String> toSet(CreasePattern creasePattern) {
+		Set<String> set = new HashSet<>();
+		for (OriLine line : creasePattern) {
+			set.add(line.toString() + line.typeVal);
+		}
+		return set;
+	}
+}
@@ -0,0 +1,69 @@
+package oripa.doc.loader;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.junit.Test;
+
+import oripa.doc.Doc;
+import oripa.value.OriLine;
+
+public class LoaderTest {
+
+	@Test
+	public void testDXFKeepsLastOfSameLines() throws Exception {
+		File file = write(".dxf",
+				"0", "SECTION",
+				"0", "LINE", "62", "1", "10", "0", "20", "0", "11", "100", "21", "0",
+				"0", "LINE", "62", "3", "10", "100", "20", "0", "11", "0", "21", "0",
+				"0", "LINE", "62", "5", "10", "0", "20", "0", "11", "0", "21", "100",
+				"0", "ENDSEC",
+				"0", "EOF");
+
+		Doc doc = new LoaderDXF().load(file.getPath());
+
+		assertEquals(2, doc.getCreasePattern().size());
+		assertEquals(OriLine.TYPE_CUT, findHorizontal(doc).typeVal);
+	}
+
+	@Test
+	public void testPDFKeepsLastOfSameLines() throws Exception {
+		File file = write(".pdf",
+				"stream",
+				"2 w 0 0 m 100 0 l S",
+				"1 w 100 0 m 0 0 l S",
+				"2 w 0 0 m 0 100 l S",
+				"endstream");
+
+		Doc doc = new LoaderPDF().load(file.getPath());
+
+		assertEquals(2, doc.getCreasePattern().size());
+		assertEquals(OriLine.TYPE_RIDGE, findHorizontal(doc).typeVal);
+	}
+
+	private OriLine findHorizontal(Doc doc) {
+		for (OriLine line : doc.getCreasePattern()) {
+			if (Math.abs(line.p0.y - line.p1.y) < 1e-6) {
+				return line;
+			}
+		}
+		fail("no horizontal line");
+		return null;
+	}
+
+	private File write(String suffix, String... rows) throws IOException {
+		File file = File.createTempFile("oripa", suffix);
+		file.deleteOnExit();
+		try (Writer writer = new FileWriter(file)) {
+			for (String row : rows) {
+				writer.write(row);
+				writer.write("\n");
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,57 @@
+package oripa.fold;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import javax.vecmath.Vector2d;
+
+import org.junit.Test;
+
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.value.OriLine;
+
+public class FoldabilityValidatorTest {
+
+	@Test
+	public void testFindsProblemVertices() throws Exception {
+		CreasePattern creasePattern = new CreasePattern(400);
+		creasePattern.add(new OriLine(-200, -200, 200, -200, OriLine.TYPE_CUT));
+		creasePattern.add(new OriLine(200, -200, 200, 200, OriLine.TYPE_CUT));
+		creasePattern.add(new OriLine(200, 200, -200, 200, OriLine.TYPE_CUT));
+		creasePattern.add(new OriLine(-200, 200, -200, -200, OriLine.TYPE_CUT));
+
+		FoldabilityValidator validator = new FoldabilityValidator(creasePattern);
+
+		// a crease ending inside the paper
+		OriLine crease = new OriLine(-200, -200, 0, 0, OriLine.TYPE_VALLEY);
+		creasePattern.add(crease);
+
+		List<Vector2d> problems = waitForProblemCount(validator, 1);
+		assertEquals(new Vector2d(0, 0), problems.get(0));
+
+		creasePattern.remove(crease);
+		waitForProblemCount(validator, 0);
+
+		creasePattern.add(crease);
+		waitForProblemCount(validator, 1);
+
+		creasePattern.clear();
+		waitForProblemCount(validator, 0);
+
+		validator.dispose();
+	}
+
+	private List<Vector2d> waitForProblemCount(FoldabilityValidator validator, int count)
+			throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			List<Vector2d> problems = validator.getProblemVertices();
+			if (problems.size() == count) {
+				return problems;
+			}
+			Thread.sleep(10);
+		}
+		fail("the result was not updated.");
+		return null;
+	}
+}
@@ -0,0 +1,244 @@
+package oripa.fold;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import oripa.doc.Doc;
+import oripa.doc.loader.LoaderXML;
+import oripa.value.OriLine;
+
+public class FolderTest {
+
+	private static final String[] PATTERNS = {
+		"/crane_base_mitani.opx", "/waterbomb_base_collapse.opx"
+	};
+
+	@Test
+	public void testParallelSearchFindsSameAnswers() throws Exception {
+		for (String name : PATTERNS) {
+			Doc doc = load(name);
+
+			List<OriLine> lines = sortLines(doc.getCreasePattern());
+			double paperSize = doc.getPaperSize();
+
+			Set<String> expected = toSet(fold(lines, paperSize, false, true));
+			Set<String> ordered = toSet(fold(lines, paperSize, true, true));
+			Set<String> unordered = toSet(fold(lines, paperSize, true, false));
+
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, ordered);
+			assertEquals(expected, unordered);
+		}
+	}
+
+	@Test
+	public void testParallelSearchKeepsOrder() {
+		final int faceNum = 7;
+		int[][][] candidates = createCandidates(faceNum);
+
+		OverlapRelation base = new OverlapRelation(createUndefinedMatrix(faceNum));
+
+		List<OverlapRelationDiff> expected = new ArrayList<>();
+		new AnswerSearchTask(candidates, 0, base, 0, true, expected).compute();
+
+		List<OverlapRelationDiff> actual = new ArrayList<>();
+		new ForkJoinPool().invoke(new AnswerSearchTask(candidates, 0,
+				base, 3, true, actual));
+
+		assertTrue(expected.size() > 1);
+		assertSameAnswers(base, expected, actual);
+	}
+
+	@Test
+	public void testIteratorKeepsOrder() {
+		final int faceNum = 7;
+		int[][][] candidates = createCandidates(faceNum);
+
+		OverlapRelation base = new OverlapRelation(createUndefinedMatrix(faceNum));
+
+		List<OverlapRelationDiff> expected = new ArrayList<>();
+		new AnswerSearchTask(candidates, 0, base, 0, true, expected).compute();
+
+		List<OverlapRelationDiff> actual = new ArrayList<>();
+		AnswerIterator iterator = new AnswerIterator(candidates, base);
+		while (iterator.hasNext()) {
+			actual.add(iterator.next());
+		}
+
+		assertSameAnswers(base, expected, actual);
+	}
+
+	@Test
+	public void testAnswerLimit() throws Exception {
+		Doc doc = load("/waterbomb_base_collapse.opx");
+		List<OriLine> lines = sortLines(doc.getCreasePattern());
+
+		List<int[][]> expected = fold(lines, doc.getPaperSize(), false, true);
+
+		OrigamiModel origamiModel = new OrigamiModelFactory().createOrigamiModel3(
+				lines, doc.getPaperSize());
+		FoldedModelInfo foldedModelInfo = new FoldedModelInfo();
+		Folder folder = new Folder();
+		folder.setAnswerLimit(1);
+		folder.fold(origamiModel, foldedModelInfo);
+
+		assertEquals(1, foldedModelInfo.getFoldablePatternCount());
+		assertFalse(foldedModelInfo.isAllFoldableOverlapRelationsFound());
+
+		// the next answer can be searched without showing it.
+		assertTrue(foldedModelInfo.isNextAnswerSearchNeeded());
+		assertTrue(foldedModelInfo.findNextAnswer());
+		assertEquals(2, foldedModelInfo.getFoldablePatternCount());
+		assertEquals(0, foldedModelInfo.getCurrentORmatIndex());
+		assertFalse(foldedModelInfo.isNextAnswerSearchNeeded());
+
+		for (int i = 1; i < expected.size(); i++) {
+			// the answers are copied into the same matrix.
+			long version = foldedModelInfo.getOverlapRelationVersion();
+			foldedModelInfo.setNextORMat();
+			assertNotEquals(version, foldedModelInfo.getOverlapRelationVersion());
+		}
+		assertEquals(expected.size(), foldedModelInfo.getFoldablePatternCount());
+
+		foldedModelInfo.setNextORMat();
+		assertTrue(foldedModelInfo.isAllFoldableOverlapRelationsFound());
+		assertEquals(expected.size(), foldedModelInfo.getFoldablePatternCount());
+	}
+
+	private void assertSameAnswers(OverlapRelation base,
+			List<OverlapRelationDiff> expected, List<OverlapRelationDiff> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(Arrays.deepEquals(
+					restore(base, expected.get(i)), restore(base, actual.get(i))));
+		}
+	}
+
+	@Test
+	public void testUndoRestoresRelation() {
+		int[][] mat = createUndefinedMatrix(5);
+		OverlapRelation relation = new OverlapRelation(mat);
+
+		int mark = relation.getTrailSize();
+		relation.set(0, 1, Doc.UPPER);
+		relation.set(1, 0, Doc.LOWER);
+		assertEquals(Doc.UPPER, relation.get(0, 1));
+		assertEquals(2, relation.createDiff().getEntryCount());
+
+		relation.undo(mark);
+		assertTrue(Arrays.deepEquals(mat, restore(relation, relation.createDiff())));
+	}
+
+	private int[][] restore(OverlapRelation base, OverlapRelationDiff diff) {
+		int size = base.getSize();
+		int[][] mat = new int[size][size];
+		base.copyTo(diff, mat);
+		return mat;
+	}
+
+	/**
+	 * each subface has three consecutive faces and
+	 * all permutations of them as candidates.
+	 */
+	private int[][][] createCandidates(int faceNum) {
+		List<OriFace> faces = new ArrayList<>();
+		for (int i = 0; i < faceNum; i++) {
+			OriFace face = new OriFace();
+			face.tmpInt = i;
+			faces.add(face);
+		}
+
+		List<SubFace> subFaces = new ArrayList<>();
+		for (int i = 0; i + 2 < faceNum; i++) {
+			SubFace sub = new SubFace(null);
+			sub.faces.addAll(faces.subList(i, i + 3));
+			int[][] orders = { { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 },
+					{ 1, 2, 0 }, { 2, 0, 1 }, { 2, 1, 0 } };
+			for (int[] order : orders) {
+				ArrayList<OriFace> stack = new ArrayList<>();
+				for (int k : order) {
+					stack.add(sub.faces.get(k));
+				}
+				sub.answerStacks.add(stack);
+			}
+			subFaces.add(sub);
+		}
+
+		int[][][] candidates = new int[subFaces.size()][][];
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] = subFaces.get(i).createCandidateIndices();
+		}
+		return candidates;
+	}
+
+	private int[][] createUndefinedMatrix(int size) {
+		int[][] mat = new int[size][size];
+		for (int i = 0; i < size; i++) {
+			Arrays.fill(mat[i], Doc.UNDEFINED);
+			mat[i][i] = Doc.NO_OVERLAP;
+		}
+		return mat;
+	}
+
+	private Set<String> toSet(List<int[][]> matrices) {
+		Set<String> set = new HashSet<>();
+		for (int[][] mat : matrices) {
+			set.add(Arrays.deepToString(mat));
+		}
+		return set;
+	}
+
+	private Doc load(String name) throws Exception {
+		String path = new File(getClass().getResource(name).toURI()).getPath();
+		return new LoaderXML().load(path);
+	}
+
+	/**
+	 * fixes the order of lines to get the same face indices
+	 * regardless of the iteration order of the crease pattern.
+	 */
+	private List<OriLine> sortLines(Collection<OriLine> creasePattern) {
+		List<OriLine> lines = new ArrayList<>(creasePattern);
+		Collections.sort(lines, new Comparator<OriLine>() {
+			@Override
+			public int compare(OriLine l0, OriLine l1) {
+				double[] c0 = {l0.p0.x, l0.p0.y, l0.p1.x, l0.p1.y};
+				double[] c1 = {l1.p0.x, l1.p0.y, l1.p1.x, l1.p1.y};
+				for (int i = 0; i < c0.length; i++) {
+					int result = Double.compare(c0[i], c1[i]);
+					if (result != 0) {
+						return result;
+					}
+				}
+				return 0;
+			}
+		});
+		return lines;
+	}
+
+	private List<int[][]> fold(Collection<OriLine> lines, double paperSize,
+			boolean parallel, boolean ordered) {
+		OrigamiModelFactory modelFactory = new OrigamiModelFactory();
+		OrigamiModel origamiModel = modelFactory.createOrigamiModel3(lines, paperSize);
+		FoldedModelInfo foldedModelInfo = new FoldedModelInfo();
+
+		Folder folder = new Folder();
+		folder.setParallelSearch(parallel);
+		folder.setDeterministicOrder(ordered);
+		folder.fold(origamiModel, foldedModelInfo);
+
+		return new ArrayList<>(foldedModelInfo.getFoldableOverlapRelations());
+	}
+}
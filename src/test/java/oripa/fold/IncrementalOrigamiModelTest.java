@@ -0,0 +1,120 @@
+package oripa.fold;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import oripa.doc.Doc;
+import oripa.doc.loader.LoaderXML;
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.paint.creasepattern.tool.LineTypeChanger;
+import oripa.paint.creasepattern.tool.TypeForChange;
+import oripa.value.OriLine;
+
+public class IncrementalOrigamiModelTest {
+
+	@Test
+	public void testSameAsFullBuild() throws Exception {
+		for (String name : new String[] {
+				"/crane_base_mitani.opx", "/waterbomb_base_collapse.opx" }) {
+			CreasePattern creasePattern = load(name).getCreasePattern();
+			IncrementalOrigamiModel model = new IncrementalOrigamiModel(creasePattern);
+
+			assertSameModel(creasePattern, model);
+		}
+	}
+
+	@Test
+	public void testFollowsChanges() throws Exception {
+		CreasePattern creasePattern = load("/crane_base_mitani.opx").getCreasePattern();
+		IncrementalOrigamiModel model = new IncrementalOrigamiModel(creasePattern);
+		assertSameModel(creasePattern, model);
+
+		List<OriLine> creases = new ArrayList<>();
+		for (OriLine line : creasePattern) {
+			if (line.typeVal != OriLine.TYPE_CUT) {
+				creases.add(line);
+			}
+		}
+		Collections.sort(creases);
+
+		// remove some creases one by one
+		List<OriLine> removed = new ArrayList<>();
+		for (int i = 0; i < creases.size(); i += 7) {
+			creasePattern.remove(creases.get(i));
+			removed.add(creases.get(i));
+			assertSameModel(creasePattern, model);
+		}
+		assertFalse(model.isProbablyFoldable());
+
+		// change type
+		LineTypeChanger changer = new LineTypeChanger();
+		OriLine flipped = creases.get(1);
+		changer.alterLineType(flipped, creasePattern, TypeForChange.EMPTY, TypeForChange.FLIP);
+		assertSameModel(creasePattern, model);
+		changer.alterLineType(flipped, creasePattern, TypeForChange.EMPTY, TypeForChange.FLIP);
+
+		// restore at once
+		creasePattern.addAll(removed);
+		assertSameModel(creasePattern, model);
+		assertTrue(model.isProbablyFoldable());
+
+		creasePattern.clear();
+		creasePattern.addAll(creases);
+		assertSameModel(creasePattern, model);
+	}
+
+	private void assertSameModel(CreasePattern creasePattern, IncrementalOrigamiModel model) {
+		OrigamiModel expected = new OrigamiModelFactory().createOrigamiModel3(
+				creasePattern, creasePattern.getPaperSize());
+		OrigamiModel actual = model.createOrigamiModel();
+
+		assertEquals(expected.isProbablyFoldable(), actual.isProbablyFoldable());
+		assertEquals(expected.getVertices().size(), actual.getVertices().size());
+		assertEquals(expected.getEdges().size(), actual.getEdges().size());
+		assertEquals(toFaceSet(expected), toFaceSet(actual));
+		assertEquals(toProblemSet(expected), toProblemSet(actual));
+	}
+
+	/**
+	 * each face as the sorted positions of the corners.
+	 */
+	private Set<String> toFaceSet(OrigamiModel origamiModel) {
+		Set<String> set = new HashSet<>();
+		for (OriFace face : origamiModel.getFaces()) {
+			List<String> corners = new ArrayList<>();
+			for (OriHalfedge he : face.halfedges) {
+				corners.add(toString(he.vertex));
+			}
+			Collections.sort(corners);
+			set.add(corners.toString() + face.hasProblem);
+		}
+		return set;
+	}
+
+	private Set<String> toProblemSet(OrigamiModel origamiModel) {
+		Set<String> set = new HashSet<>();
+		for (OriVertex v : origamiModel.getVertices()) {
+			if (v.hasProblem) {
+				set.add(toString(v));
+			}
+		}
+		return set;
+	}
+
+	private String toString(OriVertex v) {
+		return String.format("(%.3f, %.3f)", v.p.x, v.p.y);
+	}
+
+	private Doc load(String name) throws Exception {
+		String path = new File(getClass().getResource(name).toURI()).getPath();
+		return new LoaderXML().load(path);
+	}
+}
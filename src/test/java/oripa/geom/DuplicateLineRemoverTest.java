@@ -0,0 +1,86 @@
+package oripa.geom;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import oripa.value.OriLine;
+
+public class DuplicateLineRemoverTest {
+
+	@Test
+	public void testSameAsComparingAllPairs() {
+		Random random = new Random(0);
+		List<OriLine> lines = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			if (i > 0 && random.nextInt(3) == 0) {
+				// a copy of a previous line, maybe reversed and moved a little
+				OriLine line = lines.get(random.nextInt(lines.size()));
+				double d = (random.nextDouble() - 0.5) * 2e-6;
+				if (random.nextBoolean()) {
+					lines.add(new OriLine(line.p1.x + d, line.p1.y, line.p0.x, line.p0.y - d, OriLine.TYPE_VALLEY));
+				} else {
+					lines.add(new OriLine(line.p0.x, line.p0.y + d, line.p1.x - d, line.p1.y, OriLine.TYPE_VALLEY));
+				}
+				continue;
+			}
+			lines.add(new OriLine(random.nextInt(20) * 10 - 100, random.nextInt(20) * 10 - 100,
+					random.nextInt(20) * 10 - 100, random.nextInt(20) * 10 - 100, OriLine.TYPE_RIDGE));
+		}
+
+		List<OriLine> expected = new ArrayList<>();
+		for (OriLine line : lines) {
+			boolean same = false;
+			for (OriLine kept : expected) {
+				if (GeomUtil.isSameLineSegment(kept, line)) {
+					same = true;
+					break;
+				}
+			}
+			if (!same) {
+				expected.add(line);
+			}
+		}
+
+		List<OriLine> actual = new DuplicateLineRemover(GeomUtil.EPS).removeDuplicates(lines);
+
+		assertTrue(expected.size() < lines.size());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSame(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testMergeOverlaps() {
+		List<OriLine> lines = new ArrayList<>();
+		lines.add(new OriLine(0, 0, 10, 10, OriLine.TYPE_RIDGE));
+		lines.add(new OriLine(15, 15, 5, 5, OriLine.TYPE_RIDGE));
+		lines.add(new OriLine(14, 14, 20, 20, OriLine.TYPE_RIDGE));
+		// touching at an end point only
+		lines.add(new OriLine(20, 20, 30, 30, OriLine.TYPE_RIDGE));
+		// another type
+		lines.add(new OriLine(1, 1, 2, 2, OriLine.TYPE_VALLEY));
+		// parallel but apart
+		lines.add(new OriLine(0, 1, 10, 11, OriLine.TYPE_RIDGE));
+		// on the other side of the angle 0 and 180 degrees
+		lines.add(new OriLine(-10, 0, 10, 1e-9, OriLine.TYPE_RIDGE));
+		lines.add(new OriLine(20, 0, 0, 0, OriLine.TYPE_RIDGE));
+
+		DuplicateLineRemover remover = new DuplicateLineRemover(GeomUtil.EPS);
+		remover.setMergesOverlaps(true);
+		List<OriLine> merged = remover.removeDuplicates(lines);
+
+		assertEquals(5, merged.size());
+		assertTrue(GeomUtil.isSameLineSegment(new OriLine(0, 0, 20, 20, OriLine.TYPE_RIDGE), merged.get(0)));
+		assertSame(lines.get(3), merged.get(1));
+		assertSame(lines.get(4), merged.get(2));
+		assertSame(lines.get(5), merged.get(3));
+		assertEquals(-10, Math.min(merged.get(4).p0.x, merged.get(4).p1.x), 1e-6);
+		assertEquals(20, Math.max(merged.get(4).p0.x, merged.get(4).p1.x), 1e-6);
+	}
+}
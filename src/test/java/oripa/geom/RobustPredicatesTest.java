@@ -0,0 +1,88 @@
+package oripa.geom;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RobustPredicatesTest {
+
+	@Test
+	public void testOrientationOfNearlyCollinearPoints() {
+		Random random = new Random(0);
+		int exactCount = 0;
+		for (int i = 0; i < 10000; i++) {
+			// c is on the line of a and b up to the rounding of the coordinates.
+			double ax = random.nextDouble() * 400 - 200;
+			double ay = random.nextDouble() * 400 - 200;
+			double bx = random.nextDouble() * 400 - 200;
+			double by = random.nextDouble() * 400 - 200;
+			double t = random.nextDouble() * 3 - 1;
+			double cx = ax + t * (bx - ax);
+			double cy = ay + t * (by - ay);
+
+			int expected = exactSign(ax, ay, bx, by, cx, cy);
+			assertEquals(expected, RobustPredicates.orientation(ax, ay, bx, by, cx, cy));
+			assertEquals(-expected, RobustPredicates.orientation(bx, by, ax, ay, cx, cy));
+			assertEquals(expected, RobustPredicates.orientation(bx, by, cx, cy, ax, ay));
+
+			if (expected == 0) {
+				exactCount++;
+			}
+		}
+		assertTrue(exactCount < 10000);
+	}
+
+	@Test
+	public void testOrientation() {
+		assertEquals(1, RobustPredicates.orientation(0, 0, 1, 0, 0, 1));
+		assertEquals(-1, RobustPredicates.orientation(0, 0, 0, 1, 1, 0));
+		assertEquals(0, RobustPredicates.orientation(0, 0, 1, 1, 3, 3));
+
+		// 0.1 * 3 is not 0.3 in double.
+		assertEquals(exactSign(0, 0, 0.1, 0.1, 0.3, 0.3),
+				RobustPredicates.orientation(0, 0, 0.1, 0.1, 0.3, 0.3));
+		assertEquals(0, RobustPredicates.orientation(0, 0, 0.1, 0.1, 0.1 * 3, 0.1 * 3));
+	}
+
+	@Test
+	public void testIntersection() {
+		assertEquals(RobustPredicates.CROSSING,
+				RobustPredicates.intersection(0, 0, 2, 2, 0, 2, 2, 0));
+		assertEquals(RobustPredicates.DISJOINT,
+				RobustPredicates.intersection(0, 0, 1, 1, 0, 3, 3, 3));
+		assertEquals(RobustPredicates.DISJOINT,
+				RobustPredicates.intersection(0, 0, 1, 0, 2, 0, 3, 0));
+
+		// an end point on the other segment
+		assertEquals(RobustPredicates.TOUCHING,
+				RobustPredicates.intersection(0, 0, 2, 0, 1, 0, 1, 1));
+		// collinear and sharing an end point only
+		assertEquals(RobustPredicates.TOUCHING,
+				RobustPredicates.intersection(0, 0, 1, 0, 1, 0, 2, 0));
+
+		assertEquals(RobustPredicates.OVERLAPPING,
+				RobustPredicates.intersection(0, 0, 2, 0, 1, 0, 3, 0));
+		assertEquals(RobustPredicates.OVERLAPPING,
+				RobustPredicates.intersection(0, 0, 2, 2, 0, 0, 1, 1));
+		assertEquals(RobustPredicates.OVERLAPPING,
+				RobustPredicates.intersection(0, 0, 0, 2, 0, 2, 0, 1));
+	}
+
+	@Test
+	public void testShallowCross() {
+		// the segments cross at an angle of about 1e-5 degrees.
+		assertTrue(RobustPredicates.isCrossing(0, 0, 200, 0, 0, -1e-5, 200, 1e-5));
+		assertFalse(RobustPredicates.isCrossing(0, 0, 200, 0, 0, 1e-12, 200, 1e-5));
+	}
+
+	private int exactSign(double ax, double ay, double bx, double by, double cx, double cy) {
+		BigDecimal acx = new BigDecimal(ax).subtract(new BigDecimal(cx));
+		BigDecimal bcy = new BigDecimal(by).subtract(new BigDecimal(cy));
+		BigDecimal acy = new BigDecimal(ay).subtract(new BigDecimal(cy));
+		BigDecimal bcx = new BigDecimal(bx).subtract(new BigDecimal(cx));
+		return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+	}
+}
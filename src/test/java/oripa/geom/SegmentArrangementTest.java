@@ -0,0 +1,69 @@
+package oripa.geom;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import javax.vecmath.Vector2d;
+
+import org.junit.Test;
+
+public class SegmentArrangementTest {
+
+	@Test
+	public void testSquareWithDiagonals() {
+		SegmentArrangement arrangement = new SegmentArrangement(1.0);
+		addSquare(arrangement, 0, 0, 100);
+		arrangement.addSegment(new Vector2d(0, 0), new Vector2d(100, 100));
+		arrangement.addSegment(new Vector2d(100, 0), new Vector2d(0, 100));
+
+		List<List<Vector2d>> faces = arrangement.buildFaces();
+
+		assertEquals(4, faces.size());
+		for (List<Vector2d> face : faces) {
+			assertEquals(3, face.size());
+			assertEquals(2500, area(face), 1e-6);
+		}
+	}
+
+	@Test
+	public void testOverlappingSquares() {
+		SegmentArrangement arrangement = new SegmentArrangement(1.0);
+		addSquare(arrangement, 0, 0, 100);
+		// shares the left half of the bottom edge and the whole left edge.
+		addSquare(arrangement, 0, 0, 50);
+		// the same square again
+		addSquare(arrangement, 0, 0, 50);
+
+		List<List<Vector2d>> faces = arrangement.buildFaces();
+
+		assertEquals(2, faces.size());
+		double total = 0;
+		for (List<Vector2d> face : faces) {
+			total += area(face);
+		}
+		assertEquals(10000, total, 1e-6);
+	}
+
+	private void addSquare(SegmentArrangement arrangement,
+			double x, double y, double size) {
+		Vector2d p0 = new Vector2d(x, y);
+		Vector2d p1 = new Vector2d(x + size, y);
+		Vector2d p2 = new Vector2d(x + size, y + size);
+		Vector2d p3 = new Vector2d(x, y + size);
+		arrangement.addSegment(p0, p1);
+		arrangement.addSegment(p1, p2);
+		arrangement.addSegment(p2, p3);
+		arrangement.addSegment(p3, p0);
+	}
+
+	private double area(List<Vector2d> face) {
+		double area = 0;
+		for (int i = 0; i < face.size(); i++) {
+			Vector2d p = face.get(i);
+			Vector2d q = face.get((i + 1) % face.size());
+			area += p.x * q.y - q.x * p.y;
+		}
+		return area / 2;
+	}
+}
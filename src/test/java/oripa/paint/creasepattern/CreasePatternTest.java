@@ -2,8 +2,11 @@ package oripa.paint.creasepattern;
 
 import static org.junit.Assert.*;
 
+import java.util.Collection;
 import java.util.Iterator;
 
+import javax.vecmath.Vector2d;
+
 import org.junit.Test;
 
 import oripa.paint.creasepattern.CreasePattern;
@@ -27,4 +30,76 @@ public class CreasePatternTest {
 		assertTrue(cp.isEmpty());
 	}
 
+	@Test
+	public void testSameLineIsAddedOnce() {
+		CreasePattern cp = new CreasePattern(400);
+
+		assertTrue(cp.add(new OriLine(0.0, 0.0, 100.0, 100.0, OriLine.TYPE_RIDGE)));
+		assertFalse(cp.add(new OriLine(100.0, 100.0, 0.0, 0.0, OriLine.TYPE_VALLEY)));
+		assertEquals(1, cp.size());
+
+		assertTrue(cp.remove(new OriLine(100.0, 100.0, 0.0, 0.0, OriLine.TYPE_NONE)));
+		assertTrue(cp.isEmpty());
+		assertTrue(cp.getLinesInArea(-1000, -1000, 1000, 1000).isEmpty());
+	}
+
+	@Test
+	public void testVersionChangesOnEachChange() {
+		CreasePattern cp = new CreasePattern(400);
+		OriLine line = new OriLine(0.0, 0.0, 100.0, 100.0, OriLine.TYPE_RIDGE);
+
+		long version = cp.getVersion();
+		cp.add(line);
+		assertNotEquals(version, cp.getVersion());
+
+		version = cp.getVersion();
+		cp.add(new OriLine(100.0, 100.0, 0.0, 0.0, OriLine.TYPE_VALLEY));
+		assertEquals(version, cp.getVersion());
+
+		cp.remove(line);
+		assertNotEquals(version, cp.getVersion());
+
+		cp.add(line);
+		version = cp.getVersion();
+		cp.clear();
+		assertNotEquals(version, cp.getVersion());
+	}
+
+	@Test
+	public void testSpatialQueries() {
+		CreasePattern cp = new CreasePattern(400);
+
+		// grid of short lines and a long line out of the paper
+		for (int x = -200; x < 200; x += 10) {
+			for (int y = -200; y <= 200; y += 10) {
+				cp.add(new OriLine(x, y, x + 10, y, OriLine.TYPE_RIDGE));
+			}
+		}
+		OriLine longLine = new OriLine(-1000, 505, 1000, 505, OriLine.TYPE_CUT);
+		cp.add(longLine);
+
+		Collection<OriLine> found = cp.getLinesInArea(-5, -5, 5, 5);
+		for (OriLine line : cp) {
+			boolean expected = line.p0.x <= 5 && line.p1.x >= -5
+					&& line.p0.y <= 5 && line.p0.y >= -5;
+			assertEquals(expected, found.contains(line));
+		}
+
+		assertEquals(longLine, cp.getNearestLine(new Vector2d(900, 500), 10));
+		assertNull(cp.getNearestLine(new Vector2d(900, 480), 10));
+
+		OriLine nearest = cp.getNearestLine(new Vector2d(13, 21), 10);
+		assertEquals(new OriLine(10, 20, 20, 20, OriLine.TYPE_NONE), nearest);
+
+		Collection<OriLine> candidates = cp.getCrossingCandidates(
+				new OriLine(0, 500, 0, 600, OriLine.TYPE_RIDGE));
+		assertEquals(1, candidates.size());
+
+		for (Iterator<OriLine> iter = cp.iterator(); iter.hasNext();) {
+			if (iter.next().p0.y == 0) {
+				iter.remove();
+			}
+		}
+		assertTrue(cp.getLinesInArea(-200, 0, 200, 0).isEmpty());
+	}
 }
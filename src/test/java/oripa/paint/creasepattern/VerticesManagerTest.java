@@ -67,7 +67,7 @@ public class VerticesManagerTest extends TestCase{
 		
 		VerticesManager manager = new VerticesManager(paperSize);
 
-		double interval = manager.interval;
+		double interval = paperSize / 32;
 		addAndCheckContains(manager, new Vector2d(0, 0));
 		addAndCheckContains(manager, new Vector2d(interval, 0));
 		addAndCheckContains(manager, new Vector2d(interval, interval));
@@ -114,4 +114,40 @@ public class VerticesManagerTest extends TestCase{
 		assertFalse(managerContains(manager, p));
 	}
 	
+	@Test
+	public void testDenseVertices() {
+		final double paperSize = 400;
+
+		VerticesManager manager = new VerticesManager(paperSize);
+
+		// many vertices in a small area and some out of the paper
+		for (int x = 0; x < 40; x++) {
+			for (int y = 0; y < 40; y++) {
+				manager.add(new Vector2d(x * 0.1, y * 0.1));
+			}
+		}
+		manager.add(new Vector2d(1000, -1000));
+
+		int found = 0;
+		for (Collection<Vector2d> vertices : manager.getArea(0.1, 0.1, 0.15)) {
+			for (Vector2d v : vertices) {
+				if (Math.abs(v.x - 0.1) <= 0.15 && Math.abs(v.y - 0.1) <= 0.15) {
+					found++;
+				}
+			}
+		}
+		assertEquals(9, found);
+		assertTrue(managerContains(manager, new Vector2d(1000, -1000)));
+
+		for (int x = 0; x < 40; x++) {
+			for (int y = 0; y < 40; y++) {
+				Vector2d v = new Vector2d(x * 0.1, y * 0.1);
+				assertTrue(managerContains(manager, v));
+				manager.remove(v);
+			}
+		}
+		manager.remove(new Vector2d(1000, -1000));
+		assertTrue(manager.isEmpty());
+	}
+
 }
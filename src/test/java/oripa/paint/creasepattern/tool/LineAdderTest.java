@@ -0,0 +1,84 @@
+package oripa.paint.creasepattern.tool;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.junit.Test;
+
+import oripa.geom.GeomUtil;
+import oripa.paint.creasepattern.CreasePattern;
+import oripa.value.OriLine;
+
+public class LineAdderTest {
+
+	/**
+	 * grid of n x n squares in 100 x 100 with a diagonal.
+	 */
+	private Collection<OriLine> createGrid(int n) {
+		Collection<OriLine> lines = new ArrayList<>();
+		for (int i = 0; i <= n; i++) {
+			double c = 100.0 * i / n;
+			lines.add(new OriLine(0, c, 100, c, OriLine.TYPE_RIDGE));
+			lines.add(new OriLine(c, 0, c, 100, OriLine.TYPE_VALLEY));
+		}
+		lines.add(new OriLine(0, 0, 100, 100, OriLine.TYPE_RIDGE));
+		return lines;
+	}
+
+	@Test
+	public void testAddLinesGivesSameResultAsAddLine() {
+		LineAdder adder = new LineAdder();
+
+		CreasePattern sequential = new CreasePattern(400);
+		for (OriLine line : createGrid(5)) {
+			adder.addLine(line, sequential);
+		}
+
+		CreasePattern batch = new CreasePattern(400);
+		adder.addLines(createGrid(5), batch);
+
+		// 2 * 6 lines divided into 5 pieces and the diagonal into 5 pieces
+		assertEquals(65, batch.size());
+		assertEquals(sequential.size(), batch.size());
+		for (OriLine line : sequential) {
+			assertNotNull(find(batch, line));
+		}
+	}
+
+	@Test
+	public void testAddLinesOnExistingLines() {
+		LineAdder adder = new LineAdder();
+
+		CreasePattern creasePattern = new CreasePattern(400);
+		adder.addLines(createGrid(2), creasePattern);
+
+		Collection<OriLine> lines = new ArrayList<>();
+		// already exists
+		lines.add(new OriLine(0, 0, 50, 0, OriLine.TYPE_RIDGE));
+		// crosses the vertical lines
+		lines.add(new OriLine(0, 25, 100, 25, OriLine.TYPE_VALLEY));
+		adder.addLines(lines, creasePattern);
+
+		// divided by the diagonal and the vertical line
+		assertTrue(creasePattern.contains(new OriLine(0, 25, 25, 25, OriLine.TYPE_NONE)));
+		assertTrue(creasePattern.contains(new OriLine(25, 25, 50, 25, OriLine.TYPE_NONE)));
+		assertTrue(creasePattern.contains(new OriLine(50, 0, 50, 25, OriLine.TYPE_NONE)));
+		assertFalse(creasePattern.contains(new OriLine(50, 0, 50, 50, OriLine.TYPE_NONE)));
+		assertTrue(creasePattern.contains(new OriLine(0, 0, 25, 25, OriLine.TYPE_NONE)));
+		assertEquals(OriLine.TYPE_RIDGE, find(creasePattern, new OriLine(0, 0, 50, 0, 0)).typeVal);
+	}
+
+	/**
+	 * cross points may differ slightly by the order of computation.
+	 */
+	private OriLine find(Collection<OriLine> lines, OriLine target) {
+		for (OriLine line : lines) {
+			if (GeomUtil.isSameLineSegment(line, target)) {
+				return line;
+			}
+		}
+		return null;
+	}
+}